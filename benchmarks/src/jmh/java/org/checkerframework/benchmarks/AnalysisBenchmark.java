@@ -0,0 +1,72 @@
+package org.checkerframework.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.processing.ProcessingEnvironment;
+import org.checkerframework.checker.nullness.NullnessAnalysis;
+import org.checkerframework.checker.nullness.NullnessAnnotatedTypeFactory;
+import org.checkerframework.dataflow.analysis.Analysis;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.constantpropagation.Constant;
+import org.checkerframework.dataflow.constantpropagation.ConstantPropagationStore;
+import org.checkerframework.dataflow.constantpropagation.ConstantPropagationTransfer;
+import org.checkerframework.javacutil.BugInCF;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks {@link Analysis#performAnalysis(ControlFlowGraph)} on the control flow graphs of the
+ * generated methods, both with the checker-independent constant propagation and with the Nullness
+ * Checker's analysis.
+ */
+public class AnalysisBenchmark extends FixtureState {
+
+    /** The control flow graphs of all methods of the fixture. */
+    private List<ControlFlowGraph> cfgs;
+
+    /** The processing environment of the compilation. */
+    private ProcessingEnvironment env;
+
+    /** The type factory of the Nullness Checker. */
+    private NullnessAnnotatedTypeFactory nullnessFactory;
+
+    @Override
+    protected void setUpBenchmark() {
+        if (!(fixture.getTypeFactory() instanceof NullnessAnnotatedTypeFactory)) {
+            throw new BugInCF("AnalysisBenchmark requires the Nullness Checker, not " + checker);
+        }
+        nullnessFactory = (NullnessAnnotatedTypeFactory) fixture.getTypeFactory();
+        env = fixture.getProcessingEnvironment();
+        cfgs = fixture.buildControlFlowGraphs();
+    }
+
+    /**
+     * Runs constant propagation on every control flow graph.
+     *
+     * @param bh consumes the results
+     */
+    @Benchmark
+    public void constantPropagation(Blackhole bh) {
+        for (ControlFlowGraph cfg : cfgs) {
+            Analysis<Constant, ConstantPropagationStore, ConstantPropagationTransfer> analysis =
+                    new Analysis<>(new ConstantPropagationTransfer(), env);
+            analysis.performAnalysis(cfg);
+            bh.consume(analysis.getRegularExitStore());
+        }
+    }
+
+    /**
+     * Runs the Nullness Checker's analysis on every control flow graph.
+     *
+     * @param bh consumes the results
+     */
+    @Benchmark
+    public void nullnessAnalysis(Blackhole bh) {
+        for (ControlFlowGraph cfg : cfgs) {
+            NullnessAnalysis analysis =
+                    new NullnessAnalysis(fixture.getChecker(), nullnessFactory, new ArrayList<>());
+            analysis.performAnalysis(cfg);
+            bh.consume(analysis.getRegularExitStore());
+        }
+    }
+}
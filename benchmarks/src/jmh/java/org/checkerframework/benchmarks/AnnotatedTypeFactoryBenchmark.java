@@ -0,0 +1,92 @@
+package org.checkerframework.benchmarks;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import java.util.ArrayList;
+import java.util.List;
+import javax.lang.model.element.Element;
+import org.checkerframework.framework.type.AnnotatedTypeFactory;
+import org.checkerframework.javacutil.Pair;
+import org.checkerframework.javacutil.TreeUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Benchmarks {@link AnnotatedTypeFactory#getAnnotatedType(Tree)} and its element variant. */
+public class AnnotatedTypeFactoryBenchmark extends FixtureState {
+
+    /** The type factory of the checker. */
+    private AnnotatedTypeFactory factory;
+
+    /** Trees of the fixture whose annotated type can be computed. */
+    private final List<Tree> trees = new ArrayList<>();
+
+    /** Elements declared in the fixture. */
+    private final List<Element> elements = new ArrayList<>();
+
+    @Override
+    protected void setUpBenchmark() {
+        factory = fixture.getTypeFactory();
+        List<Tree> candidates = new ArrayList<>();
+        candidates.addAll(fixture.getVariables());
+        candidates.addAll(fixture.getExpressions());
+        for (Tree tree : candidates) {
+            try {
+                factory.getAnnotatedType(tree);
+                trees.add(tree);
+            } catch (RuntimeException e) {
+                // Not every expression has a type, for example the name of a package in a
+                // qualified name.  Skip such trees.
+            }
+        }
+        for (ClassTree tree : fixture.getClasses()) {
+            elements.add(TreeUtils.elementFromDeclaration(tree));
+        }
+        for (Pair<MethodTree, ClassTree> method : fixture.getMethods()) {
+            elements.add(TreeUtils.elementFromDeclaration(method.first));
+        }
+        for (VariableTree tree : fixture.getVariables()) {
+            elements.add(TreeUtils.elementFromDeclaration(tree));
+        }
+    }
+
+    /**
+     * Computes the annotated type of every variable declaration and expression in the fixture.
+     *
+     * @param bh consumes the results
+     */
+    @Benchmark
+    public void getAnnotatedTypeOfTrees(Blackhole bh) {
+        for (Tree tree : trees) {
+            bh.consume(factory.getAnnotatedType(tree));
+        }
+    }
+
+    /**
+     * Computes the annotated type of every expression in the fixture.
+     *
+     * @param bh consumes the results
+     */
+    @Benchmark
+    public void getAnnotatedTypeOfExpressions(Blackhole bh) {
+        for (Tree tree : trees) {
+            if (tree instanceof ExpressionTree) {
+                bh.consume(factory.getAnnotatedType(tree));
+            }
+        }
+    }
+
+    /**
+     * Computes the annotated type of every element declared in the fixture.
+     *
+     * @param bh consumes the results
+     */
+    @Benchmark
+    public void getAnnotatedTypeOfElements(Blackhole bh) {
+        for (Element element : elements) {
+            bh.consume(factory.getAnnotatedType(element));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.checkerframework.benchmarks;
+
+import com.sun.source.tree.VariableTree;
+import java.util.ArrayList;
+import java.util.List;
+import javax.lang.model.element.AnnotationMirror;
+import org.checkerframework.framework.type.AnnotatedTypeFactory;
+import org.checkerframework.javacutil.AnnotationBuilder;
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks {@link AnnotationUtils#areSame(AnnotationMirror, AnnotationMirror)} and {@link
+ * AnnotationUtils#compareAnnotationMirrors(AnnotationMirror, AnnotationMirror)} on the annotations
+ * of the fixture's variables, the checker's qualifiers, and structurally equal copies of the
+ * qualifiers.
+ */
+public class AnnotationUtilsBenchmark extends FixtureState {
+
+    /** The number of following annotations that each annotation is compared with. */
+    private static final int NEIGHBORS = 8;
+
+    /** The maximum number of annotations collected from the fixture. */
+    private static final int MAX_ANNOTATIONS = 4096;
+
+    /** The annotations to compare. */
+    private final List<AnnotationMirror> annotations = new ArrayList<>();
+
+    @Override
+    protected void setUpBenchmark() {
+        AnnotatedTypeFactory factory = fixture.getTypeFactory();
+        for (AnnotationMirror qualifier : factory.getQualifierHierarchy().getTypeQualifiers()) {
+            annotations.add(qualifier);
+            annotations.add(new AnnotationBuilder(factory.getProcessingEnv(), qualifier).build());
+        }
+        for (VariableTree variable : fixture.getVariables()) {
+            if (annotations.size() >= MAX_ANNOTATIONS) {
+                break;
+            }
+            annotations.addAll(factory.getAnnotatedType(variable).getAnnotations());
+        }
+    }
+
+    /**
+     * Compares every annotation with the annotations that follow it using {@code areSame}.
+     *
+     * @param bh consumes the results
+     */
+    @Benchmark
+    public void areSame(Blackhole bh) {
+        int size = annotations.size();
+        for (int i = 0; i < size; i++) {
+            AnnotationMirror a1 = annotations.get(i);
+            int end = Math.min(size, i + NEIGHBORS);
+            for (int j = i + 1; j < end; j++) {
+                bh.consume(AnnotationUtils.areSame(a1, annotations.get(j)));
+            }
+        }
+    }
+
+    /**
+     * Compares every annotation with the annotations that follow it using {@code
+     * compareAnnotationMirrors}.
+     *
+     * @param bh consumes the results
+     */
+    @Benchmark
+    public void compareAnnotationMirrors(Blackhole bh) {
+        int size = annotations.size();
+        for (int i = 0; i < size; i++) {
+            AnnotationMirror a1 = annotations.get(i);
+            int end = Math.min(size, i + NEIGHBORS);
+            for (int j = i + 1; j < end; j++) {
+                bh.consume(AnnotationUtils.compareAnnotationMirrors(a1, annotations.get(j)));
+            }
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package org.checkerframework.benchmarks;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreePathScanner;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.UnderlyingAST.CFGMethod;
+import org.checkerframework.framework.flow.CFCFGBuilder;
+import org.checkerframework.framework.type.GenericAnnotatedTypeFactory;
+import org.checkerframework.javacutil.BugInCF;
+import org.checkerframework.javacutil.Pair;
+
+/**
+ * A compilation of a generated fixture (see {@link FixtureGenerator}) that has been type-checked by
+ * a checker.
+ *
+ * <p>The compiler is stopped after type-checking but not closed, so the checker, its type factory,
+ * and the javac trees and elements of the fixture remain usable. Benchmarks use them to measure
+ * individual operations of the Checker Framework without the cost of running the whole compiler.
+ */
+public class CheckerFixture implements AutoCloseable {
+
+    /** The temporary directory that contains the generated sources. */
+    private final Path sourceDir;
+
+    /** The javac task that compiled the fixture; kept so that its context stays reachable. */
+    private final JavacTask task;
+
+    /** The checker that type-checked the fixture. */
+    private final BaseTypeChecker checker;
+
+    /** The compilation unit of the fixture. */
+    private final CompilationUnitTree root;
+
+    /** All class declarations in the fixture. */
+    private final List<ClassTree> classes = new ArrayList<>();
+
+    /** All method declarations in the fixture, paired with their enclosing class. */
+    private final List<Pair<MethodTree, ClassTree>> methods = new ArrayList<>();
+
+    /** All variable declarations in the fixture. */
+    private final List<VariableTree> variables = new ArrayList<>();
+
+    /** All expressions in the fixture. */
+    private final List<ExpressionTree> expressions = new ArrayList<>();
+
+    /**
+     * Generates a fixture and type-checks it with {@code checkerClassName}.
+     *
+     * @param checkerClassName the fully-qualified name of a subclass of {@link BaseTypeChecker}
+     * @param generator the generator of the fixture sources
+     * @return the type-checked fixture
+     * @throws IOException if the fixture cannot be written to a temporary directory
+     */
+    public static CheckerFixture create(String checkerClassName, FixtureGenerator generator)
+            throws IOException {
+        Path sourceDir = Files.createTempDirectory("checker-framework-benchmark");
+        Path source = generator.writeTo(sourceDir);
+        return new CheckerFixture(sourceDir, source, instantiate(checkerClassName));
+    }
+
+    /**
+     * Compiles {@code source} and runs {@code checker} on it.
+     *
+     * @param sourceDir the temporary directory that contains {@code source}
+     * @param source the generated source file
+     * @param checker the checker to run
+     * @throws IOException if the source file cannot be read
+     */
+    private CheckerFixture(Path sourceDir, Path source, BaseTypeChecker checker)
+            throws IOException {
+        this.sourceDir = sourceDir;
+        this.checker = checker;
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StandardJavaFileManager fileManager =
+                compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8);
+        Iterable<? extends JavaFileObject> files =
+                fileManager.getJavaFileObjects(source.toFile());
+        List<String> options =
+                Arrays.asList(
+                        "-classpath",
+                        System.getProperty("java.class.path"),
+                        "-Anocheckjdk",
+                        "-Xlint:-options");
+        this.task =
+                (JavacTask) compiler.getTask(null, fileManager, diagnostics, options, null, files);
+        task.setProcessors(Collections.singletonList(checker));
+
+        Iterable<? extends CompilationUnitTree> units = task.parse();
+        // Analysis runs attribution and flow, and therefore the checker, but does not generate
+        // class files and does not close the compiler.
+        task.analyze();
+        for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+            // Errors that are reported by the checker itself are expected and harmless.
+            if (d.getKind() == Diagnostic.Kind.ERROR
+                    && !"compiler.err.proc.messager".equals(d.getCode())) {
+                throw new BugInCF("The generated fixture does not compile: " + d);
+            }
+        }
+
+        this.root = units.iterator().next();
+        collectTrees();
+        if (checker.getTypeFactory() == null) {
+            throw new BugInCF(
+                    "The checker did not process the fixture: " + diagnostics.getDiagnostics());
+        }
+        GenericAnnotatedTypeFactory<?, ?, ?, ?> factory = checker.getTypeFactory();
+        factory.setRoot(root);
+        // As in BaseTypeVisitor.visitClass, pre-process each class before the types of its
+        // contents are requested.  This performs the dataflow analysis of the class.
+        for (ClassTree tree : classes) {
+            factory.preProcessClassTree(tree);
+        }
+    }
+
+    /**
+     * Creates an instance of the checker named {@code checkerClassName}.
+     *
+     * @param checkerClassName the fully-qualified name of a subclass of {@link BaseTypeChecker}
+     * @return an instance of the checker
+     */
+    private static BaseTypeChecker instantiate(String checkerClassName) {
+        try {
+            return Class.forName(checkerClassName)
+                    .asSubclass(BaseTypeChecker.class)
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new BugInCF("Cannot instantiate checker " + checkerClassName, e);
+        }
+    }
+
+    /** Collects the classes, methods, variables, and expressions of the fixture. */
+    private void collectTrees() {
+        new TreePathScanner<Void, Void>() {
+            @Override
+            public Void visitClass(ClassTree node, Void p) {
+                classes.add(node);
+                return super.visitClass(node, p);
+            }
+
+            @Override
+            public Void visitMethod(MethodTree node, Void p) {
+                if (node.getBody() != null) {
+                    ClassTree enclosing = (ClassTree) getCurrentPath().getParentPath().getLeaf();
+                    methods.add(Pair.of(node, enclosing));
+                }
+                return super.visitMethod(node, p);
+            }
+
+            @Override
+            public Void visitVariable(VariableTree node, Void p) {
+                variables.add(node);
+                return super.visitVariable(node, p);
+            }
+
+            @Override
+            public Void scan(Tree tree, Void p) {
+                if (tree instanceof ExpressionTree) {
+                    expressions.add((ExpressionTree) tree);
+                }
+                return super.scan(tree, p);
+            }
+        }.scan(root, null);
+    }
+
+    /**
+     * Returns the checker that type-checked the fixture.
+     *
+     * @return the checker that type-checked the fixture
+     */
+    public BaseTypeChecker getChecker() {
+        return checker;
+    }
+
+    /**
+     * Returns the type factory of the checker; its root is the compilation unit of the fixture.
+     *
+     * @return the type factory of the checker
+     */
+    public GenericAnnotatedTypeFactory<?, ?, ?, ?> getTypeFactory() {
+        return checker.getTypeFactory();
+    }
+
+    /**
+     * Returns the processing environment of the compilation.
+     *
+     * @return the processing environment of the compilation
+     */
+    public ProcessingEnvironment getProcessingEnvironment() {
+        return checker.getProcessingEnvironment();
+    }
+
+    /**
+     * Returns the compilation unit of the fixture.
+     *
+     * @return the compilation unit of the fixture
+     */
+    public CompilationUnitTree getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns all class declarations of the fixture.
+     *
+     * @return all class declarations of the fixture
+     */
+    public List<ClassTree> getClasses() {
+        return classes;
+    }
+
+    /**
+     * Returns all method declarations of the fixture, with their enclosing class.
+     *
+     * @return all method declarations of the fixture, with their enclosing class
+     */
+    public List<Pair<MethodTree, ClassTree>> getMethods() {
+        return methods;
+    }
+
+    /**
+     * Returns all variable declarations of the fixture.
+     *
+     * @return all variable declarations of the fixture
+     */
+    public List<VariableTree> getVariables() {
+        return variables;
+    }
+
+    /**
+     * Returns all expressions of the fixture.
+     *
+     * @return all expressions of the fixture
+     */
+    public List<ExpressionTree> getExpressions() {
+        return expressions;
+    }
+
+    /**
+     * Builds the control flow graphs of all methods in the fixture, using the checker's CFG
+     * builder.
+     *
+     * @return the control flow graphs of all methods in the fixture
+     */
+    public List<ControlFlowGraph> buildControlFlowGraphs() {
+        List<ControlFlowGraph> cfgs = new ArrayList<>(methods.size());
+        for (Pair<MethodTree, ClassTree> method : methods) {
+            cfgs.add(
+                    CFCFGBuilder.build(
+                            root,
+                            new CFGMethod(method.first, method.second),
+                            checker,
+                            getTypeFactory(),
+                            getProcessingEnvironment()));
+        }
+        return cfgs;
+    }
+
+    /** Deletes the generated sources. */
+    @Override
+    public void close() throws IOException {
+        try (Stream<Path> paths = Files.walk(sourceDir)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+}
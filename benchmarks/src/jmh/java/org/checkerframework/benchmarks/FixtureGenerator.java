@@ -0,0 +1,179 @@
+package org.checkerframework.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Generates a synthetic Java compilation unit that is used as the input of the benchmarks.
+ *
+ * <p>The generated code is deterministic and its size is controlled by three parameters: the number
+ * of classes, the number of methods per class, and the number of statement groups per method. Each
+ * statement group contains branches, a loop, a field refinement, a call into another generated
+ * class, and collection operations, so that the resulting control flow graphs have many blocks and
+ * the dataflow stores track locals, fields, and method calls.
+ */
+public class FixtureGenerator {
+
+    /** The package of the generated classes. */
+    public static final String PACKAGE_NAME = "fixture";
+
+    /** The name of the generated file. */
+    public static final String FILE_NAME = "Fixtures.java";
+
+    /** The number of generated classes. */
+    private final int classes;
+
+    /** The number of methods in each generated class. */
+    private final int methods;
+
+    /** The number of statement groups in each generated method. */
+    private final int statements;
+
+    /**
+     * Creates a generator for a fixture of the given size.
+     *
+     * @param classes the number of generated classes
+     * @param methods the number of methods in each generated class
+     * @param statements the number of statement groups in each generated method
+     */
+    public FixtureGenerator(int classes, int methods, int statements) {
+        if (classes < 1 || methods < 1 || statements < 1) {
+            throw new IllegalArgumentException(
+                    "Fixture sizes must be positive: "
+                            + classes
+                            + ", "
+                            + methods
+                            + ", "
+                            + statements);
+        }
+        this.classes = classes;
+        this.methods = methods;
+        this.statements = statements;
+    }
+
+    /**
+     * Writes the generated compilation unit into {@code directory}.
+     *
+     * @param directory the directory in which to create the source file
+     * @return the path of the generated source file
+     * @throws IOException if the file cannot be written
+     */
+    public Path writeTo(Path directory) throws IOException {
+        Path packageDir = directory.resolve(PACKAGE_NAME);
+        Files.createDirectories(packageDir);
+        Path file = packageDir.resolve(FILE_NAME);
+        Files.write(file, generate().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * Returns the source code of the generated compilation unit.
+     *
+     * @return the source code of the generated compilation unit
+     */
+    public String generate() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(PACKAGE_NAME).append(";\n\n");
+        sb.append("import java.util.ArrayList;\n");
+        sb.append("import java.util.HashMap;\n");
+        sb.append("import java.util.List;\n");
+        sb.append("import java.util.Map;\n");
+        sb.append("import org.checkerframework.checker.nullness.qual.Nullable;\n\n");
+        for (int c = 0; c < classes; c++) {
+            generateClass(sb, c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends the class with index {@code c} to {@code sb}.
+     *
+     * @param sb where to append the class
+     * @param c the index of the class
+     */
+    private void generateClass(StringBuilder sb, int c) {
+        String next = className((c + 1) % classes);
+        sb.append("class ").append(className(c)).append(" {\n");
+        for (int m = 0; m < methods; m++) {
+            sb.append("    @Nullable String f").append(m).append(";\n");
+            sb.append("    String g").append(m).append(" = \"g").append(m).append("\";\n");
+        }
+        sb.append("    final List<String> items = new ArrayList<>();\n");
+        sb.append("    final Map<String, Integer> counts = new HashMap<>();\n\n");
+        for (int m = 0; m < methods; m++) {
+            sb.append("    String m").append(m).append("(@Nullable String p, int n) {\n");
+            sb.append("        String local = g").append(m).append(";\n");
+            sb.append("        @Nullable String maybe = p;\n");
+            sb.append("        int acc = 0;\n");
+            for (int s = 0; s < statements; s++) {
+                generateStatementGroup(sb, c, m, s, next);
+            }
+            sb.append("        return local + acc;\n");
+            sb.append("    }\n\n");
+        }
+        sb.append("}\n\n");
+    }
+
+    /**
+     * Appends a statement group to the body of a generated method.
+     *
+     * @param sb where to append the statements
+     * @param c the index of the enclosing class
+     * @param m the index of the enclosing method
+     * @param s the index of the statement group
+     * @param next the name of the class that is called from the statement group
+     */
+    private void generateStatementGroup(StringBuilder sb, int c, int m, int s, String next) {
+        String field = "f" + ((m + s) % methods);
+        sb.append("        for (int i").append(s).append(" = 0; i").append(s);
+        sb.append(" < n; i").append(s).append("++) {\n");
+        sb.append("            if (maybe != null && i").append(s).append(" % 2 == 0) {\n");
+        sb.append("                local = local + maybe.length();\n");
+        sb.append("            } else if (").append(field).append(" != null) {\n");
+        sb.append("                local = ").append(field).append(".trim();\n");
+        sb.append("            } else {\n");
+        sb.append("                maybe = null;\n");
+        sb.append("            }\n");
+        sb.append("            acc += local.length() + i").append(s).append(";\n");
+        sb.append("        }\n");
+        switch (s % 3) {
+            case 0:
+                sb.append("        items.add(local);\n");
+                sb.append("        Integer count").append(s).append(" = counts.get(local);\n");
+                sb.append("        if (count").append(s).append(" != null) {\n");
+                sb.append("            acc += count").append(s).append(";\n");
+                sb.append("        }\n");
+                break;
+            case 1:
+                sb.append("        if (acc > ").append(c + s).append(") {\n");
+                sb.append("            local = new ").append(next).append("().m");
+                sb.append((m + s) % methods).append("(maybe, n - 1);\n");
+                sb.append("        }\n");
+                break;
+            default:
+                sb.append("        switch (acc % 4) {\n");
+                sb.append("            case 0:\n");
+                sb.append("                ").append(field).append(" = local;\n");
+                sb.append("                break;\n");
+                sb.append("            case 1:\n");
+                sb.append("                maybe = ").append(field).append(";\n");
+                sb.append("                break;\n");
+                sb.append("            default:\n");
+                sb.append("                counts.put(local, acc);\n");
+                sb.append("        }\n");
+                break;
+        }
+    }
+
+    /**
+     * Returns the name of the generated class with index {@code c}.
+     *
+     * @param c the index of a generated class
+     * @return the name of the generated class with index {@code c}
+     */
+    static String className(int c) {
+        return "Fixture" + c;
+    }
+}
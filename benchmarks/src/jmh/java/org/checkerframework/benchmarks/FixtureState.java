@@ -0,0 +1,61 @@
+package org.checkerframework.benchmarks;
+
+import java.io.IOException;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Superclass of the benchmarks that need a type-checked fixture. The size of the fixture and the
+ * checker are JMH parameters, so they can be changed from the command line with {@code -p}.
+ */
+@State(Scope.Benchmark)
+public abstract class FixtureState {
+
+    /** The fully-qualified name of the checker that type-checks the fixture. */
+    @Param({"org.checkerframework.checker.nullness.NullnessChecker"})
+    public String checker;
+
+    /** The number of generated classes. */
+    @Param({"20"})
+    public int classes;
+
+    /** The number of methods in each generated class. */
+    @Param({"10"})
+    public int methods;
+
+    /** The number of statement groups in each generated method. */
+    @Param({"10"})
+    public int statements;
+
+    /** The type-checked fixture. */
+    protected CheckerFixture fixture;
+
+    /**
+     * Generates and type-checks the fixture, then calls {@link #setUpBenchmark()}.
+     *
+     * @throws IOException if the fixture cannot be written
+     */
+    @Setup
+    public void setUpFixture() throws IOException {
+        fixture =
+                CheckerFixture.create(
+                        checker, new FixtureGenerator(classes, methods, statements));
+        setUpBenchmark();
+    }
+
+    /** Prepares the inputs of the benchmark; called once the fixture exists. */
+    protected abstract void setUpBenchmark();
+
+    /**
+     * Deletes the generated sources.
+     *
+     * @throws IOException if the generated sources cannot be deleted
+     */
+    @TearDown
+    public void tearDownFixture() throws IOException {
+        fixture.close();
+    }
+}
@@ -0,0 +1,94 @@
+package org.checkerframework.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.checkerframework.checker.nullness.NullnessAnalysis;
+import org.checkerframework.checker.nullness.NullnessAnnotatedTypeFactory;
+import org.checkerframework.checker.nullness.NullnessStore;
+import org.checkerframework.checker.nullness.NullnessValue;
+import org.checkerframework.dataflow.analysis.TransferInput;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.block.Block;
+import org.checkerframework.framework.flow.CFAbstractStore;
+import org.checkerframework.javacutil.BugInCF;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks {@link CFAbstractStore#leastUpperBound}, {@link CFAbstractStore#copy}, and {@link
+ * CFAbstractStore#equals} on the stores that the Nullness Checker computes for the fixture. Each
+ * store before a block is joined with the store before the next block of the same method.
+ */
+public class StoreBenchmark extends FixtureState {
+
+    /** The stores before every block of every method of the fixture. */
+    private final List<NullnessStore> stores = new ArrayList<>();
+
+    /**
+     * The indices {@code i} such that {@code stores.get(i)} and {@code stores.get(i + 1)} belong to
+     * the same method.
+     */
+    private final List<Integer> pairs = new ArrayList<>();
+
+    @Override
+    protected void setUpBenchmark() {
+        if (!(fixture.getTypeFactory() instanceof NullnessAnnotatedTypeFactory)) {
+            throw new BugInCF("StoreBenchmark requires the Nullness Checker, not " + checker);
+        }
+        NullnessAnnotatedTypeFactory factory =
+                (NullnessAnnotatedTypeFactory) fixture.getTypeFactory();
+        for (ControlFlowGraph cfg : fixture.buildControlFlowGraphs()) {
+            NullnessAnalysis analysis =
+                    new NullnessAnalysis(fixture.getChecker(), factory, new ArrayList<>());
+            analysis.performAnalysis(cfg);
+            boolean first = true;
+            for (Block block : cfg.getDepthFirstOrderedBlocks()) {
+                TransferInput<NullnessValue, NullnessStore> input = analysis.getInput(block);
+                if (input == null) {
+                    continue;
+                }
+                if (!first) {
+                    pairs.add(stores.size() - 1);
+                }
+                stores.add(input.getRegularStore());
+                first = false;
+            }
+        }
+    }
+
+    /**
+     * Computes the least upper bound of the stores of consecutive blocks.
+     *
+     * @param bh consumes the results
+     */
+    @Benchmark
+    public void leastUpperBound(Blackhole bh) {
+        for (int i : pairs) {
+            bh.consume(stores.get(i).leastUpperBound(stores.get(i + 1)));
+        }
+    }
+
+    /**
+     * Copies every store.
+     *
+     * @param bh consumes the results
+     */
+    @Benchmark
+    public void copy(Blackhole bh) {
+        for (NullnessStore store : stores) {
+            bh.consume(store.copy());
+        }
+    }
+
+    /**
+     * Compares the stores of consecutive blocks.
+     *
+     * @param bh consumes the results
+     */
+    @Benchmark
+    public void equals(Blackhole bh) {
+        for (int i : pairs) {
+            bh.consume(stores.get(i).equals(stores.get(i + 1)));
+        }
+    }
+}
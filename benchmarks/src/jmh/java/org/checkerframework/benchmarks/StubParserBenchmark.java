@@ -0,0 +1,223 @@
+package org.checkerframework.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import org.checkerframework.framework.stub.StubParser;
+import org.checkerframework.framework.type.AnnotatedTypeFactory;
+import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.checkerframework.javacutil.BugInCF;
+import org.checkerframework.javacutil.PluginUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks {@link StubParser} on the stub files that are bundled with a checker: the {@code
+ * .astub} files next to the checker class (such as {@code jdk8.astub}) and, if the annotated JDK is
+ * on the classpath, the first {@link #jdkFiles} of its files.
+ *
+ * <p>The stub files are read into memory once; the benchmark measures only parsing and the
+ * conversion of the parsed stubs into annotated types.
+ */
+@State(Scope.Benchmark)
+public class StubParserBenchmark {
+
+    /** The fully-qualified name of the checker whose stub files are parsed. */
+    @Param({"org.checkerframework.checker.interning.InterningChecker"})
+    public String checker;
+
+    /** The maximum number of files of the annotated JDK to parse. */
+    @Param({"200"})
+    public int jdkFiles;
+
+    /** A small type-checked fixture; it provides the type factory used by the stub parser. */
+    private CheckerFixture fixture;
+
+    /** The names and contents of the stub files next to the checker class. */
+    private final Map<String, byte[]> stubFiles = new HashMap<>();
+
+    /** The names and contents of the annotated JDK files. */
+    private final Map<String, byte[]> jdkStubFiles = new HashMap<>();
+
+    /**
+     * Type-checks a small fixture and reads the stub files.
+     *
+     * @throws IOException if a stub file cannot be read
+     */
+    @Setup
+    public void setUp() throws IOException {
+        fixture = CheckerFixture.create(checker, new FixtureGenerator(1, 1, 1));
+        ClassLoader loader = fixture.getChecker().getClass().getClassLoader();
+        String checkerPackage =
+                fixture.getChecker().getClass().getPackage().getName().replace('.', '/');
+        readResources(loader, checkerPackage, ".astub", Integer.MAX_VALUE, stubFiles);
+        String jdkDirectory = "jdk" + PluginUtil.getJreVersion();
+        readResources(loader, jdkDirectory, ".java", jdkFiles, jdkStubFiles);
+        if (stubFiles.isEmpty() && jdkStubFiles.isEmpty()) {
+            throw new BugInCF("No stub files found for " + checker);
+        }
+    }
+
+    /**
+     * Deletes the sources of the fixture.
+     *
+     * @throws IOException if the sources cannot be deleted
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        fixture.close();
+    }
+
+    /**
+     * Parses the stub files next to the checker class.
+     *
+     * @param bh consumes the results
+     */
+    @Benchmark
+    public void parseCheckerStubFiles(Blackhole bh) {
+        AnnotatedTypeFactory factory = fixture.getTypeFactory();
+        Map<Element, AnnotatedTypeMirror> types = new HashMap<>();
+        Map<String, Set<AnnotationMirror>> declAnnos = new HashMap<>();
+        for (Map.Entry<String, byte[]> stub : stubFiles.entrySet()) {
+            StubParser.parse(
+                    stub.getKey(),
+                    new ByteArrayInputStream(stub.getValue()),
+                    factory,
+                    factory.getProcessingEnv(),
+                    types,
+                    declAnnos);
+        }
+        bh.consume(types);
+        bh.consume(declAnnos);
+    }
+
+    /**
+     * Parses the files of the annotated JDK.
+     *
+     * @param bh consumes the results
+     */
+    @Benchmark
+    public void parseJdkStubFiles(Blackhole bh) {
+        AnnotatedTypeFactory factory = fixture.getTypeFactory();
+        Map<Element, AnnotatedTypeMirror> types = new HashMap<>();
+        Map<String, Set<AnnotationMirror>> declAnnos = new HashMap<>();
+        for (Map.Entry<String, byte[]> stub : jdkStubFiles.entrySet()) {
+            StubParser.parseJdkFileAsStub(
+                    stub.getKey(),
+                    new ByteArrayInputStream(stub.getValue()),
+                    factory,
+                    factory.getProcessingEnv(),
+                    types,
+                    declAnnos);
+        }
+        bh.consume(types);
+        bh.consume(declAnnos);
+    }
+
+    /**
+     * Reads every resource below the resource directory {@code directory}, in directories or jar
+     * files, whose name ends with {@code suffix}.
+     *
+     * @param loader the class loader to search
+     * @param directory the resource directory, with '/' as separator
+     * @param suffix the suffix of the resources to read
+     * @param limit the maximum number of resources to read
+     * @param result the map to which the names and contents of the resources are added
+     * @throws IOException if a resource cannot be read
+     */
+    private static void readResources(
+            ClassLoader loader,
+            String directory,
+            String suffix,
+            int limit,
+            Map<String, byte[]> result)
+            throws IOException {
+        Enumeration<URL> urls = loader.getResources(directory);
+        while (urls.hasMoreElements() && result.size() < limit) {
+            URL url = urls.nextElement();
+            if (url.getProtocol().equals("jar")) {
+                JarURLConnection connection = (JarURLConnection) url.openConnection();
+                connection.setUseCaches(false);
+                try (JarFile jar = connection.getJarFile()) {
+                    List<JarEntry> entries = new ArrayList<>();
+                    for (Enumeration<JarEntry> e = jar.entries(); e.hasMoreElements(); ) {
+                        JarEntry entry = e.nextElement();
+                        if (entry.getName().startsWith(directory + "/")
+                                && entry.getName().endsWith(suffix)) {
+                            entries.add(entry);
+                        }
+                    }
+                    for (JarEntry entry : entries) {
+                        if (result.size() >= limit) {
+                            break;
+                        }
+                        try (InputStream in = jar.getInputStream(entry)) {
+                            result.put(entry.getName(), readAll(in));
+                        }
+                    }
+                }
+            } else if (url.getProtocol().equals("file")) {
+                Path root;
+                try {
+                    root = Paths.get(url.toURI());
+                } catch (URISyntaxException e) {
+                    throw new BugInCF("Cannot convert " + url + " to a path", e);
+                }
+                List<Path> paths;
+                try (Stream<Path> walk = Files.walk(root)) {
+                    paths =
+                            walk.filter(p -> p.toString().endsWith(suffix))
+                                    .sorted()
+                                    .collect(Collectors.toList());
+                }
+                for (Path path : paths) {
+                    if (result.size() >= limit) {
+                        break;
+                    }
+                    result.put(path.toString(), Files.readAllBytes(path));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads all bytes of {@code in}.
+     *
+     * @param in the stream to read
+     * @return the contents of {@code in}
+     * @throws IOException if {@code in} cannot be read
+     */
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,86 @@
+package org.checkerframework.benchmarks;
+
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.VariableTree;
+import java.util.ArrayList;
+import java.util.List;
+import javax.lang.model.util.Types;
+import org.checkerframework.framework.type.AnnotatedTypeFactory;
+import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.checkerframework.framework.type.DefaultTypeHierarchy;
+import org.checkerframework.framework.type.TypeHierarchy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks {@link DefaultTypeHierarchy#isSubtype(AnnotatedTypeMirror, AnnotatedTypeMirror)} on
+ * the pseudo-assignments of the fixture: every initialized variable declaration yields the pair
+ * (type of the initializer, declared type). In addition, the type of every variable is compared
+ * with the types of the variables declared right after it, if their Java types are subtypes.
+ */
+public class TypeHierarchyBenchmark extends FixtureState {
+
+    /** The number of following variables whose type is compared with the type of a variable. */
+    private static final int NEIGHBORS = 8;
+
+    /** The type utilities of the compilation. */
+    private Types types;
+
+    /** The type hierarchy of the checker. */
+    private TypeHierarchy hierarchy;
+
+    /** Subtypes; the supertype of {@code subtypes.get(i)} is {@code supertypes.get(i)}. */
+    private final List<AnnotatedTypeMirror> subtypes = new ArrayList<>();
+
+    /** Supertypes; the subtype of {@code supertypes.get(i)} is {@code subtypes.get(i)}. */
+    private final List<AnnotatedTypeMirror> supertypes = new ArrayList<>();
+
+    @Override
+    protected void setUpBenchmark() {
+        AnnotatedTypeFactory factory = fixture.getTypeFactory();
+        hierarchy = factory.getTypeHierarchy();
+        types = fixture.getProcessingEnvironment().getTypeUtils();
+        List<AnnotatedTypeMirror> variableTypes = new ArrayList<>();
+        for (VariableTree variable : fixture.getVariables()) {
+            AnnotatedTypeMirror declared = factory.getAnnotatedType(variable);
+            variableTypes.add(declared);
+            ExpressionTree initializer = variable.getInitializer();
+            if (initializer != null) {
+                addPair(factory.getAnnotatedType(initializer), declared);
+            }
+        }
+        for (int i = 0; i < variableTypes.size(); i++) {
+            AnnotatedTypeMirror sub = variableTypes.get(i);
+            int end = Math.min(variableTypes.size(), i + NEIGHBORS);
+            for (int j = i + 1; j < end; j++) {
+                addPair(sub, variableTypes.get(j));
+            }
+        }
+    }
+
+    /**
+     * Adds the pair ({@code sub}, {@code sup}) to the benchmarked pairs, if the underlying Java
+     * type of {@code sub} is a subtype of the underlying Java type of {@code sup}.
+     *
+     * @param sub the subtype of the pair
+     * @param sup the supertype of the pair
+     */
+    private void addPair(AnnotatedTypeMirror sub, AnnotatedTypeMirror sup) {
+        if (types.isSubtype(sub.getUnderlyingType(), sup.getUnderlyingType())) {
+            subtypes.add(sub);
+            supertypes.add(sup);
+        }
+    }
+
+    /**
+     * Checks every pair of the fixture for subtyping.
+     *
+     * @param bh consumes the results
+     */
+    @Benchmark
+    public void isSubtype(Blackhole bh) {
+        for (int i = 0; i < subtypes.size(); i++) {
+            bh.consume(hierarchy.isSubtype(subtypes.get(i), supertypes.get(i)));
+        }
+    }
+}
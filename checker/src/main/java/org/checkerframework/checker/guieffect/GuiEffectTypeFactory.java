@@ -111,14 +111,14 @@ public class GuiEffectTypeFactory extends BaseAnnotatedTypeFactory {
     public boolean isPolymorphicType(TypeElement cls) {
         assert (cls != null);
         return getDeclAnnotation(cls, PolyUIType.class) != null
-                || fromElement(cls).hasAnnotation(PolyUI.class);
+                || fromElementReadOnly(cls).hasAnnotation(PolyUI.class);
     }
 
     public boolean isUIType(TypeElement cls) {
         if (debugSpew) {
             System.err.println(" isUIType(" + cls + ")");
         }
-        boolean targetClassUIP = fromElement(cls).hasAnnotation(UI.class);
+        boolean targetClassUIP = fromElementReadOnly(cls).hasAnnotation(UI.class);
         AnnotationMirror targetClassUITypeP = getDeclAnnotation(cls, UIType.class);
         AnnotationMirror targetClassSafeTypeP = getDeclAnnotation(cls, SafeType.class);
 
@@ -147,7 +147,7 @@ public class GuiEffectTypeFactory extends BaseAnnotatedTypeFactory {
         // an @UIType polymorphic explicitly
         // AnnotationMirror targetClassPolyP = getDeclAnnotation(cls, PolyUI.class);
         // AnnotationMirror targetClassPolyTypeP = getDeclAnnotation(cls, PolyUIType.class);
-        boolean targetClassSafeP = fromElement(cls).hasAnnotation(AlwaysSafe.class);
+        boolean targetClassSafeP = fromElementReadOnly(cls).hasAnnotation(AlwaysSafe.class);
         if (targetClassSafeP) {
             return false; // explicitly annotated otherwise
         }
@@ -534,7 +534,8 @@ public class GuiEffectTypeFactory extends BaseAnnotatedTypeFactory {
                         // @UI on an anon class decl extending Runnable
                         boolean isAnonInstantiation =
                                 isAnonymousType(declaringType)
-                                        && (fromElement(declaringType).hasAnnotation(UI.class)
+                                        && (fromElementReadOnly(declaringType)
+                                                        .hasAnnotation(UI.class)
                                                 || uiAnonClasses.contains(declaringType));
                         if (!isAnonInstantiation && !supdecl.hasAnnotation(UI.class)) {
                             checker.report(
@@ -686,7 +687,7 @@ public class GuiEffectTypeFactory extends BaseAnnotatedTypeFactory {
                 receiverType.addAnnotation(
                         isPolymorphicType(cls)
                                 ? PolyUI.class
-                                : fromElement(cls).hasAnnotation(UI.class)
+                                : fromElementReadOnly(cls).hasAnnotation(UI.class)
                                         ? UI.class
                                         : AlwaysSafe.class);
             }
@@ -287,8 +287,12 @@ public class GuiEffectVisitor extends BaseTypeVisitor<GuiEffectTypeFactory> {
                     // Skip if already inferred @UI
                     && !effStack.peek().isUI()
                     // Ignore if explicitly annotated
-                    && !atypeFactory.fromElement(callerReceiverElt).hasAnnotation(AlwaysSafe.class)
-                    && !atypeFactory.fromElement(callerReceiverElt).hasAnnotation(UI.class)) {
+                    && !atypeFactory
+                            .fromElementReadOnly(callerReceiverElt)
+                            .hasAnnotation(AlwaysSafe.class)
+                    && !atypeFactory
+                            .fromElementReadOnly(callerReceiverElt)
+                            .hasAnnotation(UI.class)) {
                 boolean overridesPolymorphic = false;
                 Map<AnnotatedTypeMirror.AnnotatedDeclaredType, ExecutableElement>
                         overriddenMethods =
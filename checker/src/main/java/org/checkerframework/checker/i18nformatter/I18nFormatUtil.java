@@ -161,7 +161,9 @@ public class I18nFormatUtil {
             "", "short", "medium", "long", "full"
         };
 
-        public static I18nConversion[] parse(String pattern) {
+        // Synchronized because the state of the parser is static, and compilations may run
+        // concurrently in one JVM.
+        public static synchronized I18nConversion[] parse(String pattern) {
             MessageFormatParser.categories = new ArrayList<>();
             MessageFormatParser.argumentIndices = new ArrayList<>();
             MessageFormatParser.locale = Locale.getDefault(Locale.Category.FORMAT);
@@ -0,0 +1,101 @@
+package org.checkerframework.checker.index;
+
+import java.util.Map;
+import java.util.function.Function;
+import javax.lang.model.element.AnnotationMirror;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.javacutil.AnnotationBuilder;
+import org.checkerframework.javacutil.CollectionUtils;
+import org.checkerframework.javacutil.Instrumentation;
+
+/**
+ * Caches the conversions between the annotations of a hierarchy of the Index Checker and the
+ * objects that its qualifier hierarchy parses them into, such as {@link
+ * org.checkerframework.checker.index.upperbound.UBQualifier}s.
+ *
+ * <p>The qualifier hierarchies of the Index Checker compute subtyping, least upper bounds, and
+ * greatest lower bounds on parsed qualifiers: they parse each annotation they are given, and build
+ * an annotation for each result. With this cache, an annotation is parsed once, and an annotation
+ * is built once for each distinct result, so that repeated operations on the same qualifiers, as in
+ * the fixpoint iteration of dataflow analysis, neither parse nor build annotations.
+ *
+ * <p>Both directions are hash maps, keyed by {@link Object#equals(Object)}. Neither the annotations
+ * of javac nor those built by {@link AnnotationBuilder} override {@code equals}, so two
+ * annotations with the same name and elements are distinct keys unless they are the same object.
+ * {@link AnnotationBuilder} interns the annotations that it builds, so that each annotation built
+ * by a hierarchy is parsed once; an annotation written in source code is parsed once per
+ * occurrence. Parsed qualifiers are compared by their own {@code equals}, so the qualifier classes
+ * must implement it structurally. Parsed qualifiers are shared, so they must not be modified.
+ *
+ * <p>Both directions are bounded LRU caches.
+ *
+ * @param <Q> the type of parsed qualifiers
+ */
+public class ParsedQualifierCache<Q> {
+
+    /** Maps each annotation to its parsed qualifier, or null if caching is disabled. */
+    private final @Nullable Map<AnnotationMirror, Q> qualifiers;
+
+    /** Maps each parsed qualifier to its annotation, or null if caching is disabled. */
+    private final @Nullable Map<Q, AnnotationMirror> annotations;
+
+    /**
+     * Creates a cache.
+     *
+     * @param enabled whether to cache; if false, each conversion parses or builds anew
+     * @param size the maximum number of entries in each direction
+     * @param name the prefix of the names of the two caches in the output of {@link
+     *     Instrumentation}
+     */
+    public ParsedQualifierCache(boolean enabled, int size, String name) {
+        if (enabled) {
+            this.qualifiers = CollectionUtils.createLRUCache(size, name + ".qualifiers");
+            this.annotations = CollectionUtils.createLRUCache(size, name + ".annotations");
+        } else {
+            this.qualifiers = null;
+            this.annotations = null;
+        }
+    }
+
+    /**
+     * Returns the parsed qualifier of {@code anno}. Parses it on the first call for {@code anno}.
+     * A null result is not cached.
+     *
+     * @param anno an annotation of the hierarchy
+     * @param parser parses an annotation of the hierarchy
+     * @return the parsed qualifier of {@code anno}, which must not be modified
+     */
+    public Q getQualifier(AnnotationMirror anno, Function<AnnotationMirror, Q> parser) {
+        if (qualifiers == null) {
+            return parser.apply(anno);
+        }
+        Q qualifier = qualifiers.get(anno);
+        if (qualifier == null) {
+            qualifier = parser.apply(anno);
+            if (qualifier != null) {
+                qualifiers.put(anno, qualifier);
+            }
+        }
+        return qualifier;
+    }
+
+    /**
+     * Returns the annotation of {@code qualifier}. Builds it on the first call for a qualifier
+     * equal to {@code qualifier}.
+     *
+     * @param qualifier a parsed qualifier, which must not be modified afterwards
+     * @param builder builds the annotation of a parsed qualifier
+     * @return the annotation of {@code qualifier}
+     */
+    public AnnotationMirror getAnnotation(Q qualifier, Function<Q, AnnotationMirror> builder) {
+        if (annotations == null) {
+            return builder.apply(qualifier);
+        }
+        AnnotationMirror anno = annotations.get(qualifier);
+        if (anno == null) {
+            anno = builder.apply(qualifier);
+            annotations.put(qualifier, anno);
+        }
+        return anno;
+    }
+}
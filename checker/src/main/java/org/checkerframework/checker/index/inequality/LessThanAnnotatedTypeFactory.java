@@ -13,10 +13,12 @@ import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.type.TypeKind;
 import org.checkerframework.checker.index.OffsetDependentTypesHelper;
+import org.checkerframework.checker.index.ParsedQualifierCache;
 import org.checkerframework.checker.index.qual.LessThan;
 import org.checkerframework.checker.index.qual.LessThanBottom;
 import org.checkerframework.checker.index.qual.LessThanUnknown;
 import org.checkerframework.checker.index.upperbound.OffsetEquation;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.common.basetype.BaseAnnotatedTypeFactory;
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.common.value.ValueAnnotatedTypeFactory;
@@ -43,8 +45,19 @@ public class LessThanAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
     public final AnnotationMirror UNKNOWN =
             AnnotationBuilder.fromClass(elements, LessThanUnknown.class);
 
+    /**
+     * The unmodifiable lists of expressions of the annotations of the Less Than hierarchy, and vice
+     * versa. Only the qualifier hierarchy uses it.
+     */
+    private final ParsedQualifierCache<List<String>> expressionsCache;
+
     public LessThanAnnotatedTypeFactory(BaseTypeChecker checker) {
         super(checker);
+        expressionsCache =
+                new ParsedQualifierCache<>(
+                        shouldCache,
+                        getCacheSize(),
+                        getClass().getSimpleName() + ".expressionsCache");
         postInit();
     }
 
@@ -82,11 +95,11 @@ public class LessThanAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
 
         @Override
         public boolean isSubtype(AnnotationMirror subAnno, AnnotationMirror superAnno) {
-            List<String> subList = getLessThanExpressions(subAnno);
+            List<String> subList = getCachedLessThanExpressions(subAnno);
             if (subList == null) {
                 return true;
             }
-            List<String> superList = getLessThanExpressions(superAnno);
+            List<String> superList = getCachedLessThanExpressions(superAnno);
             if (superList == null) {
                 return false;
             }
@@ -102,12 +115,12 @@ public class LessThanAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
                 return a1;
             }
 
-            List<String> a1List = getLessThanExpressions(a1);
-            List<String> a2List = getLessThanExpressions(a2);
+            List<String> a1List = getCachedLessThanExpressions(a1);
+            List<String> a2List = getCachedLessThanExpressions(a2);
             List<String> lub = new ArrayList<>(a1List);
             lub.retainAll(a2List);
 
-            return createLessThanQualifier(lub);
+            return createCachedLessThanQualifier(lub);
         }
 
         @Override
@@ -118,12 +131,45 @@ public class LessThanAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
                 return a2;
             }
 
-            List<String> a1List = getLessThanExpressions(a1);
-            List<String> a2List = getLessThanExpressions(a2);
+            List<String> a1List = getCachedLessThanExpressions(a1);
+            List<String> a2List = getCachedLessThanExpressions(a2);
             List<String> glb = new ArrayList<>(a1List);
             glb.addAll(a2List);
 
-            return createLessThanQualifier(glb);
+            return createCachedLessThanQualifier(glb);
+        }
+
+        /**
+         * Returns the expressions of {@code anno}, like {@link
+         * LessThanAnnotatedTypeFactory#getLessThanExpressions(AnnotationMirror)}, but parses each
+         * annotation only once.
+         *
+         * @param anno an annotation of the Less Than hierarchy
+         * @return an unmodifiable list of the expressions of {@code anno}, or null if {@code anno}
+         *     is {@link LessThanBottom}
+         */
+        private @Nullable List<String> getCachedLessThanExpressions(AnnotationMirror anno) {
+            return expressionsCache.getQualifier(
+                    anno,
+                    a -> {
+                        List<String> expressions = getLessThanExpressions(a);
+                        return expressions == null
+                                ? null
+                                : Collections.unmodifiableList(expressions);
+                    });
+        }
+
+        /**
+         * Returns the qualifier of {@code expressions}, like {@link
+         * LessThanAnnotatedTypeFactory#createLessThanQualifier(List)}, but builds it only once for
+         * equal lists.
+         *
+         * @param expressions a non-null list of expressions, which must not be modified afterwards
+         * @return the qualifier of {@code expressions}
+         */
+        private AnnotationMirror createCachedLessThanQualifier(List<String> expressions) {
+            return expressionsCache.getAnnotation(
+                    expressions, LessThanAnnotatedTypeFactory.this::createLessThanQualifier);
         }
     }
 
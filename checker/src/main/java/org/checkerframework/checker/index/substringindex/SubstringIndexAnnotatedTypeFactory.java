@@ -6,6 +6,7 @@ import java.util.LinkedHashSet;
 import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
 import org.checkerframework.checker.index.OffsetDependentTypesHelper;
+import org.checkerframework.checker.index.ParsedQualifierCache;
 import org.checkerframework.checker.index.qual.SubstringIndexBottom;
 import org.checkerframework.checker.index.qual.SubstringIndexFor;
 import org.checkerframework.checker.index.qual.SubstringIndexUnknown;
@@ -32,10 +33,21 @@ public class SubstringIndexAnnotatedTypeFactory extends BaseAnnotatedTypeFactory
     public final AnnotationMirror BOTTOM =
             AnnotationBuilder.fromClass(elements, SubstringIndexBottom.class);
 
+    /**
+     * The parsed qualifiers of the annotations of the Substring Index hierarchy, and vice versa.
+     */
+    private final ParsedQualifierCache<UBQualifier> ubQualifierCache;
+
     /** Create a new SubstringIndexAnnotatedTypeFactory. */
     public SubstringIndexAnnotatedTypeFactory(BaseTypeChecker checker) {
         super(checker);
 
+        ubQualifierCache =
+                new ParsedQualifierCache<>(
+                        shouldCache,
+                        getCacheSize(),
+                        getClass().getSimpleName() + ".ubQualifierCache");
+
         this.postInit();
     }
 
@@ -98,8 +110,8 @@ public class SubstringIndexAnnotatedTypeFactory extends BaseAnnotatedTypeFactory
             if (AnnotationUtils.areSame(a2, BOTTOM)) {
                 return a2;
             }
-            UBQualifier ubq1 = UBQualifier.createUBQualifier(a1);
-            UBQualifier ubq2 = UBQualifier.createUBQualifier(a2);
+            UBQualifier ubq1 = getUBQualifier(a1);
+            UBQualifier ubq2 = getUBQualifier(a2);
             UBQualifier glb = ubq1.glb(ubq2);
             return convertUBQualifierToAnnotation(glb);
         }
@@ -118,8 +130,8 @@ public class SubstringIndexAnnotatedTypeFactory extends BaseAnnotatedTypeFactory
             if (AnnotationUtils.areSame(a2, BOTTOM)) {
                 return a1;
             }
-            UBQualifier ubq1 = UBQualifier.createUBQualifier(a1);
-            UBQualifier ubq2 = UBQualifier.createUBQualifier(a2);
+            UBQualifier ubq1 = getUBQualifier(a1);
+            UBQualifier ubq2 = getUBQualifier(a2);
             UBQualifier lub = ubq1.lub(ubq2);
             return convertUBQualifierToAnnotation(lub);
         }
@@ -139,8 +151,8 @@ public class SubstringIndexAnnotatedTypeFactory extends BaseAnnotatedTypeFactory
                 return false;
             }
 
-            UBQualifier subtype = UBQualifier.createUBQualifier(subAnno);
-            UBQualifier supertype = UBQualifier.createUBQualifier(superAnno);
+            UBQualifier subtype = getUBQualifier(subAnno);
+            UBQualifier supertype = getUBQualifier(superAnno);
             return subtype.isSubtype(supertype);
         }
     }
@@ -159,7 +171,19 @@ public class SubstringIndexAnnotatedTypeFactory extends BaseAnnotatedTypeFactory
             return BOTTOM;
         }
 
-        LessThanLengthOf ltlQualifier = (LessThanLengthOf) qualifier;
-        return ltlQualifier.convertToSubstringIndexAnnotation(processingEnv);
+        return ubQualifierCache.getAnnotation(
+                qualifier,
+                q -> ((LessThanLengthOf) q).convertToSubstringIndexAnnotation(processingEnv));
+    }
+
+    /**
+     * Returns the {@link UBQualifier} of an annotation of the Substring Index hierarchy, parsing
+     * each annotation only once.
+     *
+     * @param anno an annotation of the Substring Index hierarchy
+     * @return the {@link UBQualifier} of {@code anno}, which must not be modified
+     */
+    public UBQualifier getUBQualifier(AnnotationMirror anno) {
+        return ubQualifierCache.getQualifier(anno, UBQualifier::createUBQualifier);
     }
 }
@@ -679,6 +679,8 @@ public abstract class UBQualifier {
                 if (glb == null) {
                     glb = otherglb;
                 } else if (otherglb != null) {
+                    // Do not modify the offsets of this, which may be shared.
+                    glb = new HashSet<>(glb);
                     glb.addAll(otherglb);
                 }
                 glbMap.put(sequence, simplifyOffsets(glb));
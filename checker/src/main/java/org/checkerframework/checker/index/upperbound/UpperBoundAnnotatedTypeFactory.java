@@ -20,6 +20,7 @@ import javax.lang.model.element.Element;
 import org.checkerframework.checker.index.IndexMethodIdentifier;
 import org.checkerframework.checker.index.IndexUtil;
 import org.checkerframework.checker.index.OffsetDependentTypesHelper;
+import org.checkerframework.checker.index.ParsedQualifierCache;
 import org.checkerframework.checker.index.inequality.LessThanAnnotatedTypeFactory;
 import org.checkerframework.checker.index.inequality.LessThanChecker;
 import org.checkerframework.checker.index.lowerbound.LowerBoundAnnotatedTypeFactory;
@@ -113,10 +114,19 @@ public class UpperBoundAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
 
     private final IndexMethodIdentifier imf;
 
+    /** The parsed qualifiers of the annotations of the Upper Bound hierarchy, and vice versa. */
+    private final ParsedQualifierCache<UBQualifier> ubQualifierCache;
+
     /** Create a new UpperBoundAnnotatedTypeFactory. */
     public UpperBoundAnnotatedTypeFactory(BaseTypeChecker checker) {
         super(checker);
 
+        ubQualifierCache =
+                new ParsedQualifierCache<>(
+                        shouldCache,
+                        getCacheSize(),
+                        getClass().getSimpleName() + ".ubQualifierCache");
+
         addAliasedAnnotation(IndexFor.class, LTLengthOf.class, true);
         addAliasedAnnotation(IndexOrLow.class, LTLengthOf.class, true);
         addAliasedAnnotation(IndexOrHigh.class, LTEqLengthOf.class, true);
@@ -348,8 +358,8 @@ public class UpperBoundAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
 
         @Override
         public AnnotationMirror greatestLowerBound(AnnotationMirror a1, AnnotationMirror a2) {
-            UBQualifier a1Obj = UBQualifier.createUBQualifier(a1);
-            UBQualifier a2Obj = UBQualifier.createUBQualifier(a2);
+            UBQualifier a1Obj = getUBQualifier(a1);
+            UBQualifier a2Obj = getUBQualifier(a2);
             UBQualifier glb = a1Obj.glb(a2Obj);
             return convertUBQualifierToAnnotation(glb);
         }
@@ -363,8 +373,8 @@ public class UpperBoundAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
          */
         @Override
         public AnnotationMirror leastUpperBound(AnnotationMirror a1, AnnotationMirror a2) {
-            UBQualifier a1Obj = UBQualifier.createUBQualifier(a1);
-            UBQualifier a2Obj = UBQualifier.createUBQualifier(a2);
+            UBQualifier a1Obj = getUBQualifier(a1);
+            UBQualifier a2Obj = getUBQualifier(a2);
             UBQualifier lub = a1Obj.lub(a2Obj);
             return convertUBQualifierToAnnotation(lub);
         }
@@ -372,8 +382,8 @@ public class UpperBoundAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
         @Override
         public AnnotationMirror widenedUpperBound(
                 AnnotationMirror newQualifier, AnnotationMirror previousQualifier) {
-            UBQualifier a1Obj = UBQualifier.createUBQualifier(newQualifier);
-            UBQualifier a2Obj = UBQualifier.createUBQualifier(previousQualifier);
+            UBQualifier a1Obj = getUBQualifier(newQualifier);
+            UBQualifier a2Obj = getUBQualifier(previousQualifier);
             UBQualifier lub = a1Obj.widenUpperBound(a2Obj);
             return convertUBQualifierToAnnotation(lub);
         }
@@ -392,8 +402,8 @@ public class UpperBoundAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
          */
         @Override
         public boolean isSubtype(AnnotationMirror subAnno, AnnotationMirror superAnno) {
-            UBQualifier subtype = UBQualifier.createUBQualifier(subAnno);
-            UBQualifier supertype = UBQualifier.createUBQualifier(superAnno);
+            UBQualifier subtype = getUBQualifier(subAnno);
+            UBQualifier supertype = getUBQualifier(superAnno);
             return subtype.isSubtype(supertype);
         }
     }
@@ -756,8 +766,19 @@ public class UpperBoundAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
             return POLY;
         }
 
-        LessThanLengthOf ltlQualifier = (LessThanLengthOf) qualifier;
-        return ltlQualifier.convertToAnnotation(processingEnv);
+        return ubQualifierCache.getAnnotation(
+                qualifier, q -> ((LessThanLengthOf) q).convertToAnnotation(processingEnv));
+    }
+
+    /**
+     * Returns the {@link UBQualifier} of an annotation of the Upper Bound hierarchy. Unlike {@link
+     * UBQualifier#createUBQualifier(AnnotationMirror)}, parses each annotation only once.
+     *
+     * @param anno an annotation of the Upper Bound hierarchy
+     * @return the {@link UBQualifier} of {@code anno}, which must not be modified
+     */
+    public UBQualifier getUBQualifier(AnnotationMirror anno) {
+        return ubQualifierCache.getQualifier(anno, UBQualifier::createUBQualifier);
     }
 
     UBQualifier fromLessThan(ExpressionTree tree, TreePath treePath) {
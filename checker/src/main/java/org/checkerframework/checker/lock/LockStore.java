@@ -48,6 +48,11 @@ public class LockStore extends CFAbstractStore<CFValue, LockStore> {
         this.atypeFactory = ((LockStore) other).atypeFactory;
     }
 
+    @Override
+    protected boolean useCopyOnWriteMaps() {
+        return true;
+    }
+
     @Override
     public LockStore leastUpperBound(LockStore other) {
         LockStore newStore = super.leastUpperBound(other);
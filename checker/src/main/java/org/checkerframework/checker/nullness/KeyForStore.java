@@ -12,4 +12,9 @@ public class KeyForStore extends CFAbstractStore<KeyForValue, KeyForStore> {
     protected KeyForStore(CFAbstractStore<KeyForValue, KeyForStore> other) {
         super(other);
     }
+
+    @Override
+    protected boolean useCopyOnWriteMaps() {
+        return true;
+    }
 }
@@ -27,6 +27,11 @@ public class NullnessStore extends InitializationStore<NullnessValue, NullnessSt
         isPolyNullNull = s.isPolyNullNull;
     }
 
+    @Override
+    protected boolean useCopyOnWriteMaps() {
+        return true;
+    }
+
     @Override
     public NullnessStore leastUpperBound(NullnessStore other) {
         NullnessStore lub = super.leastUpperBound(other);
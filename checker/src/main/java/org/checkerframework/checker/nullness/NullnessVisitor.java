@@ -161,7 +161,7 @@ public class NullnessVisitor
         // allow MonotonicNonNull to be initialized to null at declaration
         if (varTree.getKind() == Tree.Kind.VARIABLE) {
             Element elem = TreeUtils.elementFromDeclaration((VariableTree) varTree);
-            if (atypeFactory.fromElement(elem).hasEffectiveAnnotation(MONOTONIC_NONNULL)
+            if (atypeFactory.fromElementReadOnly(elem).hasEffectiveAnnotation(MONOTONIC_NONNULL)
                     && !checker.getLintOption(
                             NullnessChecker.LINT_NOINITFORMONOTONICNONNULL,
                             NullnessChecker.LINT_DEFAULT_NOINITFORMONOTONICNONNULL)) {
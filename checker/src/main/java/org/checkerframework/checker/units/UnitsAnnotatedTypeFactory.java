@@ -8,6 +8,7 @@ import java.lang.annotation.Annotation;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Name;
 import javax.tools.Diagnostic.Kind;
@@ -66,10 +67,11 @@ public class UnitsAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
      */
     private Map<String, UnitsRelations> unitsRel;
 
+    // Shared by all factories, including those of compilations that run concurrently in one JVM.
     private static final Map<String, Class<? extends Annotation>> externalQualsMap =
-            new HashMap<>();
+            new ConcurrentHashMap<>();
 
-    private static final Map<String, AnnotationMirror> aliasMap = new HashMap<>();
+    private static final Map<String, AnnotationMirror> aliasMap = new ConcurrentHashMap<>();
 
     public UnitsAnnotatedTypeFactory(BaseTypeChecker checker) {
         // use true to enable flow inference, false to disable it
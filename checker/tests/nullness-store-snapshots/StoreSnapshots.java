@@ -0,0 +1,75 @@
+import org.checkerframework.checker.nullness.qual.*;
+import org.checkerframework.dataflow.qual.SideEffectFree;
+
+// Checks preconditions at nodes in the middle of long blocks, so that their stores are looked up
+// both at a store snapshot and between two snapshots.
+class StoreSnapshots {
+
+    @Nullable Object f;
+    @Nullable Object g;
+
+    @SideEffectFree
+    @RequiresNonNull("f")
+    void needsF() {}
+
+    @SideEffectFree
+    @RequiresNonNull({"f", "g"})
+    void needsFAndG() {}
+
+    @EnsuresNonNull("g")
+    void ensuresG() {
+        g = new Object();
+    }
+
+    void straightLine(Object o, int a, int b) {
+        int c = a + b;
+        f = o;
+        needsF();
+        c = c * a + b;
+        needsF();
+        // :: error: (contracts.precondition.not.satisfied)
+        needsFAndG();
+        ensuresG();
+        f = o;
+        c = c - a;
+        needsFAndG();
+        f = null;
+        c = c - b;
+        // :: error: (contracts.precondition.not.satisfied)
+        needsF();
+    }
+
+    void dereferences(Object o, int a) {
+        f = o;
+        g = null;
+        int c = a * a;
+        f.hashCode();
+        c = c + a;
+        // :: error: (dereference.of.nullable)
+        g.hashCode();
+    }
+
+    void inTry(Object o) {
+        try {
+            f = o;
+            needsF();
+            f = null;
+            // :: error: (contracts.precondition.not.satisfied)
+            needsF();
+        } finally {
+            // :: error: (contracts.precondition.not.satisfied)
+            needsF();
+        }
+    }
+
+    void inLoop(Object o, int n) {
+        for (int i = 0; i < n; i++) {
+            // :: error: (contracts.precondition.not.satisfied)
+            needsF();
+            f = o;
+            needsF();
+        }
+        // :: error: (contracts.precondition.not.satisfied)
+        needsF();
+    }
+}
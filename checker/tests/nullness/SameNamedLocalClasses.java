@@ -0,0 +1,28 @@
+import java.util.ArrayList;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+// Local classes with the same name, and anonymous classes, must not share the cached results of
+// asMemberOf and asSuper.
+class SameNamedLocalClasses {
+    void nonNullElements() {
+        class Local extends ArrayList<String> {}
+        Local local = new Local();
+        String element = local.get(0);
+        for (String e : local) {}
+    }
+
+    void nullableElements() {
+        class Local extends ArrayList<@Nullable String> {}
+        Local local = new Local();
+        // :: error: (assignment.type.incompatible)
+        String element = local.get(0);
+        // :: error: (enhancedfor.type.incompatible)
+        for (String e : local) {}
+    }
+
+    void anonymousClasses() {
+        String element = new ArrayList<String>() {}.get(0);
+        // :: error: (assignment.type.incompatible)
+        String nullable = new ArrayList<@Nullable String>() {}.get(0);
+    }
+}
@@ -0,0 +1,24 @@
+import java.util.ArrayList;
+import java.util.List;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+// Local classes with the same name, and anonymous classes, must not share the cached results of
+// isSubtype.
+class SameNamedLocalSubtypes {
+    void nonNullElements() {
+        class Local extends ArrayList<String> {}
+        List<String> list = new Local();
+    }
+
+    void nullableElements() {
+        class Local extends ArrayList<@Nullable String> {}
+        // :: error: (assignment.type.incompatible)
+        List<String> list = new Local();
+    }
+
+    void anonymousClasses() {
+        List<String> list = new ArrayList<String>() {};
+        // :: error: (assignment.type.incompatible)
+        List<String> nullable = new ArrayList<@Nullable String>() {};
+    }
+}
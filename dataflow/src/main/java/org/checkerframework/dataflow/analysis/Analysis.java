@@ -6,14 +6,13 @@ import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.tree.VariableTree;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
-import java.util.PriorityQueue;
 import java.util.Set;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.Element;
@@ -35,7 +34,10 @@ import org.checkerframework.dataflow.cfg.node.AssignmentNode;
 import org.checkerframework.dataflow.cfg.node.LocalVariableNode;
 import org.checkerframework.dataflow.cfg.node.Node;
 import org.checkerframework.dataflow.cfg.node.ReturnNode;
+import org.checkerframework.javacutil.BugInCF;
 import org.checkerframework.javacutil.ElementUtils;
+import org.checkerframework.javacutil.Instrumentation;
+import org.checkerframework.javacutil.Instrumentation.Phase;
 import org.checkerframework.javacutil.Pair;
 
 /**
@@ -120,6 +122,63 @@ public class Analysis<
     /** The current transfer input when the analysis is running. */
     protected @Nullable TransferInput<A, S> currentInput;
 
+    /**
+     * The number of nodes of a block between two store snapshots: the analysis records the transfer
+     * input after every {@code snapshotInterval}-th node of a block in {@link #nodeSnapshots}. 0 if
+     * no snapshots are recorded.
+     */
+    protected int snapshotInterval = 0;
+
+    /**
+     * The maximum number of store snapshots that the analysis of one control flow graph records. If
+     * there would be more, the analysis discards all of them and results are computed by replaying
+     * blocks instead.
+     */
+    protected int maxSnapshots = 0;
+
+    /**
+     * The transfer input after the nodes whose store is recorded, so that {@link AnalysisResult}
+     * can look the store before and after a node up instead of replaying its block. Null if no
+     * snapshots are recorded for the current control flow graph, for example because there would
+     * be more than {@link #maxSnapshots}.
+     *
+     * @see #setStoreSnapshots(int, int)
+     */
+    protected @Nullable IdentityHashMap<Node, TransferInput<A, S>> nodeSnapshots;
+
+    /**
+     * Whether the analysis is sparse. A dense analysis analyzes all successors of a block again if
+     * the value of a node in the block changed. A sparse analysis only analyzes the blocks that use
+     * the value of that node again, according to {@link ControlFlowGraph#getUsingBlocks(Node)};
+     * all other successors are analyzed again only if their stores changed.
+     *
+     * @see #setSparse(boolean)
+     */
+    protected boolean sparse = false;
+
+    /**
+     * The number of blocks that the analysis of one control flow graph may analyze before it
+     * exceeds its budget, or 0 for no limit.
+     *
+     * @see #setBudget(int, long, BudgetStrategy)
+     */
+    protected int maxIterations = 0;
+
+    /**
+     * The time in nanoseconds that the analysis of one control flow graph may take before it
+     * exceeds its budget, or 0 for no limit.
+     */
+    protected long maxNanos = 0;
+
+    /** What the analysis does once it has exceeded its budget. */
+    protected BudgetStrategy budgetStrategy = BudgetStrategy.TOP;
+
+    /** Whether the analysis of the current control flow graph has exceeded its budget. */
+    protected boolean budgetExceeded = false;
+
+    /** The number of blocks that the analysis of the current control flow graph has analyzed. */
+    protected int iterations = 0;
+
     /** The tree that is currently being looked at. */
     public @Nullable Tree getCurrentTree() {
         return currentTree;
@@ -164,6 +223,100 @@ public class Analysis<
         this.finalLocalValues = new HashMap<>();
     }
 
+    /**
+     * Makes the analysis record a snapshot of the store after every {@code interval}-th node of
+     * each block, or stops recording snapshots if {@code interval} is 0. A snapshot is a copy of
+     * the store, so recording snapshots trades memory for time: {@link AnalysisResult} looks the
+     * store before or after a node up in the snapshots, and replays at most {@code interval - 1}
+     * nodes, instead of replaying the block of the node from its start.
+     *
+     * @param interval the number of nodes between two snapshots, or 0 for no snapshots
+     * @param maxSnapshots the maximum number of snapshots for one control flow graph; if the
+     *     analysis of a control flow graph would record more, it records none
+     */
+    public void setStoreSnapshots(int interval, int maxSnapshots) {
+        if (interval < 0 || maxSnapshots < 0) {
+            throw new BugInCF(
+                    "Illegal store snapshot interval or maximum: "
+                            + interval
+                            + ", "
+                            + maxSnapshots);
+        }
+        this.snapshotInterval = interval;
+        this.maxSnapshots = maxSnapshots;
+    }
+
+    /**
+     * Makes the analysis sparse or dense; see {@link #sparse}. Both compute the same fixpoint only
+     * if the transfer function reads the values of other nodes through their operands and nothing
+     * else. This is experimental and off by default: the transfer functions of the Checker
+     * Framework do not satisfy the condition, because they read the annotated types of arbitrary
+     * subtrees, which read {@link #getValue(Tree)} of nodes that are not operands.
+     *
+     * @param sparse true to make the analysis sparse, false to make it dense
+     */
+    public void setSparse(boolean sparse) {
+        this.sparse = sparse;
+    }
+
+    /**
+     * What an analysis does once it has exceeded its budget; see {@link #setBudget(int, long,
+     * BudgetStrategy)}.
+     */
+    public enum BudgetStrategy {
+        /**
+         * Widen every store that is merged into the store before a block, which guarantees
+         * termination only if the store has a widening operator.
+         */
+        WIDEN,
+        /**
+         * Replace every store before a block that would change by the store that has no
+         * information, as given by {@link #topStore(Store)}, so that each block is analyzed at most
+         * once or twice more. Widens instead if there is no such store.
+         */
+        TOP
+    }
+
+    /**
+     * Sets the budget of the analysis of each control flow graph, which bounds the time spent on
+     * pathological methods. Once the analysis exceeds the budget, it still computes a fixpoint, but
+     * gives up precision to get there quickly, according to {@code strategy}. A time limit makes
+     * the results depend on the speed of the machine.
+     *
+     * @param maxIterations the number of blocks that may be analyzed, or 0 for no limit
+     * @param maxNanos the time in nanoseconds that the analysis may take, or 0 for no limit
+     * @param strategy what to do once the budget is exceeded
+     * @see #isBudgetExceeded()
+     */
+    public void setBudget(int maxIterations, long maxNanos, BudgetStrategy strategy) {
+        if (maxIterations < 0 || maxNanos < 0) {
+            throw new BugInCF("Illegal analysis budget: " + maxIterations + ", " + maxNanos);
+        }
+        this.maxIterations = maxIterations;
+        this.maxNanos = maxNanos;
+        this.budgetStrategy = strategy;
+    }
+
+    /**
+     * Returns true if the last analysis exceeded its budget, so that its results are less precise.
+     *
+     * @return true if the last analysis exceeded the budget set by {@link #setBudget(int, long,
+     *     BudgetStrategy)}
+     */
+    public boolean isBudgetExceeded() {
+        return budgetExceeded;
+    }
+
+    /**
+     * Returns the number of blocks that the last analysis analyzed, counting each time a block is
+     * analyzed.
+     *
+     * @return the number of iterations of the last analysis
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
     /** The current transfer function. */
     public @Nullable T getTransferFunction() {
         return transferFunction;
@@ -181,6 +334,9 @@ public class Analysis<
     public void performAnalysis(ControlFlowGraph cfg) {
         assert !isRunning;
         isRunning = true;
+        Instrumentation.start(Phase.DATAFLOW);
+        long start = maxNanos == 0 ? 0 : System.nanoTime();
+        iterations = 0;
 
         try {
             init(cfg);
@@ -188,11 +344,21 @@ public class Analysis<
             while (!worklist.isEmpty()) {
                 Block b = worklist.poll();
                 performAnalysisBlock(b);
+                iterations++;
+                if (!budgetExceeded
+                        && !worklist.isEmpty()
+                        && ((maxIterations != 0 && iterations >= maxIterations)
+                                || (maxNanos != 0 && System.nanoTime() - start >= maxNanos))) {
+                    budgetExceeded = true;
+                    Instrumentation.count("dataflowBudgetsExceeded", 1);
+                }
             }
         } finally {
             assert isRunning;
             // In case preformatAnalysisHelper crashed, reset isRunning to false.
             isRunning = false;
+            Instrumentation.stop(Phase.DATAFLOW);
+            Instrumentation.count("dataflowIterations", iterations);
         }
     }
 
@@ -210,11 +376,13 @@ public class Analysis<
                     TransferResult<A, S> transferResult = null;
                     Node lastNode = null;
                     boolean addToWorklistAgain = false;
+                    int index = 0;
                     for (Node n : rb.getContents()) {
                         assert currentInput != null : "@AssumeAssertion(nullness): invariant";
                         transferResult = callTransferFunction(n, currentInput);
-                        addToWorklistAgain |= updateNodeValues(n, transferResult);
+                        addToWorklistAgain |= updateNodeValuesAndUses(n, transferResult);
                         currentInput = new TransferInput<>(n, this, transferResult);
+                        recordSnapshot(n, index++, currentInput);
                         lastNode = n;
                     }
                     assert currentInput != null : "@AssumeAssertion(nullness): invariant";
@@ -239,7 +407,10 @@ public class Analysis<
                     currentInput = inputBefore.copy();
                     Node node = eb.getNode();
                     TransferResult<A, S> transferResult = callTransferFunction(node, currentInput);
-                    boolean addToWorklistAgain = updateNodeValues(node, transferResult);
+                    boolean addToWorklistAgain = updateNodeValuesAndUses(node, transferResult);
+                    if (nodeSnapshots != null) {
+                        recordSnapshot(node, 0, new TransferInput<>(node, this, transferResult));
+                    }
 
                     // propagate store to successor
                     Block succ = eb.getSuccessor();
@@ -385,6 +556,26 @@ public class Analysis<
         }
     }
 
+    /**
+     * Records a copy of the transfer input after a node if it is the {@code snapshotInterval}-th
+     * node since the last snapshot in its block. Discards all snapshots if there are more than
+     * {@link #maxSnapshots}.
+     *
+     * @param node a node of the block that is being analyzed
+     * @param index the index of {@code node} in its block
+     * @param inputAfter the transfer input after {@code node}; the next node may modify it
+     */
+    protected void recordSnapshot(Node node, int index, TransferInput<A, S> inputAfter) {
+        if (nodeSnapshots == null || (index + 1) % snapshotInterval != 0) {
+            return;
+        }
+        nodeSnapshots.put(node, inputAfter.copy());
+        if (nodeSnapshots.size() > maxSnapshots) {
+            nodeSnapshots = null;
+            Instrumentation.count("storeSnapshotOverflows", 1);
+        }
+    }
+
     /**
      * Updates the value of node {@code node} to the value of the {@code transferResult}. Returns
      * true if the node's value changed, or a store was updated.
@@ -402,6 +593,36 @@ public class Analysis<
         return nodeValueChanged || transferResult.storeChanged();
     }
 
+    /**
+     * Updates the value of node {@code node} to the value of the {@code transferResult}, like
+     * {@link #updateNodeValues}, and determines whether the successors of the block of {@code node}
+     * must be analyzed again. A sparse analysis instead adds the blocks that use the value of
+     * {@code node} to the worklist if it changed, and requires the successors to be analyzed again
+     * only if the transfer function changed a store.
+     *
+     * @param node the node whose transfer function was called
+     * @param transferResult the result of the transfer function
+     * @return true if the successors of the block of {@code node} must be analyzed again even if
+     *     their stores do not change
+     */
+    protected boolean updateNodeValuesAndUses(Node node, TransferResult<A, S> transferResult) {
+        if (!sparse) {
+            return updateNodeValues(node, transferResult);
+        }
+        A oldValue = nodeValues.get(node);
+        updateNodeValues(node, transferResult);
+        if (!Objects.equals(oldValue, nodeValues.get(node))) {
+            assert cfg != null : "@AssumeAssertion(nullness): invariant";
+            for (Block user : cfg.getUsingBlocks(node)) {
+                // A block without an input has not been reached yet; it is analyzed once it is.
+                if (inputs.containsKey(user)) {
+                    addToWorklist(user);
+                }
+            }
+        }
+        return transferResult.storeChanged();
+    }
+
     /**
      * Call the transfer function for node {@code node}, and set that node as current node first.
      */
@@ -451,6 +672,8 @@ public class Analysis<
         storesAtReturnStatements.clear();
         nodeValues.clear();
         finalLocalValues.clear();
+        nodeSnapshots = snapshotInterval == 0 ? null : new IdentityHashMap<>();
+        budgetExceeded = false;
 
         this.cfg = cfg;
         worklist.process(cfg);
@@ -492,10 +715,7 @@ public class Analysis<
      * Add a basic block to the worklist. If {@code b} is already present, the method does nothing.
      */
     protected void addToWorklist(Block b) {
-        // TODO: use a more efficient way to check if b is already present
-        if (!worklist.contains(b)) {
-            worklist.add(b);
-        }
+        worklist.add(b);
     }
 
     /**
@@ -506,9 +726,9 @@ public class Analysis<
             Block b, @Nullable Node node, S s, Store.Kind kind, boolean addBlockToWorklist) {
         S thenStore = getStoreBefore(b, Store.Kind.THEN);
         S elseStore = getStoreBefore(b, Store.Kind.ELSE);
-        boolean shouldWiden = false;
+        boolean shouldWiden = budgetExceeded;
 
-        if (blockCount != null) {
+        if (blockCount != null && !shouldWiden) {
             Integer count = blockCount.get(b);
             if (count == null) {
                 count = 0;
@@ -585,75 +805,151 @@ public class Analysis<
         }
     }
 
-    /** Merge two stores, possibly widening the result. */
+    /**
+     * Merge two stores, possibly widening the result. Once the analysis has exceeded its budget
+     * with strategy {@link BudgetStrategy#TOP}, a result that differs from {@code previousStore} is
+     * replaced by the {@link #topStore(Store) top store}.
+     */
     private S mergeStores(S newStore, @Nullable S previousStore, boolean shouldWiden) {
+        S merged;
         if (previousStore == null) {
-            return newStore;
+            merged = newStore;
         } else if (shouldWiden) {
-            return newStore.widenedUpperBound(previousStore);
+            merged = newStore.widenedUpperBound(previousStore);
         } else {
-            return newStore.leastUpperBound(previousStore);
+            merged = newStore.leastUpperBound(previousStore);
+        }
+        if (budgetExceeded
+                && budgetStrategy == BudgetStrategy.TOP
+                && !merged.equals(previousStore)) {
+            S top = topStore(merged);
+            if (top != null) {
+                return top;
+            }
         }
+        return merged;
+    }
+
+    /**
+     * Returns the store that has no information, which is an upper bound of all stores, for {@link
+     * BudgetStrategy#TOP}. Returns null by default, so that an analysis that has exceeded its
+     * budget widens instead.
+     *
+     * @param store a store that the analysis computed, for example to get its kind from
+     * @return the store that has no information, or null if there is none
+     */
+    protected @Nullable S topStore(S store) {
+        return null;
     }
 
     /**
      * A worklist is a priority queue of blocks in which the order is given by depth-first ordering
      * to place non-loop predecessors ahead of successors.
+     *
+     * <p>{@link #process} numbers the blocks of the control flow graph densely by their depth-first
+     * order. The worklist is then a bit set indexed by that number: {@link #add} and {@link
+     * #contains} are constant-time bit operations, and {@link #poll} returns the block with the
+     * lowest set bit. None of these operations allocates.
      */
     protected static class Worklist {
 
-        /** Map all blocks in the CFG to their depth-first order. */
-        protected final IdentityHashMap<Block, Integer> depthFirstOrder;
+        /** The control flow graph whose blocks are in the worklist, or null before it is set. */
+        protected @Nullable ControlFlowGraph cfg;
 
-        /** Comparator to allow priority queue to order blocks by their depth-first order. */
-        public class DFOComparator implements Comparator<Block> {
-            @Override
-            public int compare(Block b1, Block b2) {
-                return depthFirstOrder.get(b1) - depthFirstOrder.get(b2);
-            }
-        }
+        /**
+         * All blocks in the CFG, indexed by their depth-first order, which is the reverse postorder
+         * computed by {@link ControlFlowGraph#getReversePostorder()}.
+         */
+        protected Block[] blocks;
 
-        /** The backing priority queue. */
-        protected final PriorityQueue<Block> queue;
+        /** The depth-first order numbers of the blocks that are in the worklist. */
+        protected final BitSet members;
 
+        /** Creates an empty worklist; {@link #process} must be called before it is used. */
         public Worklist() {
-            depthFirstOrder = new IdentityHashMap<>();
-            queue = new PriorityQueue<>(11, new DFOComparator());
+            cfg = null;
+            blocks = new Block[0];
+            members = new BitSet();
         }
 
+        /**
+         * Uses the depth-first order of the blocks of {@code cfg} and empties the worklist.
+         *
+         * @param cfg the control flow graph whose blocks will be added to this worklist
+         */
         public void process(ControlFlowGraph cfg) {
-            depthFirstOrder.clear();
-            int count = 1;
-            for (Block b : cfg.getDepthFirstOrderedBlocks()) {
-                depthFirstOrder.put(b, count++);
-            }
+            this.cfg = cfg;
+            blocks = cfg.getReversePostorder();
+            members.clear();
+        }
 
-            queue.clear();
+        /**
+         * Returns the depth-first order number of {@code block}.
+         *
+         * @param block a block of the control flow graph passed to {@link #process}
+         * @return the depth-first order number of {@code block}
+         */
+        protected int indexOf(Block block) {
+            if (cfg == null) {
+                throw new BugInCF("Worklist.process has not been called");
+            }
+            return cfg.getBlockIndex(block);
         }
 
-        /** @see PriorityQueue#isEmpty */
+        /**
+         * Returns true if the worklist is empty.
+         *
+         * @return true if the worklist is empty
+         */
         @EnsuresNonNullIf(result = false, expression = "poll()")
         @SuppressWarnings("nullness:contracts.conditional.postcondition.not.satisfied") // forwarded
         public boolean isEmpty() {
-            return queue.isEmpty();
+            return members.isEmpty();
         }
 
+        /**
+         * Returns true if {@code block} is in the worklist.
+         *
+         * @param block a block of the control flow graph passed to {@link #process}
+         * @return true if {@code block} is in the worklist
+         */
         public boolean contains(Block block) {
-            return queue.contains(block);
+            return members.get(indexOf(block));
         }
 
+        /**
+         * Adds {@code block} to the worklist; does nothing if it is already present.
+         *
+         * @param block a block of the control flow graph passed to {@link #process}
+         */
         public void add(Block block) {
-            queue.add(block);
+            members.set(indexOf(block));
         }
 
-        /** @see PriorityQueue#poll */
+        /**
+         * Removes and returns the block with the lowest depth-first order number, or returns null
+         * if the worklist is empty.
+         *
+         * @return the first block in depth-first order, or null if the worklist is empty
+         */
         public @Nullable Block poll() {
-            return queue.poll();
+            int index = members.nextSetBit(0);
+            if (index < 0) {
+                return null;
+            }
+            members.clear(index);
+            return blocks[index];
         }
 
         @Override
         public String toString() {
-            return "Worklist(" + queue + ")";
+            StringBuilder sb = new StringBuilder("Worklist([");
+            String separator = "";
+            for (int i = members.nextSetBit(0); i >= 0; i = members.nextSetBit(i + 1)) {
+                sb.append(separator).append(blocks[i]);
+                separator = ", ";
+            }
+            return sb.append("])").toString();
         }
     }
 
@@ -820,12 +1116,17 @@ public class Analysis<
     public AnalysisResult<A, S> getResult() {
         assert !isRunning;
         assert cfg != null : "@AssumeAssertion(nullness): invariant";
-        return new AnalysisResult<>(
-                nodeValues,
-                inputs,
-                cfg.getTreeLookup(),
-                cfg.getUnaryAssignNodeLookup(),
-                finalLocalValues);
+        AnalysisResult<A, S> result =
+                new AnalysisResult<>(
+                        nodeValues,
+                        inputs,
+                        cfg.getTreeLookup(),
+                        cfg.getUnaryAssignNodeLookup(),
+                        finalLocalValues);
+        if (nodeSnapshots != null) {
+            result.nodeSnapshots.putAll(nodeSnapshots);
+        }
+        return result;
     }
 
     /**
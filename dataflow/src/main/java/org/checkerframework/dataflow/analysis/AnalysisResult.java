@@ -2,8 +2,10 @@ package org.checkerframework.dataflow.analysis;
 
 import com.sun.source.tree.Tree;
 import com.sun.source.tree.UnaryTree;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -14,6 +16,7 @@ import org.checkerframework.dataflow.cfg.block.ExceptionBlock;
 import org.checkerframework.dataflow.cfg.block.RegularBlock;
 import org.checkerframework.dataflow.cfg.node.AssignmentNode;
 import org.checkerframework.dataflow.cfg.node.Node;
+import org.checkerframework.dataflow.util.IdentityMostlySingleton;
 import org.checkerframework.javacutil.BugInCF;
 
 /**
@@ -48,6 +51,13 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
     protected final Map<TransferInput<A, S>, IdentityHashMap<Node, TransferResult<A, S>>>
             analysisCaches;
 
+    /**
+     * The transfer inputs after the nodes whose store the analysis recorded.
+     *
+     * @see Analysis#setStoreSnapshots(int, int)
+     */
+    protected final IdentityHashMap<Node, TransferInput<A, S>> nodeSnapshots;
+
     /** Initialize with given mappings. */
     protected AnalysisResult(
             Map<Node, A> nodeValues,
@@ -63,6 +73,7 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
         this.stores = stores;
         this.finalLocalValues = finalLocalValues;
         this.analysisCaches = analysisCaches;
+        this.nodeSnapshots = new IdentityHashMap<>();
     }
 
     /** Initialize with given mappings and empty cache. */
@@ -100,9 +111,12 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
         unaryAssignNodeLookup.putAll(other.unaryAssignNodeLookup);
         stores.putAll(other.stores);
         finalLocalValues.putAll(other.finalLocalValues);
+        nodeSnapshots.putAll(other.nodeSnapshots);
     }
 
     // Merge all entries from otherTreeLookup into treeLookup. Merge sets if already present.
+    // The sets may belong to a control flow graph that is shared with other analyses, so they are
+    // copied rather than modified.
     private static void mergeTreeLookup(
             IdentityHashMap<Tree, Set<Node>> treeLookup,
             IdentityHashMap<Tree, Set<Node>> otherTreeLookup) {
@@ -111,7 +125,10 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
             if (hit == null) {
                 treeLookup.put(entry.getKey(), entry.getValue());
             } else {
-                hit.addAll(entry.getValue());
+                Set<Node> merged = new IdentityMostlySingleton<>();
+                merged.addAll(hit);
+                merged.addAll(entry.getValue());
+                treeLookup.put(entry.getKey(), merged);
             }
         }
     }
@@ -241,9 +258,101 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
         if (transferInput == null) {
             return null;
         }
+        if (!nodeSnapshots.isEmpty()) {
+            S store = runAnalysisFromSnapshot(node, before, transferInput);
+            if (store != null) {
+                return store;
+            }
+        }
         return runAnalysisFor(node, before, transferInput, nodeValues, analysisCaches);
     }
 
+    /**
+     * Returns the store at the location of {@code node}, computed from the last snapshot that the
+     * analysis recorded before that location in the block of {@code node}. Replays the nodes
+     * between the snapshot and {@code node}, if any. If {@code before} is true, then the store
+     * immediately before {@code node} is returned. Otherwise, the store after {@code node} is
+     * returned.
+     *
+     * @param node a node
+     * @param before whether to return the store before or after {@code node}
+     * @param blockInput the transfer input before the block of {@code node}
+     * @return the store at the location of {@code node}, or null if there is no snapshot before
+     *     that location in its block
+     * @see Analysis#setStoreSnapshots(int, int)
+     */
+    protected @Nullable S runAnalysisFromSnapshot(
+            Node node, boolean before, TransferInput<A, S> blockInput) {
+        Block block = node.getBlock();
+        assert block != null : "@AssumeAssertion(nullness): invariant";
+        List<Node> contents;
+        switch (block.getType()) {
+            case REGULAR_BLOCK:
+                contents = ((RegularBlock) block).getContents();
+                break;
+            case EXCEPTION_BLOCK:
+                contents = Collections.singletonList(((ExceptionBlock) block).getNode());
+                break;
+            default:
+                return null;
+        }
+
+        // The nodes from index start (inclusive) to index end (exclusive) are replayed, starting
+        // with the snapshot.
+        TransferInput<A, S> snapshot = null;
+        int start = 0;
+        int end = -1;
+        for (int i = 0; i < contents.size(); i++) {
+            Node n = contents.get(i);
+            if (n == node && before) {
+                if (i == 0) {
+                    return blockInput.getRegularStore();
+                }
+                end = i;
+                break;
+            }
+            TransferInput<A, S> nodeSnapshot = nodeSnapshots.get(n);
+            if (nodeSnapshot != null) {
+                snapshot = nodeSnapshot;
+                start = i + 1;
+            }
+            if (n == node) {
+                end = i + 1;
+                break;
+            }
+        }
+        if (snapshot == null || end < 0) {
+            return null;
+        }
+        if (start == end) {
+            return snapshot.getRegularStore();
+        }
+
+        Analysis<A, S, ?> analysis = snapshot.analysis;
+        if (analysis.isRunning) {
+            return null;
+        }
+        Node oldCurrentNode = analysis.currentNode;
+        analysis.setNodeValues(nodeValues);
+        analysis.isRunning = true;
+        try {
+            // Copy the snapshot not to change it.
+            TransferInput<A, S> store = snapshot.copy();
+            TransferResult<A, S> transferResult = null;
+            for (int i = start; i < end; i++) {
+                Node n = contents.get(i);
+                analysis.currentNode = n;
+                transferResult = analysis.callTransferFunction(n, store);
+                store = new TransferInput<>(n, analysis, transferResult);
+            }
+            assert transferResult != null : "@AssumeAssertion(nullness): start < end";
+            return transferResult.getRegularStore();
+        } finally {
+            analysis.currentNode = oldCurrentNode;
+            analysis.isRunning = false;
+        }
+    }
+
     /**
      * Runs the analysis again within the block of {@code node} and returns the store at the
      * location of {@code node}. If {@code before} is true, then the store immediately before the
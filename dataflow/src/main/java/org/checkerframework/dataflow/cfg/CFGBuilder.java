@@ -903,6 +903,8 @@ public class CFGBuilder {
                     }
                 }
             }
+
+            cfg.freeze();
             return cfg;
         }
 
@@ -7,26 +7,37 @@ import com.sun.source.tree.Tree;
 import com.sun.source.tree.UnaryTree;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.dataflow.cfg.block.Block;
 import org.checkerframework.dataflow.cfg.block.Block.BlockType;
+import org.checkerframework.dataflow.cfg.block.BlockImpl;
 import org.checkerframework.dataflow.cfg.block.ConditionalBlock;
 import org.checkerframework.dataflow.cfg.block.ExceptionBlock;
+import org.checkerframework.dataflow.cfg.block.RegularBlock;
 import org.checkerframework.dataflow.cfg.block.SingleSuccessorBlock;
 import org.checkerframework.dataflow.cfg.block.SpecialBlock;
 import org.checkerframework.dataflow.cfg.block.SpecialBlockImpl;
 import org.checkerframework.dataflow.cfg.node.AssignmentNode;
 import org.checkerframework.dataflow.cfg.node.Node;
 import org.checkerframework.dataflow.cfg.node.ReturnNode;
-
-/** A control flow graph (CFG for short) of a single method. */
+import org.checkerframework.javacutil.BugInCF;
+
+/**
+ * A control flow graph (CFG for short) of a single method.
+ *
+ * <p>{@link CFGBuilder} freezes the graph once it is built; see {@link #freeze()}. A frozen graph
+ * numbers its blocks densely in reverse postorder and remembers its block orders, so that they are
+ * not recomputed by every analysis of the graph.
+ */
 public class ControlFlowGraph {
 
     /** The entry block of the control flow graph. */
@@ -73,6 +84,27 @@ public class ControlFlowGraph {
      */
     protected final List<LambdaExpressionTree> declaredLambdas;
 
+    /**
+     * The blocks of the graph in reverse postorder, without duplicates, or null if the graph is not
+     * frozen yet. The index of a block in this array is its {@link BlockImpl#getIndex() index}.
+     */
+    private volatile Block @Nullable [] reversePostorder = null;
+
+    /**
+     * The result of {@link #getDepthFirstOrderedBlocks()}, or null if the graph is not frozen yet.
+     */
+    private @Nullable List<Block> depthFirstOrderedBlocks = null;
+
+    /** The result of {@link #getAllBlocks()}, or null if the graph is not frozen yet. */
+    private @Nullable Set<Block> allBlocks = null;
+
+    /**
+     * The def-use index of the graph: maps every node whose value is an operand of a node in
+     * another block to those other blocks. Null until {@link #getUsingBlocks(Node)} is first
+     * called.
+     */
+    private volatile @Nullable IdentityHashMap<Node, List<Block>> crossBlockUses = null;
+
     public ControlFlowGraph(
             SpecialBlock entryBlock,
             SpecialBlockImpl regularExitBlock,
@@ -131,8 +163,14 @@ public class ControlFlowGraph {
         return underlyingAST;
     }
 
-    /** @return the set of all basic block in this control flow graph */
+    /**
+     * @return the set of all basic block in this control flow graph. The set is unmodifiable once
+     *     the graph is frozen.
+     */
     public Set<Block> getAllBlocks() {
+        if (reversePostorder != null) {
+            return allBlocks;
+        }
         Set<Block> visited = new HashSet<>();
         Queue<Block> worklist = new ArrayDeque<>();
         Block cur = entryBlock;
@@ -162,9 +200,23 @@ public class ControlFlowGraph {
     /**
      * @return the list of all basic block in this control flow graph in reversed depth-first
      *     postorder sequence.
-     *     <p>Blocks may appear more than once in the sequence.
+     *     <p>Blocks may appear more than once in the sequence. The list is unmodifiable once the
+     *     graph is frozen.
      */
     public List<Block> getDepthFirstOrderedBlocks() {
+        if (reversePostorder != null) {
+            return depthFirstOrderedBlocks;
+        }
+        return computeDepthFirstOrderedBlocks();
+    }
+
+    /**
+     * Computes the result of {@link #getDepthFirstOrderedBlocks()} by traversing the graph.
+     *
+     * @return the list of all basic blocks in reversed depth-first postorder sequence, possibly
+     *     with duplicates
+     */
+    private List<Block> computeDepthFirstOrderedBlocks() {
         List<Block> dfsOrderResult = new ArrayList<>();
         Set<Block> visited = new HashSet<>();
         Deque<Block> worklist = new ArrayDeque<>();
@@ -186,6 +238,134 @@ public class ControlFlowGraph {
         return dfsOrderResult;
     }
 
+    /**
+     * Freezes this graph: numbers its blocks densely in reverse postorder and remembers the block
+     * orders. The graph must not be modified afterwards. Does nothing if the graph is already
+     * frozen.
+     */
+    public synchronized void freeze() {
+        if (reversePostorder != null) {
+            return;
+        }
+        List<Block> dfo = computeDepthFirstOrderedBlocks();
+        // The last occurrence of a block in dfo is its position in the reverse postorder; the
+        // other occurrences come from stale work list entries.
+        Set<Block> postorder = new LinkedHashSet<>();
+        for (int i = dfo.size() - 1; i >= 0; i--) {
+            postorder.add(dfo.get(i));
+        }
+        Block[] blocks = new Block[postorder.size()];
+        int index = blocks.length;
+        FreezeToken token = new FreezeToken();
+        for (Block b : postorder) {
+            index--;
+            blocks[index] = b;
+            ((BlockImpl) b).setIndex(index, token);
+        }
+        depthFirstOrderedBlocks = Collections.unmodifiableList(dfo);
+        allBlocks = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(blocks)));
+        reversePostorder = blocks;
+    }
+
+    /**
+     * Permits {@link BlockImpl#setIndex} to number a block. Only {@link #freeze()} can create an
+     * instance, because {@link BlockImpl} is in another package and its setter cannot be
+     * package-private.
+     */
+    public static final class FreezeToken {
+        /** Creates a token; only called by {@link #freeze()}. */
+        private FreezeToken() {}
+    }
+
+    /**
+     * Returns the blocks of this graph in reverse postorder, without duplicates. Freezes the graph
+     * if it is not frozen yet.
+     *
+     * @return the blocks of this graph in reverse postorder; the caller must not modify the array
+     */
+    public Block[] getReversePostorder() {
+        Block[] blocks = reversePostorder;
+        if (blocks == null) {
+            freeze();
+            blocks = reversePostorder;
+        }
+        return blocks;
+    }
+
+    /**
+     * Returns the index of a block in {@link #getReversePostorder()}. Freezes the graph if it is
+     * not frozen yet.
+     *
+     * @param block a block of this graph
+     * @return the index of {@code block} in the reverse postorder of this graph
+     */
+    public int getBlockIndex(Block block) {
+        Block[] blocks = getReversePostorder();
+        int index = ((BlockImpl) block).getIndex();
+        if (index < 0 || index >= blocks.length || blocks[index] != block) {
+            throw new BugInCF("Block is not in the control flow graph: " + block);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the blocks, other than the block of {@code node}, that contain a node that has {@code
+     * node} as an operand. An analysis uses them to find the blocks that must be analyzed again
+     * when the value of {@code node} changes. The def-use index is computed on the first call;
+     * this graph must not be modified afterwards.
+     *
+     * @param node a node of this graph
+     * @return the other blocks that use the value of {@code node}; the caller must not modify the
+     *     list
+     */
+    public List<Block> getUsingBlocks(Node node) {
+        IdentityHashMap<Node, List<Block>> uses = crossBlockUses;
+        if (uses == null) {
+            uses = computeCrossBlockUses();
+        }
+        List<Block> blocks = uses.get(node);
+        return blocks == null ? Collections.emptyList() : blocks;
+    }
+
+    /**
+     * Computes and sets {@link #crossBlockUses}, unless another thread has already done so.
+     *
+     * @return the def-use index of this graph
+     */
+    private synchronized IdentityHashMap<Node, List<Block>> computeCrossBlockUses() {
+        IdentityHashMap<Node, List<Block>> uses = crossBlockUses;
+        if (uses != null) {
+            return uses;
+        }
+        uses = new IdentityHashMap<>();
+        for (Block block : getReversePostorder()) {
+            List<Node> nodes;
+            if (block.getType() == BlockType.REGULAR_BLOCK) {
+                nodes = ((RegularBlock) block).getContents();
+            } else if (block.getType() == BlockType.EXCEPTION_BLOCK) {
+                nodes = Collections.singletonList(((ExceptionBlock) block).getNode());
+            } else {
+                continue;
+            }
+            for (Node node : nodes) {
+                for (Node operand : node.getOperands()) {
+                    // Some nodes, such as an assertion without a detail message, have null
+                    // operands.
+                    Block operandBlock = operand == null ? null : operand.getBlock();
+                    if (operandBlock == null || operandBlock == block) {
+                        continue;
+                    }
+                    List<Block> users = uses.computeIfAbsent(operand, o -> new ArrayList<>(1));
+                    if (!users.contains(block)) {
+                        users.add(block);
+                    }
+                }
+            }
+        }
+        crossBlockUses = uses;
+        return uses;
+    }
+
     /**
      * Get a list of all successor Blocks for cur.
      *
@@ -8,6 +8,9 @@ import com.sun.source.tree.Tree;
 /**
  * Represents an abstract syntax tree of type {@link Tree} that underlies a given control flow
  * graph.
+ *
+ * <p>Two underlying ASTs are equal if they represent the same trees; the trees are compared by
+ * identity.
  */
 public abstract class UnderlyingAST {
     public enum Kind {
@@ -61,6 +64,20 @@ public abstract class UnderlyingAST {
             return classTree;
         }
 
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CFGMethod)) {
+                return false;
+            }
+            CFGMethod other = (CFGMethod) obj;
+            return method == other.method && classTree == other.classTree;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(method);
+        }
+
         @Override
         public String toString() {
             return "CFGMethod(\n" + method + "\n)";
@@ -86,6 +103,16 @@ public abstract class UnderlyingAST {
             return lambda;
         }
 
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof CFGLambda && lambda == ((CFGLambda) obj).lambda;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(lambda);
+        }
+
         @Override
         public String toString() {
             return "CFGLambda(\n" + lambda + "\n)";
@@ -115,6 +142,20 @@ public abstract class UnderlyingAST {
             return classTree;
         }
 
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CFGStatement)) {
+                return false;
+            }
+            CFGStatement other = (CFGStatement) obj;
+            return code == other.code && classTree == other.classTree;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(code);
+        }
+
         @Override
         public String toString() {
             return "CFGStatement(\n" + code + "\n)";
@@ -3,6 +3,8 @@ package org.checkerframework.dataflow.cfg.block;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.javacutil.BugInCF;
 
 /** Base class of the {@link Block} implementation hierarchy. */
 public abstract class BlockImpl implements Block {
@@ -19,6 +21,14 @@ public abstract class BlockImpl implements Block {
     /** The set of predecessors. */
     protected final Set<BlockImpl> predecessors;
 
+    /**
+     * The index of this block in the reverse postorder of its control flow graph, or -1 if the
+     * graph is not frozen yet.
+     *
+     * @see org.checkerframework.dataflow.cfg.ControlFlowGraph#getBlockIndex(Block)
+     */
+    protected int index = -1;
+
     /** @return a fresh identifier */
     private static long uniqueID() {
         return lastId++;
@@ -44,6 +54,29 @@ public abstract class BlockImpl implements Block {
         return Collections.unmodifiableSet(predecessors);
     }
 
+    /**
+     * Returns the index of this block in the reverse postorder of its control flow graph.
+     *
+     * @return the index of this block, or -1 if its control flow graph is not frozen yet
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Sets the index of this block in the reverse postorder of its control flow graph. Only {@link
+     * ControlFlowGraph#freeze()} calls this method, because only it can create a token.
+     *
+     * @param index the index of this block
+     * @param token proof that the caller is {@link ControlFlowGraph#freeze()}
+     */
+    public void setIndex(int index, ControlFlowGraph.FreezeToken token) {
+        if (token == null) {
+            throw new BugInCF("BlockImpl.setIndex: only ControlFlowGraph.freeze sets the index");
+        }
+        this.index = index;
+    }
+
     public void addPredecessor(BlockImpl pred) {
         predecessors.add(pred);
     }
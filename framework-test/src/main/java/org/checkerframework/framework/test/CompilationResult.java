@@ -12,15 +12,20 @@ public class CompilationResult {
     private final Iterable<? extends JavaFileObject> javaFileObjects;
     private final List<Diagnostic<? extends JavaFileObject>> diagnostics;
 
+    /** The wall-clock time of the compilation, in nanoseconds. */
+    private final long elapsedNanos;
+
     CompilationResult(
             boolean compiledWithoutError,
             String javacOutput,
             Iterable<? extends JavaFileObject> javaFileObjects,
-            List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+            List<Diagnostic<? extends JavaFileObject>> diagnostics,
+            long elapsedNanos) {
         this.compiledWithoutError = compiledWithoutError;
         this.javacOutput = javacOutput;
         this.javaFileObjects = javaFileObjects;
         this.diagnostics = Collections.unmodifiableList(diagnostics);
+        this.elapsedNanos = elapsedNanos;
     }
 
     /** @return whether or not compilation succeeded without errors or exceptions */
@@ -42,4 +47,9 @@ public class CompilationResult {
     public List<Diagnostic<? extends JavaFileObject>> getDiagnostics() {
         return diagnostics;
     }
+
+    /** @return the wall-clock time of the compilation, in nanoseconds */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
 }
@@ -0,0 +1,72 @@
+package org.checkerframework.framework.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.runners.model.RunnerScheduler;
+
+/**
+ * Runs the children of a {@link PerFileSuite} or {@link PerDirectorySuite} on a fixed number of
+ * threads. Each child compiles its test files in its own javac task; see {@link
+ * TypecheckExecutor}.
+ *
+ * <p>The suites use this scheduler if the {@code test.threads} system property is greater than 1;
+ * see {@link TestUtilities#getTestThreads()}.
+ */
+class ParallelRunnerScheduler implements RunnerScheduler {
+
+    /** The threads that run the children. */
+    private final ExecutorService executor;
+
+    /** The children that have been scheduled. */
+    private final List<Future<?>> children = new ArrayList<>();
+
+    /**
+     * Creates a scheduler.
+     *
+     * @param nThreads the number of threads to run the children on
+     * @param name the name of the suite, which is used to name the threads
+     */
+    ParallelRunnerScheduler(int nThreads, String name) {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor =
+                Executors.newFixedThreadPool(
+                        nThreads,
+                        runnable -> {
+                            Thread thread =
+                                    new Thread(
+                                            runnable,
+                                            name + "-" + threadCount.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+    }
+
+    @Override
+    public void schedule(Runnable childStatement) {
+        children.add(executor.submit(childStatement));
+    }
+
+    @Override
+    public void finished() {
+        try {
+            for (Future<?> child : children) {
+                child.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            // Failures of a test are reported to the RunNotifier by the child itself, so this is a
+            // failure of the test framework.
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdown();
+            TypecheckExecutor.closeIdleFileManagers();
+        }
+    }
+}
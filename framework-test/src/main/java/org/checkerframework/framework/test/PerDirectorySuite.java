@@ -59,6 +59,11 @@ public class PerDirectorySuite extends Suite {
         for (List<File> parameters : parametersList) {
             runners.add(new PerParameterSetTestRunner(javaTestClass, parameters));
         }
+
+        int threads = TestUtilities.getTestThreads();
+        if (threads > 1) {
+            setScheduler(new ParallelRunnerScheduler(threads, javaTestClass.getSimpleName()));
+        }
     }
 
     /** Returns a list of one-element arrays, each containing a Java File. */
@@ -174,6 +179,15 @@ public class PerDirectorySuite extends Suite {
             return String.format("%s[%s]", method.getName(), testCaseName());
         }
 
+        @Override
+        protected void runChild(FrameworkMethod method, RunNotifier notifier) {
+            long start = System.nanoTime();
+            super.runChild(method, notifier);
+            TestUtilities.reportTestTime(
+                    getTestClass().getJavaClass().getSimpleName() + "." + testName(method),
+                    System.nanoTime() - start);
+        }
+
         @Override
         protected void validateZeroArgConstructor(List<Throwable> errors) {
             // constructor should have args.
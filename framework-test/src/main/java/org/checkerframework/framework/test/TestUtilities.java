@@ -436,4 +436,27 @@ public class TestUtilities {
     public static boolean getShouldEmitDebugInfo() {
         return PluginUtil.getBooleanSystemProperty("emit.test.debug");
     }
+
+    /**
+     * Returns the number of threads on which {@link PerFileSuite} and {@link PerDirectorySuite} run
+     * their tests, which is given by the {@code test.threads} system property. Defaults to 1.
+     *
+     * @return the number of threads to run tests on
+     */
+    public static int getTestThreads() {
+        Integer threads = Integer.getInteger("test.threads");
+        return threads == null || threads < 1 ? 1 : threads;
+    }
+
+    /**
+     * Prints the wall-clock time of a test if the {@code emit.test.times} system property is true.
+     *
+     * @param testName the name of the test
+     * @param nanos the wall-clock time of the test, in nanoseconds
+     */
+    public static void reportTestTime(String testName, long nanos) {
+        if (PluginUtil.getBooleanSystemProperty("emit.test.times")) {
+            System.out.printf("Time elapsed for %s: %.3f sec%n", testName, nanos / 1e9);
+        }
+    }
 }
@@ -1,21 +1,63 @@
 package org.checkerframework.framework.test;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.tools.DiagnosticCollector;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaFileObject;
+import javax.tools.OptionChecker;
 import javax.tools.StandardJavaFileManager;
 import javax.tools.ToolProvider;
 import org.checkerframework.framework.test.diagnostics.JavaDiagnosticReader;
 import org.checkerframework.framework.test.diagnostics.TestDiagnostic;
 import org.checkerframework.javacutil.PluginUtil;
 
-/** Used by the Checker Framework test suite to run the framework and generate a test result. */
+/**
+ * Used by the Checker Framework test suite to run the framework and generate a test result.
+ *
+ * <p>Each compilation is a separate javac task, so tests may run concurrently; see {@link
+ * TestUtilities#getTestThreads()}. The compiler is shared. If tests run concurrently, file managers
+ * are pooled between compilations, so that the jar files on the classpath are not opened and
+ * indexed once per test; otherwise each compilation has its own file manager, which is closed
+ * afterward.
+ *
+ * <p>Concurrent compilations run in the same JVM, so they share the static state of the Checker
+ * Framework. The visitors that keep state while they visit a type or a tree, such as those of
+ * {@code AnnotatedTypes.asSuper}, {@code AnnotatedTypeMirror.equals}, and {@code
+ * TypeFromTree.fromTypeTree}, belong to a type factory, so each compilation has its own. Static
+ * caches, such as the bound types of type parameters in {@code QualifierDefaults}, are
+ * synchronized. Static state that an option sets, such as {@code Range.ignoreOverflow}, is set in
+ * the same way by all tests of a test class, because they are given the same options.
+ *
+ * <p>{@code Instrumentation} cannot be shared: each compilation enables or disables it and
+ * discards what it collected, and all compilations add to the same times and counters. So tests
+ * that pass {@code -AinstrumentationFile} must not run concurrently with other tests.
+ */
 public class TypecheckExecutor {
 
+    /** The compiler that compiles all tests. */
+    private static final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+
+    /**
+     * The file managers that no compilation uses at the moment, keyed by the file manager options
+     * of the compilations that used them. A file manager is not thread-safe, but it can be reused
+     * by later compilations that give it the same options. Only used if tests run concurrently.
+     */
+    private static final Map<List<String>, Deque<StandardJavaFileManager>> idleFileManagers =
+            new HashMap<>();
+
+    /** Determines which compiler options are file manager options. */
+    private static final OptionChecker fileManagerOptions =
+            compiler.getStandardFileManager(null, null, null);
+
     public TypecheckExecutor() {}
 
     /** Runs a typechecking test using the given configuration and returns the test result. */
@@ -29,16 +71,13 @@ public class TypecheckExecutor {
      * configuration, and return place the result in a CompilationResult
      */
     public CompilationResult compile(TestConfiguration configuration) {
-        TestUtilities.ensureDirectoryExists(new File(configuration.getOptions().get("-d")));
-
-        final StringWriter javacOutput = new StringWriter();
-        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
-
-        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
-        Iterable<? extends JavaFileObject> javaFiles =
-                fileManager.getJavaFileObjects(
-                        configuration.getTestSourceFiles().toArray(new File[] {}));
+        long start = System.nanoTime();
+        String outputDir = configuration.getOptions().get("-d");
+        if (TestUtilities.getTestThreads() > 1) {
+            // Concurrent compilations must not write the same class files.
+            outputDir = new File(outputDir, Thread.currentThread().getName()).getPath();
+        }
+        TestUtilities.ensureDirectoryExists(new File(outputDir));
 
         // Even though the method compiler.getTask takes a list of processors, it fails if
         // processors are passed this way with the message:
@@ -56,10 +95,16 @@ public class TypecheckExecutor {
         }
 
         List<String> nonJvmOptions = new ArrayList<>();
-        for (String option : configuration.getFlatOptions()) {
+        List<String> flatOptions = configuration.getFlatOptions();
+        for (int i = 0; i < flatOptions.size(); i++) {
+            String option = flatOptions.get(i);
             if (!option.startsWith("-J-")) {
                 nonJvmOptions.add(option);
             }
+            if (option.equals("-d") && i + 1 < flatOptions.size()) {
+                nonJvmOptions.add(outputDir);
+                i++;
+            }
         }
         nonJvmOptions.add("-Xmaxerrs");
         nonJvmOptions.add("100000");
@@ -71,6 +116,36 @@ public class TypecheckExecutor {
 
         options.addAll(nonJvmOptions);
 
+        List<String> fileManagerKey = getFileManagerOptions(options);
+        StandardJavaFileManager fileManager = acquireFileManager(fileManagerKey);
+        try {
+            return compile(configuration, options, fileManager, start);
+        } finally {
+            releaseFileManager(fileManagerKey, fileManager);
+        }
+    }
+
+    /**
+     * Compiles all source files in the configuration with the given file manager.
+     *
+     * @param configuration the test configuration
+     * @param options the options of the compilation
+     * @param fileManager the file manager of the compilation
+     * @param start the time when the compilation started, in nanoseconds
+     * @return the result of the compilation
+     */
+    private CompilationResult compile(
+            TestConfiguration configuration,
+            List<String> options,
+            StandardJavaFileManager fileManager,
+            long start) {
+        final StringWriter javacOutput = new StringWriter();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+
+        Iterable<? extends JavaFileObject> javaFiles =
+                fileManager.getJavaFileObjects(
+                        configuration.getTestSourceFiles().toArray(new File[] {}));
+
         if (configuration.shouldEmitDebugInfo()) {
             System.out.println("Running test using the following invocation:");
             System.out.println(
@@ -101,7 +176,91 @@ public class TypecheckExecutor {
                 compiledWithoutError,
                 javacOutput.toString(),
                 javaFiles,
-                diagnostics.getDiagnostics());
+                diagnostics.getDiagnostics(),
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Returns the file manager options among the given compiler options.
+     *
+     * @param options the options of a compilation
+     * @return the options in {@code options} that configure the file manager, with their arguments
+     */
+    private static List<String> getFileManagerOptions(List<String> options) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < options.size(); i++) {
+            int arguments = fileManagerOptions.isSupportedOption(options.get(i));
+            if (arguments >= 0) {
+                int end = Math.min(i + 1 + arguments, options.size());
+                result.addAll(options.subList(i, end));
+                i = end - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a file manager for a compilation, which no other compilation uses until it is passed
+     * to {@link #releaseFileManager}. If tests run concurrently, the file manager is taken from the
+     * pool if possible.
+     *
+     * @param key the file manager options of the compilation
+     * @return a file manager for the compilation
+     */
+    private static StandardJavaFileManager acquireFileManager(List<String> key) {
+        if (TestUtilities.getTestThreads() > 1) {
+            synchronized (idleFileManagers) {
+                Deque<StandardJavaFileManager> idle = idleFileManagers.get(key);
+                if (idle != null && !idle.isEmpty()) {
+                    return idle.pop();
+                }
+            }
+        }
+        return compiler.getStandardFileManager(null, null, null);
+    }
+
+    /**
+     * Returns a file manager to the pool if tests run concurrently, or closes it otherwise.
+     *
+     * @param key the file manager options of the compilation that used the file manager
+     * @param fileManager a file manager returned by {@link #acquireFileManager}
+     */
+    private static void releaseFileManager(List<String> key, StandardJavaFileManager fileManager) {
+        if (TestUtilities.getTestThreads() > 1) {
+            synchronized (idleFileManagers) {
+                idleFileManagers.computeIfAbsent(key, k -> new ArrayDeque<>()).push(fileManager);
+            }
+        } else {
+            close(fileManager);
+        }
+    }
+
+    /**
+     * Closes the pooled file managers. Called once the tests of a suite that ran concurrently have
+     * finished.
+     */
+    static void closeIdleFileManagers() {
+        synchronized (idleFileManagers) {
+            for (Deque<StandardJavaFileManager> idle : idleFileManagers.values()) {
+                for (StandardJavaFileManager fileManager : idle) {
+                    close(fileManager);
+                }
+            }
+            idleFileManagers.clear();
+        }
+    }
+
+    /**
+     * Closes a file manager.
+     *
+     * @param fileManager the file manager to close
+     */
+    private static void close(StandardJavaFileManager fileManager) {
+        try {
+            fileManager.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
@@ -29,7 +29,9 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.checker.signature.qual.ClassGetName;
 import org.checkerframework.common.reflection.MethodValChecker;
+import org.checkerframework.common.wholeprograminference.WholeProgramInferenceSession;
 import org.checkerframework.dataflow.cfg.CFGVisualizer;
+import org.checkerframework.framework.flow.CFGCache;
 import org.checkerframework.framework.qual.SubtypeOf;
 import org.checkerframework.framework.source.SourceChecker;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
@@ -134,6 +136,12 @@ public abstract class BaseTypeChecker extends SourceChecker implements BaseTypeC
      */
     private TreePathCacher treePathCacher = null;
 
+    /**
+     * The control flow graphs to share between instances. Initialized either in getCFGCache or in
+     * instantiateSubcheckers.
+     */
+    private CFGCache cfgCache = null;
+
     @Override
     protected void setRoot(CompilationUnitTree newRoot) {
         super.setRoot(newRoot);
@@ -423,6 +431,7 @@ public abstract class BaseTypeChecker extends SourceChecker implements BaseTypeC
 
             instance.setProcessingEnvironment(this.processingEnv);
             instance.treePathCacher = this.getTreePathCacher();
+            instance.cfgCache = this.getCFGCache();
             // Prevent the new checker from storing non-immediate subcheckers
             instance.subcheckers = Collections.emptyList();
             immediateSubcheckers.add(instance);
@@ -465,6 +474,20 @@ public abstract class BaseTypeChecker extends SourceChecker implements BaseTypeC
         return treePathCacher;
     }
 
+    /**
+     * Returns the cache of control flow graphs that this checker shares with the other checkers of
+     * the same compound checker.
+     *
+     * @return the shared cache of control flow graphs
+     */
+    public CFGCache getCFGCache() {
+        if (cfgCache == null) {
+            // In case it wasn't already set in instantiateSubcheckers.
+            cfgCache = new CFGCache();
+        }
+        return cfgCache;
+    }
+
     /**
      * Compares two {@link CheckerMessage}s first by position at which the error will be printed,
      * then by the order in which the checkers run, then by kind of message, and finally by the
@@ -506,6 +529,17 @@ public abstract class BaseTypeChecker extends SourceChecker implements BaseTypeC
     // AbstractTypeProcessor delegation
     @Override
     public void typeProcess(TypeElement element, TreePath tree) {
+        if (replayIncrementalResults(element, tree)) {
+            return;
+        }
+        WholeProgramInferenceSession inferenceSession = WholeProgramInferenceSession.active();
+        if (parentChecker == null
+                && inferenceSession != null
+                && !inferenceSession.shouldTypeCheck(
+                        element, tree, processingEnv.getElementUtils())) {
+            // No class that this class depends on changed its inferred signature.
+            return;
+        }
         if (!getSubcheckers().isEmpty()) {
             messageStore = new TreeSet<>(this::compareCheckerMessages);
         }
@@ -543,6 +577,7 @@ public abstract class BaseTypeChecker extends SourceChecker implements BaseTypeC
             // Update errsOnLastExit to reflect the errors issued.
             this.errsOnLastExit = log.nerrors;
         }
+        storeIncrementalResults(element);
     }
 
     /**
@@ -116,6 +116,7 @@ import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.BugInCF;
 import org.checkerframework.javacutil.ElementUtils;
+import org.checkerframework.javacutil.Instrumentation;
 import org.checkerframework.javacutil.Pair;
 import org.checkerframework.javacutil.PluginUtil;
 import org.checkerframework.javacutil.TreeUtils;
@@ -571,6 +572,7 @@ public class BaseTypeVisitor<Factory extends GenericAnnotatedTypeFactory<?, ?, ?
 
         warnAboutTypeAnnotationsTooEarly(node, node.getModifiers());
 
+        String previousMethod = Instrumentation.enterMethod(methodElement);
         try {
             if (TreeUtils.isAnonymousConstructor(node)) {
                 // We shouldn't dig deeper
@@ -690,6 +692,7 @@ public class BaseTypeVisitor<Factory extends GenericAnnotatedTypeFactory<?, ?, ?
 
             visitorState.setMethodReceiver(preMRT);
             visitorState.setMethodTree(preMT);
+            Instrumentation.exitMethod(previousMethod);
         }
     }
 
@@ -2462,13 +2465,16 @@ public class BaseTypeVisitor<Factory extends GenericAnnotatedTypeFactory<?, ?, ?
      * are the same but their verbose toStrings differ.
      */
     private static boolean containsSameToString(AnnotatedTypeMirror... atms) {
-        for (AnnotatedTypeMirror atm : atms) {
-            Boolean result = checkContainsSameToString.visit(atm);
-            if (result != null && result) {
-                return true;
+        // The scanner is shared by all visitors, which may run concurrently in one JVM.
+        synchronized (checkContainsSameToString) {
+            for (AnnotatedTypeMirror atm : atms) {
+                Boolean result = checkContainsSameToString.visit(atm);
+                if (result != null && result) {
+                    return true;
+                }
+                // Call reset to clear the visitor history, but not the map from Strings to types.
+                checkContainsSameToString.reset();
             }
-            // Call reset to clear the visitor history, but not the map from Strings to types.
-            checkContainsSameToString.reset();
         }
 
         return false;
@@ -3,6 +3,9 @@ package org.checkerframework.common.value;
 import com.sun.source.tree.MemberSelectTree;
 import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.NewClassTree;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -10,7 +13,12 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Name;
@@ -21,22 +29,86 @@ import org.checkerframework.checker.signature.qual.ClassGetName;
 import org.checkerframework.checker.signature.qual.DotSeparatedIdentifiers;
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.framework.source.Result;
+import org.checkerframework.javacutil.BugInCF;
+import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.PluginUtil;
 import org.checkerframework.javacutil.TreeUtils;
 import org.checkerframework.javacutil.TypesUtils;
 
+/**
+ * Evaluates statically executable methods and constructors, and static final fields, by running
+ * them.
+ *
+ * <p>Each method is looked up once and then called through a {@link MethodHandle}. The results of
+ * method calls are remembered, so a method is called only once for each combination of receiver and
+ * arguments.
+ */
 public class ReflectiveEvaluator {
+    /** The maximum number of method calls whose results are remembered. */
+    private static final int RESULT_CACHE_SIZE = 1000;
+
+    /** Represents a method call that returned null in {@link #resultCache}. */
+    private static final Object NULL_RESULT = new Object();
+
+    /** A method handle for {@link #throwInvocationTargetException(Throwable)}. */
+    private static final MethodHandle THROW_INVOCATION_TARGET_EXCEPTION;
+
+    static {
+        try {
+            THROW_INVOCATION_TARGET_EXCEPTION =
+                    MethodHandles.lookup()
+                            .findStatic(
+                                    ReflectiveEvaluator.class,
+                                    "throwInvocationTargetException",
+                                    MethodType.methodType(Object.class, Throwable.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new BugInCF("cannot find ReflectiveEvaluator.throwInvocationTargetException", e);
+        }
+    }
+
+    /**
+     * Throws an {@link InvocationTargetException} that wraps an exception thrown by an evaluated
+     * method.
+     *
+     * @param thrown the exception thrown by the method
+     * @return never returns normally
+     * @throws InvocationTargetException always
+     */
+    private static Object throwInvocationTargetException(Throwable thrown)
+            throws InvocationTargetException {
+        throw new InvocationTargetException(thrown);
+    }
+
     private BaseTypeChecker checker;
     private boolean reportWarnings;
 
+    /** The factory that uses this evaluator. */
+    private final ValueAnnotatedTypeFactory factory;
+
+    /**
+     * For each method that has been looked up, a method handle that takes the receiver (for an
+     * instance method) and the arguments as an array, or the warning to issue if the method cannot
+     * be found.
+     */
+    private final Map<ExecutableElement, Object> methodHandles = new HashMap<>();
+
+    /** The results of method calls; a result of null is represented by {@link #NULL_RESULT}. */
+    private final Map<MethodCall, Object> resultCache =
+            CollectionUtils.createLRUCache(RESULT_CACHE_SIZE, "ReflectiveEvaluator.results");
+
     public ReflectiveEvaluator(
             BaseTypeChecker checker, ValueAnnotatedTypeFactory factory, boolean reportWarnings) {
         this.checker = checker;
+        this.factory = factory;
         this.reportWarnings = reportWarnings;
     }
 
     /**
+     * Returns all possible values that a method call may return. If more than {@link
+     * ValueAnnotatedTypeFactory#MAX_VALUES} distinct values are found and more values cannot make
+     * the resulting annotation more precise, the remaining argument values are not tried.
+     *
      * @param allArgValues a list of list where the first list corresponds to all possible values
      *     for the first argument. Pass null to indicate that the method has no arguments.
      * @param receiverValues a list of possible receiver values. null indicates that the method has
@@ -47,14 +119,14 @@ public class ReflectiveEvaluator {
      */
     public List<?> evaluateMethodCall(
             List<List<?>> allArgValues, List<?> receiverValues, MethodInvocationTree tree) {
-        Method method = getMethodObject(tree);
-        if (method == null) {
+        ExecutableElement method = TreeUtils.elementFromUse(tree);
+        MethodHandle handle = getMethodHandle(method, tree);
+        if (handle == null) {
             return null;
         }
 
         if (receiverValues == null) {
             // Method does not have a receiver
-            // the first parameter of Method.invoke should be null
             receiverValues = Collections.singletonList(null);
         }
 
@@ -70,48 +142,44 @@ public class ReflectiveEvaluator {
 
         if (method.isVarArgs()) {
             List<Object[]> newList = new ArrayList<>();
-            int numberOfParameters = method.getParameterTypes().length;
+            int numberOfParameters = method.getParameters().size();
             for (Object[] args : listOfArguments) {
                 newList.add(normalizeVararg(args, numberOfParameters));
             }
             listOfArguments = newList;
         }
 
+        Set<Object> distinctResults =
+                factory.isUnknownIfTooManyValues(method.getReturnType()) ? new HashSet<>() : null;
         List<Object> results = new ArrayList<>();
         for (Object[] arguments : listOfArguments) {
             for (Object receiver : receiverValues) {
+                Object result;
                 try {
-                    results.add(method.invoke(receiver, arguments));
+                    result = invoke(method, handle, receiver, arguments);
                 } catch (InvocationTargetException e) {
+                    Throwable thrown = e.getTargetException();
+                    if (thrown instanceof ExceptionInInitializerError) {
+                        thrown = thrown.getCause();
+                    }
                     if (reportWarnings) {
                         checker.report(
                                 Result.warning(
-                                        "method.evaluation.exception",
-                                        method,
-                                        e.getTargetException().toString()),
+                                        "method.evaluation.exception", method, thrown.toString()),
                                 tree);
                     }
                     // Method evaluation will always fail, so don't bother
                     // trying again
                     return null;
-                } catch (ExceptionInInitializerError e) {
-                    if (reportWarnings) {
-                        checker.report(
-                                Result.warning(
-                                        "method.evaluation.exception",
-                                        method,
-                                        e.getCause().toString()),
-                                tree);
-                    }
-                    return null;
-                } catch (IllegalArgumentException e) {
+                } catch (ClassCastException | IllegalArgumentException | NullPointerException e) {
+                    // The arguments could not be converted to the types of the parameters.
                     if (reportWarnings) {
                         String args = PluginUtil.join(", ", arguments);
                         checker.report(
                                 Result.warning(
                                         "method.evaluation.exception",
                                         method,
-                                        e.getLocalizedMessage() + ": " + args),
+                                        e.toString() + ": " + args),
                                 tree);
                     }
                     return null;
@@ -122,11 +190,53 @@ public class ReflectiveEvaluator {
                     }
                     return null;
                 }
+                results.add(result);
+                if (distinctResults != null
+                        && result != null
+                        && distinctResults.add(result)
+                        && distinctResults.size() > ValueAnnotatedTypeFactory.MAX_VALUES) {
+                    return results;
+                }
             }
         }
         return results;
     }
 
+    /**
+     * Calls a method, or returns the remembered result of an earlier call with the same receiver
+     * and arguments.
+     *
+     * @param method the method to call
+     * @param handle the method handle returned by {@link #getMethodHandle} for {@code method}
+     * @param receiver the receiver, or null if {@code method} is static
+     * @param arguments the arguments, or null if {@code method} has no parameters
+     * @return the result of the call
+     * @throws InvocationTargetException if the method throws an exception
+     * @throws Throwable if the arguments cannot be passed to the method
+     */
+    private Object invoke(
+            ExecutableElement method, MethodHandle handle, Object receiver, Object[] arguments)
+            throws Throwable {
+        MethodCall call = new MethodCall(method, receiver, arguments);
+        Object result = resultCache.get(call);
+        if (result == null) {
+            Object[] handleArguments;
+            int numberOfArguments = arguments == null ? 0 : arguments.length;
+            if (ElementUtils.isStatic(method)) {
+                handleArguments = arguments == null ? new Object[0] : arguments;
+            } else {
+                handleArguments = new Object[numberOfArguments + 1];
+                handleArguments[0] = receiver;
+                if (arguments != null) {
+                    System.arraycopy(arguments, 0, handleArguments, 1, numberOfArguments);
+                }
+            }
+            result = handle.invokeExact(handleArguments);
+            resultCache.put(call, result == null ? NULL_RESULT : result);
+        }
+        return result == NULL_RESULT ? null : result;
+    }
+
     /**
      * This method normalizes an array of arguments to a varargs method by changing the arguments
      * associated with the varargs parameter into an array.
@@ -158,14 +268,41 @@ public class ReflectiveEvaluator {
     }
 
     /**
-     * Method for reflectively obtaining a method object so it can (potentially) be statically
-     * executed by the checker for constant propagation.
+     * Returns a method handle for a method that can (potentially) be statically executed by the
+     * checker for constant propagation. The method is looked up reflectively the first time;
+     * afterwards the method handle, or the warning about why the method cannot be found, is
+     * reused.
      *
-     * @return the Method object corresponding to the method being invoke in tree
+     * @param method the method being invoked in {@code tree}
+     * @param tree the method invocation; used for diagnostics
+     * @return a method handle that takes the receiver (for an instance method) and the arguments
+     *     as an array and returns the result as an Object, or null if the method cannot be found
      */
-    private Method getMethodObject(MethodInvocationTree tree) {
+    private MethodHandle getMethodHandle(ExecutableElement method, MethodInvocationTree tree) {
+        Object handle = methodHandles.get(method);
+        if (handle == null) {
+            handle = lookUpMethodHandle(method);
+            methodHandles.put(method, handle);
+        }
+        if (handle instanceof Result) {
+            if (reportWarnings) {
+                checker.report((Result) handle, tree);
+            }
+            return null;
+        }
+        return (MethodHandle) handle;
+    }
+
+    /**
+     * Reflectively looks up a method and returns a method handle for it.
+     *
+     * @param ele the method to look up
+     * @return a method handle that takes the receiver (for an instance method) and the arguments
+     *     as an array and returns the result as an Object, or the warning to issue if the method
+     *     cannot be found
+     */
+    private Object lookUpMethodHandle(ExecutableElement ele) {
         try {
-            ExecutableElement ele = TreeUtils.elementFromUse(tree);
             @DotSeparatedIdentifiers Name clazz =
                     TypesUtils.getQualifiedName((DeclaredType) ele.getEnclosingElement().asType());
             List<Class<?>> paramClzz = getParameterClasses(ele);
@@ -179,32 +316,31 @@ public class ReflectiveEvaluator {
             if (!acc) {
                 method.setAccessible(true);
             }
-            return method;
+            MethodHandle handle = MethodHandles.lookup().unreflect(method).asFixedArity();
+            MethodType type = handle.type();
+            // Like Method.invoke, wrap the exceptions that the method throws, so that they can be
+            // told apart from the exceptions that the conversions of the arguments throw.
+            MethodHandle rethrow =
+                    MethodHandles.dropArguments(
+                            THROW_INVOCATION_TARGET_EXCEPTION.asType(
+                                    MethodType.methodType(type.returnType(), Throwable.class)),
+                            1,
+                            type.parameterList());
+            handle = MethodHandles.catchException(handle, Throwable.class, rethrow);
+            // Method.invoke and MethodHandle.asType perform the same conversions of arguments.
+            return handle.asType(type.generic()).asSpreader(Object[].class, type.parameterCount());
         } catch (ClassNotFoundException | UnsupportedClassVersionError | NoClassDefFoundError e) {
-            if (reportWarnings) {
-                checker.report(
-                        Result.warning(
-                                "class.find.failed",
-                                TreeUtils.elementFromUse(tree).getEnclosingElement()),
-                        tree);
-            }
-            return null;
-
+            return Result.warning("class.find.failed", ele.getEnclosingElement());
         } catch (Throwable e) {
             // The class we attempted to getMethod from inside the
-            // call to getMethodObject.
-            Element classElem = TreeUtils.elementFromUse(tree).getEnclosingElement();
+            // call to lookUpMethodHandle.
+            Element classElem = ele.getEnclosingElement();
 
             if (classElem == null) {
-                if (reportWarnings) {
-                    checker.report(Result.warning("method.find.failed"), tree);
-                }
+                return Result.warning("method.find.failed");
             } else {
-                if (reportWarnings) {
-                    checker.report(Result.warning("method.find.failed.in.class", classElem), tree);
-                }
+                return Result.warning("method.find.failed.in.class", classElem);
             }
-            return null;
         }
     }
 
@@ -356,4 +492,45 @@ public class ReflectiveEvaluator {
         }
         return type;
     }
+
+    /** A call of a method with a receiver and arguments; the key of {@link #resultCache}. */
+    private static final class MethodCall {
+        /** The method that is called. */
+        private final ExecutableElement method;
+
+        /** The receiver, or null if the method is static. */
+        private final Object receiver;
+
+        /** The arguments, or null if the method has no parameters. */
+        private final Object[] arguments;
+
+        /**
+         * Creates a method call.
+         *
+         * @param method the method that is called
+         * @param receiver the receiver, or null if the method is static
+         * @param arguments the arguments, or null if the method has no parameters
+         */
+        MethodCall(ExecutableElement method, Object receiver, Object[] arguments) {
+            this.method = method;
+            this.receiver = receiver;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof MethodCall)) {
+                return false;
+            }
+            MethodCall other = (MethodCall) obj;
+            return method == other.method
+                    && Objects.equals(receiver, other.receiver)
+                    && Arrays.deepEquals(arguments, other.arguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(method, receiver, Arrays.deepHashCode(arguments));
+        }
+    }
 }
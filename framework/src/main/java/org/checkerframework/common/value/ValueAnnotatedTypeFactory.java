@@ -1590,6 +1590,28 @@ public class ValueAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
         return createResultingAnnotation(resultType, Collections.singletonList(value));
     }
 
+    /**
+     * Returns true if {@link #createResultingAnnotation} returns {@code @UnknownVal} for any list
+     * of values of type {@code type} with more than {@link #MAX_VALUES} distinct elements, so
+     * that computing further values is pointless. This is false for integral types and strings,
+     * for which a range or a length is computed instead.
+     *
+     * @param type a type
+     * @return true if more than {@link #MAX_VALUES} distinct values of {@code type} are
+     *     represented by {@code @UnknownVal}
+     */
+    boolean isUnknownIfTooManyValues(TypeMirror type) {
+        TypeKind kind;
+        if (TypesUtils.isPrimitive(type)) {
+            kind = type.getKind();
+        } else if (TypesUtils.isBoxedPrimitive(type)) {
+            kind = types.unboxedType(type).getKind();
+        } else {
+            return false;
+        }
+        return kind == TypeKind.DOUBLE || kind == TypeKind.FLOAT || kind == TypeKind.CHAR;
+    }
+
     /**
      * Returns a constant value annotation with the {@code values}. The class of the annotation
      * reflects the {@code resultType} given.
@@ -0,0 +1,277 @@
+package org.checkerframework.common.wholeprograminference;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import javax.annotation.processing.Processor;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.checkerframework.javacutil.UserError;
+
+/**
+ * Runs whole-program inference to a fixpoint in a single JVM, as an alternative to {@code
+ * checker/bin/infer-and-annotate.sh}.
+ *
+ * <p>The script runs javac and {@code insert-annotations-to-source} repeatedly, until the .jaif
+ * files stop changing. This class instead compiles the program repeatedly in-process, within one
+ * {@link WholeProgramInferenceSession}: the Scenes stay in memory, the annotations inferred in
+ * each round are used as if they had been inserted into the source code, and each round after the
+ * first type-checks only the classes affected by the annotations inserted in the previous round.
+ * The .jaif files are written once, at the end, and contain every annotation that the script would
+ * have inserted; {@code insert-annotations-to-source} can then insert them.
+ *
+ * <p>The arguments are those of {@code infer-and-annotate.sh}, except that there are no arguments
+ * for {@code insert-annotations-to-source}:
+ *
+ * <ol>
+ *   <li>Comma-separated fully-qualified names of the processors.
+ *   <li>The classpath of the program.
+ *   <li>Any number of extra arguments to javac and the checker; each must start with a hyphen.
+ *   <li>Any number of .jaif files used as input.
+ *   <li>The .java files of the program.
+ * </ol>
+ *
+ * The processors must be on the classpath of the JVM that runs this class, because they have to
+ * share the session with it. Of the input .jaif files, only the type annotations of fields, method
+ * returns, receivers, and method parameters are used and written.
+ */
+public class WholeProgramInferenceDriver {
+
+    /** The fully-qualified names of the processors to run. */
+    private final List<String> processors;
+
+    /** The classpath of the program. */
+    private final String classpath;
+
+    /** Extra arguments to javac and the checker. */
+    private final List<String> extraArgs;
+
+    /** The .jaif files used as input. */
+    private final List<String> jaifFiles;
+
+    /** The .java files of the program. */
+    private final List<File> javaFiles;
+
+    /** The names of the top-level classes type-checked in each round that has been run. */
+    private final List<Set<String>> checkedClasses = new ArrayList<>();
+
+    /**
+     * Creates a driver.
+     *
+     * @param processors the fully-qualified names of the processors to run
+     * @param classpath the classpath of the program
+     * @param extraArgs extra arguments to javac and the checker
+     * @param jaifFiles the .jaif files used as input
+     * @param javaFiles the .java files of the program
+     */
+    public WholeProgramInferenceDriver(
+            List<String> processors,
+            String classpath,
+            List<String> extraArgs,
+            List<String> jaifFiles,
+            List<File> javaFiles) {
+        this.processors = processors;
+        this.classpath = classpath;
+        this.extraArgs = extraArgs;
+        this.jaifFiles = jaifFiles;
+        this.javaFiles = javaFiles;
+    }
+
+    /**
+     * Runs whole-program inference on a program and writes the inferred annotations into .jaif
+     * files in {@link WholeProgramInferenceScenesHelper#JAIF_FILES_PATH}.
+     *
+     * @param args the arguments described in the class documentation
+     * @throws IOException if a file cannot be read or written
+     * @throws UserError if an argument is not one of those described in the class documentation
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println(
+                    "Usage: WholeProgramInferenceDriver processors classpath [-arg ...]"
+                            + " [file.jaif ...] file.java ...");
+            System.exit(1);
+        }
+        List<String> extraArgs = new ArrayList<>();
+        List<String> jaifFiles = new ArrayList<>();
+        List<File> javaFiles = new ArrayList<>();
+        for (String arg : Arrays.asList(args).subList(2, args.length)) {
+            if (arg.startsWith("-")) {
+                extraArgs.add(arg);
+            } else if (arg.endsWith(".jaif")) {
+                jaifFiles.add(arg);
+            } else if (arg.endsWith(".java")) {
+                javaFiles.add(new File(arg));
+            } else {
+                throw new UserError(
+                        "%s is neither an argument that starts with a hyphen,"
+                                + " nor a .jaif file, nor a .java file",
+                        arg);
+            }
+        }
+        new WholeProgramInferenceDriver(
+                        Arrays.asList(args[0].split(",")),
+                        args[1],
+                        extraArgs,
+                        jaifFiles,
+                        javaFiles)
+                .run();
+    }
+
+    /**
+     * Compiles the program until no inferred signature changes, then writes the .jaif files.
+     *
+     * @return the number of rounds
+     * @throws IOException if a file cannot be read or written
+     */
+    public int run() throws IOException {
+        Path jaifDir = Paths.get(WholeProgramInferenceScenesHelper.JAIF_FILES_PATH);
+        Files.createDirectories(jaifDir);
+        deleteJaifFiles(jaifDir);
+        for (String jaifFile : jaifFiles) {
+            Path source = Paths.get(jaifFile);
+            Files.copy(
+                    source,
+                    jaifDir.resolve(source.getFileName()),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        Path classOutput = Files.createTempDirectory("whole-program-inference-output");
+        WholeProgramInferenceSession session = new WholeProgramInferenceSession();
+        WholeProgramInferenceSession.setActive(session);
+        try {
+            int round = 0;
+            Set<String> changed;
+            do {
+                round++;
+                compile(classOutput);
+                if (round == 1) {
+                    // The first round has read the input .jaif files into the session.
+                    deleteJaifFiles(jaifDir);
+                }
+                Set<String> checked = session.checkedClasses();
+                checkedClasses.add(checked);
+                changed = session.finishRound();
+                System.out.printf(
+                        "Whole-program inference round %d: type-checked %d classes,"
+                                + " inserted annotations into %d classes%n",
+                        round, checked.size(), changed.size());
+            } while (!changed.isEmpty());
+            session.writeScenesToJaif();
+            return round;
+        } finally {
+            WholeProgramInferenceSession.setActive(null);
+            try (Stream<Path> outputs = Files.walk(classOutput)) {
+                outputs.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    /**
+     * Returns the names of the top-level classes type-checked in each round that {@link #run} has
+     * run. The first round type-checks every class.
+     *
+     * @return the names of the top-level classes type-checked in each round
+     */
+    public List<Set<String>> getCheckedClasses() {
+        return Collections.unmodifiableList(checkedClasses);
+    }
+
+    /**
+     * Deletes the .jaif files in a directory.
+     *
+     * @param jaifDir a directory
+     * @throws IOException if a file cannot be deleted
+     */
+    private static void deleteJaifFiles(Path jaifDir) throws IOException {
+        try (DirectoryStream<Path> jaifFiles = Files.newDirectoryStream(jaifDir, "*.jaif")) {
+            for (Path jaifFile : jaifFiles) {
+                Files.delete(jaifFile);
+            }
+        }
+    }
+
+    /**
+     * Compiles the program once, with -Ainfer, in this JVM.
+     *
+     * @param classOutput the directory for the class files, which are not used
+     * @throws IOException if the file manager cannot be closed
+     */
+    private void compile(Path classOutput) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        List<String> options = new ArrayList<>();
+        options.addAll(
+                Arrays.asList(
+                        "-d",
+                        classOutput.toString(),
+                        "-cp",
+                        classpath,
+                        "-Ainfer",
+                        "-Awarns",
+                        "-Xmaxwarns",
+                        "10000"));
+        options.addAll(extraArgs);
+        try (StandardJavaFileManager fileManager =
+                compiler.getStandardFileManager(diagnostics, null, null)) {
+            JavaCompiler.CompilationTask task =
+                    compiler.getTask(
+                            null,
+                            fileManager,
+                            diagnostics,
+                            options,
+                            null,
+                            fileManager.getJavaFileObjectsFromFiles(javaFiles));
+            // The processors are instantiated here, rather than by javac from the classpath of the
+            // program, so that they see the active session.
+            task.setProcessors(createProcessors());
+            task.call();
+        }
+        // With -Awarns, type-checking errors are warnings; an error is a Java error or a crash.
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                throw new UserError("Whole-program inference stopped: " + diagnostic);
+            }
+        }
+    }
+
+    /**
+     * Creates new instances of the processors.
+     *
+     * @return new instances of the processors
+     */
+    private List<Processor> createProcessors() {
+        List<Processor> result = new ArrayList<>(processors.size());
+        for (String processor : processors) {
+            try {
+                result.add(
+                        Class.forName(processor.trim())
+                                .asSubclass(Processor.class)
+                                .getDeclaredConstructor()
+                                .newInstance());
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                throw new UserError(
+                        "Cannot instantiate processor %s;"
+                                + " it must be a fully-qualified name on the classpath: %s",
+                        processor,
+                        e);
+            }
+        }
+        return result;
+    }
+}
@@ -80,8 +80,16 @@ public class WholeProgramInferenceScenes implements WholeProgramInference {
 
     private final WholeProgramInferenceScenesHelper helper;
 
+    /**
+     * Creates a WholeProgramInferenceScenes. If a {@link WholeProgramInferenceSession} is active,
+     * it updates the Scenes of the session; otherwise it reads and writes its own .jaif files.
+     *
+     * @param ignoreNullAssignments whether assignments where the rhs is null should be ignored
+     */
     public WholeProgramInferenceScenes(boolean ignoreNullAssignments) {
-        helper = new WholeProgramInferenceScenesHelper(ignoreNullAssignments);
+        helper =
+                new WholeProgramInferenceScenesHelper(
+                        ignoreNullAssignments, WholeProgramInferenceSession.active());
     }
 
     /**
@@ -454,7 +462,10 @@ public class WholeProgramInferenceScenes implements WholeProgramInference {
                 method.returnType, atf, jaifPath, rhsATM, lhsATM, TypeUseLocation.RETURN);
     }
 
-    /** Write all modified scenes into .jaif files. */
+    /**
+     * Write all modified scenes into .jaif files, unless a {@link WholeProgramInferenceSession} is
+     * active.
+     */
     @Override
     public void saveResults() {
         helper.writeScenesToJaif();
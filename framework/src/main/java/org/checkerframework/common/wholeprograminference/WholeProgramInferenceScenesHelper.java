@@ -15,6 +15,7 @@ import javax.lang.model.element.Element;
 import javax.lang.model.type.MirroredTypesException;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.framework.qual.DefaultFor;
 import org.checkerframework.framework.qual.DefaultQualifier;
 import org.checkerframework.framework.qual.DefaultQualifierInHierarchy;
@@ -52,6 +53,10 @@ import scenelib.annotations.io.IndexFileWriter;
  * #JAIF_FILES_PATH} directory. Having more information in those initial .jaif files means that the
  * precision achieved by the whole-program inference analysis will be better. {@link
  * #writeScenesToJaif} rewrites the initial .jaif files, and may create new ones.
+ *
+ * <p>While a {@link WholeProgramInferenceSession} is active, the Scenes are those of the session,
+ * which all type factories share, and {@link #writeScenesToJaif} does not write them: the session
+ * writes them once, after inference has reached a fixpoint.
  */
 public class WholeProgramInferenceScenesHelper {
 
@@ -59,7 +64,7 @@ public class WholeProgramInferenceScenesHelper {
      * Maps the toString() representation of an ATypeElement and its TypeUseLocation to a set of
      * names of annotations that should not be added to .jaif files for that location.
      */
-    private final Map<Pair<String, TypeUseLocation>, Set<String>> annosToIgnore = new HashMap<>();
+    private final Map<Pair<String, TypeUseLocation>, Set<String>> annosToIgnore;
 
     /**
      * Directory where .jaif files will be written to and read from. This directory is relative to
@@ -72,7 +77,10 @@ public class WholeProgramInferenceScenesHelper {
     private final boolean ignoreNullAssignments;
 
     /** Maps .jaif file paths (Strings) to Scenes. Relative to JAIF_FILES_PATH. */
-    private final Map<String, AScene> scenes = new HashMap<>();
+    private final Map<String, AScene> scenes;
+
+    /** The session whose Scenes this helper updates, or null if it writes its own .jaif files. */
+    private final @Nullable WholeProgramInferenceSession session;
 
     /**
      * Set representing Scenes that were modified since the last time all Scenes were written into
@@ -87,14 +95,38 @@ public class WholeProgramInferenceScenesHelper {
     private final Set<String> modifiedScenes = new HashSet<>();
 
     public WholeProgramInferenceScenesHelper(boolean ignoreNullAssignments) {
+        this(ignoreNullAssignments, null);
+    }
+
+    /**
+     * Creates a helper that updates the Scenes of {@code session}, or its own Scenes if {@code
+     * session} is null.
+     *
+     * @param ignoreNullAssignments whether assignments where the rhs is null should be ignored
+     * @param session the session whose Scenes to update, or null
+     */
+    WholeProgramInferenceScenesHelper(
+            boolean ignoreNullAssignments, @Nullable WholeProgramInferenceSession session) {
         this.ignoreNullAssignments = ignoreNullAssignments;
+        this.session = session;
+        if (session == null) {
+            this.scenes = new HashMap<>();
+            this.annosToIgnore = new HashMap<>();
+        } else {
+            this.scenes = session.scenes;
+            this.annosToIgnore = session.annosToIgnore;
+        }
     }
 
     /**
      * Write all modified scenes into .jaif files. (Scenes are modified by the method {@link
-     * #updateAnnotationSetInScene}.)
+     * #updateAnnotationSetInScene}.) Does not write anything while a session is active.
      */
     public void writeScenesToJaif() {
+        if (session != null) {
+            modifiedScenes.clear();
+            return;
+        }
         // Create .jaif files directory if it doesn't exist already.
         File jaifDir = new File(JAIF_FILES_PATH);
         if (!jaifDir.exists()) {
@@ -102,29 +134,61 @@ public class WholeProgramInferenceScenesHelper {
         }
         // Write scenes into .jaif files.
         for (String jaifPath : modifiedScenes) {
-            try {
-                AScene scene = scenes.get(jaifPath).clone();
-                removeIgnoredAnnosFromScene(scene);
-                new File(jaifPath).delete();
-                scene.prune();
-                if (!scene.isEmpty()) {
-                    // Only write non-empty scenes into .jaif files.
-                    IndexFileWriter.write(scene, new FileWriter(jaifPath));
-                }
-            } catch (IOException e) {
-                throw new UserError(
-                        "Problem while reading file in: "
-                                + jaifPath
-                                + ". Exception message: "
-                                + e.getMessage(),
-                        e);
-            } catch (DefException e) {
-                throw new BugInCF(e);
-            }
+            writeSceneToJaif(jaifPath, scenes.get(jaifPath));
         }
         modifiedScenes.clear();
     }
 
+    /**
+     * Writes a scene, without the annotations that should be ignored, into a .jaif file. Deletes
+     * the file instead if the scene is empty.
+     *
+     * @param jaifPath the .jaif file
+     * @param scene the scene to write
+     */
+    void writeSceneToJaif(String jaifPath, AScene scene) {
+        writeJaif(jaifPath, withoutIgnoredAnnos(scene));
+    }
+
+    /**
+     * Returns a pruned copy of a scene, without the annotations that should be ignored; that is,
+     * the annotations that {@link #writeSceneToJaif} writes.
+     *
+     * @param scene a scene
+     * @return a copy of {@code scene} without the annotations that should be ignored
+     */
+    AScene withoutIgnoredAnnos(AScene scene) {
+        scene = scene.clone();
+        removeIgnoredAnnosFromScene(scene);
+        scene.prune();
+        return scene;
+    }
+
+    /**
+     * Writes a scene into a .jaif file. Deletes the file instead if the scene is empty.
+     *
+     * @param jaifPath the .jaif file
+     * @param scene the scene to write
+     */
+    void writeJaif(String jaifPath, AScene scene) {
+        try {
+            new File(jaifPath).delete();
+            if (!scene.isEmpty()) {
+                // Only write non-empty scenes into .jaif files.
+                IndexFileWriter.write(scene, new FileWriter(jaifPath));
+            }
+        } catch (IOException e) {
+            throw new UserError(
+                    "Problem while reading file in: "
+                            + jaifPath
+                            + ". Exception message: "
+                            + e.getMessage(),
+                    e);
+        } catch (DefException e) {
+            throw new BugInCF(e);
+        }
+    }
+
     /**
      * Returns the String representing the .jaif path of a class given its name.
      *
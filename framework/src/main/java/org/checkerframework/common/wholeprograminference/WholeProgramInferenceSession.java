@@ -0,0 +1,490 @@
+package org.checkerframework.common.wholeprograminference;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreeScanner;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.tree.JCTree;
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.framework.qual.TypeUseLocation;
+import org.checkerframework.framework.type.AnnotatedTypeFactory;
+import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedArrayType;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedExecutableType;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedTypeVariable;
+import org.checkerframework.javacutil.ElementUtils;
+import org.checkerframework.javacutil.Pair;
+import org.checkerframework.javacutil.TreeUtils;
+import scenelib.annotations.Annotation;
+import scenelib.annotations.el.AClass;
+import scenelib.annotations.el.AField;
+import scenelib.annotations.el.AMethod;
+import scenelib.annotations.el.AScene;
+import scenelib.annotations.el.ATypeElement;
+import scenelib.annotations.el.InnerTypeLocation;
+import scenelib.annotations.util.JVMNames;
+
+/**
+ * The state of an in-process whole-program inference, which {@link WholeProgramInferenceDriver}
+ * runs by compiling the same program repeatedly in one JVM.
+ *
+ * <p>Each round mirrors one iteration of {@code infer-and-annotate.sh}, which runs the checker and
+ * then inserts the inferred annotations into the source code:
+ *
+ * <ul>
+ *   <li>The Scenes are kept in memory and shared by the type factories of every compilation, rather
+ *       than being read from and written to .jaif files by each of them.
+ *   <li>At the end of a round, the annotations inferred for fields, method returns, receivers, and
+ *       method parameters are added to the inserted annotations, except at locations that already
+ *       have inserted annotations: the script never changes an annotation that it has inserted,
+ *       because the checker does not infer types for locations that are annotated in the source
+ *       code.
+ *   <li>The inserted annotations are part of the declared types of those locations; see {@link
+ *       #addInferredAnnotations}.
+ *   <li>A top-level class is type-checked only if a class that it depends on changed its inserted
+ *       annotations in the previous round, or if it contributes to the inferred types of a class
+ *       that another type-checked class contributes to; see {@link #finishRound}. The inferred
+ *       types of the classes that it contributes to are inferred anew, so that they do not keep
+ *       the contributions of earlier rounds.
+ * </ul>
+ *
+ * <p>Each round only adds inserted annotations, so the rounds reach a fixpoint.
+ */
+public class WholeProgramInferenceSession {
+
+    /** The session that is active, or null. */
+    private static volatile @Nullable WholeProgramInferenceSession active = null;
+
+    /**
+     * Maps .jaif file paths to the Scenes inferred in the current round; shared by the helpers of
+     * all type factories.
+     */
+    final Map<String, AScene> scenes = new HashMap<>();
+
+    /**
+     * The annotations that should not be written into .jaif files; shared by the helpers of all
+     * type factories. See {@link WholeProgramInferenceScenesHelper}.
+     */
+    final Map<Pair<String, TypeUseLocation>, Set<String>> annosToIgnore = new HashMap<>();
+
+    /**
+     * Maps .jaif file paths to the annotations that have been inserted so far; that is, the
+     * annotations that {@code infer-and-annotate.sh} would have inserted into the source code.
+     */
+    private final Map<String, AScene> inserted = new HashMap<>();
+
+    /** Reads and writes the Scenes of this session. */
+    private final WholeProgramInferenceScenesHelper files =
+            new WholeProgramInferenceScenesHelper(false, this);
+
+    /**
+     * Maps the name of each top-level class to the binary names of the classes whose inserted
+     * annotations can affect its type-checking, and whose inferred types it can contribute to: the
+     * classes it declares, the classes of the elements and of the types it refers to, and their
+     * supertypes.
+     */
+    private final Map<String, Set<String>> dependencies = new HashMap<>();
+
+    /** The binary names of the classes declared by the top-level classes that have been seen. */
+    private final Set<String> programClasses = new HashSet<>();
+
+    /**
+     * The top-level classes to type-check in the current round, or null to type-check all classes.
+     */
+    private @Nullable Set<String> classesToCheck = null;
+
+    /** The top-level classes that have been type-checked in the current round. */
+    private final Set<String> checkedClasses = new HashSet<>();
+
+    /**
+     * Returns the session that is active, or null if whole-program inference writes .jaif files
+     * after each compilation.
+     *
+     * @return the active session, or null
+     */
+    public static @Nullable WholeProgramInferenceSession active() {
+        return active;
+    }
+
+    /**
+     * Makes {@code session} the active session. Type factories that are created afterward use its
+     * Scenes.
+     *
+     * @param session the session to activate, or null to deactivate the active session
+     */
+    static void setActive(@Nullable WholeProgramInferenceSession session) {
+        active = session;
+    }
+
+    /**
+     * Returns true if the top-level class {@code element} should be type-checked in the current
+     * round. Records the dependencies of the class the first time it is seen.
+     *
+     * @param element a top-level class
+     * @param path the path to the declaration of {@code element}
+     * @param elements the element utilities of the compilation
+     * @return true if {@code element} should be type-checked
+     */
+    public synchronized boolean shouldTypeCheck(
+            TypeElement element, TreePath path, Elements elements) {
+        String name = element.getQualifiedName().toString();
+        if (!dependencies.containsKey(name)) {
+            dependencies.put(
+                    name, dependencies((ClassTree) path.getLeaf(), elements, programClasses));
+        }
+        if (classesToCheck != null && !classesToCheck.contains(name)) {
+            return false;
+        }
+        checkedClasses.add(name);
+        return true;
+    }
+
+    /**
+     * Returns the binary names of the classes whose inserted annotations can affect the
+     * type-checking of {@code tree}, and whose inferred types it can contribute to.
+     *
+     * @param tree a top-level class declaration
+     * @param elements the element utilities of the compilation
+     * @param declared a set to which to add the binary names of the classes that {@code tree}
+     *     declares
+     * @return the binary names of the classes that {@code tree} depends on
+     */
+    private static Set<String> dependencies(
+            ClassTree tree, Elements elements, Set<String> declared) {
+        Set<TypeElement> referenced = new LinkedHashSet<>();
+        new TreeScanner<Void, Void>() {
+            @Override
+            public Void visitClass(ClassTree node, Void p) {
+                TypeElement element = TreeUtils.elementFromDeclaration(node);
+                referenced.add(element);
+                declared.add(elements.getBinaryName(element).toString());
+                return super.visitClass(node, p);
+            }
+
+            @Override
+            public Void scan(Tree t, Void p) {
+                if (t instanceof ExpressionTree) {
+                    Element used = TreeUtils.elementFromTree(t);
+                    if (used != null && ElementUtils.enclosingClass(used) != null) {
+                        referenced.add(ElementUtils.enclosingClass(used));
+                    }
+                    TypeMirror type = ((JCTree) t).type;
+                    if (type != null && type.getKind() == TypeKind.DECLARED) {
+                        referenced.add((TypeElement) ((DeclaredType) type).asElement());
+                    }
+                }
+                return super.scan(t, p);
+            }
+        }.scan(tree, null);
+
+        Set<String> result = new HashSet<>();
+        for (TypeElement type : referenced) {
+            result.add(elements.getBinaryName(type).toString());
+            for (TypeElement supertype : ElementUtils.getSuperTypes(type, elements)) {
+                result.add(elements.getBinaryName(supertype).toString());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the annotations inserted so far for the declaration {@code declaration} to {@code
+     * type}, its type with the explicitly-written annotations. Does not change a type that has an
+     * explicit annotation, nor add an annotation in a hierarchy that {@code type} already has one
+     * in.
+     *
+     * @param declaration a method or variable declaration
+     * @param type the type of {@code declaration}, with explicit annotations only
+     * @param atf the type factory that computes {@code type}
+     */
+    public synchronized void addInferredAnnotations(
+            Tree declaration, AnnotatedTypeMirror type, AnnotatedTypeFactory atf) {
+        Element elt = TreeUtils.elementFromTree(declaration);
+        if (elt == null) {
+            return;
+        }
+        switch (elt.getKind()) {
+            case FIELD:
+                {
+                    AClass clazz = getAClass(elt);
+                    AField field =
+                            clazz == null ? null : clazz.fields.get(elt.getSimpleName().toString());
+                    if (field != null) {
+                        addAnnotations(type, field.type, atf);
+                    }
+                    break;
+                }
+            case PARAMETER:
+                {
+                    // Lambda parameters are not among the parameters of their enclosing element.
+                    Element enclosing = elt.getEnclosingElement();
+                    if (!(enclosing instanceof ExecutableElement)) {
+                        break;
+                    }
+                    int index = ((ExecutableElement) enclosing).getParameters().indexOf(elt);
+                    AMethod method = index < 0 ? null : getAMethod((ExecutableElement) enclosing);
+                    AField param = method == null ? null : method.parameters.get(index);
+                    if (param != null) {
+                        addAnnotations(type, param.type, atf);
+                    }
+                    break;
+                }
+            case METHOD:
+            case CONSTRUCTOR:
+                {
+                    AMethod method = getAMethod((ExecutableElement) elt);
+                    if (method == null) {
+                        break;
+                    }
+                    AnnotatedExecutableType methodType = (AnnotatedExecutableType) type;
+                    if (elt.getKind() == ElementKind.METHOD) {
+                        addAnnotations(methodType.getReturnType(), method.returnType, atf);
+                    }
+                    if (methodType.getReceiverType() != null) {
+                        addAnnotations(methodType.getReceiverType(), method.receiver.type, atf);
+                    }
+                    List<AnnotatedTypeMirror> paramTypes = methodType.getParameterTypes();
+                    for (int i = 0; i < paramTypes.size(); i++) {
+                        AField param = method.parameters.get(i);
+                        if (param != null) {
+                            addAnnotations(paramTypes.get(i), param.type, atf);
+                        }
+                    }
+                    break;
+                }
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Returns the inserted annotations of the class that encloses {@code elt}, or null if nothing
+     * has been inserted for it.
+     *
+     * @param elt a member of a class, or a parameter of a method
+     * @return the AClass of the class that encloses {@code elt}, or null
+     */
+    private @Nullable AClass getAClass(Element elt) {
+        TypeElement enclosing = ElementUtils.enclosingClass(elt);
+        if (enclosing == null || ElementUtils.isElementFromByteCode(elt)) {
+            return null;
+        }
+        String className = ((ClassSymbol) enclosing).flatName().toString();
+        AScene scene = inserted.get(files.getJaifPath(className));
+        return scene == null ? null : scene.classes.get(className);
+    }
+
+    /**
+     * Returns the inserted annotations of {@code methodElt}, or null if nothing has been inserted
+     * for it.
+     *
+     * @param methodElt a method or constructor
+     * @return the AMethod of {@code methodElt}, or null
+     */
+    private @Nullable AMethod getAMethod(ExecutableElement methodElt) {
+        AClass clazz = getAClass(methodElt);
+        return clazz == null ? null : clazz.methods.get(JVMNames.getJVMMethodName(methodElt));
+    }
+
+    /**
+     * Adds the annotations of {@code typeElement} that {@code atf} supports to {@code atm}, as
+     * {@code insert-annotations-to-source} would insert them into the source code.
+     *
+     * @param atm the type to which to add annotations
+     * @param typeElement the inferred annotations
+     * @param atf the type factory of {@code atm}
+     */
+    private static void addAnnotations(
+            AnnotatedTypeMirror atm, ATypeElement typeElement, AnnotatedTypeFactory atf) {
+        if (!atm.getExplicitAnnotations().isEmpty()) {
+            return;
+        }
+        Set<String> supported = new HashSet<>();
+        for (Class<? extends java.lang.annotation.Annotation> clazz :
+                atf.getSupportedTypeQualifiers()) {
+            supported.add(clazz.getName());
+        }
+        for (Annotation anno : typeElement.tlAnnotationsHere) {
+            if (!supported.contains(anno.def.name)) {
+                continue;
+            }
+            AnnotationMirror am =
+                    AnnotationConverter.annotationToAnnotationMirror(anno, atf.getProcessingEnv());
+            if (atm.getAnnotationInHierarchy(am) == null) {
+                atm.addAnnotation(am);
+            }
+        }
+        if (atm.getKind() == TypeKind.ARRAY) {
+            AnnotatedArrayType aat = (AnnotatedArrayType) atm;
+            for (ATypeElement innerType : typeElement.innerTypes.values()) {
+                addAnnotations(aat.getComponentType(), innerType, atf);
+            }
+        }
+        if (atm.getKind() == TypeKind.TYPEVAR) {
+            AnnotatedTypeVariable atv = (AnnotatedTypeVariable) atm;
+            for (ATypeElement innerType : typeElement.innerTypes.values()) {
+                addAnnotations(atv.getUpperBound(), innerType, atf);
+            }
+        }
+    }
+
+    /**
+     * Ends a round: inserts the annotations inferred during the round, determines which classes
+     * changed their inserted annotations, and selects the top-level classes to type-check in the
+     * next round.
+     *
+     * <p>The next round type-checks the top-level classes that depend on a changed class. Each of
+     * them contributes to the inferred types of the classes that it depends on: for example, the
+     * arguments of its calls to a method are part of the inferred types of the method's parameters.
+     * So that the inferred types of such a class do not keep stale contributions, they are inferred
+     * anew, which requires type-checking every top-level class that contributes to them.
+     *
+     * @return the binary names of the classes whose inserted annotations changed; empty if the
+     *     inference has reached a fixpoint
+     */
+    synchronized Set<String> finishRound() {
+        Set<String> changed = new TreeSet<>();
+        for (Map.Entry<String, AScene> entry : scenes.entrySet()) {
+            AScene inferred = files.withoutIgnoredAnnos(entry.getValue());
+            AScene scene = inserted.get(entry.getKey());
+            if (scene == null) {
+                scene = new AScene();
+                inserted.put(entry.getKey(), scene);
+            }
+            for (Map.Entry<String, AClass> clazz : inferred.classes.entrySet()) {
+                if (insert(clazz.getValue(), scene.classes.getVivify(clazz.getKey()))) {
+                    changed.add(clazz.getKey());
+                }
+            }
+        }
+
+        Set<String> toCheck = dependents(changed);
+        Set<String> reinferred = new HashSet<>();
+        while (true) {
+            Set<String> contributedTo = new HashSet<>();
+            for (String className : toCheck) {
+                contributedTo.addAll(dependencies.get(className));
+            }
+            contributedTo.retainAll(programClasses);
+            if (!reinferred.addAll(contributedTo)) {
+                break;
+            }
+            toCheck.addAll(dependents(reinferred));
+        }
+        for (AScene scene : scenes.values()) {
+            for (String className : reinferred) {
+                scene.classes.remove(className);
+            }
+        }
+
+        classesToCheck = toCheck;
+        checkedClasses.clear();
+        return changed;
+    }
+
+    /**
+     * Returns the top-level classes that depend on one of {@code classNames}.
+     *
+     * @param classNames binary names of classes
+     * @return the names of the top-level classes that depend on one of {@code classNames}
+     */
+    private Set<String> dependents(Set<String> classNames) {
+        Set<String> result = new HashSet<>();
+        for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+            if (!Collections.disjoint(entry.getValue(), classNames)) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Inserts the annotations inferred for the fields and methods of a class into {@code into}, at
+     * the locations that have no inserted annotations yet.
+     *
+     * @param inferred the annotations inferred for a class
+     * @param into the annotations inserted for the class
+     * @return true if an annotation was inserted
+     */
+    private static boolean insert(AClass inferred, AClass into) {
+        boolean changed = false;
+        for (Map.Entry<String, AField> field : inferred.fields.entrySet()) {
+            changed |= insert(field.getValue().type, into.fields.getVivify(field.getKey()).type);
+        }
+        for (Map.Entry<String, AMethod> method : inferred.methods.entrySet()) {
+            AMethod intoMethod = into.methods.getVivify(method.getKey());
+            changed |= insert(method.getValue().returnType, intoMethod.returnType);
+            changed |= insert(method.getValue().receiver.type, intoMethod.receiver.type);
+            for (Map.Entry<Integer, AField> param : method.getValue().parameters.entrySet()) {
+                changed |=
+                        insert(
+                                param.getValue().type,
+                                intoMethod.parameters.getVivify(param.getKey()).type);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Inserts the annotations of {@code inferred} into {@code into}, and recursively those of its
+     * inner types, unless {@code into} already has annotations.
+     *
+     * @param inferred the annotations inferred for a location
+     * @param into the annotations inserted at the location
+     * @return true if an annotation was inserted
+     */
+    private static boolean insert(ATypeElement inferred, ATypeElement into) {
+        boolean changed = false;
+        if (into.tlAnnotationsHere.isEmpty() && !inferred.tlAnnotationsHere.isEmpty()) {
+            into.tlAnnotationsHere.addAll(inferred.tlAnnotationsHere);
+            changed = true;
+        }
+        for (Map.Entry<InnerTypeLocation, ATypeElement> inner : inferred.innerTypes.entrySet()) {
+            changed |= insert(inner.getValue(), into.innerTypes.getVivify(inner.getKey()));
+        }
+        return changed;
+    }
+
+    /**
+     * Returns the names of the top-level classes that have been type-checked in the current round.
+     *
+     * @return the names of the top-level classes type-checked in the current round
+     */
+    synchronized Set<String> checkedClasses() {
+        return new TreeSet<>(checkedClasses);
+    }
+
+    /**
+     * Writes the inserted annotations of this session into .jaif files in {@link
+     * WholeProgramInferenceScenesHelper#JAIF_FILES_PATH}.
+     */
+    synchronized void writeScenesToJaif() {
+        File jaifDir = new File(WholeProgramInferenceScenesHelper.JAIF_FILES_PATH);
+        if (!jaifDir.exists()) {
+            jaifDir.mkdirs();
+        }
+        for (Map.Entry<String, AScene> entry : inserted.entrySet()) {
+            files.writeJaif(entry.getKey(), entry.getValue());
+        }
+    }
+}
@@ -103,6 +103,17 @@ public abstract class CFAbstractAnalysis<
     /** @return an empty store of the appropriate type */
     public abstract S createEmptyStore(boolean sequentialSemantics);
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The store that has no information is an empty store: every expression has its declared
+     * type.
+     */
+    @Override
+    protected S topStore(S store) {
+        return createEmptyStore(store.sequentialSemantics);
+    }
+
     /** @return an identical copy of the store {@code s}. */
     public abstract S createCopiedStore(S s);
 
@@ -34,6 +34,7 @@ import org.checkerframework.framework.qual.MonotonicQualifier;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.framework.type.GenericAnnotatedTypeFactory;
 import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.framework.util.CopyOnWriteMap;
 import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.BugInCF;
@@ -100,27 +101,63 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
 
     public CFAbstractStore(CFAbstractAnalysis<V, S, ?> analysis, boolean sequentialSemantics) {
         this.analysis = analysis;
-        localVariableValues = new HashMap<>();
+        localVariableValues = newMap();
         thisValue = null;
-        fieldValues = new HashMap<>();
-        methodValues = new HashMap<>();
-        arrayValues = new HashMap<>();
-        classValues = new HashMap<>();
+        fieldValues = newMap();
+        methodValues = newMap();
+        arrayValues = newMap();
+        classValues = newMap();
         this.sequentialSemantics = sequentialSemantics;
     }
 
     /** Copy constructor. */
     protected CFAbstractStore(CFAbstractStore<V, S> other) {
         this.analysis = other.analysis;
-        localVariableValues = new HashMap<>(other.localVariableValues);
+        localVariableValues = copyMap(other.localVariableValues);
         thisValue = other.thisValue;
-        fieldValues = new HashMap<>(other.fieldValues);
-        methodValues = new HashMap<>(other.methodValues);
-        arrayValues = new HashMap<>(other.arrayValues);
-        classValues = new HashMap<>(other.classValues);
+        fieldValues = copyMap(other.fieldValues);
+        methodValues = copyMap(other.methodValues);
+        arrayValues = copyMap(other.arrayValues);
+        classValues = copyMap(other.classValues);
         sequentialSemantics = other.sequentialSemantics;
     }
 
+    /**
+     * Returns true if this store keeps its information in {@link CopyOnWriteMap}s. Copying such a
+     * store takes constant time, because the copy shares the maps of the original until one of
+     * them is modified; this reduces allocation for stores that are copied along many edges of
+     * the control flow graph but rarely changed. Subclasses opt in by overriding this method.
+     *
+     * <p>This method is called from the constructors, so it must not depend on the state of the
+     * store.
+     *
+     * @return true if this store uses copy-on-write maps
+     */
+    protected boolean useCopyOnWriteMaps() {
+        return false;
+    }
+
+    /**
+     * Creates an empty map for the information in this store.
+     *
+     * @param <K> the type of the keys
+     * @return a new empty map
+     */
+    private <K> Map<K, V> newMap() {
+        return useCopyOnWriteMaps() ? new CopyOnWriteMap<>() : new HashMap<>();
+    }
+
+    /**
+     * Copies a map of another store for use in this store.
+     *
+     * @param <K> the type of the keys
+     * @param map the map to copy
+     * @return a map with the same mappings as {@code map}
+     */
+    private <K> Map<K, V> copyMap(Map<K, V> map) {
+        return useCopyOnWriteMaps() ? new CopyOnWriteMap<>(map) : new HashMap<>(map);
+    }
+
     /**
      * Set the abstract value of a method parameter (only adds the information to the store, does
      * not remove any other knowledge). Any previous information is erased; this method should only
@@ -188,7 +225,7 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
         if (!(analysis.checker.hasOption("assumeSideEffectFree")
                 || isSideEffectFree(atypeFactory, method))) {
             // update field values
-            Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
+            Map<FlowExpressions.FieldAccess, V> newFieldValues = newMap();
             for (Entry<FlowExpressions.FieldAccess, V> e : fieldValues.entrySet()) {
                 FlowExpressions.FieldAccess fieldAccess = e.getKey();
                 V otherVal = e.getValue();
@@ -843,21 +880,14 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
     private S upperBound(S other, boolean shouldWiden) {
         S newStore = analysis.createEmptyStore(sequentialSemantics);
 
-        for (Entry<FlowExpressions.LocalVariable, V> e : other.localVariableValues.entrySet()) {
-            // local variables that are only part of one store, but not the
-            // other are discarded, as one of store implicitly contains 'top'
-            // for that variable.
-            FlowExpressions.LocalVariable localVar = e.getKey();
-            if (localVariableValues.containsKey(localVar)) {
-                V otherVal = e.getValue();
-                V thisVal = localVariableValues.get(localVar);
-                V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-
-                if (mergedVal != null) {
-                    newStore.localVariableValues.put(localVar, mergedVal);
-                }
-            }
-        }
+        // local variables that are only part of one store, but not the
+        // other are discarded, as one of store implicitly contains 'top'
+        // for that variable.
+        upperBoundOfMaps(
+                localVariableValues,
+                other.localVariableValues,
+                newStore.localVariableValues,
+                shouldWiden);
 
         // information about the current object
         {
@@ -869,60 +899,59 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
             }
         }
 
-        for (Entry<FlowExpressions.FieldAccess, V> e : other.fieldValues.entrySet()) {
-            // information about fields that are only part of one store, but not
-            // the other are discarded, as one store implicitly contains 'top'
-            // for that field.
-            FlowExpressions.FieldAccess el = e.getKey();
-            if (fieldValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = fieldValues.get(el);
-                V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-                if (mergedVal != null) {
-                    newStore.fieldValues.put(el, mergedVal);
-                }
-            }
-        }
-        for (Entry<FlowExpressions.ArrayAccess, V> e : other.arrayValues.entrySet()) {
-            // information about arrays that are only part of one store, but not
-            // the other are discarded, as one store implicitly contains 'top'
-            // for that array access.
-            FlowExpressions.ArrayAccess el = e.getKey();
-            if (arrayValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = arrayValues.get(el);
-                V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-                if (mergedVal != null) {
-                    newStore.arrayValues.put(el, mergedVal);
-                }
-            }
-        }
-        for (Entry<MethodCall, V> e : other.methodValues.entrySet()) {
-            // information about methods that are only part of one store, but
-            // not the other are discarded, as one store implicitly contains
-            // 'top' for that field.
-            FlowExpressions.MethodCall el = e.getKey();
-            if (methodValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = methodValues.get(el);
-                V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-                if (mergedVal != null) {
-                    newStore.methodValues.put(el, mergedVal);
-                }
-            }
+        // Likewise for fields, arrays, methods, and class names.
+        upperBoundOfMaps(fieldValues, other.fieldValues, newStore.fieldValues, shouldWiden);
+        upperBoundOfMaps(arrayValues, other.arrayValues, newStore.arrayValues, shouldWiden);
+        upperBoundOfMaps(methodValues, other.methodValues, newStore.methodValues, shouldWiden);
+        upperBoundOfMaps(classValues, other.classValues, newStore.classValues, shouldWiden);
+        return newStore;
+    }
+
+    /**
+     * Puts into {@code result} the upper bound of the values of the keys that are in both {@code
+     * mine} and {@code theirs}. Keys that are in only one of them are discarded, as the other map
+     * implicitly contains 'top' for them.
+     *
+     * <p>If both maps share their contents (see {@link CopyOnWriteMap#sharesContentsWith}), their
+     * least upper bound is the map itself, and {@code result} shares it too.
+     *
+     * @param <K> the type of the keys
+     * @param mine a map of this store
+     * @param theirs the corresponding map of the other store
+     * @param result the empty, corresponding map of the new store
+     * @param shouldWiden true if widening should be used instead of the least upper bound
+     */
+    private <K> void upperBoundOfMaps(
+            Map<K, V> mine, Map<K, V> theirs, Map<K, V> result, boolean shouldWiden) {
+        if (!shouldWiden && sharesContents(mine, theirs) && result instanceof CopyOnWriteMap) {
+            ((CopyOnWriteMap<K, V>) result).shareContentsOf((CopyOnWriteMap<K, V>) mine);
+            return;
         }
-        for (Entry<FlowExpressions.ClassName, V> e : other.classValues.entrySet()) {
-            FlowExpressions.ClassName el = e.getKey();
-            if (classValues.containsKey(el)) {
+        for (Entry<K, V> e : theirs.entrySet()) {
+            K key = e.getKey();
+            if (mine.containsKey(key)) {
                 V otherVal = e.getValue();
-                V thisVal = classValues.get(el);
+                V thisVal = mine.get(key);
                 V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
                 if (mergedVal != null) {
-                    newStore.classValues.put(el, mergedVal);
+                    result.put(key, mergedVal);
                 }
             }
         }
-        return newStore;
+    }
+
+    /**
+     * Returns true if {@code m1} and {@code m2} are {@link CopyOnWriteMap}s that share their
+     * contents, and therefore have the same mappings.
+     *
+     * @param m1 a map
+     * @param m2 a map
+     * @return true if {@code m1} and {@code m2} share their contents
+     */
+    private static boolean sharesContents(Map<?, ?> m1, Map<?, ?> m2) {
+        return m1 instanceof CopyOnWriteMap
+                && m2 instanceof CopyOnWriteMap
+                && ((CopyOnWriteMap<?, ?>) m1).sharesContentsWith((CopyOnWriteMap<?, ?>) m2);
     }
 
     private V upperBoundOfValues(V otherVal, V thisVal, boolean shouldWiden) {
@@ -936,34 +965,29 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      * equals predicate.
      */
     protected boolean supersetOf(CFAbstractStore<V, S> other) {
-        for (Entry<FlowExpressions.LocalVariable, V> e : other.localVariableValues.entrySet()) {
-            FlowExpressions.LocalVariable key = e.getKey();
-            if (!localVariableValues.containsKey(key)
-                    || !localVariableValues.get(key).equals(e.getValue())) {
-                return false;
-            }
-        }
-        for (Entry<FlowExpressions.FieldAccess, V> e : other.fieldValues.entrySet()) {
-            FlowExpressions.FieldAccess key = e.getKey();
-            if (!fieldValues.containsKey(key) || !fieldValues.get(key).equals(e.getValue())) {
-                return false;
-            }
-        }
-        for (Entry<FlowExpressions.ArrayAccess, V> e : other.arrayValues.entrySet()) {
-            FlowExpressions.ArrayAccess key = e.getKey();
-            if (!arrayValues.containsKey(key) || !arrayValues.get(key).equals(e.getValue())) {
-                return false;
-            }
-        }
-        for (Entry<MethodCall, V> e : other.methodValues.entrySet()) {
-            FlowExpressions.MethodCall key = e.getKey();
-            if (!methodValues.containsKey(key) || !methodValues.get(key).equals(e.getValue())) {
-                return false;
-            }
+        return mapSupersetOf(localVariableValues, other.localVariableValues)
+                && mapSupersetOf(fieldValues, other.fieldValues)
+                && mapSupersetOf(arrayValues, other.arrayValues)
+                && mapSupersetOf(methodValues, other.methodValues)
+                && mapSupersetOf(classValues, other.classValues);
+    }
+
+    /**
+     * Returns true iff {@code mine} contains all entries of {@code theirs}, using Java equality
+     * for the values. Maps that share their contents are not compared element-wise.
+     *
+     * @param <K> the type of the keys
+     * @param mine a map of this store
+     * @param theirs the corresponding map of the other store
+     * @return true iff {@code mine} contains all entries of {@code theirs}
+     */
+    private static <K, V> boolean mapSupersetOf(Map<K, V> mine, Map<K, V> theirs) {
+        if (sharesContents(mine, theirs)) {
+            return true;
         }
-        for (Entry<FlowExpressions.ClassName, V> e : other.classValues.entrySet()) {
-            FlowExpressions.ClassName key = e.getKey();
-            if (!classValues.containsKey(key) || !classValues.get(key).equals(e.getValue())) {
+        for (Entry<K, V> e : theirs.entrySet()) {
+            K key = e.getKey();
+            if (!mine.containsKey(key) || !mine.get(key).equals(e.getValue())) {
                 return false;
             }
         }
@@ -8,12 +8,23 @@ import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreeScanner;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.dataflow.cfg.CFGBuilder;
 import org.checkerframework.dataflow.cfg.ControlFlowGraph;
@@ -23,6 +34,10 @@ import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.framework.type.AnnotatedTypeMirror;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedArrayType;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedWildcardType;
+import org.checkerframework.javacutil.AnnotationProvider;
+import org.checkerframework.javacutil.Instrumentation;
+import org.checkerframework.javacutil.Instrumentation.Phase;
+import org.checkerframework.javacutil.Pair;
 import org.checkerframework.javacutil.TreeUtils;
 import org.checkerframework.javacutil.UserError;
 
@@ -40,6 +55,29 @@ public class CFCFGBuilder extends CFGBuilder {
             BaseTypeChecker checker,
             AnnotatedTypeFactory factory,
             ProcessingEnvironment env) {
+        return build(root, underlyingAST, checker, factory, env, null);
+    }
+
+    /**
+     * Build the control flow graph of some code, or reuse the graph that another checker built for
+     * the same code.
+     *
+     * @param root the compilation unit that contains the code
+     * @param underlyingAST the code
+     * @param checker the checker whose options and warning keys determine how assertions are
+     *     translated
+     * @param factory the type factory of {@code checker}
+     * @param env the processing environment
+     * @param cache the cache of graphs shared between checkers, or null to always build the graph
+     * @return the control flow graph of {@code underlyingAST}
+     */
+    public static ControlFlowGraph build(
+            CompilationUnitTree root,
+            UnderlyingAST underlyingAST,
+            BaseTypeChecker checker,
+            AnnotatedTypeFactory factory,
+            ProcessingEnvironment env,
+            @Nullable CFGCache cache) {
         boolean assumeAssertionsEnabled = checker.hasOption("assumeAssertionsAreEnabled");
         boolean assumeAssertionsDisabled = checker.hasOption("assumeAssertionsAreDisabled");
         if (assumeAssertionsEnabled && assumeAssertionsDisabled) {
@@ -47,19 +85,86 @@ public class CFCFGBuilder extends CFGBuilder {
                     "Assertions cannot be assumed to be enabled and disabled at the same time.");
         }
 
-        CFTreeBuilder builder = new CFTreeBuilder(env);
-        PhaseOneResult phase1result =
-                new CFCFGTranslationPhaseOne(
-                                builder,
-                                checker,
-                                factory,
-                                assumeAssertionsEnabled,
-                                assumeAssertionsDisabled,
-                                env)
-                        .process(root, underlyingAST);
-        ControlFlowGraph phase2result = CFGTranslationPhaseTwo.process(phase1result);
-        ControlFlowGraph phase3result = CFGTranslationPhaseThree.process(phase2result);
-        return phase3result;
+        Set<AssertTree> assumeAssertionsEnabledFor = null;
+        CFGCache.Key key = null;
+        if (cache != null) {
+            assumeAssertionsEnabledFor =
+                    assumeAssertionsActivatedFor(checker, underlyingAST.getCode());
+            key =
+                    new CFGCache.Key(
+                            underlyingAST,
+                            assumeAssertionsEnabled,
+                            assumeAssertionsDisabled,
+                            assumeAssertionsEnabledFor);
+            CFGCache.Entry entry = cache.get(root, key, factory);
+            if (entry != null) {
+                Instrumentation.count("cfgCacheHits", 1);
+                for (Pair<Tree, Element> artificialTree : entry.artificialTrees) {
+                    factory.setEnclosingElementForArtificialTree(
+                            artificialTree.first, artificialTree.second);
+                }
+                return entry.cfg;
+            }
+        }
+
+        Instrumentation.start(Phase.CFG_CONSTRUCTION);
+        try {
+            CFTreeBuilder builder = new CFTreeBuilder(env);
+            CFCFGTranslationPhaseOne phase1 =
+                    assumeAssertionsEnabledFor == null
+                            ? new CFCFGTranslationPhaseOne(
+                                    builder,
+                                    checker,
+                                    factory,
+                                    assumeAssertionsEnabled,
+                                    assumeAssertionsDisabled,
+                                    env)
+                            : new CFCFGTranslationPhaseOne(
+                                    builder,
+                                    factory,
+                                    assumeAssertionsEnabled,
+                                    assumeAssertionsDisabled,
+                                    assumeAssertionsEnabledFor,
+                                    env);
+            PhaseOneResult phase1result = phase1.process(root, underlyingAST);
+            ControlFlowGraph phase2result = CFGTranslationPhaseTwo.process(phase1result);
+            ControlFlowGraph phase3result = CFGTranslationPhaseThree.process(phase2result);
+            if (cache != null && !phase1.usesAnnotatedTypes) {
+                cache.put(
+                        root,
+                        key,
+                        new CFGCache.Entry(
+                                phase3result,
+                                phase1.artificialTrees,
+                                phase1.declAnnotationLookups.lookups));
+            }
+            return phase3result;
+        } finally {
+            Instrumentation.stop(Phase.CFG_CONSTRUCTION);
+        }
+    }
+
+    /**
+     * Returns the assert statements in some code whose detail message contains an
+     * {@code @AssumeAssertion} string that is relevant to a checker.
+     *
+     * @param checker the checker
+     * @param code the code
+     * @return the assert statements in {@code code} for which {@link
+     *     #assumeAssertionsActivatedForAssertTree} returns true
+     */
+    private static Set<AssertTree> assumeAssertionsActivatedFor(SourceChecker checker, Tree code) {
+        Set<AssertTree> result = Collections.newSetFromMap(new IdentityHashMap<>());
+        new TreeScanner<Void, Void>() {
+            @Override
+            public Void visitAssert(AssertTree tree, Void p) {
+                if (assumeAssertionsActivatedForAssertTree(checker, tree)) {
+                    result.add(tree);
+                }
+                return super.visitAssert(tree, p);
+            }
+        }.scan(code, null);
+        return result;
     }
 
     /*
@@ -84,12 +189,46 @@ public class CFCFGBuilder extends CFGBuilder {
     }
 
     protected static class CFCFGTranslationPhaseOne extends CFGTranslationPhaseOne {
-        /** The associated checker. */
-        protected final BaseTypeChecker checker;
+        /**
+         * The associated checker, which determines the assert statements that are assumed to be
+         * executed. Null if they are given by {@link #assumeAssertionsEnabledFor} instead.
+         */
+        protected final @Nullable BaseTypeChecker checker;
 
         /** Type factory to provide types used during CFG building. */
         protected final AnnotatedTypeFactory factory;
 
+        /**
+         * The assert statements that are assumed to be executed because their detail message
+         * contains a relevant {@code @AssumeAssertion} string. Null if {@link #checker} determines
+         * them instead.
+         */
+        protected final @Nullable Set<AssertTree> assumeAssertionsEnabledFor;
+
+        /** The declaration annotations that the translation looked up in {@link #factory}. */
+        protected final DeclAnnotationRecorder declAnnotationLookups;
+
+        /** The artificial trees created so far, and the method or class that encloses each. */
+        protected final List<Pair<Tree, Element>> artificialTrees = new ArrayList<>();
+
+        /**
+         * Whether the graph contains annotated types from {@link #factory}, which makes it
+         * specific to the checker of the factory.
+         */
+        protected boolean usesAnnotatedTypes = false;
+
+        /**
+         * Creates the first phase of the translation, which assumes that an assert statement is
+         * executed if its detail message contains an {@code @AssumeAssertion} string that is
+         * relevant to {@code checker}.
+         *
+         * @param builder the tree builder
+         * @param checker the checker
+         * @param factory the type factory
+         * @param assumeAssertionsEnabled whether assertions are assumed to be enabled
+         * @param assumeAssertionsDisabled whether assertions are assumed to be disabled
+         * @param env the processing environment
+         */
         public CFCFGTranslationPhaseOne(
                 CFTreeBuilder builder,
                 BaseTypeChecker checker,
@@ -97,14 +236,87 @@ public class CFCFGBuilder extends CFGBuilder {
                 boolean assumeAssertionsEnabled,
                 boolean assumeAssertionsDisabled,
                 ProcessingEnvironment env) {
-            super(builder, factory, assumeAssertionsEnabled, assumeAssertionsDisabled, env);
+            this(
+                    builder,
+                    checker,
+                    factory,
+                    new DeclAnnotationRecorder(factory),
+                    assumeAssertionsEnabled,
+                    assumeAssertionsDisabled,
+                    null,
+                    env);
+        }
+
+        /**
+         * Creates the first phase of the translation.
+         *
+         * @param builder the tree builder
+         * @param factory the type factory
+         * @param assumeAssertionsEnabled whether assertions are assumed to be enabled
+         * @param assumeAssertionsDisabled whether assertions are assumed to be disabled
+         * @param assumeAssertionsEnabledFor the assert statements that are assumed to be executed
+         *     regardless of the two previous arguments
+         * @param env the processing environment
+         */
+        public CFCFGTranslationPhaseOne(
+                CFTreeBuilder builder,
+                AnnotatedTypeFactory factory,
+                boolean assumeAssertionsEnabled,
+                boolean assumeAssertionsDisabled,
+                Set<AssertTree> assumeAssertionsEnabledFor,
+                ProcessingEnvironment env) {
+            this(
+                    builder,
+                    null,
+                    factory,
+                    new DeclAnnotationRecorder(factory),
+                    assumeAssertionsEnabled,
+                    assumeAssertionsDisabled,
+                    assumeAssertionsEnabledFor,
+                    env);
+        }
+
+        /**
+         * Creates the first phase of the translation, which looks annotations up through {@code
+         * declAnnotationLookups}.
+         *
+         * @param builder the tree builder
+         * @param checker the checker, or null if {@code assumeAssertionsEnabledFor} is given
+         * @param factory the type factory
+         * @param declAnnotationLookups records the declaration annotations looked up in {@code
+         *     factory}
+         * @param assumeAssertionsEnabled whether assertions are assumed to be enabled
+         * @param assumeAssertionsDisabled whether assertions are assumed to be disabled
+         * @param assumeAssertionsEnabledFor the assert statements that are assumed to be executed,
+         *     or null if {@code checker} is given
+         * @param env the processing environment
+         */
+        private CFCFGTranslationPhaseOne(
+                CFTreeBuilder builder,
+                @Nullable BaseTypeChecker checker,
+                AnnotatedTypeFactory factory,
+                DeclAnnotationRecorder declAnnotationLookups,
+                boolean assumeAssertionsEnabled,
+                boolean assumeAssertionsDisabled,
+                @Nullable Set<AssertTree> assumeAssertionsEnabledFor,
+                ProcessingEnvironment env) {
+            super(
+                    builder,
+                    declAnnotationLookups,
+                    assumeAssertionsEnabled,
+                    assumeAssertionsDisabled,
+                    env);
             this.checker = checker;
             this.factory = factory;
+            this.declAnnotationLookups = declAnnotationLookups;
+            this.assumeAssertionsEnabledFor = assumeAssertionsEnabledFor;
         }
 
         @Override
         protected boolean assumeAssertionsEnabledFor(AssertTree tree) {
-            if (assumeAssertionsActivatedForAssertTree(checker, tree)) {
+            if (checker != null
+                    ? assumeAssertionsActivatedForAssertTree(checker, tree)
+                    : assumeAssertionsEnabledFor.contains(tree)) {
                 return true;
             }
             return super.assumeAssertionsEnabledFor(tree);
@@ -117,11 +329,13 @@ public class CFCFGBuilder extends CFGBuilder {
             if (enclosingMethod != null) {
                 Element methodElement = TreeUtils.elementFromDeclaration(enclosingMethod);
                 factory.setEnclosingElementForArtificialTree(tree, methodElement);
+                artificialTrees.add(Pair.of(tree, methodElement));
             } else {
                 ClassTree enclosingClass = TreeUtils.enclosingClass(getCurrentPath());
                 if (enclosingClass != null) {
                     Element classElement = TreeUtils.elementFromDeclaration(enclosingClass);
                     factory.setEnclosingElementForArtificialTree(tree, classElement);
+                    artificialTrees.add(Pair.of(tree, classElement));
                 }
             }
         }
@@ -129,6 +343,7 @@ public class CFCFGBuilder extends CFGBuilder {
         @Override
         protected VariableTree createEnhancedForLoopIteratorVariable(
                 MethodInvocationTree iteratorCall, VariableElement variableElement) {
+            usesAnnotatedTypes = true;
             // We do not want to cache flow-insensitive types
             // retrieved during CFG building.
             boolean oldShouldCache = factory.shouldCache;
@@ -153,6 +368,7 @@ public class CFCFGBuilder extends CFGBuilder {
         @Override
         protected VariableTree createEnhancedForLoopArrayVariable(
                 ExpressionTree expression, VariableElement variableElement) {
+            usesAnnotatedTypes = true;
             // We do not want to cache flow-insensitive types
             // retrieved during CFG building.
             boolean oldShouldCache = factory.shouldCache;
@@ -186,4 +402,42 @@ public class CFCFGBuilder extends CFGBuilder {
             return arrayVariable;
         }
     }
+
+    /**
+     * Looks annotations up in a type factory and records the declaration annotations that were
+     * looked up. A type factory may add declaration annotations, such as
+     * {@code @TerminatesExecution} from the stub files of its checker, so a graph can only be
+     * reused by a factory that gives the same answers.
+     */
+    protected static class DeclAnnotationRecorder implements AnnotationProvider {
+
+        /** The type factory to look annotations up in. */
+        private final AnnotatedTypeFactory factory;
+
+        /** Each element and annotation class looked up, and whether the annotation was found. */
+        final Map<Pair<Element, Class<? extends Annotation>>, Boolean> lookups = new HashMap<>();
+
+        /**
+         * Creates a recorder.
+         *
+         * @param factory the type factory to look annotations up in
+         */
+        DeclAnnotationRecorder(AnnotatedTypeFactory factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public @Nullable AnnotationMirror getDeclAnnotation(
+                Element elt, Class<? extends Annotation> anno) {
+            AnnotationMirror result = factory.getDeclAnnotation(elt, anno);
+            lookups.put(Pair.of(elt, anno), result != null);
+            return result;
+        }
+
+        @Override
+        public @Nullable AnnotationMirror getAnnotationMirror(
+                Tree tree, Class<? extends Annotation> target) {
+            return factory.getAnnotationMirror(tree, target);
+        }
+    }
 }
@@ -0,0 +1,195 @@
+package org.checkerframework.framework.flow;
+
+import com.sun.source.tree.AssertTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.Tree;
+import java.lang.annotation.Annotation;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import javax.lang.model.element.Element;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.UnderlyingAST;
+import org.checkerframework.javacutil.AnnotationProvider;
+import org.checkerframework.javacutil.Pair;
+
+/**
+ * A cache of the control flow graphs of one compilation unit, which the checkers of a compound
+ * checker share so that the code of a method is translated into a control flow graph only once.
+ * The root checker owns the cache; see {@link
+ * org.checkerframework.common.basetype.BaseTypeChecker#getCFGCache()}.
+ *
+ * <p>A graph is shared only if it does not depend on the checker that built it. Translating code
+ * depends on the checker in two ways: whether an {@code assert} statement is assumed to be
+ * executed, and the declaration annotations, such as {@code @TerminatesExecution}, that the type
+ * factory of the checker finds, for example in the checker's stub files. So the graphs are keyed
+ * by the underlying AST and by the assert statements that are assumed to be executed, and a graph
+ * is only reused by a type factory that finds the same declaration annotations as the factory that
+ * built it. Graphs that contain annotated types from a type factory, such as the iterator variable
+ * of an enhanced for loop, are not cached.
+ */
+public class CFGCache {
+
+    /** The compilation unit whose graphs are cached, or null if the cache is empty. */
+    private @Nullable CompilationUnitTree root = null;
+
+    /** The cached graphs. */
+    private final Map<Key, Entry> graphs = new HashMap<>();
+
+    /**
+     * Returns the cached graph for some code, or null if there is none that {@code factory} can
+     * reuse.
+     *
+     * @param root the compilation unit that contains the code; if it differs from the compilation
+     *     unit of the cached graphs, the cache is emptied
+     * @param key identifies the code and how it is translated
+     * @param factory the type factory that would reuse the graph
+     * @return the cached graph for {@code key}, or null
+     */
+    /*package-private*/ @Nullable Entry get(
+            CompilationUnitTree root, Key key, AnnotationProvider factory) {
+        if (root != this.root) {
+            graphs.clear();
+            this.root = root;
+            return null;
+        }
+        Entry entry = graphs.get(key);
+        if (entry == null || !entry.findsSameDeclAnnotations(factory)) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Caches the graph for some code.
+     *
+     * @param root the compilation unit that contains the code
+     * @param key identifies the code and how it is translated
+     * @param entry the graph and the artificial trees it contains
+     */
+    /*package-private*/ void put(CompilationUnitTree root, Key key, Entry entry) {
+        if (root == this.root) {
+            graphs.put(key, entry);
+        }
+    }
+
+    /** Empties the cache. */
+    public void clear() {
+        graphs.clear();
+        root = null;
+    }
+
+    /** Identifies the code of a graph and the checker-specific choices made in translating it. */
+    /*package-private*/ static final class Key {
+
+        /** The code of the graph. */
+        private final UnderlyingAST underlyingAST;
+
+        /** Whether assertions are assumed to be enabled. */
+        private final boolean assumeAssertionsEnabled;
+
+        /** Whether assertions are assumed to be disabled. */
+        private final boolean assumeAssertionsDisabled;
+
+        /** The assert statements that are assumed to be executed, in addition to the above. */
+        private final Set<AssertTree> assumeAssertionsEnabledFor;
+
+        /**
+         * Creates a key.
+         *
+         * @param underlyingAST the code of the graph
+         * @param assumeAssertionsEnabled whether assertions are assumed to be enabled
+         * @param assumeAssertionsDisabled whether assertions are assumed to be disabled
+         * @param assumeAssertionsEnabledFor the assert statements that are assumed to be executed
+         */
+        Key(
+                UnderlyingAST underlyingAST,
+                boolean assumeAssertionsEnabled,
+                boolean assumeAssertionsDisabled,
+                Set<AssertTree> assumeAssertionsEnabledFor) {
+            this.underlyingAST = underlyingAST;
+            this.assumeAssertionsEnabled = assumeAssertionsEnabled;
+            this.assumeAssertionsDisabled = assumeAssertionsDisabled;
+            this.assumeAssertionsEnabledFor = assumeAssertionsEnabledFor;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return underlyingAST.equals(other.underlyingAST)
+                    && assumeAssertionsEnabled == other.assumeAssertionsEnabled
+                    && assumeAssertionsDisabled == other.assumeAssertionsDisabled
+                    && assumeAssertionsEnabledFor.equals(other.assumeAssertionsEnabledFor);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(
+                    underlyingAST,
+                    assumeAssertionsEnabled,
+                    assumeAssertionsDisabled,
+                    assumeAssertionsEnabledFor);
+        }
+    }
+
+    /** A cached graph. */
+    /*package-private*/ static final class Entry {
+
+        /** The graph. */
+        final ControlFlowGraph cfg;
+
+        /**
+         * The artificial trees in {@link #cfg} and their enclosing elements, which each type
+         * factory that uses the graph must know.
+         */
+        final List<Pair<Tree, Element>> artificialTrees;
+
+        /**
+         * Each element and declaration annotation class that was looked up while building {@link
+         * #cfg}, and whether the annotation was found.
+         */
+        final Map<Pair<Element, Class<? extends Annotation>>, Boolean> declAnnotationLookups;
+
+        /**
+         * Creates an entry.
+         *
+         * @param cfg the graph
+         * @param artificialTrees the artificial trees in {@code cfg} and their enclosing elements
+         * @param declAnnotationLookups each element and declaration annotation class that was
+         *     looked up while building {@code cfg}, and whether the annotation was found
+         */
+        Entry(
+                ControlFlowGraph cfg,
+                List<Pair<Tree, Element>> artificialTrees,
+                Map<Pair<Element, Class<? extends Annotation>>, Boolean> declAnnotationLookups) {
+            this.cfg = cfg;
+            this.artificialTrees = artificialTrees;
+            this.declAnnotationLookups = declAnnotationLookups;
+        }
+
+        /**
+         * Returns true if {@code factory} finds the same declaration annotations as the factory
+         * that built {@link #cfg}, for the lookups made while building it.
+         *
+         * @param factory a type factory
+         * @return true if {@code factory} can reuse {@link #cfg}
+         */
+        boolean findsSameDeclAnnotations(AnnotationProvider factory) {
+            for (Map.Entry<Pair<Element, Class<? extends Annotation>>, Boolean> lookup :
+                    declAnnotationLookups.entrySet()) {
+                Pair<Element, Class<? extends Annotation>> key = lookup.getKey();
+                boolean found = factory.getDeclAnnotation(key.first, key.second) != null;
+                if (found != lookup.getValue()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
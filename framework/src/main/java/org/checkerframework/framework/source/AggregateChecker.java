@@ -116,6 +116,7 @@ public abstract class AggregateChecker extends SourceChecker {
             checker.typeProcess(element, tree);
             this.errsOnLastExit = checker.errsOnLastExit;
         }
+        writeInstrumentation(element, tree);
     }
 
     @Override
@@ -0,0 +1,789 @@
+package org.checkerframework.framework.source;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreeScanner;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.util.JCDiagnostic;
+import com.sun.tools.javac.util.Log;
+import com.sun.tools.javac.util.Position;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.javacutil.BugInCF;
+import org.checkerframework.javacutil.ElementUtils;
+import org.checkerframework.javacutil.Pair;
+import org.checkerframework.javacutil.TreeUtils;
+import org.checkerframework.javacutil.UserError;
+
+/**
+ * A cache of the diagnostics that a checker issued for each top-level class, which lets the
+ * checker replay the diagnostics instead of type-checking a class that has not changed. It is
+ * enabled by the {@code -AincrementalCacheDir} command-line option.
+ *
+ * <p>An entry is valid if the following are unchanged since the entry was stored:
+ *
+ * <ul>
+ *   <li>the checker, its command-line options, and the version of the Checker Framework,
+ *   <li>the text of the compilation unit that contains the class, and
+ *   <li>the signatures (members, supertypes, and annotations) of the classes that the class refers
+ *       to and of their supertypes, and
+ *   <li>the annotations, such as {@code @DefaultQualifier} and {@code @AnnotatedFor}, of the
+ *       packages of the class and of those classes, and of the enclosing packages of these
+ *       packages.
+ * </ul>
+ *
+ * The contents of stub files are not part of the fingerprint; delete the cache directory after
+ * changing a stub file.
+ *
+ * <p>While a class is type-checked, every diagnostic that javac reports is recorded, whichever
+ * checker issued it and however it was issued. A class is not cached if a diagnostic cannot be
+ * replayed: a diagnostic that was not issued by a checker, such as a crash or a Java error, a
+ * diagnostic in another compilation unit, or a note that a checker printed to standard error.
+ * Options that have effects other than diagnostics, such as {@code -Ainfer}, disable the cache;
+ * see {@link #INCOMPATIBLE_OPTIONS}.
+ *
+ * <p>Each entry is a properties file that is written atomically. During a compilation, a report
+ * that lists which classes were type-checked and why is written to the cache directory. The report
+ * is written one line at a time, because javac does not call {@link
+ * SourceChecker#typeProcessingOver} if a class has errors.
+ */
+class IncrementalCache {
+
+    /** The version of the format of cache entries; change it when the format changes. */
+    private static final String FORMAT_VERSION = "3";
+
+    /**
+     * Options with which the cache is disabled, because type-checking a class with them has
+     * effects that replaying its diagnostics does not have.
+     */
+    static final List<String> INCOMPATIBLE_OPTIONS =
+            Arrays.asList("infer", "warnUnneededSuppressions", "filenames", "flowdotdir", "cfgviz");
+
+    /** The directory of the entries of this checker. */
+    private final Path directory;
+
+    /** The file to which the invalidation report is written. */
+    private final Path reportFile;
+
+    /** The element utilities. */
+    private final Elements elements;
+
+    /** The log to which javac reports diagnostics. */
+    private final Log log;
+
+    /** The fingerprint of the checker and its options. */
+    private final String checkerFingerprint;
+
+    /** The signature hashes of the classes that have been computed, by class. */
+    private final Map<TypeElement, String> signatureHashes = new HashMap<>();
+
+    /** The annotation hashes of the packages that have been computed, by package. */
+    private final Map<PackageElement, String> packageHashes = new HashMap<>();
+
+    /** The number of classes whose diagnostics were replayed. */
+    private int replayed = 0;
+
+    /** The number of classes that were type-checked. */
+    private int checked = 0;
+
+    /** The fingerprint of the class that is being type-checked, or null. */
+    private @Nullable Map<String, String> recordedFingerprint = null;
+
+    /** The diagnostics issued for the class that is being type-checked. */
+    private final List<CachedDiagnostic> recorded = new ArrayList<>();
+
+    /** The source file of the class that is being type-checked. */
+    private @Nullable JavaFileObject recordedSource = null;
+
+    /** The handler that records diagnostics, or null if diagnostics are not being recorded. */
+    private @Nullable Recorder recorder = null;
+
+    /**
+     * Creates a cache for {@code checker} in {@code directory}, creating the directory if
+     * necessary.
+     *
+     * @param directory the cache directory
+     * @param checker the checker whose diagnostics are cached
+     */
+    IncrementalCache(Path directory, SourceChecker checker) {
+        this.elements = checker.getProcessingEnvironment().getElementUtils();
+        this.log =
+                Log.instance(
+                        ((JavacProcessingEnvironment) checker.getProcessingEnvironment())
+                                .getContext());
+        String checkerName = checker.getClass().getName();
+        this.directory = directory.resolve(checkerName);
+        this.reportFile = directory.resolve(checkerName + ".report");
+        try {
+            Files.createDirectories(this.directory);
+        } catch (IOException e) {
+            throw new UserError("Cannot create incremental cache directory %s: %s", directory, e);
+        }
+        try {
+            Files.deleteIfExists(reportFile);
+        } catch (IOException e) {
+            // report() overwrites the file.
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(FORMAT_VERSION).append('\n');
+        sb.append(SourceChecker.getCheckerVersion()).append('\n');
+        sb.append(checkerName).append('\n');
+        // The options of the checker and of its subcheckers, in a deterministic order.
+        Map<String, String> options = new TreeMap<>(checker.getOptions());
+        options.remove("incrementalCacheDir");
+        sb.append(options).append('\n');
+        this.checkerFingerprint = hash(sb.toString());
+    }
+
+    /**
+     * Returns the diagnostics that were cached for a top-level class, each with the tree at which
+     * it is reported or null if it has no position, or returns null if there is no valid entry. If
+     * the result is null, the cache records the diagnostics that javac reports until {@link #store}
+     * is called.
+     *
+     * @param element the top-level class
+     * @param path the path to the top-level class
+     * @return the cached diagnostics for {@code element}, or null if the class must be type-checked
+     */
+    @Nullable List<Pair<CachedDiagnostic, @Nullable Tree>> lookup(
+            TypeElement element, TreePath path) {
+        String className = element.getQualifiedName().toString();
+        Map<String, String> fingerprint = fingerprint(element, path);
+        stopRecording();
+        discard();
+        if (fingerprint == null) {
+            report("checked " + className + ": the source file cannot be read");
+            checked++;
+            return null;
+        }
+
+        Properties entry = readEntry(className);
+        String reason = entry == null ? "no cache entry" : invalidationReason(fingerprint, entry);
+        if (reason == null) {
+            List<CachedDiagnostic> diagnostics = CachedDiagnostic.fromProperties(entry);
+            if (diagnostics != null) {
+                Map<CachedDiagnostic, Tree> trees =
+                        findTrees(path.getCompilationUnit(), diagnostics);
+                int positioned = 0;
+                for (CachedDiagnostic diagnostic : diagnostics) {
+                    if (diagnostic.startPosition != Position.NOPOS) {
+                        positioned++;
+                    }
+                }
+                if (trees.size() == positioned) {
+                    List<Pair<CachedDiagnostic, @Nullable Tree>> result =
+                            new ArrayList<>(diagnostics.size());
+                    for (CachedDiagnostic diagnostic : diagnostics) {
+                        result.add(Pair.of(diagnostic, trees.get(diagnostic)));
+                    }
+                    report("replayed " + className);
+                    replayed++;
+                    return result;
+                }
+            }
+            reason = "the cache entry is corrupt";
+        }
+        report("checked " + className + ": " + reason);
+        checked++;
+        recordedFingerprint = fingerprint;
+        recordedSource = path.getCompilationUnit().getSourceFile();
+        recorder = new Recorder(log);
+        return null;
+    }
+
+    /**
+     * Records a diagnostic that javac reports while a class is type-checked. If the diagnostic
+     * cannot be replayed, the class is not cached.
+     *
+     * @param diagnostic a diagnostic reported for the class that is being type-checked
+     */
+    private void record(JCDiagnostic diagnostic) {
+        if (recordedFingerprint == null) {
+            return;
+        }
+        // Checkers report diagnostics through Messager or Trees, whose diagnostics have codes
+        // such as "compiler.err.proc.messager" and the text of the message as their argument.
+        if (!diagnostic.getCode().endsWith(".proc.messager")
+                || diagnostic.getArgs().length != 1) {
+            discard();
+            return;
+        }
+        String message = String.valueOf(diagnostic.getArgs()[0]);
+        int start = diagnostic.getIntStartPosition();
+        if (start != Position.NOPOS && diagnostic.getSource() != recordedSource) {
+            discard();
+            return;
+        }
+        recorded.add(
+                new CachedDiagnostic(
+                        diagnostic.getKind(), message, start, diagnostic.getIntPosition()));
+    }
+
+    /**
+     * Stops recording diagnostics and stores the diagnostics recorded since the last call to
+     * {@link #lookup} as the entry for a top-level class, unless {@link #discard} was called.
+     *
+     * @param element the top-level class that was type-checked
+     */
+    void store(TypeElement element) {
+        stopRecording();
+        if (recordedFingerprint == null) {
+            return;
+        }
+        Properties entry = new Properties();
+        entry.putAll(recordedFingerprint);
+        CachedDiagnostic.toProperties(recorded, entry);
+        recordedFingerprint = null;
+        recorded.clear();
+
+        Path file = entryFile(element.getQualifiedName().toString());
+        try {
+            Path tmp = Files.createTempFile(directory, "entry", ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                entry.store(out, null);
+            }
+            Files.move(
+                    tmp,
+                    file,
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // The cache is an optimization only; the class is type-checked again next time.
+        }
+    }
+
+    /**
+     * Discards the diagnostics recorded since the last call to {@link #lookup}, because they are
+     * incomplete, so that the class is not cached. For example, the checker crashed.
+     */
+    void discard() {
+        recordedFingerprint = null;
+        recordedSource = null;
+        recorded.clear();
+    }
+
+    /** Stops recording the diagnostics that javac reports. */
+    private void stopRecording() {
+        if (recorder != null) {
+            log.popDiagnosticHandler(recorder);
+            recorder = null;
+        }
+    }
+
+    /** Records each diagnostic that javac reports, and then reports it as usual. */
+    private class Recorder extends Log.DiagnosticHandler {
+        /**
+         * Creates a recorder and installs it as the diagnostic handler of {@code log}.
+         *
+         * @param log the log whose diagnostics to record
+         */
+        Recorder(Log log) {
+            install(log);
+        }
+
+        @Override
+        public void report(JCDiagnostic diagnostic) {
+            record(diagnostic);
+            prev.report(diagnostic);
+        }
+    }
+
+    /**
+     * Appends a line to the invalidation report.
+     *
+     * @param line a line that says whether a class was replayed or type-checked, and why
+     */
+    private void report(String line) {
+        try {
+            Files.write(
+                    reportFile,
+                    Collections.singletonList(line),
+                    StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            // The report is informational only.
+        }
+    }
+
+    /**
+     * Returns a one-line summary of the invalidation report, which lists the classes whose
+     * diagnostics were replayed and the classes that were type-checked with the reason why.
+     *
+     * @return a one-line summary of the invalidation report
+     */
+    String getSummary() {
+        return String.format(
+                "incremental cache: %d classes replayed, %d classes type-checked; see %s",
+                replayed, checked, reportFile);
+    }
+
+    /**
+     * Returns the reason why a cache entry is invalid, or null if it is valid.
+     *
+     * @param fingerprint the current fingerprint of a class
+     * @param entry the cache entry of the class
+     * @return a description of the first difference between the fingerprint and the entry, or null
+     */
+    private static @Nullable String invalidationReason(
+            Map<String, String> fingerprint, Properties entry) {
+        if (!fingerprint.get("checker").equals(entry.getProperty("checker"))) {
+            return "the checker, its options, or the Checker Framework changed";
+        }
+        if (!fingerprint.get("source").equals(entry.getProperty("source"))) {
+            return "the source file changed";
+        }
+        for (Map.Entry<String, String> component : fingerprint.entrySet()) {
+            String key = component.getKey();
+            if (key.startsWith("dependency.")
+                    && !component.getValue().equals(entry.getProperty(key))) {
+                return "the signature of "
+                        + key.substring("dependency.".length())
+                        + (entry.getProperty(key) == null ? " is a new dependency" : " changed");
+            }
+            if (key.startsWith("package.")
+                    && !component.getValue().equals(entry.getProperty(key))) {
+                return "the annotations of package "
+                        + key.substring("package.".length())
+                        + (entry.getProperty(key) == null ? " are a new dependency" : " changed");
+            }
+        }
+        for (String key : entry.stringPropertyNames()) {
+            if ((key.startsWith("dependency.") || key.startsWith("package."))
+                    && !fingerprint.containsKey(key)) {
+                return key.substring(key.indexOf('.') + 1) + " is no longer a dependency";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the cache entry of a class.
+     *
+     * @param className the qualified name of the class
+     * @return the entry, or null if there is none or it cannot be read
+     */
+    private @Nullable Properties readEntry(String className) {
+        Path file = entryFile(className);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        Properties entry = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            entry.load(in);
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the file of the cache entry of a class.
+     *
+     * @param className the qualified name of the class
+     * @return the file of the cache entry of the class
+     */
+    private Path entryFile(String className) {
+        return directory.resolve(className + ".properties");
+    }
+
+    /**
+     * Computes the fingerprint of a top-level class: the hashes of the checker, the source file,
+     * the signature of each class that the class depends on, and the annotations of the packages
+     * of these classes and of their enclosing packages.
+     *
+     * @param element the top-level class
+     * @param path the path to the top-level class
+     * @return the fingerprint of the class, or null if its source file cannot be read
+     */
+    private @Nullable Map<String, String> fingerprint(TypeElement element, TreePath path) {
+        CompilationUnitTree root = path.getCompilationUnit();
+        CharSequence source;
+        try {
+            source = root.getSourceFile().getCharContent(true);
+        } catch (IOException e) {
+            return null;
+        }
+        Map<String, String> fingerprint = new TreeMap<>();
+        fingerprint.put("checker", checkerFingerprint);
+        fingerprint.put("source", hash(element.getQualifiedName() + "\n" + source));
+        Set<PackageElement> packages = new LinkedHashSet<>();
+        addPackages(element, packages);
+        for (TypeElement dependency : dependencies((ClassTree) path.getLeaf(), root)) {
+            fingerprint.put(
+                    "dependency." + dependency.getQualifiedName(), signatureHash(dependency));
+            addPackages(dependency, packages);
+        }
+        for (PackageElement pkg : packages) {
+            fingerprint.put("package." + pkg.getQualifiedName(), packageHash(pkg));
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Returns the top-level classes, other than those declared in {@code root}, whose signatures
+     * can affect the type-checking of {@code tree}: the classes of the elements and of the types
+     * that {@code tree} refers to, and their supertypes.
+     *
+     * @param tree a top-level class declaration
+     * @param root the compilation unit that contains {@code tree}
+     * @return the top-level classes that {@code tree} depends on
+     */
+    private Set<TypeElement> dependencies(ClassTree tree, CompilationUnitTree root) {
+        Set<TypeElement> referenced = new LinkedHashSet<>();
+        referenced.add(TreeUtils.elementFromDeclaration(tree));
+        new TreeScanner<Void, Void>() {
+            @Override
+            public Void scan(Tree t, Void p) {
+                if (t instanceof ExpressionTree) {
+                    Element used = TreeUtils.elementFromTree(t);
+                    if (used != null && ElementUtils.enclosingClass(used) != null) {
+                        referenced.add(ElementUtils.enclosingClass(used));
+                    }
+                    TypeMirror type = ((JCTree) t).type;
+                    if (type != null && type.getKind() == TypeKind.DECLARED) {
+                        referenced.add((TypeElement) ((DeclaredType) type).asElement());
+                    }
+                }
+                return super.scan(t, p);
+            }
+        }.scan(tree, null);
+
+        Set<TypeElement> result = new LinkedHashSet<>();
+        for (TypeElement type : referenced) {
+            addTopLevelClass(type, result, root);
+            for (TypeElement supertype : ElementUtils.getSuperTypes(type, elements)) {
+                addTopLevelClass(supertype, result, root);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the top-level class that encloses {@code type} to {@code classes}, unless it is
+     * declared in {@code root}. Classes declared in {@code root} are covered by the hash of the
+     * text of {@code root}.
+     *
+     * @param type a class
+     * @param classes the set to which to add the top-level class
+     * @param root the compilation unit that is being type-checked
+     */
+    private static void addTopLevelClass(
+            TypeElement type, Set<TypeElement> classes, CompilationUnitTree root) {
+        TypeElement topLevel = type;
+        TypeElement enclosing = ElementUtils.enclosingClass(topLevel.getEnclosingElement());
+        while (enclosing != null) {
+            topLevel = enclosing;
+            enclosing = ElementUtils.enclosingClass(topLevel.getEnclosingElement());
+        }
+        if (((ClassSymbol) topLevel).sourcefile != root.getSourceFile()) {
+            classes.add(topLevel);
+        }
+    }
+
+    /**
+     * Adds the package of {@code type} and the enclosing packages of that package to {@code
+     * packages}. The defaults of a class depend on the annotations of all of these packages,
+     * which are written in their package-info.java files.
+     *
+     * @param type a class
+     * @param packages the set to which to add the packages
+     */
+    private void addPackages(TypeElement type, Set<PackageElement> packages) {
+        PackageElement pkg = ElementUtils.enclosingPackage(type);
+        while (pkg != null && packages.add(pkg)) {
+            pkg = ElementUtils.parentPackage(pkg, elements);
+        }
+    }
+
+    /**
+     * Returns a hash of the declaration annotations of a package.
+     *
+     * @param pkg a package
+     * @return a hash of the annotations of {@code pkg}
+     */
+    private String packageHash(PackageElement pkg) {
+        String hash = packageHashes.get(pkg);
+        if (hash == null) {
+            StringBuilder sb = new StringBuilder();
+            appendDeclaration(pkg, sb);
+            hash = hash(sb.toString());
+            packageHashes.put(pkg, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns a hash of the signature of a class: its supertypes, its annotations, and the
+     * signatures and annotations of its members, including nested classes.
+     *
+     * @param type a top-level class
+     * @return a hash of the signature of {@code type}
+     */
+    private String signatureHash(TypeElement type) {
+        String hash = signatureHashes.get(type);
+        if (hash == null) {
+            StringBuilder sb = new StringBuilder();
+            appendSignature(type, sb);
+            hash = hash(sb.toString());
+            signatureHashes.put(type, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * Appends the signature of a class and of its members to {@code sb}.
+     *
+     * @param type a class
+     * @param sb the string builder to which to append the signature
+     */
+    private static void appendSignature(TypeElement type, StringBuilder sb) {
+        appendDeclaration(type, sb);
+        sb.append(" extends ").append(type.getSuperclass());
+        sb.append(" implements ").append(type.getInterfaces());
+        for (TypeParameterElement typeParameter : type.getTypeParameters()) {
+            appendDeclaration(typeParameter, sb);
+            sb.append(typeParameter.getBounds());
+        }
+        sb.append('\n');
+        for (Element member : type.getEnclosedElements()) {
+            if (member instanceof TypeElement) {
+                appendSignature((TypeElement) member, sb);
+                continue;
+            }
+            appendDeclaration(member, sb);
+            sb.append(member.asType());
+            if (member instanceof ExecutableElement) {
+                ExecutableElement method = (ExecutableElement) member;
+                for (VariableElement parameter : method.getParameters()) {
+                    appendDeclaration(parameter, sb);
+                }
+                sb.append(" default ").append(method.getDefaultValue());
+            } else if (member instanceof VariableElement) {
+                sb.append(" = ").append(((VariableElement) member).getConstantValue());
+            }
+            sb.append('\n');
+        }
+    }
+
+    /**
+     * Appends the kind, modifiers, name, and declaration annotations of an element to {@code sb}.
+     *
+     * @param element an element
+     * @param sb the string builder to which to append the declaration
+     */
+    private static void appendDeclaration(Element element, StringBuilder sb) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            sb.append(annotation).append(' ');
+        }
+        sb.append(element.getModifiers()).append(' ');
+        sb.append(element.getKind()).append(' ');
+        sb.append(element.getSimpleName()).append(' ');
+    }
+
+    /**
+     * Returns the trees in {@code root} at which cached diagnostics are reported. The result maps
+     * a diagnostic to the first tree, in pre-order, that has the start and preferred position of
+     * the diagnostic; javac reports a diagnostic at these positions only. Diagnostics without a
+     * position are not in the result.
+     *
+     * @param root the compilation unit of the diagnostics
+     * @param diagnostics diagnostics that were issued for {@code root}
+     * @return the tree of each diagnostic in {@code diagnostics} that has a tree
+     */
+    private static Map<CachedDiagnostic, Tree> findTrees(
+            CompilationUnitTree root, List<CachedDiagnostic> diagnostics) {
+        Map<Long, List<CachedDiagnostic>> byPosition = new HashMap<>();
+        for (CachedDiagnostic diagnostic : diagnostics) {
+            if (diagnostic.startPosition != Position.NOPOS) {
+                byPosition
+                        .computeIfAbsent(diagnostic.position(), k -> new ArrayList<>())
+                        .add(diagnostic);
+            }
+        }
+        Map<CachedDiagnostic, Tree> result = new HashMap<>();
+        new TreeScanner<Void, Void>() {
+            @Override
+            public Void scan(Tree t, Void p) {
+                if (t == null || byPosition.isEmpty()) {
+                    return null;
+                }
+                JCTree tree = (JCTree) t;
+                List<CachedDiagnostic> found =
+                        byPosition.remove(
+                                CachedDiagnostic.position(
+                                        TreeInfo.getStartPos(tree), tree.getPreferredPosition()));
+                if (found != null) {
+                    for (CachedDiagnostic diagnostic : found) {
+                        result.put(diagnostic, t);
+                    }
+                }
+                return super.scan(t, p);
+            }
+        }.scan(root, null);
+        return result;
+    }
+
+    /**
+     * Returns a hexadecimal SHA-256 hash of a string.
+     *
+     * @param s a string
+     * @return a hexadecimal SHA-256 hash of {@code s}
+     */
+    private static String hash(String s) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new BugInCF("SHA-256 is not supported", e);
+        }
+        byte[] hash = digest.digest(s.getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder(2 * hash.length);
+        for (byte b : hash) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /** A diagnostic in a cache entry. */
+    static class CachedDiagnostic {
+        /** The kind of the diagnostic. */
+        final Diagnostic.Kind kind;
+
+        /** The text of the diagnostic. */
+        final String message;
+
+        /**
+         * The start position of the tree at which the diagnostic is reported, or {@link
+         * Position#NOPOS} if the diagnostic has no position.
+         */
+        final int startPosition;
+
+        /** The preferred position of the tree at which the diagnostic is reported. */
+        final int preferredPosition;
+
+        /**
+         * Creates a cached diagnostic.
+         *
+         * @param kind the kind of the diagnostic
+         * @param message the text of the diagnostic
+         * @param startPosition the start position of the tree of the diagnostic
+         * @param preferredPosition the preferred position of the tree of the diagnostic
+         */
+        CachedDiagnostic(
+                Diagnostic.Kind kind, String message, int startPosition, int preferredPosition) {
+            this.kind = kind;
+            this.message = message;
+            this.startPosition = startPosition;
+            this.preferredPosition = preferredPosition;
+        }
+
+        /**
+         * Returns the start and preferred position of this diagnostic, combined into one number.
+         *
+         * @return the start and preferred position of this diagnostic
+         */
+        long position() {
+            return position(startPosition, preferredPosition);
+        }
+
+        /**
+         * Combines a start and a preferred position into one number.
+         *
+         * @param startPosition a start position
+         * @param preferredPosition a preferred position
+         * @return a number that identifies the two positions
+         */
+        static long position(int startPosition, int preferredPosition) {
+            return ((long) startPosition << 32) | (preferredPosition & 0xffffffffL);
+        }
+
+        /**
+         * Stores diagnostics in a cache entry.
+         *
+         * @param diagnostics the diagnostics
+         * @param entry the cache entry
+         */
+        static void toProperties(List<CachedDiagnostic> diagnostics, Properties entry) {
+            entry.setProperty("diagnostics", Integer.toString(diagnostics.size()));
+            for (int i = 0; i < diagnostics.size(); i++) {
+                CachedDiagnostic diagnostic = diagnostics.get(i);
+                String prefix = "diagnostic." + i + ".";
+                entry.setProperty(prefix + "kind", diagnostic.kind.name());
+                entry.setProperty(prefix + "message", diagnostic.message);
+                entry.setProperty(prefix + "start", Integer.toString(diagnostic.startPosition));
+                entry.setProperty(
+                        prefix + "preferred", Integer.toString(diagnostic.preferredPosition));
+            }
+        }
+
+        /**
+         * Reads the diagnostics of a cache entry.
+         *
+         * @param entry the cache entry
+         * @return the diagnostics of the entry, or null if the entry is malformed
+         */
+        static @Nullable List<CachedDiagnostic> fromProperties(Properties entry) {
+            try {
+                int size = Integer.parseInt(entry.getProperty("diagnostics"));
+                List<CachedDiagnostic> diagnostics = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    String prefix = "diagnostic." + i + ".";
+                    String message = entry.getProperty(prefix + "message");
+                    if (message == null) {
+                        return null;
+                    }
+                    diagnostics.add(
+                            new CachedDiagnostic(
+                                    Diagnostic.Kind.valueOf(entry.getProperty(prefix + "kind")),
+                                    message,
+                                    Integer.parseInt(entry.getProperty(prefix + "start")),
+                                    Integer.parseInt(entry.getProperty(prefix + "preferred"))));
+                }
+                return diagnostics;
+            } catch (IllegalArgumentException | NullPointerException e) {
+                // NumberFormatException is an IllegalArgumentException.
+                return null;
+            }
+        }
+    }
+}
@@ -23,6 +23,11 @@ import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryPoolMXBean;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -62,6 +67,8 @@ import org.checkerframework.javacutil.AnnotationProvider;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.BugInCF;
 import org.checkerframework.javacutil.ElementUtils;
+import org.checkerframework.javacutil.Instrumentation;
+import org.checkerframework.javacutil.Pair;
 import org.checkerframework.javacutil.PluginUtil;
 import org.checkerframework.javacutil.TreeUtils;
 import org.checkerframework.javacutil.UserError;
@@ -237,6 +244,9 @@ import org.checkerframework.javacutil.UserError;
     // Whether to print warnings about stub files that are redundant with the annotations from
     // bytecode.
     "stubWarnIfRedundantWithBytecode",
+    // Directory of a persistent cache of parsed stub files, shared by all compilations that use it
+    // org.checkerframework.framework.stub.StubCache
+    "stubCacheDir",
     // Already listed above, but worth noting again in this section:
     // "useDefaultsForUncheckedCode"
 
@@ -343,7 +353,35 @@ import org.checkerframework.javacutil.UserError;
     "atfCacheSize",
 
     // Sets AnnotatedTypeFactory shouldCache to false
-    "atfDoNotCache"
+    "atfDoNotCache",
+
+    /// Performance options
+
+    // Directory of a cache of the diagnostics of each class; classes that have not changed since
+    // they were cached are not type-checked again.
+    // org.checkerframework.framework.source.IncrementalCache
+    "incrementalCacheDir",
+
+    // Append the time spent in each phase of type-checking, counters, and cache hit rates of each
+    // top-level class and method to a file, as one line of JSON per top-level class.
+    // org.checkerframework.javacutil.Instrumentation
+    "instrumentationFile",
+
+    // Record the store after every n-th node during dataflow analysis, so that the store before
+    // or after a node is looked up rather than computed by replaying its basic block.
+    // -AstoreSnapshots=n; the default is 1.
+    // org.checkerframework.dataflow.analysis.Analysis.setStoreSnapshots
+    "storeSnapshots",
+
+    // The budget of the dataflow analysis of each method: the maximum number of basic blocks it
+    // analyzes and the maximum time in milliseconds it takes. Once a method exceeds the budget,
+    // the analysis gives up precision to finish quickly, and the checker issues a note.
+    // -AdataflowBudgetStrategy=top (the default) forgets all refinements that would change;
+    // -AdataflowBudgetStrategy=widen widens all stores instead.
+    // org.checkerframework.dataflow.analysis.Analysis.setBudget
+    "dataflowMaxIterations",
+    "dataflowMaxMillis",
+    "dataflowBudgetStrategy"
 })
 public abstract class SourceChecker extends AbstractTypeProcessor
         implements CFContext, OptionConfiguration {
@@ -463,6 +501,22 @@ public abstract class SourceChecker extends AbstractTypeProcessor
     /** List of upstream checker names. Includes the current checker. */
     protected List<String> upstreamCheckerNames;
 
+    /**
+     * The cache of the diagnostics of each class, or null if the incrementalCacheDir option is not
+     * given or this checker is run by another checker.
+     */
+    private @Nullable IncrementalCache incrementalCache = null;
+
+    /**
+     * The file to which the records of {@link Instrumentation} are appended, or null if the
+     * instrumentationFile option is not given or this checker is run by another checker. Only the
+     * checker that javac runs writes records, so the records include the times of subcheckers.
+     */
+    private @Nullable Path instrumentationFile = null;
+
+    /** The version of the Checker Framework; computed by {@link #getCheckerVersion}. */
+    private static @Nullable String checkerVersion = null;
+
     @Override
     public final synchronized void init(ProcessingEnvironment env) {
         super.init(env);
@@ -481,6 +535,15 @@ public abstract class SourceChecker extends AbstractTypeProcessor
         if (hasOption("printGitProperties")) {
             printGitProperties();
         }
+
+        if (parentChecker == null) {
+            // The state of Instrumentation is global, so only the checker that javac runs enables
+            // it, which discards everything collected so far. Subcheckers must not reset it.
+            Instrumentation.setEnabled(hasOption("instrumentationFile"));
+            if (hasOption("instrumentationFile")) {
+                instrumentationFile = Paths.get(getOption("instrumentationFile"));
+            }
+        }
     }
 
     /** @return the {@link ProcessingEnvironment} that was supplied to this checker */
@@ -852,6 +915,8 @@ public abstract class SourceChecker extends AbstractTypeProcessor
         if (messager == null) {
             messager = processingEnv.getMessager();
         }
+        // The class is not type-checked to the end, so its diagnostics must not be cached.
+        discardIncrementalResults();
         messager.printMessage(javax.tools.Diagnostic.Kind.ERROR, msg);
     }
 
@@ -915,6 +980,21 @@ public abstract class SourceChecker extends AbstractTypeProcessor
 
         this.visitor = createSourceVisitor();
 
+        if (parentChecker == null && hasOption("incrementalCacheDir")) {
+            String incompatible = null;
+            for (String option : IncrementalCache.INCOMPATIBLE_OPTIONS) {
+                if (incompatible == null && hasOption(option)) {
+                    incompatible = option;
+                }
+            }
+            if (incompatible != null) {
+                message(Kind.WARNING, "-AincrementalCacheDir is ignored with -A%s", incompatible);
+            } else {
+                incrementalCache =
+                        new IncrementalCache(Paths.get(getOption("incrementalCacheDir")), this);
+            }
+        }
+
         // TODO: hack to clear out static caches.
         AnnotationUtils.clear();
     }
@@ -1041,9 +1121,118 @@ public abstract class SourceChecker extends AbstractTypeProcessor
             // Also add possibly deferred diagnostics, which will get published back in
             // AbstractTypeProcessor.
             this.errsOnLastExit = log.nerrors;
+            writeInstrumentation(e, p);
         }
     }
 
+    /**
+     * Appends the record that {@link Instrumentation} collected while type-checking a top-level
+     * class to the file given by the instrumentationFile option. Does nothing if this checker does
+     * not write records. If the file cannot be written, issues a warning and stops writing records.
+     *
+     * @param e the top-level class that was type-checked
+     * @param p the path to {@code e}
+     */
+    void writeInstrumentation(TypeElement e, TreePath p) {
+        Path file = instrumentationFile;
+        if (file == null) {
+            return;
+        }
+        String record =
+                Instrumentation.dump(
+                        p.getCompilationUnit().getSourceFile().getName(),
+                        e.getQualifiedName().toString());
+        try {
+            Files.write(
+                    file,
+                    Collections.singletonList(record),
+                    StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND);
+        } catch (IOException ex) {
+            message(Kind.WARNING, "Cannot write instrumentation file %s: %s", file, ex);
+            instrumentationFile = null;
+        }
+    }
+
+    /**
+     * If the incrementalCacheDir option is given and the class has not changed since its
+     * diagnostics were cached, prints the cached diagnostics and returns true; the class need not
+     * be type-checked. Otherwise, returns false and records the diagnostics that javac reports, by
+     * any checker and through any method, until {@link #storeIncrementalResults} is called.
+     *
+     * @param e the element of the class to type-check
+     * @param p the path to the class to type-check
+     * @return true if the diagnostics of the class were printed from the cache
+     * @see IncrementalCache
+     */
+    protected boolean replayIncrementalResults(TypeElement e, TreePath p) {
+        if (incrementalCache == null || e == null || p == null || visitor == null) {
+            return false;
+        }
+        Context context = ((JavacProcessingEnvironment) processingEnv).getContext();
+        Log log = Log.instance(context);
+        if (log.nerrors > this.errsOnLastExit
+                || p.getCompilationUnit() == previousErrorCompilationUnit) {
+            // The compilation unit has Java errors, so it is not type-checked.
+            incrementalCache.discard();
+            return false;
+        }
+        List<Pair<IncrementalCache.CachedDiagnostic, @Nullable Tree>> cached =
+                incrementalCache.lookup(e, p);
+        if (cached == null) {
+            return false;
+        }
+        for (Pair<IncrementalCache.CachedDiagnostic, @Nullable Tree> diagnostic : cached) {
+            if (diagnostic.second == null) {
+                messager.printMessage(diagnostic.first.kind, diagnostic.first.message);
+            } else {
+                trees.printMessage(
+                        diagnostic.first.kind,
+                        diagnostic.first.message,
+                        diagnostic.second,
+                        p.getCompilationUnit());
+            }
+        }
+        this.errsOnLastExit = log.nerrors;
+        return true;
+    }
+
+    /**
+     * Stores the diagnostics that were issued since the last call to {@link
+     * #replayIncrementalResults} in the incremental cache. Does nothing if some diagnostics cannot
+     * be replayed, for example because the checker crashed.
+     *
+     * @param e the element of the class that was type-checked
+     */
+    protected void storeIncrementalResults(TypeElement e) {
+        if (incrementalCache != null) {
+            incrementalCache.store(e);
+        }
+    }
+
+    /**
+     * Prevents the diagnostics of the class that is being type-checked from being stored in the
+     * incremental cache of the checker that javac runs, because not all of them can be replayed.
+     */
+    private void discardIncrementalResults() {
+        SourceChecker root = this;
+        while (root.parentChecker != null) {
+            root = root.parentChecker;
+        }
+        if (root.incrementalCache != null) {
+            root.incrementalCache.discard();
+        }
+    }
+
+    @Override
+    public void typeProcessingOver() {
+        if (incrementalCache != null) {
+            message(Kind.NOTE, incrementalCache.getSummary());
+        }
+        super.typeProcessingOver();
+    }
+
     /**
      * Issues a warning about any {@code @SuppressWarnings} that isn't used by this checker, but
      * contains a key that would suppress a warning from this checker.
@@ -1276,6 +1465,8 @@ public abstract class SourceChecker extends AbstractTypeProcessor
 
         if (kind == Diagnostic.Kind.NOTE) {
             System.err.println("(NOTE) " + String.format(msgKey, args));
+            // The note is not a diagnostic, so the incremental cache cannot replay it.
+            discardIncrementalResults();
             return;
         }
 
@@ -2305,6 +2496,31 @@ public abstract class SourceChecker extends AbstractTypeProcessor
         return SourceVersion.latest();
     }
 
+    /**
+     * Returns the version of the Checker Framework, from the {@code git.properties} file that is
+     * generated by the build. Caches use it to detect entries written by another version.
+     *
+     * @return the version and commit of the Checker Framework, or "unknown"
+     */
+    public static synchronized String getCheckerVersion() {
+        if (checkerVersion == null) {
+            checkerVersion = "unknown";
+            try (InputStream in = SourceChecker.class.getResourceAsStream("/git.properties")) {
+                if (in != null) {
+                    Properties properties = new Properties();
+                    properties.load(in);
+                    checkerVersion =
+                            properties.getProperty("git.build.version", "unknown")
+                                    + "+"
+                                    + properties.getProperty("git.commit.id", "unknown");
+                }
+            } catch (IOException e) {
+                // Use "unknown".
+            }
+        }
+        return checkerVersion;
+    }
+
     /** Print information about the git repository from which the Checker Framework was compiled. */
     void printGitProperties() {
         if (gitPropertiesPrinted) {
@@ -0,0 +1,296 @@
+package org.checkerframework.framework.stub;
+
+import com.github.javaparser.ast.StubUnit;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.javacutil.BugInCF;
+
+/**
+ * The JDK stub files, parsed once and shared by all {@link StubTypes} in the process: the files of
+ * the annotated JDK and the {@code jdk.astub} files of the checkers.
+ *
+ * <p>A stub file is parsed into a {@link StubUnit}, which does not depend on any checker. Each
+ * {@link StubTypes} processes that AST with its own {@link StubParser}, which keeps only the
+ * annotations that its type factory supports. So a stub file is read and parsed once per process
+ * rather than once per type factory, and the annotated JDK is indexed once. {@link StubParser} does
+ * not modify the AST.
+ *
+ * <p>There is one repository per class loader of the checkers, so that a checker jar that is
+ * loaded again by a long-running process, such as a build daemon, gets a new repository. A stub
+ * file in the file system is parsed again if its modification time or size changed. The parsed
+ * stub files are held softly, so they are garbage-collected rather than exhaust memory. All methods
+ * are thread-safe.
+ */
+final class JdkStubRepository {
+
+    /** The repository of each class loader. */
+    private static final Map<@Nullable ClassLoader, JdkStubRepository> repositories =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    /** The parsed stub files, keyed by their URL. */
+    private final Map<String, CachedStubUnit> stubUnits = new ConcurrentHashMap<>();
+
+    /** The indexes of the annotated JDKs, keyed by the URL of their root. */
+    private final Map<String, JdkIndex> jdkIndexes = new ConcurrentHashMap<>();
+
+    /** Creates an empty repository; use {@link #get(ClassLoader)}. */
+    private JdkStubRepository() {}
+
+    /**
+     * Returns the repository of the stub files that {@code loader} loads.
+     *
+     * @param loader the class loader of a checker or type factory
+     * @return the repository of {@code loader}
+     */
+    static JdkStubRepository get(@Nullable ClassLoader loader) {
+        return repositories.computeIfAbsent(loader, l -> new JdkStubRepository());
+    }
+
+    /**
+     * Returns the parsed stub file at {@code url}. Reads and parses it on the first call for the
+     * URL, and again if the file changed or its parsed form was garbage-collected. Two threads
+     * might both parse a stub file; one of the results is kept.
+     *
+     * @param url the URL of a stub file
+     * @param parser parses the contents of the stub file, for example from its skeleton in a
+     *     {@link StubCache}
+     * @return the parsed stub file
+     * @throws com.github.javaparser.ParseProblemException if the stub file cannot be parsed
+     */
+    StubUnit getStubUnit(URL url, Function<InputStream, StubUnit> parser) {
+        String version = version(url);
+        CachedStubUnit cached = stubUnits.get(url.toString());
+        StubUnit result = cached == null ? null : cached.get(version);
+        if (result == null) {
+            try (InputStream in = openStream(url)) {
+                result = parser.apply(in);
+            } catch (IOException e) {
+                throw new BugInCF("cannot read the stub file " + url, e);
+            }
+            stubUnits.put(url.toString(), new CachedStubUnit(version, result));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the version of the stub file at {@code url}: its modification time and size if it is
+     * in the file system, or the empty string otherwise. A stub file in a jar file is in the jar of
+     * a checker, which is not modified while its class loader is in use.
+     *
+     * @param url the URL of a stub file
+     * @return the version of the stub file, which changes if the file is modified
+     */
+    private static String version(URL url) {
+        if (!url.getProtocol().equals("file")) {
+            return "";
+        }
+        try {
+            Path path = Paths.get(url.toURI());
+            return Files.getLastModifiedTime(path).toMillis() + ":" + Files.size(path);
+        } catch (URISyntaxException | IOException | IllegalArgumentException e) {
+            // The stub file is read again, which reports the problem.
+            return "unknown";
+        }
+    }
+
+    /**
+     * Returns the index of the annotated JDK whose root is {@code root}. Indexes it on the first
+     * call for the root.
+     *
+     * @param root the URL of the root directory of the annotated JDK, in a jar file or in the file
+     *     system
+     * @return the index of the annotated JDK, or null if {@code root} is neither in a jar file nor
+     *     in the file system
+     */
+    @Nullable JdkIndex getJdkIndex(URL root) {
+        String protocol = root.getProtocol();
+        if (!protocol.equals("jar") && !protocol.equals("file")) {
+            return null;
+        }
+        return jdkIndexes.computeIfAbsent(
+                root.toString(),
+                r -> protocol.equals("jar") ? indexJar(root) : indexDirectory(root));
+    }
+
+    /**
+     * Opens a stream to a stub file without caching the connection, so that a jar file is not
+     * kept open.
+     *
+     * @param url the URL of a stub file
+     * @return a stream of the contents of the stub file
+     * @throws IOException if the stub file cannot be read
+     */
+    private static InputStream openStream(URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        connection.setUseCaches(false);
+        return connection.getInputStream();
+    }
+
+    /**
+     * Indexes the annotated JDK in a jar file.
+     *
+     * @param root the URL of the root directory of the annotated JDK in a jar file
+     * @return the index of the annotated JDK
+     */
+    private static JdkIndex indexJar(URL root) {
+        JarURLConnection connection;
+        try {
+            connection = (JarURLConnection) root.openConnection();
+            // disable caching / connection sharing of the low level URLConnection to the Jarfile
+            connection.setDefaultUseCaches(false);
+            connection.setUseCaches(false);
+            connection.connect();
+        } catch (IOException e) {
+            throw new BugInCF("cannot open a connection to the Jar file " + root.getFile(), e);
+        }
+        String prefix = connection.getEntryName();
+        JdkIndex index = new JdkIndex();
+        try (JarFile jarFile = connection.getJarFile()) {
+            for (JarEntry je : jarFile.stream().collect(Collectors.toList())) {
+                String name = je.getName();
+                // filter out directories and non-class files
+                if (je.isDirectory() || !name.endsWith(".java") || !name.startsWith(prefix)) {
+                    continue;
+                }
+                int start = name.indexOf("/share/classes/") + "/share/classes/".length();
+                String className = name.substring(start).replace(".java", "").replace('/', '.');
+                index.add(className, new URL("jar:" + connection.getJarFileURL() + "!/" + name));
+            }
+        } catch (IOException e) {
+            throw new BugInCF("cannot open the Jar file " + root.getFile(), e);
+        }
+        return index;
+    }
+
+    /**
+     * Indexes the annotated JDK in a directory.
+     *
+     * @param root the URL of the root directory of the annotated JDK
+     * @return the index of the annotated JDK
+     */
+    private static JdkIndex indexDirectory(URL root) {
+        Path rootPath;
+        try {
+            rootPath = Paths.get(root.toURI());
+        } catch (URISyntaxException e) {
+            throw new BugInCF("Can parse URL: " + root.toString(), e);
+        }
+        JdkIndex index = new JdkIndex();
+        try (Stream<Path> walk = Files.walk(rootPath)) {
+            List<Path> paths =
+                    walk.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(".java"))
+                            .collect(Collectors.toList());
+            for (Path path : paths) {
+                Path relativePath = rootPath.relativize(path);
+                // 4: /src/<module>/share/classes
+                Path savepath = relativePath.subpath(4, relativePath.getNameCount());
+                String className =
+                        savepath.toString().replace(".java", "").replace(File.separatorChar, '.');
+                index.add(className, path.toUri().toURL());
+            }
+        } catch (IOException e) {
+            throw new BugInCF("File Not Found", e);
+        }
+        return index;
+    }
+
+    /** A parsed stub file, held softly, and the version of the file that was parsed. */
+    private static final class CachedStubUnit {
+
+        /** The version of the stub file; see {@link #version(URL)}. */
+        private final String version;
+
+        /** The parsed stub file. */
+        private final SoftReference<StubUnit> stubUnit;
+
+        /**
+         * Creates a cached stub file.
+         *
+         * @param version the version of the stub file
+         * @param stubUnit the parsed stub file
+         */
+        CachedStubUnit(String version, StubUnit stubUnit) {
+            this.version = version;
+            this.stubUnit = new SoftReference<>(stubUnit);
+        }
+
+        /**
+         * Returns the parsed stub file if it is of the given version.
+         *
+         * @param currentVersion the current version of the stub file
+         * @return the parsed stub file, or null if the file changed or the parsed file was
+         *     garbage-collected
+         */
+        @Nullable StubUnit get(String currentVersion) {
+            return version.equals(currentVersion) ? stubUnit.get() : null;
+        }
+    }
+
+    /** An index of the stub files of an annotated JDK. It is not modified once it is built. */
+    static final class JdkIndex {
+
+        /** Maps the fully-qualified name of each class to the URL of its stub file. */
+        private final Map<String, URL> stubFiles = new HashMap<>();
+
+        /** The URLs of the package-info.java files. */
+        private final List<URL> packageInfoFiles = new ArrayList<>();
+
+        /** Creates an empty index. */
+        private JdkIndex() {}
+
+        /**
+         * Adds a stub file to the index.
+         *
+         * @param className the fully-qualified name of the class in the stub file, or the name of
+         *     its package followed by ".package-info"
+         * @param url the URL of the stub file
+         */
+        private void add(String className, URL url) {
+            stubFiles.put(className, url);
+            if (className.endsWith("package-info")) {
+                packageInfoFiles.add(url);
+            }
+        }
+
+        /**
+         * Returns the URL of the stub file of a class.
+         *
+         * @param className the fully-qualified name of an outermost class
+         * @return the URL of the stub file of the class, or null if it has none
+         */
+        @Nullable URL getStubFile(String className) {
+            return stubFiles.get(className);
+        }
+
+        /**
+         * Returns the URLs of the package-info.java files, which are processed eagerly.
+         *
+         * @return the URLs of the package-info.java files
+         */
+        List<URL> getPackageInfoFiles() {
+            return Collections.unmodifiableList(packageInfoFiles);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package org.checkerframework.framework.stub;
+
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.Position;
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.StubUnit;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.InitializerDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.comments.Comment;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.checkerframework.framework.source.SourceChecker;
+import org.checkerframework.javacutil.BugInCF;
+import org.checkerframework.javacutil.UserError;
+
+/**
+ * An on-disk cache of stub files that is shared by all runs of the Checker Framework that use the
+ * same cache directory. It is enabled by the {@code -AstubCacheDir} command-line option.
+ *
+ * <p>For each stub file, the cache stores a skeleton: the stub file with its comments, method and
+ * constructor bodies, and initializer blocks replaced by spaces, none of which {@link StubParser}
+ * uses. Most of the text of the annotated JDK, whose files are complete JDK source files, is
+ * Javadoc and method bodies, so parsing the skeleton is much faster than parsing the original
+ * file. Line breaks are kept, so every declaration of the skeleton is at the same line and column
+ * as in the original file, and the Stub Parser reports the positions of the original file.
+ *
+ * <p>An entry is keyed by a hash of the contents of the stub file, the version of the Checker
+ * Framework, and {@link #FORMAT_VERSION}, so a changed stub file or a new release never uses a
+ * stale entry. Entries are written atomically, so concurrent compilations can share a directory.
+ * If the cache cannot be read or written, stub files are parsed as without a cache.
+ */
+public class StubCache {
+
+    /** The version of the format of cache entries; change it when {@link #skeleton} changes. */
+    private static final String FORMAT_VERSION = "2";
+
+    /** The suffix of the files in the cache directory. */
+    private static final String SUFFIX = ".astub";
+
+    /** The cache directory. */
+    private final Path directory;
+
+    /** The version of the Checker Framework, which is part of the key of every entry. */
+    private final String checkerVersion;
+
+    /** The number of stub files that were found in the cache. */
+    private int hits = 0;
+
+    /** The number of stub files that were not found in the cache. */
+    private int misses = 0;
+
+    /**
+     * Creates a cache that stores its entries in {@code directory}, creating the directory if
+     * necessary.
+     *
+     * @param directory the cache directory
+     */
+    public StubCache(Path directory) {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UserError("Cannot create stub cache directory %s: %s", directory, e);
+        }
+        this.directory = directory;
+        this.checkerVersion = SourceChecker.getCheckerVersion();
+    }
+
+    /**
+     * Parses a stub file, from its skeleton in the cache if possible. If the skeleton is not in the
+     * cache, the stub file itself is parsed, and its skeleton is computed from the result and
+     * stored in the cache.
+     *
+     * @param stub the contents of a stub file; this method closes it
+     * @return the parsed stub file or skeleton
+     * @throws IOException if {@code stub} cannot be read
+     * @throws ParseProblemException if the stub file cannot be parsed
+     */
+    public StubUnit parse(InputStream stub) throws IOException {
+        byte[] contents;
+        try (InputStream in = stub) {
+            contents = readAll(in);
+        }
+        Path entry = directory.resolve(key(contents) + SUFFIX);
+        if (Files.isRegularFile(entry)) {
+            try {
+                StubUnit result =
+                        StaticJavaParser.parseStubUnit(
+                                new ByteArrayInputStream(Files.readAllBytes(entry)));
+                hits++;
+                return result;
+            } catch (IOException | ParseProblemException e) {
+                // Recompute the entry.
+            }
+        }
+        misses++;
+
+        StubUnit result = StaticJavaParser.parseStubUnit(new ByteArrayInputStream(contents));
+        byte[] skeleton =
+                skeleton(new String(contents, StandardCharsets.UTF_8), result)
+                        .getBytes(StandardCharsets.UTF_8);
+        try {
+            Path tmp = Files.createTempFile(directory, "stub", ".tmp");
+            Files.write(tmp, skeleton);
+            Files.move(
+                    tmp,
+                    entry,
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // The cache is an optimization only; the next run tries again.
+        }
+        return result;
+    }
+
+    /**
+     * Returns a short description of the number of cache hits and misses.
+     *
+     * @return a description of the number of cache hits and misses
+     */
+    public String getStatistics() {
+        return String.format("stub cache %s: %d hits, %d misses", directory, hits, misses);
+    }
+
+    /**
+     * Returns the skeleton of a stub file: the stub file with its comments, method and constructor
+     * bodies, and initializer blocks replaced by spaces. The body of a method is replaced by a
+     * semicolon, and the body of a constructor by an empty block. Line breaks are kept, so that
+     * every remaining character is at the same line and column as in {@code text}. Does not
+     * side-effect {@code stubUnit}.
+     *
+     * @param text the text of a stub file
+     * @param stubUnit the result of parsing {@code text}
+     * @return the text of the skeleton of {@code text}
+     */
+    static String skeleton(String text, StubUnit stubUnit) {
+        char[] chars = text.toCharArray();
+        int[] lineStarts = lineStarts(chars);
+        // Each element is {begin, end, first, last}: the characters from begin to end, inclusive,
+        // are replaced by spaces, except that the first and last are replaced by first and last.
+        List<int[]> blanks = new ArrayList<>();
+        // A StubUnit does not report its compilation units as child nodes, so Node#findAll must
+        // be called on each compilation unit.
+        for (CompilationUnit unit : stubUnit.getCompilationUnits()) {
+            unit.getComment().ifPresent(c -> addBlank(blanks, lineStarts, c, ' ', ' '));
+            for (Comment comment : unit.getAllContainedComments()) {
+                addBlank(blanks, lineStarts, comment, ' ', ' ');
+            }
+            for (MethodDeclaration method : unit.findAll(MethodDeclaration.class)) {
+                method.getBody().ifPresent(b -> addBlank(blanks, lineStarts, b, ';', ' '));
+            }
+            for (ConstructorDeclaration constructor : unit.findAll(ConstructorDeclaration.class)) {
+                addBlank(blanks, lineStarts, constructor.getBody(), '{', '}');
+            }
+            for (InitializerDeclaration initializer : unit.findAll(InitializerDeclaration.class)) {
+                addBlank(blanks, lineStarts, initializer, ' ', ' ');
+            }
+        }
+        // Outer ranges are blanked after the ranges they contain, so that they overwrite them.
+        blanks.sort(Comparator.comparingInt((int[] blank) -> blank[0]).reversed());
+        for (int[] blank : blanks) {
+            for (int i = blank[0]; i <= blank[1]; i++) {
+                if (chars[i] != '\n' && chars[i] != '\r') {
+                    chars[i] = ' ';
+                }
+            }
+            chars[blank[0]] = (char) blank[2];
+            if (blank[1] > blank[0]) {
+                chars[blank[1]] = (char) blank[3];
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Adds the range of {@code node} to the ranges that {@link #skeleton} replaces by spaces.
+     *
+     * @param blanks the ranges to replace
+     * @param lineStarts the offset of the first character of each line
+     * @param node a node whose text is replaced
+     * @param first the replacement of the first character of the node
+     * @param last the replacement of the last character of the node
+     */
+    private static void addBlank(
+            List<int[]> blanks, int[] lineStarts, Node node, char first, char last) {
+        if (node.getBegin().isPresent() && node.getEnd().isPresent()) {
+            blanks.add(
+                    new int[] {
+                        offset(lineStarts, node.getBegin().get()),
+                        offset(lineStarts, node.getEnd().get()),
+                        first,
+                        last
+                    });
+        }
+    }
+
+    /**
+     * Returns the offset of the first character of each line of {@code chars}. Like JavaParser, a
+     * line ends at {@code \n}, {@code \r}, or {@code \r\n}.
+     *
+     * @param chars the text of a stub file
+     * @return the offset of the first character of each line
+     */
+    private static int[] lineStarts(char[] chars) {
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        for (int i = 0; i < chars.length; i++) {
+            char c = chars[i];
+            if (c == '\n' || (c == '\r' && (i + 1 == chars.length || chars[i + 1] != '\n'))) {
+                starts.add(i + 1);
+            }
+        }
+        int[] result = new int[starts.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = starts.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the offset of a position of JavaParser, whose lines and columns start at 1.
+     *
+     * @param lineStarts the offset of the first character of each line
+     * @param position a position in the text
+     * @return the offset of {@code position} in the text
+     */
+    private static int offset(int[] lineStarts, Position position) {
+        return lineStarts[position.line - 1] + position.column - 1;
+    }
+
+    /**
+     * Returns the key of the cache entry for a stub file.
+     *
+     * @param contents the contents of a stub file
+     * @return a hexadecimal hash of {@code contents}, the Checker Framework version, and {@link
+     *     #FORMAT_VERSION}
+     */
+    private String key(byte[] contents) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new BugInCF("SHA-256 is not supported", e);
+        }
+        String version = FORMAT_VERSION + ":" + checkerVersion + ":";
+        digest.update(version.getBytes(StandardCharsets.UTF_8));
+        byte[] hash = digest.digest(contents);
+        StringBuilder sb = new StringBuilder(2 * hash.length);
+        for (byte b : hash) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reads all bytes of {@code in}.
+     *
+     * @param in the stream to read
+     * @return the contents of {@code in}
+     * @throws IOException if {@code in} cannot be read
+     */
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
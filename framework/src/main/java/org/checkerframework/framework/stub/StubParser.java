@@ -53,6 +53,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
@@ -80,6 +81,8 @@ import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.BugInCF;
 import org.checkerframework.javacutil.ElementUtils;
+import org.checkerframework.javacutil.Instrumentation;
+import org.checkerframework.javacutil.Instrumentation.Phase;
 import org.checkerframework.javacutil.Pair;
 
 /**
@@ -433,19 +436,21 @@ public class StubParser {
     }
 
     /**
-     * Parse a stub file and adds annotations to the maps.
+     * Processes an already parsed stub file and side-effects the last two arguments. The AST is not
+     * modified, so it can be shared with other type factories; see {@link JdkStubRepository}.
      *
      * @param filename name of stub file, used only for diagnostic messages
-     * @param inputStream of stub file to parse
+     * @param stubUnit supplies the AST of the stub file; it may throw a {@link
+     *     ParseProblemException}, which is reported as a warning
      * @param atypeFactory AnnotatedtypeFactory to use
      * @param processingEnv ProcessingEnviroment to use
      * @param atypes annotated types from this stub file is added to this map
      * @param declAnnos declaration annotations from this stub file are added to this map
      * @param isJdkAsStub whether or not the stub file is a part of the annotated jdk
      */
-    private static void parse(
+    static void parse(
             String filename,
-            InputStream inputStream,
+            Supplier<StubUnit> stubUnit,
             AnnotatedTypeFactory atypeFactory,
             ProcessingEnvironment processingEnv,
             Map<Element, AnnotatedTypeMirror> atypes,
@@ -454,33 +459,76 @@ public class StubParser {
         StubParser sp =
                 new StubParser(
                         filename, atypeFactory, processingEnv, atypes, declAnnos, isJdkAsStub);
+        Instrumentation.start(Phase.STUB_PARSING);
         try {
-            sp.parseStubUnit(inputStream);
+            if (sp.debugStubParser) {
+                sp.stubDebug(String.format("parsing stub file %s", filename));
+            }
+            sp.setStubUnit(stubUnit.get());
             sp.process();
         } catch (ParseProblemException e) {
-            StringBuilder message =
-                    new StringBuilder(
-                            "exception while parsing stub file "
-                                    + filename
-                                    + ". Encountered problems: ");
-            // Manually build up the message, to get verbose location information.
-            for (Problem p : e.getProblems()) {
-                message.append(p.getVerboseMessage());
-                message.append(LINE_SEPARATOR);
-            }
-            sp.stubWarn(message.toString());
+            sp.warnParseProblems(e);
+        } finally {
+            Instrumentation.stop(Phase.STUB_PARSING);
         }
     }
 
     /**
-     * Delegate to the Stub Parser to parse the stub file to an AST. Subsequently, all work uses the
-     * AST.
+     * Parse a stub file and adds annotations to the maps.
+     *
+     * @param filename name of stub file, used only for diagnostic messages
+     * @param inputStream of stub file to parse
+     * @param atypeFactory AnnotatedtypeFactory to use
+     * @param processingEnv ProcessingEnviroment to use
+     * @param atypes annotated types from this stub file is added to this map
+     * @param declAnnos declaration annotations from this stub file are added to this map
+     * @param isJdkAsStub whether or not the stub file is a part of the annotated jdk
      */
-    private void parseStubUnit(InputStream inputStream) {
-        if (debugStubParser) {
-            stubDebug(String.format("parsing stub file %s", filename));
+    private static void parse(
+            String filename,
+            InputStream inputStream,
+            AnnotatedTypeFactory atypeFactory,
+            ProcessingEnvironment processingEnv,
+            Map<Element, AnnotatedTypeMirror> atypes,
+            Map<String, Set<AnnotationMirror>> declAnnos,
+            boolean isJdkAsStub) {
+        parse(
+                filename,
+                () -> StaticJavaParser.parseStubUnit(inputStream),
+                atypeFactory,
+                processingEnv,
+                atypes,
+                declAnnos,
+                isJdkAsStub);
+    }
+
+    /**
+     * Issues a warning about the problems encountered while parsing the stub file.
+     *
+     * @param e the exception thrown by the parser
+     */
+    private void warnParseProblems(ParseProblemException e) {
+        StringBuilder message =
+                new StringBuilder(
+                        "exception while parsing stub file "
+                                + filename
+                                + ". Encountered problems: ");
+        // Manually build up the message, to get verbose location information.
+        for (Problem p : e.getProblems()) {
+            message.append(p.getVerboseMessage());
+            message.append(LINE_SEPARATOR);
         }
-        stubUnit = StaticJavaParser.parseStubUnit(inputStream);
+        stubWarn(message.toString());
+    }
+
+    /**
+     * Sets the AST of the stub file, which the Stub Parser produced. Subsequently, all work uses
+     * the AST.
+     *
+     * @param stubUnit the AST of the stub file
+     */
+    private void setStubUnit(StubUnit stubUnit) {
+        this.stubUnit = stubUnit;
 
         // getAllStubAnnotations() also modifies importedConstants and importedTypes. This should
         // be refactored to be nicer.
@@ -494,7 +542,7 @@ public class StubParser {
         allStubAnnotations.putAll(annosInPackage(findPackage("java.lang")));
     }
 
-    /** Process {@link #stubUnit}, which is the AST produced by {@link #parseStubUnit}. */
+    /** Process {@link #stubUnit}, which is the AST set by {@link #setStubUnit}. */
     private void process() {
         processStubUnit(this.stubUnit);
     }
@@ -1995,8 +2043,8 @@ public class StubParser {
     /// Issue warnings
     ///
 
-    // The warnings that have been issued so far.
-    private static final Set<String> warnings = new HashSet<>();
+    // The warnings that have been issued so far.  Tests may run several compilations concurrently.
+    private static final Set<String> warnings = Collections.synchronizedSet(new HashSet<>());
 
     /**
      * Issues the given warning about missing elements, only if it has not been previously issued
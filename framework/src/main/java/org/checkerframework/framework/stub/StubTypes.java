@@ -1,31 +1,26 @@
 package org.checkerframework.framework.stub;
 
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.StubUnit;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.JarURLConnection;
-import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.TypeElement;
 import javax.tools.Diagnostic.Kind;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.framework.qual.StubFiles;
 import org.checkerframework.framework.source.SourceChecker;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
@@ -56,15 +51,14 @@ public class StubTypes {
     /** AnnotatedTypeFactory. */
     private final AnnotatedTypeFactory factory;
 
-    /**
-     * Mapping from fully-qualified class name to corresponding JDK stub file from the file system.
-     */
-    private final Map<String, Path> jdkStubFiles = new HashMap<>();
+    /** The JDK stub files, which are shared with the other type factories. */
+    private final JdkStubRepository jdkStubRepository;
 
-    /**
-     * Mapping from fully-qualified class name to corresponding JDK stub files from the checker.jar.
-     */
-    private final Map<String, String> jdkStubFilesJar = new HashMap<>();
+    /** The index of the annotated JDK, or null if the JDK is not parsed. */
+    private JdkStubRepository.@Nullable JdkIndex jdkIndex = null;
+
+    /** The classes whose JDK stub files have been looked up, and parsed if they exist. */
+    private final Set<String> jdkClassesLookedUp = new HashSet<>();
 
     /** Which version number of the annotated JDK should be used? */
     private final String annotatedJdkVersion;
@@ -72,6 +66,9 @@ public class StubTypes {
     /** Should the JDK be parsed? */
     private final boolean shouldParseJdk;
 
+    /** The cache of stub file skeletons, or null if the stubCacheDir option is not given. */
+    private final @Nullable StubCache stubCache;
+
     /** Creates a stub type. */
     public StubTypes(AnnotatedTypeFactory factory) {
         this.factory = factory;
@@ -86,6 +83,10 @@ public class StubTypes {
                 !factory.getContext().getChecker().hasOption("ignorejdkastub")
                         && PluginUtil.getJreVersion() != 8
                         && annotatedJdkVersion.equals("11");
+
+        String stubCacheDir = factory.getContext().getChecker().getOption("stubCacheDir");
+        this.stubCache = stubCacheDir == null ? null : new StubCache(Paths.get(stubCacheDir));
+        this.jdkStubRepository = JdkStubRepository.get(factory.getClass().getClassLoader());
     }
 
     /** @return true if stub files are currently being parsed; otherwise, false. */
@@ -121,31 +122,16 @@ public class StubTypes {
         // 1. jdk.astub
         // Only look in .jar files, and parse it right away.
         if (!checker.hasOption("ignorejdkastub")) {
-            InputStream jdkStubIn = checker.getClass().getResourceAsStream("jdk.astub");
-            if (jdkStubIn != null) {
-                StubParser.parse(
-                        checker.getClass().getResource("jdk.astub").toString(),
-                        jdkStubIn,
-                        factory,
-                        processingEnv,
-                        typesFromStubFiles,
-                        declAnnosFromStubFiles);
+            URL jdkStub = checker.getClass().getResource("jdk.astub");
+            if (jdkStub != null) {
+                parseSharedStubFile(jdkStub, false);
             }
-            String jdkVersionStub = "jdk" + annotatedJdkVersion + ".astub";
-            InputStream jdkVersionStubIn = checker.getClass().getResourceAsStream(jdkVersionStub);
-            if (jdkVersionStubIn != null) {
-                StubParser.parse(
-                        checker.getClass().getResource(jdkVersionStub).toString(),
-                        jdkVersionStubIn,
-                        factory,
-                        processingEnv,
-                        typesFromStubFiles,
-                        declAnnosFromStubFiles);
+            String jdkVersionStubName = "jdk" + annotatedJdkVersion + ".astub";
+            URL jdkVersionStub = checker.getClass().getResource(jdkVersionStubName);
+            if (jdkVersionStub != null) {
+                parseSharedStubFile(jdkVersionStub, false);
             }
             prepJdkStubs();
-            // prepping the Jdk will parse all package-info.java files.  This sets parsing to false,
-            // so re-set it to true.
-            parsing = true;
         }
 
         // Stub files specified via stubs compiler option, stubs system property,
@@ -213,13 +199,15 @@ public class StubTypes {
                                                 : (" or at " + stubPathFull)));
                     }
                 } else {
+                    String filename = stubPath;
                     StubParser.parse(
-                            stubPath,
-                            in,
+                            filename,
+                            () -> parseStubUnit(in, filename),
                             factory,
                             processingEnv,
                             typesFromStubFiles,
-                            declAnnosFromStubFiles);
+                            declAnnosFromStubFiles,
+                            false);
                 }
             }
             for (StubResource resource : stubs) {
@@ -234,14 +222,38 @@ public class StubTypes {
                 }
                 StubParser.parse(
                         resource.getDescription(),
-                        stubStream,
+                        () -> parseStubUnit(stubStream, resource.getDescription()),
                         factory,
                         processingEnv,
                         typesFromStubFiles,
-                        declAnnosFromStubFiles);
+                        declAnnosFromStubFiles,
+                        false);
             }
         }
         parsing = false;
+        if (stubCache != null && checker.hasOption("stubDebug")) {
+            checker.message(Kind.NOTE, stubCache.getStatistics());
+        }
+    }
+
+    /**
+     * Parses a stub file, from its skeleton in the stub cache if the stubCacheDir option is given.
+     *
+     * @param stub the contents of a stub file
+     * @param filename the name of the stub file, used only for diagnostic messages
+     * @return the parsed stub file
+     * @throws com.github.javaparser.ParseProblemException if the stub file cannot be parsed
+     * @see StubCache
+     */
+    private StubUnit parseStubUnit(InputStream stub, String filename) {
+        if (stubCache == null) {
+            return StaticJavaParser.parseStubUnit(stub);
+        }
+        try {
+            return stubCache.parse(stub);
+        } catch (IOException e) {
+            throw new BugInCF("cannot read the stub file " + filename, e);
+        }
     }
 
     /**
@@ -299,12 +311,12 @@ public class StubTypes {
         if (className == null) {
             return;
         }
-        if (jdkStubFiles.containsKey(className)) {
-            parseStubFile(jdkStubFiles.get(className));
-            jdkStubFiles.remove(className);
-        } else if (jdkStubFilesJar.containsKey(className)) {
-            parseJarEntry(jdkStubFilesJar.get(className));
-            jdkStubFilesJar.remove(className);
+        if (jdkIndex == null || !jdkClassesLookedUp.add(className)) {
+            return;
+        }
+        URL stubFile = jdkIndex.getStubFile(className);
+        if (stubFile != null) {
+            parseSharedStubFile(stubFile, true);
         }
     }
 
@@ -332,167 +344,51 @@ public class StubTypes {
     }
 
     /**
-     * Parses the stub file in {@code path}.
-     *
-     * @param path path to file to parse
-     */
-    private void parseStubFile(Path path) {
-        parsing = true;
-        try (FileInputStream jdkStub = new FileInputStream(path.toFile())) {
-            StubParser.parseJdkFileAsStub(
-                    path.toFile().getName(),
-                    jdkStub,
-                    factory,
-                    factory.getProcessingEnv(),
-                    typesFromStubFiles,
-                    declAnnosFromStubFiles);
-        } catch (IOException e) {
-            throw new BugInCF("cannot open the jdk stub file " + path, e);
-        } finally {
-            parsing = false;
-        }
-    }
-
-    /**
-     * Parses the stub file in the given jar entry.
+     * Parses a JDK stub file, whose AST is shared with the other type factories through {@link
+     * JdkStubRepository}.
      *
-     * @param jarEntryName name of the jar entry to parse
+     * @param url the URL of the stub file
+     * @param isJdkAsStub whether the stub file is a part of the annotated JDK, rather than a {@code
+     *     jdk.astub} file
      */
-    private void parseJarEntry(String jarEntryName) {
-        JarURLConnection connection = getJarURLConnectionToJdk();
+    private void parseSharedStubFile(URL url, boolean isJdkAsStub) {
+        String filename = url.toString();
+        boolean wasParsing = parsing;
         parsing = true;
-        try (JarFile jarFile = connection.getJarFile()) {
-            InputStream jdkStub;
-            try {
-                jdkStub = jarFile.getInputStream(jarFile.getJarEntry(jarEntryName));
-            } catch (IOException e) {
-                throw new BugInCF("cannot open the jdk stub file " + jarEntryName, e);
-            }
-            StubParser.parseJdkFileAsStub(
-                    jarEntryName,
-                    jdkStub,
+        try {
+            StubParser.parse(
+                    filename,
+                    () -> jdkStubRepository.getStubUnit(url, in -> parseStubUnit(in, filename)),
                     factory,
                     factory.getProcessingEnv(),
                     typesFromStubFiles,
-                    declAnnosFromStubFiles);
-        } catch (IOException e) {
-            throw new BugInCF("cannot open the Jar file " + connection.getEntryName(), e);
+                    declAnnosFromStubFiles,
+                    isJdkAsStub);
         } catch (BugInCF e) {
-            throw new BugInCF("Exception while parsing " + jarEntryName + ": " + e.getMessage(), e);
+            throw new BugInCF("Exception while parsing " + filename + ": " + e.getMessage(), e);
         } finally {
-            parsing = false;
+            parsing = wasParsing;
         }
     }
 
-    /** @return JarURLConnection to "/jdk*" */
-    private JarURLConnection getJarURLConnectionToJdk() {
-        URL resourceURL = factory.getClass().getResource("/jdk" + annotatedJdkVersion);
-        JarURLConnection connection;
-        try {
-            connection = (JarURLConnection) resourceURL.openConnection();
-
-            // disable caching / connection sharing of the low level URLConnection to the Jarfile
-            connection.setDefaultUseCaches(false);
-            connection.setUseCaches(false);
-
-            connection.connect();
-        } catch (IOException e) {
-            throw new BugInCF(
-                    "cannot open a connection to the Jar file " + resourceURL.getFile(), e);
-        }
-        return connection;
-    }
-
     /**
-     * Walk through the jdk directory and create a mapping, {@link #jdkStubFiles}, from file name to
-     * the class contained with in it. Also, parses all package-info.java files.
+     * Looks up the index of the annotated JDK, which maps each class to its stub file, and parses
+     * all package-info.java files.
      */
     private void prepJdkStubs() {
         if (!shouldParseJdk) {
             return;
         }
         URL resourceURL = factory.getClass().getResource("/jdk" + annotatedJdkVersion);
-        if (resourceURL == null) {
-            if (factory.getContext().getChecker().hasOption("nocheckjdk")) {
-                return;
-            }
-            throw new BugInCF("JDK not found");
-        } else if (resourceURL.getProtocol().contentEquals("jar")) {
-            prepJdkFromJar(resourceURL);
-        } else if (resourceURL.getProtocol().contentEquals("file")) {
-            prepJdkFromFile(resourceURL);
-        } else {
+        jdkIndex = resourceURL == null ? null : jdkStubRepository.getJdkIndex(resourceURL);
+        if (jdkIndex == null) {
             if (factory.getContext().getChecker().hasOption("nocheckjdk")) {
                 return;
             }
             throw new BugInCF("JDK not found");
         }
-    }
-
-    /**
-     * Walk through the jdk directory and create a mapping, {@link #jdkStubFiles}, from file name to
-     * the class contained with in it. Also, parses all package-info.java files.
-     *
-     * @param resourceURL the URL pointing to the JDK directory
-     */
-    private void prepJdkFromFile(URL resourceURL) {
-        Path root;
-        try {
-            root = Paths.get(resourceURL.toURI());
-        } catch (URISyntaxException e) {
-            throw new BugInCF("Can parse URL: " + resourceURL.toString(), e);
-        }
-
-        try (Stream<Path> walk = Files.walk(root)) {
-            List<Path> paths =
-                    walk.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(".java"))
-                            .collect(Collectors.toList());
-            for (Path path : paths) {
-                if (path.getFileName().toString().equals("package-info.java")) {
-                    parseStubFile(path);
-                    continue;
-                }
-                Path relativePath = root.relativize(path);
-                // 4: /src/<module>/share/classes
-                Path savepath = relativePath.subpath(4, relativePath.getNameCount());
-                String s =
-                        savepath.toString().replace(".java", "").replace(File.separatorChar, '.');
-                jdkStubFiles.put(s, path);
-            }
-        } catch (IOException e) {
-            throw new BugInCF("File Not Found", e);
-        }
-    }
-
-    /**
-     * Walk through the jdk directory and create a mapping, {@link #jdkStubFilesJar}, from file name
-     * to the class contained with in it. Also, parses all package-info.java files.
-     *
-     * @param resourceURL the URL pointing to the JDK directory
-     */
-    private void prepJdkFromJar(URL resourceURL) {
-        JarURLConnection connection = getJarURLConnectionToJdk();
-
-        try (JarFile jarFile = connection.getJarFile()) {
-            for (JarEntry je : jarFile.stream().collect(Collectors.toList())) {
-                // filter out directories and non-class files
-                if (!je.isDirectory()
-                        && je.getName().endsWith(".java")
-                        && je.getName().startsWith("jdk" + annotatedJdkVersion)) {
-                    String jeNAme = je.getName();
-                    int index = je.getName().indexOf("/share/classes/");
-                    String shortName =
-                            jeNAme.substring(index + "/share/classes/".length())
-                                    .replace(".java", "")
-                                    .replace('/', '.');
-                    jdkStubFilesJar.put(shortName, jeNAme);
-                    if (jeNAme.endsWith("package-info.java")) {
-                        parseJarEntry(jeNAme);
-                    }
-                }
-            }
-        } catch (IOException e) {
-            throw new BugInCF("cannot open the Jar file " + resourceURL.getFile(), e);
+        for (URL packageInfo : jdkIndex.getPackageInfoFiles()) {
+            parseSharedStubFile(packageInfo, true);
         }
     }
 }
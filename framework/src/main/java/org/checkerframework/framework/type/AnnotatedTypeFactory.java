@@ -53,6 +53,7 @@ import javax.lang.model.type.TypeVariable;
 import javax.lang.model.type.WildcardType;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.common.basetype.BaseTypeVisitor;
@@ -62,6 +63,7 @@ import org.checkerframework.common.reflection.MethodValChecker;
 import org.checkerframework.common.reflection.ReflectionResolver;
 import org.checkerframework.common.wholeprograminference.WholeProgramInference;
 import org.checkerframework.common.wholeprograminference.WholeProgramInferenceScenes;
+import org.checkerframework.common.wholeprograminference.WholeProgramInferenceSession;
 import org.checkerframework.dataflow.qual.SideEffectFree;
 import org.checkerframework.framework.qual.FieldInvariant;
 import org.checkerframework.framework.qual.FromStubFile;
@@ -92,11 +94,14 @@ import org.checkerframework.framework.util.typeinference.DefaultTypeArgumentInfe
 import org.checkerframework.framework.util.typeinference.TypeArgInferenceUtil;
 import org.checkerframework.framework.util.typeinference.TypeArgumentInference;
 import org.checkerframework.javacutil.AnnotationBuilder;
+import org.checkerframework.javacutil.AnnotationMirrorInterner;
 import org.checkerframework.javacutil.AnnotationProvider;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.BugInCF;
 import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ElementUtils;
+import org.checkerframework.javacutil.Instrumentation;
+import org.checkerframework.javacutil.Instrumentation.Phase;
 import org.checkerframework.javacutil.Pair;
 import org.checkerframework.javacutil.TreeUtils;
 import org.checkerframework.javacutil.TypesUtils;
@@ -174,6 +179,12 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     /** performs whole program inference. */
     private WholeProgramInference wholeProgramInference;
 
+    /**
+     * The in-process whole-program inference whose inferred annotations are added to the declared
+     * types of this factory, or null.
+     */
+    private @Nullable WholeProgramInferenceSession inferenceSession;
+
     /**
      * This formatter is used for converting AnnotatedTypeMirrors to Strings. This formatter will be
      * used by all AnnotatedTypeMirrors created by this factory in their toString methods.
@@ -336,7 +347,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
 
     /**
      * Mapping from a member tree to its annotated type; before defaults are applied, just what the
-     * programmer wrote.
+     * programmer wrote. The types are {@link AnnotatedTypeMirror#freeze frozen}.
      */
     protected final Map<Tree, AnnotatedTypeMirror> fromMemberTreeCache;
 
@@ -348,13 +359,41 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
 
     /**
      * Mapping from an Element to its annotated type; before defaults are applied, just what the
-     * programmer wrote.
+     * programmer wrote. The types are {@link AnnotatedTypeMirror#freeze frozen}.
      */
     private final Map<Element, AnnotatedTypeMirror> elementCache;
 
     /** Mapping from an Element to the source Tree of the declaration. */
     private final Map<Element, Tree> elementToTreeCache;
 
+    /**
+     * Mapping from the fingerprint of a receiver type and a member to the type of the member as a
+     * member of the receiver type, before {@link #postAsMemberOf} is applied. See {@link
+     * #getAsMemberOfCache()}.
+     */
+    private final Map<Pair<String, Element>, AnnotatedTypeMirror> asMemberOfCache;
+
+    /**
+     * Mapping from the fingerprints of a type and a supertype to the type as the supertype. See
+     * {@link #getAsSuperCache()}.
+     */
+    private final Map<Pair<String, String>, AnnotatedTypeMirror> asSuperCache;
+
+    /**
+     * The visitor that implements {@link AnnotatedTypes#asSuper} for this factory; created by
+     * {@link #getAsSuperVisitor}.
+     */
+    private @MonotonicNonNull AsSuperVisitor asSuperVisitor = null;
+
+    /** Implements {@link AnnotatedTypeMirror#equals} for the types of this factory. */
+    final EqualityAtmComparer equalityAtmComparer = new EqualityAtmComparer();
+
+    /** Implements {@link AnnotatedTypeMirror#hashCode} for the types of this factory. */
+    final HashcodeAtmVisitor hashcodeAtmVisitor = new HashcodeAtmVisitor();
+
+    /** Implements {@link TypeFromTree#fromTypeTree} for this factory. */
+    final TypeFromTypeTreeVisitor typeFromTypeTreeVisitor = new TypeFromTypeTreeVisitor();
+
     /** Mapping from a Tree to its TreePath. Shared between all instances. */
     private final TreePathCacher treePathCache;
 
@@ -405,12 +444,25 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         this.shouldCache = !checker.hasOption("atfDoNotCache");
         if (shouldCache) {
             int cacheSize = getCacheSize();
-            this.classAndMethodTreeCache = CollectionUtils.createLRUCache(cacheSize);
-            this.fromExpressionTreeCache = CollectionUtils.createLRUCache(cacheSize);
-            this.fromMemberTreeCache = CollectionUtils.createLRUCache(cacheSize);
-            this.fromTypeTreeCache = CollectionUtils.createLRUCache(cacheSize);
-            this.elementCache = CollectionUtils.createLRUCache(cacheSize);
-            this.elementToTreeCache = CollectionUtils.createLRUCache(cacheSize);
+            String cachePrefix = getClass().getSimpleName() + ".";
+            this.classAndMethodTreeCache =
+                    CollectionUtils.createLRUCache(
+                            cacheSize, cachePrefix + "classAndMethodTreeCache");
+            this.fromExpressionTreeCache =
+                    CollectionUtils.createLRUCache(
+                            cacheSize, cachePrefix + "fromExpressionTreeCache");
+            this.fromMemberTreeCache =
+                    CollectionUtils.createLRUCache(cacheSize, cachePrefix + "fromMemberTreeCache");
+            this.fromTypeTreeCache =
+                    CollectionUtils.createLRUCache(cacheSize, cachePrefix + "fromTypeTreeCache");
+            this.elementCache =
+                    CollectionUtils.createLRUCache(cacheSize, cachePrefix + "elementCache");
+            this.elementToTreeCache =
+                    CollectionUtils.createLRUCache(cacheSize, cachePrefix + "elementToTreeCache");
+            this.asMemberOfCache =
+                    CollectionUtils.createLRUCache(cacheSize, cachePrefix + "asMemberOfCache");
+            this.asSuperCache =
+                    CollectionUtils.createLRUCache(cacheSize, cachePrefix + "asSuperCache");
         } else {
             this.classAndMethodTreeCache = null;
             this.fromExpressionTreeCache = null;
@@ -418,6 +470,8 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             this.fromTypeTreeCache = null;
             this.elementCache = null;
             this.elementToTreeCache = null;
+            this.asMemberOfCache = null;
+            this.asSuperCache = null;
         }
 
         this.typeFormatter = createAnnotatedTypeFormatter();
@@ -430,6 +484,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
                     new WholeProgramInferenceScenes(
                             !"NullnessAnnotatedTypeFactory"
                                     .equals(this.getClass().getSimpleName()));
+            inferenceSession = WholeProgramInferenceSession.active();
         }
         ignoreUninferredTypeArguments = !checker.hasOption("conservativeUninferredTypeArguments");
 
@@ -584,6 +639,10 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             fromMemberTreeCache.clear();
             fromTypeTreeCache.clear();
             classAndMethodTreeCache.clear();
+            // The types of members depend on the types of elements in the compilation unit,
+            // which the tree caches above compute.
+            asMemberOfCache.clear();
+            asSuperCache.clear();
 
             // There is no need to clear the following cache, it is limited by cache size and it
             // contents won't change between compilation units.
@@ -608,7 +667,13 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * necessary.
      */
     public QualifierHierarchy createQualifierHierarchy(MultiGraphFactory factory) {
-        return new GraphQualifierHierarchy(factory, null);
+        return new GraphQualifierHierarchy(factory, null) {
+            // This hierarchy does not override the queries, so its tables answer them correctly.
+            @Override
+            protected boolean usesQualifierTables() {
+                return true;
+            }
+        };
     }
 
     /**
@@ -983,37 +1048,45 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         if (tree == null) {
             throw new BugInCF("AnnotatedTypeFactory.getAnnotatedType: null tree");
         }
-        if (shouldCache && classAndMethodTreeCache.containsKey(tree)) {
-            return classAndMethodTreeCache.get(tree).deepCopy();
-        }
+        Instrumentation.start(Phase.TREE_ANNOTATION);
+        try {
+            if (shouldCache) {
+                AnnotatedTypeMirror cached = classAndMethodTreeCache.get(tree);
+                if (cached != null) {
+                    return cached.deepCopy();
+                }
+            }
 
-        AnnotatedTypeMirror type;
-        if (TreeUtils.isClassTree(tree)) {
-            type = fromClass((ClassTree) tree);
-        } else if (tree.getKind() == Tree.Kind.METHOD || tree.getKind() == Tree.Kind.VARIABLE) {
-            type = fromMember(tree);
-        } else if (TreeUtils.isExpressionTree(tree)) {
-            tree = TreeUtils.withoutParens((ExpressionTree) tree);
-            type = fromExpression((ExpressionTree) tree);
-        } else {
-            throw new BugInCF(
-                    "AnnotatedTypeFactory.getAnnotatedType: query of annotated type for tree "
-                            + tree.getKind());
-        }
+            AnnotatedTypeMirror type;
+            if (TreeUtils.isClassTree(tree)) {
+                type = fromClass((ClassTree) tree);
+            } else if (tree.getKind() == Tree.Kind.METHOD || tree.getKind() == Tree.Kind.VARIABLE) {
+                type = fromMember(tree, false);
+            } else if (TreeUtils.isExpressionTree(tree)) {
+                tree = TreeUtils.withoutParens((ExpressionTree) tree);
+                type = fromExpression((ExpressionTree) tree);
+            } else {
+                throw new BugInCF(
+                        "AnnotatedTypeFactory.getAnnotatedType: query of annotated type for tree "
+                                + tree.getKind());
+            }
 
-        addComputedTypeAnnotations(tree, type);
+            addComputedTypeAnnotations(tree, type);
 
-        if (TreeUtils.isClassTree(tree) || tree.getKind() == Tree.Kind.METHOD) {
-            // Don't cache VARIABLE
-            if (shouldCache) {
-                classAndMethodTreeCache.put(tree, type.deepCopy());
+            if (TreeUtils.isClassTree(tree) || tree.getKind() == Tree.Kind.METHOD) {
+                // Don't cache VARIABLE
+                if (shouldCache) {
+                    classAndMethodTreeCache.put(tree, type.deepCopy());
+                }
+            } else {
+                // No caching otherwise
             }
-        } else {
-            // No caching otherwise
-        }
 
-        // System.out.println("AnnotatedTypeFactory::getAnnotatedType(Tree) result: " + type);
-        return type;
+            // System.out.println("AnnotatedTypeFactory::getAnnotatedType(Tree) result: " + type);
+            return type;
+        } finally {
+            Instrumentation.stop(Phase.TREE_ANNOTATION);
+        }
     }
 
     /**
@@ -1114,9 +1187,57 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * @return AnnotatedTypeMirror of the element with explicitly-written and stub file annotations
      */
     public AnnotatedTypeMirror fromElement(Element elt) {
-        if (shouldCache && elementCache.containsKey(elt)) {
-            return elementCache.get(elt).deepCopy();
+        if (shouldCache) {
+            AnnotatedTypeMirror cached = elementCache.get(elt);
+            if (cached != null) {
+                return cached.deepCopy();
+            }
+        }
+        // Caching is disabled if stub files are being parsed, because calls to this
+        // method before the stub files are fully read can return incorrect results.
+        if (shouldCache && !stubTypes.isParsing() && elt.getKind() != ElementKind.PACKAGE) {
+            // The cached type is frozen, so it can be shared with fromMemberTreeCache.
+            AnnotatedTypeMirror type = fromElementUncached(elt, true).freeze();
+            elementCache.put(elt, type);
+            return type.deepCopy();
+        }
+        return fromElementUncached(elt, false);
+    }
+
+    /**
+     * Like {@link #fromElement(Element)}, but returns a {@link AnnotatedTypeMirror#freeze frozen}
+     * type that the caller must not modify. The type is shared with the cache of this factory
+     * rather than copied, so this method is cheaper than {@link #fromElement(Element)} for callers
+     * that only inspect the type.
+     *
+     * @param elt the element
+     * @return a frozen AnnotatedTypeMirror of the element with explicitly-written and stub file
+     *     annotations
+     */
+    public AnnotatedTypeMirror fromElementReadOnly(Element elt) {
+        if (shouldCache) {
+            AnnotatedTypeMirror cached = elementCache.get(elt);
+            if (cached != null) {
+                return cached.freeze();
+            }
+        }
+        AnnotatedTypeMirror type = fromElementUncached(elt, true).freeze();
+        if (shouldCache && !stubTypes.isParsing() && elt.getKind() != ElementKind.PACKAGE) {
+            elementCache.put(elt, type);
         }
+        return type;
+    }
+
+    /**
+     * Computes the result of {@link #fromElement(Element)} without consulting or updating the
+     * element cache.
+     *
+     * @param elt the element
+     * @param readOnly whether the caller does not modify the result, in which case it may be a
+     *     frozen type that is shared with another cache
+     * @return AnnotatedTypeMirror of the element with explicitly-written and stub file annotations
+     */
+    private AnnotatedTypeMirror fromElementUncached(Element elt, boolean readOnly) {
         if (elt.getKind() == ElementKind.PACKAGE) {
             return toAnnotatedType(elt.asType(), false);
         }
@@ -1138,9 +1259,9 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         } else if (decl instanceof ClassTree) {
             type = fromClass((ClassTree) decl);
         } else if (decl instanceof VariableTree) {
-            type = fromMember(decl);
+            type = fromMember(decl, readOnly);
         } else if (decl instanceof MethodTree) {
-            type = fromMember(decl);
+            type = fromMember(decl, readOnly);
         } else if (decl.getKind() == Tree.Kind.TYPE_PARAMETER) {
             type = fromTypeTree(decl);
         } else {
@@ -1150,12 +1271,6 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
                             + " elt: "
                             + elt);
         }
-
-        // Caching is disabled if stub files are being parsed, because calls to this
-        // method before the stub files are fully read can return incorrect results.
-        if (shouldCache && !stubTypes.isParsing()) {
-            elementCache.put(elt, type.deepCopy());
-        }
         return type;
     }
 
@@ -1176,23 +1291,34 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * <p>If a VariableTree is a parameter to a lambda, this method also adds annotations from the
      * declared type of the functional interface and the executable type of its method.
      *
+     * <p>The cache of this method holds frozen types. If {@code readOnly} is true, the cached type
+     * is returned without copying it.
+     *
      * @param tree MethodTree or VariableTree
+     * @param readOnly whether the caller does not modify the result, in which case it is frozen
      * @return AnnotatedTypeMirror with explicit annotations from {@code tree}.
      */
-    private final AnnotatedTypeMirror fromMember(Tree tree) {
+    private final AnnotatedTypeMirror fromMember(Tree tree, boolean readOnly) {
         if (!(tree instanceof MethodTree || tree instanceof VariableTree)) {
             throw new BugInCF(
                     "AnnotatedTypeFactory.fromMember: not a method or variable declaration: "
                             + tree);
         }
-        if (shouldCache && fromMemberTreeCache.containsKey(tree)) {
-            return fromMemberTreeCache.get(tree).deepCopy();
+        if (shouldCache) {
+            AnnotatedTypeMirror cached = fromMemberTreeCache.get(tree);
+            if (cached != null) {
+                return readOnly ? cached : cached.deepCopy();
+            }
         }
         AnnotatedTypeMirror result = TypeFromTree.fromMember(this, tree);
+        if (inferenceSession != null) {
+            inferenceSession.addInferredAnnotations(tree, result, this);
+        }
         if (shouldCache) {
-            fromMemberTreeCache.put(tree, result.deepCopy());
+            fromMemberTreeCache.put(tree, result.freeze());
+            return readOnly ? result : result.deepCopy();
         }
-        return result;
+        return readOnly ? result.freeze() : result;
     }
 
     /**
@@ -1212,8 +1338,11 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * @see TypeFromExpressionVisitor
      */
     private AnnotatedTypeMirror fromExpression(ExpressionTree tree) {
-        if (shouldCache && fromExpressionTreeCache.containsKey(tree)) {
-            return fromExpressionTreeCache.get(tree).deepCopy();
+        if (shouldCache) {
+            AnnotatedTypeMirror cached = fromExpressionTreeCache.get(tree);
+            if (cached != null) {
+                return cached.deepCopy();
+            }
         }
 
         AnnotatedTypeMirror result = TypeFromTree.fromExpression(this, tree);
@@ -1240,8 +1369,11 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * @return the (partially) annotated type of the type in the AST
      */
     /*package private*/ final AnnotatedTypeMirror fromTypeTree(Tree tree) {
-        if (shouldCache && fromTypeTreeCache.containsKey(tree)) {
-            return fromTypeTreeCache.get(tree).deepCopy();
+        if (shouldCache) {
+            AnnotatedTypeMirror cached = fromTypeTreeCache.get(tree);
+            if (cached != null) {
+                return cached.deepCopy();
+            }
         }
 
         AnnotatedTypeMirror result = TypeFromTree.fromTypeTree(this, tree);
@@ -1327,6 +1459,44 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         }
     }
 
+    /**
+     * Returns the cache of {@link AnnotatedTypes#asMemberOf}, which maps the {@link
+     * org.checkerframework.framework.util.AnnotatedTypeFingerprint fingerprint} of a receiver type
+     * and a member to the type of the member as a member of the receiver type, before {@link
+     * #postAsMemberOf} is applied. The cache is cleared when the compilation unit changes.
+     *
+     * @return the cache of {@link AnnotatedTypes#asMemberOf}, or null if types must not be cached
+     *     now
+     */
+    public @Nullable Map<Pair<String, Element>, AnnotatedTypeMirror> getAsMemberOfCache() {
+        return shouldCache && !stubTypes.isParsing() ? asMemberOfCache : null;
+    }
+
+    /**
+     * Returns the cache of {@link AnnotatedTypes#asSuper}, which maps the {@link
+     * org.checkerframework.framework.util.AnnotatedTypeFingerprint fingerprints} of a type and a
+     * supertype to the type as the supertype. The cache is cleared when the compilation unit
+     * changes.
+     *
+     * @return the cache of {@link AnnotatedTypes#asSuper}, or null if types must not be cached now
+     */
+    public @Nullable Map<Pair<String, String>, AnnotatedTypeMirror> getAsSuperCache() {
+        return shouldCache && !stubTypes.isParsing() ? asSuperCache : null;
+    }
+
+    /**
+     * Returns the visitor that implements {@link AnnotatedTypes#asSuper} for this factory. Each
+     * factory has its own visitor, because the visitor keeps state while it visits a type.
+     *
+     * @return the visitor that implements {@link AnnotatedTypes#asSuper} for this factory
+     */
+    public AsSuperVisitor getAsSuperVisitor() {
+        if (asSuperVisitor == null) {
+            asSuperVisitor = new AsSuperVisitor(this);
+        }
+        return asSuperVisitor;
+    }
+
     /**
      * A callback method for the AnnotatedTypeFactory subtypes to customize
      * AnnotatedTypes.asMemberOf(). Overriding methods should merely change the annotations on the
@@ -2441,7 +2611,8 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * @param type the canonical annotation
      */
     protected void addAliasedAnnotation(String aliasName, AnnotationMirror type) {
-        aliases.put(aliasName, new Alias(aliasName, type, false, null, null));
+        AnnotationMirror canonical = AnnotationMirrorInterner.instance(elements).intern(type);
+        aliases.put(aliasName, new Alias(aliasName, canonical, false, null, null));
     }
 
     /**
@@ -2527,6 +2698,9 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * <p>A canonical annotation is the internal annotation that will be used by the Checker
      * Framework in the aliased annotation's place.
      *
+     * <p>The result is interned by {@link AnnotationMirrorInterner}, so all canonical annotations
+     * that are the same are identical.
+     *
      * @param a the qualifier to check for an alias
      * @return the canonical annotation, or null if none exists
      */
@@ -29,6 +29,7 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.dataflow.qual.Pure;
 import org.checkerframework.dataflow.qual.SideEffectFree;
+import org.checkerframework.framework.type.visitor.AnnotatedTypeScanner;
 import org.checkerframework.framework.type.visitor.AnnotatedTypeVisitor;
 import org.checkerframework.framework.util.AnnotatedTypes;
 import org.checkerframework.javacutil.AnnotationBuilder;
@@ -119,9 +120,6 @@ public abstract class AnnotatedTypeMirror {
         return result;
     }
 
-    protected static final EqualityAtmComparer EQUALITY_COMPARER = new EqualityAtmComparer();
-    protected static final HashcodeAtmVisitor HASHCODE_VISITOR = new HashcodeAtmVisitor();
-
     /** The factory to use for lazily creating annotated types. */
     protected final AnnotatedTypeFactory atypeFactory;
 
@@ -135,6 +133,13 @@ public abstract class AnnotatedTypeMirror {
     // any Annotation type.
     protected final Set<AnnotationMirror> annotations = AnnotationUtils.createAnnotationSet();
 
+    /**
+     * Whether this type is frozen, that is, it and its component types may no longer be modified.
+     *
+     * @see #freeze()
+     */
+    private boolean frozen = false;
+
     /** The explicitly written annotations on this type. */
     // TODO: use this to cache the result once computed? For generic types?
     // protected final Set<AnnotationMirror> explicitannotations =
@@ -163,13 +168,13 @@ public abstract class AnnotatedTypeMirror {
             return false;
         }
 
-        return EQUALITY_COMPARER.visit(this, (AnnotatedTypeMirror) o, null);
+        return atypeFactory.equalityAtmComparer.visit(this, (AnnotatedTypeMirror) o, null);
     }
 
     @Pure
     @Override
     public final int hashCode() {
-        return HASHCODE_VISITOR.visit(this);
+        return atypeFactory.hashcodeAtmVisitor.visit(this);
     }
 
     /**
@@ -516,6 +521,7 @@ public abstract class AnnotatedTypeMirror {
      * @param a the annotation to add
      */
     public void addAnnotation(AnnotationMirror a) {
+        checkNotFrozen();
         if (a == null) {
             throw new BugInCF("AnnotatedTypeMirror.addAnnotation: null argument.");
         }
@@ -594,6 +600,7 @@ public abstract class AnnotatedTypeMirror {
      * @return true if the annotation was removed, false if the type's annotations were unchanged
      */
     public boolean removeAnnotation(AnnotationMirror a) {
+        checkNotFrozen();
         // Going from the AnnotationMirror to its name and then calling
         // getAnnotation ensures that we get the canonical AnnotationMirror that can be
         // removed.
@@ -678,6 +685,7 @@ public abstract class AnnotatedTypeMirror {
      * methods.
      */
     public void clearAnnotations() {
+        checkNotFrozen();
         annotations.clear();
     }
 
@@ -755,6 +763,60 @@ public abstract class AnnotatedTypeMirror {
      */
     public abstract AnnotatedTypeMirror shallowCopy();
 
+    /**
+     * Freezes this type and all of its component types: afterward, any attempt to modify them
+     * throws a {@link BugInCF}. Copies of a frozen type, such as {@link #deepCopy()}, are not
+     * frozen.
+     *
+     * <p>A frozen type can be shared between clients without copying it. For example, {@link
+     * AnnotatedTypeFactory#fromElementReadOnly} returns the frozen type from the factory's cache
+     * rather than a copy. Freezing initializes all lazily-computed component types.
+     *
+     * @return this type, now frozen
+     */
+    public AnnotatedTypeMirror freeze() {
+        if (!frozen) {
+            new Freezer().visit(this);
+        }
+        return this;
+    }
+
+    /**
+     * Returns true if this type is frozen and therefore may not be modified.
+     *
+     * @return true if this type is frozen
+     * @see #freeze()
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /** Throws a {@link BugInCF} if this type is frozen; called by every method that modifies it. */
+    protected final void checkNotFrozen() {
+        if (frozen) {
+            throw new BugInCF(
+                    "Attempted to modify a frozen AnnotatedTypeMirror; "
+                            + "modify a deepCopy() instead: "
+                            + this);
+        }
+    }
+
+    /**
+     * Marks a type and its component types as frozen. Component types are visited, and therefore
+     * lazily initialized, before the type that contains them is marked.
+     */
+    private static class Freezer extends AnnotatedTypeScanner<Void, Void> {
+        @Override
+        protected Void scan(AnnotatedTypeMirror type, Void p) {
+            if (type == null || type.frozen) {
+                return null;
+            }
+            super.scan(type, p);
+            type.frozen = true;
+            return null;
+        }
+    }
+
     protected static AnnotatedDeclaredType createTypeOfObject(AnnotatedTypeFactory atypeFactory) {
         AnnotatedDeclaredType objectType =
                 atypeFactory.fromElement(
@@ -855,6 +917,7 @@ public abstract class AnnotatedTypeMirror {
          */
         // WMD
         public void setTypeArguments(List<? extends AnnotatedTypeMirror> ts) {
+            checkNotFrozen();
             if (ts == null || ts.isEmpty()) {
                 typeArgs = Collections.emptyList();
             } else {
@@ -881,7 +944,8 @@ public abstract class AnnotatedTypeMirror {
 
                 // Copy annotations from the declaration to the wildcards.
                 AnnotatedDeclaredType declaration =
-                        atypeFactory.fromElement((TypeElement) getUnderlyingType().asElement());
+                        (AnnotatedDeclaredType)
+                                atypeFactory.fromElementReadOnly(getUnderlyingType().asElement());
                 for (int i = 0; i < typeArgs.size(); i++) {
                     AnnotatedTypeVariable typeParam =
                             (AnnotatedTypeVariable) declaration.getTypeArguments().get(i);
@@ -916,6 +980,7 @@ public abstract class AnnotatedTypeMirror {
          * supertypes of a raw type.
          */
         protected void setWasRaw() {
+            checkNotFrozen();
             this.wasRaw = true;
         }
 
@@ -987,6 +1052,7 @@ public abstract class AnnotatedTypeMirror {
 
         /** Sets the enclosing type. */
         /*default-visibility*/ void setEnclosingType(AnnotatedDeclaredType enclosingType) {
+            checkNotFrozen();
             this.enclosingType = enclosingType;
         }
 
@@ -1047,6 +1113,7 @@ public abstract class AnnotatedTypeMirror {
          * @param params the parameter types
          */
         void setParameterTypes(List<? extends AnnotatedTypeMirror> params) {
+            checkNotFrozen();
             paramTypes.clear();
             paramTypes.addAll(params);
         }
@@ -1068,6 +1135,7 @@ public abstract class AnnotatedTypeMirror {
          * @param returnType the return type
          */
         void setReturnType(AnnotatedTypeMirror returnType) {
+            checkNotFrozen();
             this.returnType = returnType;
         }
 
@@ -1098,6 +1166,7 @@ public abstract class AnnotatedTypeMirror {
          * @param receiverType the receiver type
          */
         void setReceiverType(AnnotatedDeclaredType receiverType) {
+            checkNotFrozen();
             this.receiverType = receiverType;
         }
 
@@ -1146,6 +1215,7 @@ public abstract class AnnotatedTypeMirror {
          * @param thrownTypes the thrown types
          */
         void setThrownTypes(List<? extends AnnotatedTypeMirror> thrownTypes) {
+            checkNotFrozen();
             this.throwsTypes.clear();
             this.throwsTypes.addAll(thrownTypes);
         }
@@ -1167,6 +1237,7 @@ public abstract class AnnotatedTypeMirror {
          * @param types the type variables of this executable type
          */
         void setTypeVariables(List<AnnotatedTypeVariable> types) {
+            checkNotFrozen();
             typeVarTypes.clear();
             typeVarTypes.addAll(types);
         }
@@ -1217,6 +1288,7 @@ public abstract class AnnotatedTypeMirror {
         }
 
         public void setElement(@NonNull ExecutableElement elem) {
+            checkNotFrozen();
             this.element = elem;
         }
 
@@ -1278,6 +1350,7 @@ public abstract class AnnotatedTypeMirror {
          */
         // WMD
         public void setComponentType(AnnotatedTypeMirror type) {
+            checkNotFrozen();
             this.componentType = type;
         }
 
@@ -1369,6 +1442,7 @@ public abstract class AnnotatedTypeMirror {
          * @param declaration true if this type variable should be considered a declaration
          */
         public void setDeclaration(boolean declaration) {
+            checkNotFrozen();
             this.declaration = declaration;
         }
 
@@ -1404,6 +1478,7 @@ public abstract class AnnotatedTypeMirror {
          * @param type the lower bound type
          */
         void setLowerBound(AnnotatedTypeMirror type) {
+            checkNotFrozen();
             if (type == null || type.isDeclaration()) {
                 throw new BugInCF(
                         "Lower bounds should never be null or a declaration.\n"
@@ -1495,6 +1570,7 @@ public abstract class AnnotatedTypeMirror {
          * @param type the upper bound type
          */
         void setUpperBound(AnnotatedTypeMirror type) {
+            checkNotFrozen();
             if (type == null || type.isDeclaration()) {
                 throw new BugInCF(
                         "Upper bounds should never be null or a declaration.\n"
@@ -1783,6 +1859,7 @@ public abstract class AnnotatedTypeMirror {
          * @param type the type of the lower bound
          */
         void setSuperBound(AnnotatedTypeMirror type) {
+            checkNotFrozen();
             if (type == null || type.isDeclaration()) {
                 throw new BugInCF(
                         "Super bounds should never be null or a declaration.\n"
@@ -1817,6 +1894,7 @@ public abstract class AnnotatedTypeMirror {
          * @param type the type of the upper bound
          */
         void setExtendsBound(AnnotatedTypeMirror type) {
+            checkNotFrozen();
             if (type == null || type.isDeclaration()) {
                 throw new BugInCF(
                         "Extends bounds should never be null or a declaration.\n"
@@ -1861,6 +1939,7 @@ public abstract class AnnotatedTypeMirror {
          * called during initialization of the type.
          */
         void setTypeVariable(TypeParameterElement typeParameterElement) {
+            checkNotFrozen();
             this.typeVariable = (TypeVariable) typeParameterElement.asType();
         }
 
@@ -1869,6 +1948,7 @@ public abstract class AnnotatedTypeMirror {
          * called during initialization of the type.
          */
         void setTypeVariable(TypeVariable typeVariable) {
+            checkNotFrozen();
             this.typeVariable = typeVariable;
         }
 
@@ -1943,6 +2023,7 @@ public abstract class AnnotatedTypeMirror {
          * are fixed, this must be removed.
          */
         public void setUninferredTypeArgument() {
+            checkNotFrozen();
             uninferredTypeArgument = true;
         }
 
@@ -2026,6 +2107,7 @@ public abstract class AnnotatedTypeMirror {
         }
 
         void setDirectSuperTypes(List<AnnotatedDeclaredType> supertypes) {
+            checkNotFrozen();
             this.supertypes = new ArrayList<>(supertypes);
         }
     }
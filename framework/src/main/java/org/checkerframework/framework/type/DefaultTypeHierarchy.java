@@ -1,6 +1,8 @@
 package org.checkerframework.framework.type;
 
+import com.sun.source.tree.CompilationUnitTree;
 import java.util.List;
+import java.util.Map;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.TypeElement;
@@ -8,6 +10,7 @@ import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.type.TypeVariable;
 import javax.lang.model.util.Types;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.framework.qual.Covariant;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedArrayType;
@@ -19,10 +22,15 @@ import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedTypeVari
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedUnionType;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedWildcardType;
 import org.checkerframework.framework.type.visitor.AbstractAtmComboVisitor;
+import org.checkerframework.framework.util.AnnotatedTypeFingerprint;
 import org.checkerframework.framework.util.AnnotatedTypes;
 import org.checkerframework.framework.util.AtmCombo;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.BugInCF;
+import org.checkerframework.javacutil.CollectionUtils;
+import org.checkerframework.javacutil.Instrumentation;
+import org.checkerframework.javacutil.Instrumentation.Phase;
+import org.checkerframework.javacutil.Pair;
 import org.checkerframework.javacutil.TypesUtils;
 
 /**
@@ -119,6 +127,23 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Void>
      */
     protected final StructuralEqualityVisitHistory typeargVisitHistory;
 
+    /**
+     * Caches the results of {@link #isSubtype(AnnotatedTypeMirror, AnnotatedTypeMirror)} for each
+     * hierarchy, across calls. The keys are the {@link AnnotatedTypeFingerprint fingerprints} of
+     * the subtype and the supertype, taken when the query is made, and the name of the top
+     * annotation of the hierarchy. Created on first use; null if it has not been used yet.
+     */
+    private @Nullable Map<Pair<Pair<String, String>, String>, Boolean> subtypeCache = null;
+
+    /** The compilation unit whose queries {@link #subtypeCache} holds. */
+    private @Nullable CompilationUnitTree subtypeCacheRoot = null;
+
+    /**
+     * The number of calls of {@link #isSubtype(AnnotatedTypeMirror, AnnotatedTypeMirror)} in
+     * progress. Only the results of the outermost call are cached.
+     */
+    private int subtypeQueryDepth = 0;
+
     /** Creates a DefaultTypeHierarchy. */
     public DefaultTypeHierarchy(
             final BaseTypeChecker checker,
@@ -154,13 +179,94 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Void>
     @Override
     public boolean isSubtype(
             final AnnotatedTypeMirror subtype, final AnnotatedTypeMirror supertype) {
-        for (final AnnotationMirror top : qualifierHierarchy.getTopAnnotations()) {
-            if (!isSubtype(subtype, supertype, top)) {
-                return false;
+        Instrumentation.start(Phase.SUBTYPING);
+        subtypeQueryDepth++;
+        try {
+            Map<Pair<Pair<String, String>, String>, Boolean> cache =
+                    subtypeQueryDepth == 1 ? getSubtypeCache(subtype) : null;
+            Pair<String, String> fingerprints = null;
+            if (cache != null && !(hasNoComponents(subtype) && hasNoComponents(supertype))) {
+                String subtypeFingerprint = AnnotatedTypeFingerprint.of(subtype);
+                String supertypeFingerprint =
+                        subtypeFingerprint == null ? null : AnnotatedTypeFingerprint.of(supertype);
+                if (supertypeFingerprint != null) {
+                    fingerprints = Pair.of(subtypeFingerprint, supertypeFingerprint);
+                }
+            }
+            for (final AnnotationMirror top : qualifierHierarchy.getTopAnnotations()) {
+                boolean result;
+                if (cache == null || fingerprints == null) {
+                    result = isSubtype(subtype, supertype, top);
+                } else {
+                    Pair<Pair<String, String>, String> key =
+                            Pair.of(fingerprints, AnnotationUtils.annotationName(top));
+                    Boolean cached = cache.get(key);
+                    if (cached == null) {
+                        cached = isSubtype(subtype, supertype, top);
+                        cache.put(key, cached);
+                    }
+                    result = cached;
+                }
+                if (!result) {
+                    return false;
+                }
             }
+
+            return true;
+        } finally {
+            subtypeQueryDepth--;
+            Instrumentation.stop(Phase.SUBTYPING);
         }
+    }
 
-        return true;
+    /**
+     * Returns the cache of the results of {@link #isSubtype(AnnotatedTypeMirror,
+     * AnnotatedTypeMirror)}, which is cleared when the compilation unit of the type factory
+     * changes. Like the caches of the type factory, it is disabled by the atfDoNotCache option and
+     * while stub files are parsed, and its size is given by the atfCacheSize option. Its lookups
+     * and hits are recorded by {@link Instrumentation}.
+     *
+     * @param type a type of the query, whose factory owns the caching options
+     * @return the cache of subtype results, or null if results must not be cached now
+     */
+    private @Nullable Map<Pair<Pair<String, String>, String>, Boolean> getSubtypeCache(
+            AnnotatedTypeMirror type) {
+        AnnotatedTypeFactory atypeFactory = type.atypeFactory;
+        if (!atypeFactory.shouldCache || atypeFactory.stubTypes.isParsing()) {
+            return null;
+        }
+        if (subtypeCache == null) {
+            subtypeCache =
+                    CollectionUtils.createLRUCache(
+                            atypeFactory.getCacheSize(),
+                            atypeFactory.getClass().getSimpleName() + ".subtypeCache");
+        }
+        if (atypeFactory.root != subtypeCacheRoot) {
+            // The supertypes of declared types, which asSuper computes, may depend on the types of
+            // elements in the compilation unit.
+            subtypeCache.clear();
+            subtypeCacheRoot = atypeFactory.root;
+        }
+        return subtypeCache;
+    }
+
+    /**
+     * Returns true if {@code type} is a primitive type, the null type, or a declared type without
+     * type arguments. A query about two such types is answered faster than its fingerprints are
+     * computed, so it is not cached.
+     *
+     * @param type a type
+     * @return true if {@code type} has no components that isSubtype compares
+     */
+    private static boolean hasNoComponents(AnnotatedTypeMirror type) {
+        switch (type.getKind()) {
+            case DECLARED:
+                return ((AnnotatedDeclaredType) type).getTypeArguments().isEmpty();
+            case NULL:
+                return true;
+            default:
+                return type.getKind().isPrimitive();
+        }
     }
 
     /**
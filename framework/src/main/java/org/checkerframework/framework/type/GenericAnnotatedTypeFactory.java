@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
@@ -37,6 +38,7 @@ import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.dataflow.analysis.Analysis.BudgetStrategy;
 import org.checkerframework.dataflow.analysis.AnalysisResult;
 import org.checkerframework.dataflow.analysis.FlowExpressions;
 import org.checkerframework.dataflow.analysis.FlowExpressions.FieldAccess;
@@ -74,6 +76,7 @@ import org.checkerframework.framework.qual.MonotonicQualifier;
 import org.checkerframework.framework.qual.QualifierForLiterals;
 import org.checkerframework.framework.qual.RelevantJavaTypes;
 import org.checkerframework.framework.qual.TypeUseLocation;
+import org.checkerframework.framework.source.Result;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedDeclaredType;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedExecutableType;
 import org.checkerframework.framework.type.poly.DefaultQualifierPolymorphism;
@@ -99,6 +102,7 @@ import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.BugInCF;
 import org.checkerframework.javacutil.CollectionUtils;
+import org.checkerframework.javacutil.Instrumentation;
 import org.checkerframework.javacutil.Pair;
 import org.checkerframework.javacutil.TreeUtils;
 import org.checkerframework.javacutil.UserError;
@@ -191,6 +195,13 @@ public abstract class GenericAnnotatedTypeFactory<
                     IdentityHashMap<Node, TransferResult<Value, Store>>>
             flowResultAnalysisCaches;
 
+    /**
+     * The maximum number of store snapshots that the flow analysis records for one method, lambda,
+     * or initializer if the storeSnapshots option is given. Beyond it, the stores are computed by
+     * replaying blocks, as without the option.
+     */
+    private static final int MAX_STORE_SNAPSHOTS = 10000;
+
     /**
      * Creates a type factory for checking the given compilation unit with respect to the given
      * annotation.
@@ -218,7 +229,9 @@ public abstract class GenericAnnotatedTypeFactory<
 
         if (shouldCache) {
             int cacheSize = getCacheSize();
-            flowResultAnalysisCaches = CollectionUtils.createLRUCache(cacheSize);
+            flowResultAnalysisCaches =
+                    CollectionUtils.createLRUCache(
+                            cacheSize, getClass().getSimpleName() + ".flowResultAnalysisCaches");
         } else {
             flowResultAnalysisCaches = null;
         }
@@ -241,11 +254,88 @@ public abstract class GenericAnnotatedTypeFactory<
 
         this.analysis = createFlowAnalysis(new ArrayList<>());
         this.transfer = analysis.getTransferFunction();
+        if (checker.hasOption("storeSnapshots")) {
+            analysis.setStoreSnapshots(getStoreSnapshotInterval(), MAX_STORE_SNAPSHOTS);
+        }
+        if (checker.hasOption("dataflowMaxIterations") || checker.hasOption("dataflowMaxMillis")) {
+            analysis.setBudget(
+                    getNonNegativeIntOption("dataflowMaxIterations"),
+                    TimeUnit.MILLISECONDS.toNanos(getNonNegativeIntOption("dataflowMaxMillis")),
+                    getBudgetStrategy());
+        }
         this.emptyStore = analysis.createEmptyStore(transfer.usesSequentialSemantics());
 
         this.parseStubFiles();
     }
 
+    /**
+     * Returns the number of nodes between two store snapshots, as given by the storeSnapshots
+     * option, or 1 if the option has no value.
+     *
+     * @return the number of nodes between two store snapshots
+     * @see org.checkerframework.dataflow.analysis.Analysis#setStoreSnapshots(int, int)
+     */
+    protected int getStoreSnapshotInterval() {
+        String option = checker.getOption("storeSnapshots");
+        if (option == null) {
+            return 1;
+        }
+        int interval;
+        try {
+            interval = Integer.parseInt(option);
+        } catch (NumberFormatException ex) {
+            throw new UserError("storeSnapshots was not an integer: " + option);
+        }
+        if (interval <= 0) {
+            throw new UserError("storeSnapshots was not positive: " + option);
+        }
+        return interval;
+    }
+
+    /**
+     * Returns the value of an option whose value is a non-negative integer, or 0 if the option is
+     * not given.
+     *
+     * @param name the name of the option
+     * @return the value of the option, or 0 if it is not given
+     */
+    private int getNonNegativeIntOption(String name) {
+        String option = checker.getOption(name);
+        if (option == null) {
+            return 0;
+        }
+        int value;
+        try {
+            value = Integer.parseInt(option);
+        } catch (NumberFormatException ex) {
+            throw new UserError(name + " was not an integer: " + option);
+        }
+        if (value < 0) {
+            throw new UserError(name + " was negative: " + option);
+        }
+        return value;
+    }
+
+    /**
+     * Returns what dataflow analysis does once it exceeds the budget of a method, as given by the
+     * dataflowBudgetStrategy option.
+     *
+     * @return the strategy for methods whose analysis exceeds its budget
+     * @see org.checkerframework.dataflow.analysis.Analysis#setBudget
+     */
+    private BudgetStrategy getBudgetStrategy() {
+        String option = checker.getOption("dataflowBudgetStrategy", "top");
+        switch (option) {
+            case "top":
+                return BudgetStrategy.TOP;
+            case "widen":
+                return BudgetStrategy.WIDEN;
+            default:
+                throw new UserError(
+                        "dataflowBudgetStrategy was neither \"top\" nor \"widen\": " + option);
+        }
+    }
+
     /**
      * Performs flow-sensitive type refinement on {@code classTree} if this type factory is
      * configured to do so.
@@ -971,6 +1061,9 @@ public abstract class GenericAnnotatedTypeFactory<
 
     /** @return the store immediately after a given {@link Node}. */
     public Store getStoreAfter(Node node) {
+        if (!analysis.isRunning()) {
+            return flowResult.getStoreAfter(node);
+        }
         Store res =
                 AnalysisResult.runAnalysisFor(
                         node,
@@ -1215,22 +1308,45 @@ public abstract class GenericAnnotatedTypeFactory<
             boolean updateInitializationStore,
             boolean isStatic,
             Store capturedStore) {
-        ControlFlowGraph cfg = CFCFGBuilder.build(root, ast, checker, this, processingEnv);
-
-        if (isInitializationCode) {
-            Store initStore = !isStatic ? initializationStore : initializationStaticStore;
-            if (initStore != null) {
-                // we have already seen initialization code and analyzed it, and
-                // the analysis ended with the store initStore.
-                // use it to start the next analysis.
-                transfer.setFixedInitialStore(initStore);
+        String previousMethod = null;
+        if (Instrumentation.isEnabled()) {
+            previousMethod = Instrumentation.enterMethod(instrumentationName(ast));
+        }
+        ControlFlowGraph cfg;
+        try {
+            cfg =
+                    CFCFGBuilder.build(
+                            root, ast, checker, this, processingEnv, checker.getCFGCache());
+
+            if (isInitializationCode) {
+                Store initStore = !isStatic ? initializationStore : initializationStaticStore;
+                if (initStore != null) {
+                    // we have already seen initialization code and analyzed it, and
+                    // the analysis ended with the store initStore.
+                    // use it to start the next analysis.
+                    transfer.setFixedInitialStore(initStore);
+                } else {
+                    transfer.setFixedInitialStore(capturedStore);
+                }
             } else {
                 transfer.setFixedInitialStore(capturedStore);
             }
-        } else {
-            transfer.setFixedInitialStore(capturedStore);
+            analysis.performAnalysis(cfg, fieldValues);
+        } finally {
+            Instrumentation.exitMethod(previousMethod);
+        }
+        if (analysis.isBudgetExceeded()) {
+            Tree code =
+                    ast.getKind() == UnderlyingAST.Kind.METHOD
+                            ? ((CFGMethod) ast).getMethod()
+                            : ast.getCode();
+            checker.report(
+                    Result.warning(
+                            "dataflow.budget.exceeded",
+                            analysis.getIterations(),
+                            getBudgetStrategy().name().toLowerCase()),
+                    code);
         }
-        analysis.performAnalysis(cfg, fieldValues);
         AnalysisResult<Value, Store> result = analysis.getResult();
 
         // store result
@@ -1284,6 +1400,42 @@ public abstract class GenericAnnotatedTypeFactory<
         }
     }
 
+    /**
+     * Returns the name of the method to which {@link Instrumentation} attributes the analysis of
+     * {@code ast}. A lambda is attributed to its enclosing method, and initializers are attributed
+     * to a pseudo-method of their class.
+     *
+     * @param ast the AST that is analyzed
+     * @return the name of the method that contains {@code ast}
+     */
+    private String instrumentationName(UnderlyingAST ast) {
+        MethodTree method;
+        ClassTree classTree;
+        switch (ast.getKind()) {
+            case METHOD:
+                method = ((CFGMethod) ast).getMethod();
+                classTree = ((CFGMethod) ast).getClassTree();
+                break;
+            case LAMBDA:
+                TreePath path = getPath(((CFGLambda) ast).getLambdaTree());
+                method = path == null ? null : TreeUtils.enclosingMethod(path);
+                classTree = path == null ? null : TreeUtils.enclosingClass(path);
+                break;
+            default:
+                method = null;
+                classTree = ((CFGStatement) ast).getClassTree();
+                break;
+        }
+        if (method != null) {
+            return Instrumentation.methodName(TreeUtils.elementFromDeclaration(method));
+        }
+        if (classTree != null) {
+            return TreeUtils.elementFromDeclaration(classTree).getQualifiedName()
+                    + ".<initializers>";
+        }
+        return "<unknown>";
+    }
+
     /**
      * Handle the visualization of the CFG, by calling {@code visualizeCFG} on the analysis. This
      * method gets invoked in {@code analyze} if one of the visualization options is provided.
@@ -6,7 +6,6 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
-import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
@@ -104,7 +103,7 @@ public class QualifierUpperBounds {
             DeclaredType declaredType = (DeclaredType) type;
             bounds.addAll(
                     atypeFactory
-                            .fromElement((TypeElement) declaredType.asElement())
+                            .fromElementReadOnly(declaredType.asElement())
                             .getAnnotations());
             qname = TypesUtils.getQualifiedName(declaredType).toString();
         } else if (type.getKind().isPrimitive()) {
@@ -19,7 +19,6 @@ import org.checkerframework.javacutil.BugInCF;
  */
 class TypeFromTree {
 
-    private static final TypeFromTypeTreeVisitor typeTreeVisitor = new TypeFromTypeTreeVisitor();
     private static final TypeFromMemberVisitor memberVisitor = new TypeFromMemberVisitor();
     private static final TypeFromClassVisitor classVisitor = new TypeFromClassVisitor();
     private static final TypeFromExpressionVisitor expressionVisitor =
@@ -60,7 +59,9 @@ class TypeFromTree {
             final AnnotatedTypeFactory typeFactory, final Tree tree) {
         abortIfTreeIsNull(typeFactory, tree);
 
-        final AnnotatedTypeMirror type = typeTreeVisitor.visit(tree, typeFactory);
+        // Each factory has its own visitor, which keeps state while it visits a tree.
+        final AnnotatedTypeMirror type =
+                typeFactory.typeFromTypeTreeVisitor.visit(tree, typeFactory);
         abortIfTypeIsExecutable(typeFactory, tree, type);
         return type;
     }
@@ -38,7 +38,8 @@ public class DefaultQualifierForUseTypeAnnotator extends TypeAnnotator {
      * element.
      */
     protected Map<Element, Set<AnnotationMirror>> elementToDefaults =
-            CollectionUtils.createLRUCache(100);
+            CollectionUtils.createLRUCache(
+                    100, "DefaultQualifierForUseTypeAnnotator.elementToDefaults");
 
     /** Clears all caches. */
     public void clearCache() {
@@ -84,7 +85,7 @@ public class DefaultQualifierForUseTypeAnnotator extends TypeAnnotator {
 
     /** Return the annotations explicitly written on the element. */
     protected Set<AnnotationMirror> getExplicitAnnos(Element element) {
-        AnnotatedTypeMirror explicitAnnoOnDecl = typeFactory.fromElement(element);
+        AnnotatedTypeMirror explicitAnnoOnDecl = typeFactory.fromElementReadOnly(element);
         return explicitAnnoOnDecl.getAnnotations();
     }
 
@@ -64,7 +64,10 @@ public class IrrelevantTypeAnnotator extends TypeAnnotator {
                                 typeFactory.getElementUtils()));
             }
         }
-        this.allFoundRelevantTypes = Collections.newSetFromMap(CollectionUtils.createLRUCache(300));
+        this.allFoundRelevantTypes =
+                Collections.newSetFromMap(
+                        CollectionUtils.createLRUCache(
+                                300, "IrrelevantTypeAnnotator.allFoundRelevantTypes"));
     }
 
     @Override
@@ -0,0 +1,235 @@
+package org.checkerframework.framework.util;
+
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Symbol.MethodSymbol;
+import java.util.ArrayList;
+import java.util.List;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.type.TypeVariable;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedArrayType;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedDeclaredType;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedIntersectionType;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedTypeVariable;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedUnionType;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedWildcardType;
+import org.checkerframework.javacutil.TypesUtils;
+
+/**
+ * Computes structural fingerprints of annotated types, which memo caches use as keys.
+ *
+ * <p>The fingerprint of a type is a string that describes the type at the time it is computed:
+ * its structure, the annotations of each component, and the flags that type operations such as
+ * {@link AnnotatedTypes#asSuper} consult, such as {@link AnnotatedDeclaredType#wasRaw()} and
+ * {@link AnnotatedWildcardType#isUninferredTypeArgument()}. Two types with the same fingerprint
+ * are interchangeable as arguments of such operations. Because annotated types are mutable, the
+ * fingerprint must be computed whenever a type is used as a key, rather than stored with the type.
+ *
+ * <p>Declared types are identified by the flat names of their classes, so that local and anonymous
+ * classes with the same qualified name are told apart. Type variables are identified by their
+ * declaring class or method and name, together with the fingerprints of their bounds. A type that
+ * contains a captured type variable has no fingerprint: javac does not give captured type
+ * variables names that identify them. Neither has a type that is nested more than {@link
+ * #MAX_DEPTH} levels deep, such as a wildcard whose bounds are expanded without end.
+ */
+public class AnnotatedTypeFingerprint {
+
+    /** The maximum depth of the components of a type that has a fingerprint. */
+    private static final int MAX_DEPTH = 32;
+
+    /** Class cannot be instantiated. */
+    private AnnotatedTypeFingerprint() {
+        throw new AssertionError("Class AnnotatedTypeFingerprint cannot be instantiated.");
+    }
+
+    /**
+     * Returns the fingerprint of a type.
+     *
+     * @param type an annotated type
+     * @return the fingerprint of {@code type}, or null if it has none, for example because it
+     *     contains a captured type variable
+     */
+    public static @Nullable String of(AnnotatedTypeMirror type) {
+        StringBuilder fingerprint = new StringBuilder();
+        if (!append(fingerprint, type, new ArrayList<>(), 0)) {
+            return null;
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * Appends the fingerprint of a type.
+     *
+     * @param fingerprint the fingerprint to append to
+     * @param type the type whose fingerprint is appended
+     * @param visiting the type variables whose bounds are being appended; a type variable in it is
+     *     appended without its bounds, so that recursive bounds terminate
+     * @param depth the number of types that contain {@code type}
+     * @return false if {@code type} has no fingerprint
+     */
+    private static boolean append(
+            StringBuilder fingerprint,
+            AnnotatedTypeMirror type,
+            List<Element> visiting,
+            int depth) {
+        if (depth > MAX_DEPTH) {
+            return false;
+        }
+        for (AnnotationMirror annotation : type.getAnnotations()) {
+            fingerprint.append(annotation).append(' ');
+        }
+        switch (type.getKind()) {
+            case DECLARED:
+                {
+                    AnnotatedDeclaredType declared = (AnnotatedDeclaredType) type;
+                    AnnotatedDeclaredType enclosing = declared.getEnclosingType();
+                    if (enclosing != null) {
+                        if (!append(fingerprint, enclosing, visiting, depth + 1)) {
+                            return false;
+                        }
+                        fingerprint.append('.');
+                    }
+                    if (declared.wasRaw()) {
+                        fingerprint.append("raw ");
+                    }
+                    fingerprint.append(name(declared.getUnderlyingType().asElement()));
+                    return appendAll(
+                            fingerprint, "<", declared.getTypeArguments(), ">", visiting, depth);
+                }
+            case TYPEVAR:
+                {
+                    AnnotatedTypeVariable typeVariable = (AnnotatedTypeVariable) type;
+                    TypeVariable underlying = typeVariable.getUnderlyingType();
+                    if (TypesUtils.isCaptured(underlying)) {
+                        return false;
+                    }
+                    Element element = underlying.asElement();
+                    fingerprint
+                            .append(name(element.getEnclosingElement()))
+                            .append(':')
+                            .append(element.getSimpleName());
+                    if (typeVariable.isDeclaration()) {
+                        fingerprint.append(" decl");
+                    }
+                    if (visiting.contains(element)) {
+                        return true;
+                    }
+                    visiting.add(element);
+                    fingerprint.append('[');
+                    boolean result =
+                            append(fingerprint, typeVariable.getUpperBound(), visiting, depth + 1)
+                                    && append(
+                                            fingerprint.append(','),
+                                            typeVariable.getLowerBound(),
+                                            visiting,
+                                            depth + 1);
+                    visiting.remove(visiting.size() - 1);
+                    fingerprint.append(']');
+                    return result;
+                }
+            case WILDCARD:
+                {
+                    AnnotatedWildcardType wildcard = (AnnotatedWildcardType) type;
+                    fingerprint.append(wildcard.isUninferredTypeArgument() ? "?!" : "?");
+                    fingerprint.append('[');
+                    boolean result =
+                            append(fingerprint, wildcard.getExtendsBound(), visiting, depth + 1)
+                                    && append(
+                                            fingerprint.append(','),
+                                            wildcard.getSuperBound(),
+                                            visiting,
+                                            depth + 1);
+                    fingerprint.append(']');
+                    return result;
+                }
+            case ARRAY:
+                AnnotatedTypeMirror componentType = ((AnnotatedArrayType) type).getComponentType();
+                if (!append(fingerprint, componentType, visiting, depth + 1)) {
+                    return false;
+                }
+                fingerprint.append("[]");
+                return true;
+            case INTERSECTION:
+                return appendAll(
+                        fingerprint,
+                        "&(",
+                        ((AnnotatedIntersectionType) type).directSuperTypes(),
+                        ")",
+                        visiting,
+                        depth);
+            case UNION:
+                return appendAll(
+                        fingerprint,
+                        "|(",
+                        ((AnnotatedUnionType) type).getAlternatives(),
+                        ")",
+                        visiting,
+                        depth);
+            case BOOLEAN:
+            case BYTE:
+            case CHAR:
+            case DOUBLE:
+            case FLOAT:
+            case INT:
+            case LONG:
+            case SHORT:
+            case NULL:
+            case VOID:
+            case NONE:
+                fingerprint.append(type.getKind());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns a name that identifies a class or method within a compilation. A class is named by
+     * its flat name, which, unlike its qualified name, differs between local and anonymous classes:
+     * the qualified name of a local class is its simple name, and that of an anonymous class is
+     * empty. A method is named by its signature, qualified by the name of its class.
+     *
+     * @param element a class or a method, such as the element that declares a type variable
+     * @return the name of {@code element}
+     */
+    private static String name(Element element) {
+        if (element instanceof ClassSymbol) {
+            return ((ClassSymbol) element).flatName().toString();
+        }
+        if (element instanceof MethodSymbol) {
+            return ((MethodSymbol) element).enclClass().flatName() + "." + element;
+        }
+        return element.toString();
+    }
+
+    /**
+     * Appends the fingerprints of a list of types, between delimiters.
+     *
+     * @param fingerprint the fingerprint to append to
+     * @param open the string to append first
+     * @param types the types whose fingerprints are appended, separated by commas
+     * @param close the string to append last
+     * @param visiting the type variables whose bounds are being appended
+     * @param depth the number of types that contain {@code types}
+     * @return false if one of {@code types} has no fingerprint
+     */
+    private static boolean appendAll(
+            StringBuilder fingerprint,
+            String open,
+            List<? extends AnnotatedTypeMirror> types,
+            String close,
+            List<Element> visiting,
+            int depth) {
+        fingerprint.append(open);
+        for (AnnotatedTypeMirror type : types) {
+            if (!append(fingerprint, type, visiting, depth + 1)) {
+                return false;
+            }
+            fingerprint.append(',');
+        }
+        fingerprint.append(close);
+        return true;
+    }
+}
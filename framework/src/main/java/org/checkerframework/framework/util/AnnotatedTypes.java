@@ -64,8 +64,6 @@ public class AnnotatedTypes {
         throw new AssertionError("Class AnnotatedTypes cannot be instantiated.");
     }
 
-    private static AsSuperVisitor asSuperVisitor;
-
     /**
      * Copies annotations from {@code type} to a copy of {@code superType} where the type variables
      * of {@code superType} have been substituted. How the annotations are copied depends on the
@@ -106,10 +104,29 @@ public class AnnotatedTypes {
      */
     public static <T extends AnnotatedTypeMirror> T asSuper(
             AnnotatedTypeFactory atypeFactory, AnnotatedTypeMirror type, T superType) {
-        if (asSuperVisitor == null || !asSuperVisitor.sameAnnotatedTypeFactory(atypeFactory)) {
-            asSuperVisitor = new AsSuperVisitor(atypeFactory);
+        AsSuperVisitor asSuperVisitor = atypeFactory.getAsSuperVisitor();
+        Map<Pair<String, String>, AnnotatedTypeMirror> cache = atypeFactory.getAsSuperCache();
+        if (cache == null
+                || type.getKind() != TypeKind.DECLARED
+                || superType.getKind() != TypeKind.DECLARED) {
+            return asSuperVisitor.asSuper(type, superType);
+        }
+        String typeFingerprint = AnnotatedTypeFingerprint.of(type);
+        String superTypeFingerprint = AnnotatedTypeFingerprint.of(superType);
+        if (typeFingerprint == null || superTypeFingerprint == null) {
+            return asSuperVisitor.asSuper(type, superType);
         }
-        return asSuperVisitor.asSuper(type, superType);
+        Pair<String, String> key = Pair.of(typeFingerprint, superTypeFingerprint);
+        @SuppressWarnings("unchecked") // the cached type is the result of asSuper for superType
+        T cached = (T) cache.get(key);
+        if (cached == null) {
+            cached = asSuperVisitor.asSuper(type, superType);
+            cache.put(key, cached.deepCopy());
+            return cached;
+        }
+        @SuppressWarnings("unchecked") // deepCopy returns a type of the same class
+        T result = (T) cached.deepCopy();
+        return result;
     }
 
     /**
@@ -351,7 +368,7 @@ public class AnnotatedTypes {
             case TYPE_PARAMETER:
                 return atypeFactory.fromElement(elem);
             default:
-                AnnotatedTypeMirror type = asMemberOfImpl(types, atypeFactory, t, elem);
+                AnnotatedTypeMirror type = cachedAsMemberOfImpl(types, atypeFactory, t, elem);
                 if (!ElementUtils.isStatic(elem)) {
                     atypeFactory.postAsMemberOf(type, t, elem);
                 }
@@ -359,6 +376,61 @@ public class AnnotatedTypes {
         }
     }
 
+    /**
+     * Like {@link #asMemberOfImpl}, but memoized in the {@link
+     * AnnotatedTypeFactory#getAsMemberOfCache() cache} of {@code atypeFactory}.
+     *
+     * <p>Only instance fields, methods, and constructors of declared, union, and intersection types
+     * are memoized. A type variable or wildcard receiver is replaced by its bound, which is
+     * memoized by the recursive call. The result of {@link AnnotatedTypeFactory#postAsMemberOf} is
+     * never memoized, because it may depend on the state of the type factory.
+     *
+     * @param types the type utilities
+     * @param atypeFactory the type factory
+     * @param of the type of the receiver
+     * @param member a member of {@code of}
+     * @return the type of {@code member} as a member of {@code of}, before {@link
+     *     AnnotatedTypeFactory#postAsMemberOf} is applied
+     */
+    private static AnnotatedTypeMirror cachedAsMemberOfImpl(
+            final Types types,
+            final AnnotatedTypeFactory atypeFactory,
+            final AnnotatedTypeMirror of,
+            final Element member) {
+        Map<Pair<String, Element>, AnnotatedTypeMirror> cache = atypeFactory.getAsMemberOfCache();
+        if (cache == null || ElementUtils.isStatic(member)) {
+            return asMemberOfImpl(types, atypeFactory, of, member);
+        }
+        switch (member.getKind()) {
+            case FIELD:
+            case METHOD:
+            case CONSTRUCTOR:
+                break;
+            default:
+                return asMemberOfImpl(types, atypeFactory, of, member);
+        }
+        switch (of.getKind()) {
+            case DECLARED:
+            case UNION:
+            case INTERSECTION:
+                break;
+            default:
+                return asMemberOfImpl(types, atypeFactory, of, member);
+        }
+        String fingerprint = AnnotatedTypeFingerprint.of(of);
+        if (fingerprint == null) {
+            return asMemberOfImpl(types, atypeFactory, of, member);
+        }
+        Pair<String, Element> key = Pair.of(fingerprint, member);
+        AnnotatedTypeMirror cached = cache.get(key);
+        if (cached != null) {
+            return cached.deepCopy();
+        }
+        AnnotatedTypeMirror memberType = asMemberOfImpl(types, atypeFactory, of, member);
+        cache.put(key, memberType.deepCopy());
+        return memberType;
+    }
+
     private static AnnotatedTypeMirror asMemberOfImpl(
             final Types types,
             final AnnotatedTypeFactory atypeFactory,
@@ -68,10 +68,12 @@ public class AnnotationMirrorMap<V> implements Map<AnnotationMirror, V> {
     @Override
     public V get(Object key) {
         if (key instanceof AnnotationMirror) {
-            AnnotationMirror keyAnno =
-                    AnnotationUtils.getSame(shadowMap.keySet(), (AnnotationMirror) key);
-            if (keyAnno != null) {
-                return shadowMap.get(keyAnno);
+            // A single pass over the entries; areSame is a reference comparison for interned
+            // annotations.
+            for (Entry<AnnotationMirror, V> entry : shadowMap.entrySet()) {
+                if (AnnotationUtils.areSame(entry.getKey(), (AnnotationMirror) key)) {
+                    return entry.getValue();
+                }
             }
         }
         return null;
@@ -79,8 +81,8 @@ public class AnnotationMirrorMap<V> implements Map<AnnotationMirror, V> {
 
     @Override
     public V put(AnnotationMirror key, V value) {
-        V pre = get(key);
-        remove(key);
+        AnnotationMirror keyAnno = AnnotationUtils.getSame(shadowMap.keySet(), key);
+        V pre = keyAnno == null ? null : shadowMap.remove(keyAnno);
         shadowMap.put(key, value);
         return pre;
     }
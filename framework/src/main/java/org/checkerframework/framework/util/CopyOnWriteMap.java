@@ -0,0 +1,284 @@
+package org.checkerframework.framework.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A {@link Map} whose copies share their contents until one of them is modified.
+ *
+ * <p>{@link #copy()} takes constant time: the copy and the original use the same backing {@link
+ * HashMap}, and whichever of them is modified first copies the backing map before the
+ * modification. Maps that are copied often but rarely modified afterwards, such as the maps of a
+ * dataflow store that flows along many edges of a control flow graph, therefore allocate much less
+ * than with {@code new HashMap<>(map)}.
+ *
+ * <p>Two maps that share their backing map have the same contents; {@link #sharesContentsWith}
+ * lets clients skip an element-wise comparison or merge in that case.
+ *
+ * <p>This class is not thread-safe.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class CopyOnWriteMap<K, V> extends AbstractMap<K, V> {
+
+    /** The contents of this map; possibly shared with other maps. */
+    private HashMap<K, V> backing;
+
+    /**
+     * True if {@link #backing} might be shared with another map, in which case it must be copied
+     * before it is modified.
+     */
+    private boolean shared;
+
+    /** The entry set view of this map, created lazily. */
+    private @Nullable Set<Entry<K, V>> entrySet;
+
+    /** Creates an empty map. */
+    public CopyOnWriteMap() {
+        this.backing = new HashMap<>();
+        this.shared = false;
+    }
+
+    /**
+     * Creates a map with the same mappings as {@code map}. If {@code map} is a {@link
+     * CopyOnWriteMap}, its contents are shared rather than copied.
+     *
+     * @param map the mappings to place in the new map
+     */
+    @SuppressWarnings("unchecked")
+    public CopyOnWriteMap(Map<? extends K, ? extends V> map) {
+        if (map instanceof CopyOnWriteMap) {
+            CopyOnWriteMap<K, V> other = (CopyOnWriteMap<K, V>) map;
+            this.backing = other.backing;
+            this.shared = true;
+            other.shared = true;
+        } else {
+            this.backing = new HashMap<>(map);
+            this.shared = false;
+        }
+    }
+
+    /**
+     * Returns a map with the same mappings as this one, in constant time.
+     *
+     * @return a map with the same mappings as this one
+     */
+    public CopyOnWriteMap<K, V> copy() {
+        return new CopyOnWriteMap<>(this);
+    }
+
+    /**
+     * Returns true if this map and {@code other} share their contents, which implies that they
+     * have the same mappings. A false result does not imply that their mappings differ.
+     *
+     * @param other another map
+     * @return true if this map and {@code other} share their contents
+     */
+    public boolean sharesContentsWith(CopyOnWriteMap<?, ?> other) {
+        return backing == other.backing;
+    }
+
+    /**
+     * Replaces the mappings of this map by those of {@code other}, sharing rather than copying
+     * them.
+     *
+     * @param other the map whose mappings this map takes
+     */
+    public void shareContentsOf(CopyOnWriteMap<K, V> other) {
+        backing = other.backing;
+        shared = true;
+        other.shared = true;
+    }
+
+    /** Makes {@link #backing} private to this map, copying it if it might be shared. */
+    private void ensureUnshared() {
+        if (shared) {
+            backing = new HashMap<>(backing);
+            shared = false;
+        }
+    }
+
+    @Override
+    public int size() {
+        return backing.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return backing.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return backing.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return backing.containsValue(value);
+    }
+
+    @Override
+    public V get(Object key) {
+        return backing.get(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        ensureUnshared();
+        return backing.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        if (!m.isEmpty()) {
+            ensureUnshared();
+            backing.putAll(m);
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (!backing.containsKey(key)) {
+            return null;
+        }
+        ensureUnshared();
+        return backing.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        if (shared) {
+            backing = new HashMap<>();
+            shared = false;
+        } else {
+            backing.clear();
+        }
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        if (o instanceof CopyOnWriteMap && sharesContentsWith((CopyOnWriteMap<?, ?>) o)) {
+            return true;
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return backing.hashCode();
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    /**
+     * The entry set view of a {@link CopyOnWriteMap}. Removals and {@link Entry#setValue} through
+     * the view copy the backing map first if it is shared.
+     */
+    private class EntrySet extends AbstractSet<Entry<K, V>> {
+
+        @Override
+        public int size() {
+            return backing.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return backing.entrySet().contains(o);
+        }
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public void clear() {
+            CopyOnWriteMap.this.clear();
+        }
+    }
+
+    /**
+     * An iterator over the entries of a {@link CopyOnWriteMap}. It iterates over the backing map
+     * as it was when the iterator was created; if a removal through the iterator causes the map to
+     * copy its backing map, the iteration continues over the original, which is no longer
+     * modified.
+     */
+    private class EntryIterator implements Iterator<Entry<K, V>> {
+
+        /** The backing map that is iterated over. */
+        private final HashMap<K, V> iterated = backing;
+
+        /** The iterator over {@link #iterated}. */
+        private final Iterator<Entry<K, V>> iterator = iterated.entrySet().iterator();
+
+        /** The entry most recently returned by {@link #next}. */
+        private @Nullable Entry<K, V> last;
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            Entry<K, V> entry = iterator.next();
+            last = entry;
+            // The backing entry is never returned: the map might be copied while a client holds
+            // the entry, and setting its value would then modify both maps.
+            return new CopyOnWriteEntry(entry.getKey(), entry.getValue());
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            ensureUnshared();
+            if (iterated == backing) {
+                iterator.remove();
+            } else {
+                backing.remove(last.getKey());
+            }
+            last = null;
+        }
+    }
+
+    /** An entry whose {@link #setValue} writes through to the map, copying it if necessary. */
+    private class CopyOnWriteEntry extends SimpleEntry<K, V> {
+
+        /** The serial version UID. */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Creates an entry of this map.
+         *
+         * @param key the key of the entry
+         * @param value the value of the entry
+         */
+        CopyOnWriteEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            super.setValue(value);
+            ensureUnshared();
+            // Replacing the value of an existing key is not a structural modification, so it does
+            // not invalidate iterators over the backing map.
+            return backing.put(getKey(), value);
+        }
+    }
+}
@@ -38,7 +38,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.StringJoiner;
+import java.util.WeakHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.processing.ProcessingEnvironment;
@@ -73,6 +76,8 @@ import org.checkerframework.dataflow.cfg.node.ObjectCreationNode;
 import org.checkerframework.framework.source.Result;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.framework.util.dependenttypes.DependentTypesError;
+import org.checkerframework.javacutil.AnnotationProvider;
+import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.Resolver;
 import org.checkerframework.javacutil.TreeUtils;
@@ -104,10 +109,37 @@ public class FlowExpressionParseUtil {
 
     private static final int PARAMETER_REPLACEMENT_LENGTH = PARMETER_REPLACEMENT.length();
 
+    /** The number of parsed expressions to cache. */
+    private static final int EXPRESSION_CACHE_SIZE = 500;
+
+    /**
+     * The parsed expressions, keyed by the expression strings. The parsed expressions do not
+     * depend on a compilation, so the cache is shared by all checkers; the visitor that converts an
+     * expression to a {@link Receiver} must not modify it.
+     */
+    private static final Map<String, Expression> expressionCache =
+            Collections.synchronizedMap(
+                    CollectionUtils.createLRUCache(
+                            EXPRESSION_CACHE_SIZE, "FlowExpressionParseUtil.expressionCache"));
+
+    /** The number of receivers to cache per annotation provider. */
+    private static final int RECEIVER_CACHE_SIZE = 1000;
+
+    /**
+     * The receivers that expressions have been parsed to, for each annotation provider (that is,
+     * for each type factory). The receivers refer to elements and types of a compilation, so each
+     * type factory has its own cache.
+     */
+    private static final Map<AnnotationProvider, Map<ParseKey, Receiver>> receiverCaches =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
     /**
      * Parse a string and return its representation as a {@link Receiver}, or throw an {@link
      * FlowExpressionParseException}.
      *
+     * <p>The result is cached: parsing the same string in an equivalent context and local scope
+     * again returns the same receiver.
+     *
      * @param expression flow expression to parse
      * @param context information about any receiver and arguments
      * @param localScope path to local scope to use
@@ -120,12 +152,45 @@ public class FlowExpressionParseUtil {
             boolean useLocalScope)
             throws FlowExpressionParseException {
         context = context.copyAndSetUseLocalScope(useLocalScope);
+        Map<ParseKey, Receiver> receiverCache =
+                receiverCaches.computeIfAbsent(
+                        context.checkerContext.getAnnotationProvider(),
+                        provider ->
+                                Collections.synchronizedMap(
+                                        CollectionUtils.createLRUCache(
+                                                RECEIVER_CACHE_SIZE,
+                                                "FlowExpressionParseUtil.receiverCache")));
+        ParseKey key = new ParseKey(expression, context, localScope);
+        Receiver result = receiverCache.get(key);
+        if (result == null) {
+            result = parseUncached(expression, context, localScope);
+            receiverCache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Parse a string and return its representation as a {@link Receiver}, without consulting the
+     * cache of receivers.
+     *
+     * @param expression flow expression to parse
+     * @param context information about any receiver and arguments
+     * @param localScope path to local scope to use
+     * @return the receiver that {@code expression} represents
+     * @throws FlowExpressionParseException if {@code expression} cannot be parsed
+     */
+    private static Receiver parseUncached(
+            String expression, FlowExpressionContext context, TreePath localScope)
+            throws FlowExpressionParseException {
         ProcessingEnvironment env = context.checkerContext.getProcessingEnvironment();
-        Expression expr;
-        try {
-            expr = StaticJavaParser.parseExpression(replaceParameterSyntax(expression));
-        } catch (ParseProblemException e) {
-            throw constructParserException(expression, "is an invalid expression");
+        Expression expr = expressionCache.get(expression);
+        if (expr == null) {
+            try {
+                expr = StaticJavaParser.parseExpression(replaceParameterSyntax(expression));
+            } catch (ParseProblemException e) {
+                throw constructParserException(expression, "is an invalid expression");
+            }
+            expressionCache.put(expression, expr);
         }
 
         Receiver result;
@@ -148,6 +213,108 @@ public class FlowExpressionParseUtil {
         return result;
     }
 
+    /**
+     * The key of the cache of receivers: an expression string, the context in which it is parsed,
+     * and its local scope. Two contexts are equivalent if their receivers and arguments are equal
+     * and have the same types.
+     */
+    private static final class ParseKey {
+
+        /** The expression string. */
+        private final String expression;
+
+        /** The context in which the expression is parsed. */
+        private final FlowExpressionContext context;
+
+        /** The leaf of the local scope, or null if there is none. */
+        private final @Nullable Tree scope;
+
+        /** The hash code of this key. */
+        private final int hashCode;
+
+        /**
+         * Creates a key.
+         *
+         * @param expression the expression string
+         * @param context the context in which the expression is parsed
+         * @param localScope the local scope, or null
+         */
+        ParseKey(String expression, FlowExpressionContext context, @Nullable TreePath localScope) {
+            this.expression = expression;
+            this.context = context;
+            this.scope = localScope == null ? null : localScope.getLeaf();
+            this.hashCode =
+                    Objects.hash(
+                            expression,
+                            context.receiver,
+                            context.arguments,
+                            System.identityHashCode(scope),
+                            context.useLocalScope);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (!(obj instanceof ParseKey)) {
+                return false;
+            }
+            ParseKey other = (ParseKey) obj;
+            return hashCode == other.hashCode
+                    && scope == other.scope
+                    && expression.equals(other.expression)
+                    && context.parsingMember == other.context.parsingMember
+                    && context.useLocalScope == other.context.useLocalScope
+                    && sameReceiver(context.receiver, other.context.receiver)
+                    && sameReceiver(context.outerReceiver, other.context.outerReceiver)
+                    && sameReceivers(context.arguments, other.context.arguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        /**
+         * Returns true if two receivers of a context are equal and have the same type.
+         *
+         * @param r1 a receiver, or null
+         * @param r2 a receiver, or null
+         * @return true if {@code r1} and {@code r2} are equal and have the same type
+         */
+        private static boolean sameReceiver(@Nullable Receiver r1, @Nullable Receiver r2) {
+            if (r1 == r2) {
+                return true;
+            }
+            if (r1 == null || r2 == null) {
+                return false;
+            }
+            // Receiver#equals ignores the types of some receivers, such as ThisReference.
+            return r1.equals(r2) && r1.getType().toString().equals(r2.getType().toString());
+        }
+
+        /**
+         * Returns true if two argument lists of a context are pairwise {@link #sameReceiver}.
+         *
+         * @param l1 a list of receivers, or null
+         * @param l2 a list of receivers, or null
+         * @return true if {@code l1} and {@code l2} have the same receivers
+         */
+        private static boolean sameReceivers(
+                @Nullable List<Receiver> l1, @Nullable List<Receiver> l2) {
+            if (l1 == l2) {
+                return true;
+            }
+            if (l1 == null || l2 == null || l1.size() != l2.size()) {
+                return false;
+            }
+            for (int i = 0; i < l1.size(); i++) {
+                if (!sameReceiver(l1.get(i), l2.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     /**
      * Replaces every occurrence of "#(number)" with "PARAMETER_REPLACEMENT(number)" where number is
      * an index of a parameter.
@@ -375,7 +542,7 @@ public class FlowExpressionParseUtil {
             if (expr.getScope().isPresent()) {
                 Receiver receiver = expr.getScope().get().accept(this, context);
                 context = context.copyChangeToParsingMemberOfReceiver(receiver);
-                expr = expr.removeScope();
+                // Do not remove the scope from expr: expr may be cached and parsed again.
             }
 
             String methodName = expr.getNameAsString();
@@ -9,7 +9,9 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
 import javax.lang.model.element.Name;
+import javax.lang.model.util.ElementFilter;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.dataflow.qual.Pure;
 import org.checkerframework.dataflow.qual.SideEffectFree;
@@ -18,6 +20,7 @@ import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.framework.type.QualifierHierarchy;
 import org.checkerframework.framework.type.poly.QualifierPolymorphism;
 import org.checkerframework.javacutil.AnnotationBuilder;
+import org.checkerframework.javacutil.AnnotationMirrorInterner;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.BugInCF;
 
@@ -172,6 +175,13 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
     /** All qualifiers, including polymorphic qualifiers. */
     private final Set<AnnotationMirror> typeQualifiers;
 
+    /**
+     * The precomputed subtype, lub, glb, top, and bottom tables of this hierarchy; see {@link
+     * #compileTables()}. Null until the first query. {@link QualifierTables#NONE} while the
+     * tables are computed, and if the hierarchy has none.
+     */
+    private volatile @Nullable QualifierTables tables = null;
+
     public MultiGraphQualifierHierarchy(MultiGraphFactory f) {
         this(f, (Object[]) null);
     }
@@ -282,6 +292,11 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
 
     @Override
     public AnnotationMirror getTopAnnotation(AnnotationMirror start) {
+        QualifierTables t = getTables();
+        int id = t.getId(start);
+        if (id >= 0) {
+            return t.qualifiersById[t.top[id]];
+        }
         for (AnnotationMirror top : tops) {
             if (AnnotationUtils.areSame(start, top) || isSubtype(start, top)) {
                 return top;
@@ -301,6 +316,11 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
 
     @Override
     public AnnotationMirror getBottomAnnotation(AnnotationMirror start) {
+        QualifierTables t = getTables();
+        int id = t.getId(start);
+        if (id >= 0) {
+            return t.qualifiersById[t.bottom[id]];
+        }
         for (AnnotationMirror bot : bottoms) {
             if (AnnotationUtils.areSame(start, bot) || isSubtype(bot, start)) {
                 return bot;
@@ -383,6 +403,14 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
 
     @Override
     public AnnotationMirror leastUpperBound(AnnotationMirror a1, AnnotationMirror a2) {
+        QualifierTables t = getTables();
+        int id1 = t.getId(a1);
+        if (id1 >= 0) {
+            int id2 = t.getId(a2);
+            if (id2 >= 0) {
+                return t.getQualifier(t.lub[id1][id2]);
+            }
+        }
         if (!AnnotationUtils.areSameByName(getTopAnnotation(a1), getTopAnnotation(a2))) {
             return null;
         } else if (isSubtype(a1, a2)) {
@@ -413,6 +441,14 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
 
     @Override
     public AnnotationMirror greatestLowerBound(AnnotationMirror a1, AnnotationMirror a2) {
+        QualifierTables t = getTables();
+        int id1 = t.getId(a1);
+        if (id1 >= 0) {
+            int id2 = t.getId(a2);
+            if (id2 >= 0) {
+                return t.getQualifier(t.glb[id1][id2]);
+            }
+        }
         if (AnnotationUtils.areSameByName(a1, a2)) {
             return AnnotationUtils.sameElementValues(a1, a2) ? a1 : getBottomAnnotation(a1);
         }
@@ -451,6 +487,14 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
      */
     @Override
     public boolean isSubtype(AnnotationMirror subAnno, AnnotationMirror superAnno) {
+        QualifierTables t = getTables();
+        int subId = t.getId(subAnno);
+        if (subId >= 0) {
+            int superId = t.getId(superAnno);
+            if (superId >= 0) {
+                return t.subtype[subId][superId];
+            }
+        }
         checkAnnoInGraph(subAnno);
         checkAnnoInGraph(superAnno);
 
@@ -908,6 +952,209 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
         }
     }
 
+    /**
+     * Returns true if {@link #isSubtype(AnnotationMirror, AnnotationMirror)}, {@link
+     * #leastUpperBound(AnnotationMirror, AnnotationMirror)}, {@link
+     * #greatestLowerBound(AnnotationMirror, AnnotationMirror)}, {@link
+     * #getTopAnnotation(AnnotationMirror)}, and {@link #getBottomAnnotation(AnnotationMirror)}
+     * may be answered from tables that are precomputed by searching the graph. The tables are
+     * only used if no qualifier of the hierarchy has elements.
+     *
+     * <p>Returns false by default, because the tables bypass overrides of these methods. A
+     * subclass may override this method to return true if it does not override these methods, or
+     * if its overrides only change the answers for qualifiers with elements. The default hierarchy
+     * of {@link AnnotatedTypeFactory#createQualifierHierarchy(MultiGraphFactory)} returns true.
+     *
+     * @return true if the queries may be answered from precomputed tables
+     */
+    protected boolean usesQualifierTables() {
+        return false;
+    }
+
+    /**
+     * Returns the tables of this hierarchy, computing them on first use. The tables are published
+     * through a volatile field, so that the queries may be made by several threads.
+     *
+     * @return the tables of this hierarchy, or {@link QualifierTables#NONE}
+     */
+    private QualifierTables getTables() {
+        QualifierTables result = tables;
+        if (result != null) {
+            return result;
+        }
+        if (typeQualifiers == null) {
+            // Called during construction.
+            return QualifierTables.NONE;
+        }
+        synchronized (this) {
+            if (tables == null) {
+                // The queries search the graph while the tables are computed.
+                tables = QualifierTables.NONE;
+                tables = compileTables();
+            }
+            return tables;
+        }
+    }
+
+    /**
+     * Assigns ids to the qualifiers and precomputes the subtype, lub, glb, top, and bottom tables,
+     * if the hierarchy allows it. Qualifiers with elements cannot be identified by their annotation
+     * type, and subclasses must opt in with {@link #usesQualifierTables()}; in other cases no ids
+     * are assigned and all queries search the graph.
+     *
+     * <p>The tables are filled by the graph search, which reports a malformed hierarchy, for
+     * example one in which two qualifiers have no unique lub, with a {@link BugInCF}.
+     *
+     * @return the tables of this hierarchy, or {@link QualifierTables#NONE}
+     */
+    private QualifierTables compileTables() {
+        if (!usesQualifierTables()) {
+            return QualifierTables.NONE;
+        }
+        for (AnnotationMirror qual : typeQualifiers) {
+            if (!ElementFilter.methodsIn(
+                            qual.getAnnotationType().asElement().getEnclosedElements())
+                    .isEmpty()) {
+                return QualifierTables.NONE;
+            }
+        }
+
+        int size = typeQualifiers.size();
+        AnnotationMirror[] quals = typeQualifiers.toArray(new AnnotationMirror[size]);
+        Map<Element, Integer> ids = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            ids.put(quals[i].getAnnotationType().asElement(), i);
+        }
+        boolean[][] subtypes = new boolean[size][size];
+        int[][] lub = new int[size][size];
+        int[][] glb = new int[size][size];
+        int[] top = new int[size];
+        int[] bottom = new int[size];
+        for (int i = 0; i < size; i++) {
+            top[i] = idOf(ids, getTopAnnotation(quals[i]));
+            bottom[i] = idOf(ids, getBottomAnnotation(quals[i]));
+            for (int j = 0; j < size; j++) {
+                subtypes[i][j] = isSubtype(quals[i], quals[j]);
+                lub[i][j] = idOf(ids, leastUpperBound(quals[i], quals[j]));
+                glb[i][j] = idOf(ids, greatestLowerBound(quals[i], quals[j]));
+            }
+        }
+        return new QualifierTables(ids, quals, subtypes, lub, glb, top, bottom);
+    }
+
+    /**
+     * Returns the id of {@code qual} in {@code ids}, or -1 if {@code qual} is null.
+     *
+     * @param ids maps the annotation type of each qualifier to its id
+     * @param qual a qualifier of this hierarchy, or null
+     * @return the id of {@code qual}, or -1 if {@code qual} is null
+     */
+    private static int idOf(Map<Element, Integer> ids, @Nullable AnnotationMirror qual) {
+        if (qual == null) {
+            return -1;
+        }
+        Integer id = ids.get(qual.getAnnotationType().asElement());
+        if (id == null) {
+            throw new BugInCF("MultiGraphQualifierHierarchy: unexpected qualifier " + qual);
+        }
+        return id;
+    }
+
+    /**
+     * The precomputed tables of a hierarchy, in which each qualifier is identified by a small
+     * integer id. Immutable once constructed.
+     *
+     * <p>The id of an annotation created by the Checker Framework is cached on the annotation
+     * itself with {@link AnnotationMirrorInterner#cacheValue}, so looking up the id of an interned
+     * qualifier does not hash anything. Other annotations are looked up by their annotation type,
+     * which identifies a qualifier because no qualifier of the hierarchy has elements.
+     */
+    private static final class QualifierTables {
+
+        /** The tables of a hierarchy that has none; all its queries search the graph. */
+        static final QualifierTables NONE =
+                new QualifierTables(null, null, null, null, null, null, null);
+
+        /** Maps the annotation type of each qualifier to its id; null for {@link #NONE}. */
+        final @Nullable Map<Element, Integer> ids;
+
+        /** All qualifiers of the hierarchy, indexed by their id. */
+        final AnnotationMirror[] qualifiersById;
+
+        /** {@code subtype[i][j]} is true if qualifier {@code i} is a subtype of {@code j}. */
+        final boolean[][] subtype;
+
+        /** {@code lub[i][j]} is the id of the lub of qualifiers {@code i} and {@code j}, or -1. */
+        final int[][] lub;
+
+        /** {@code glb[i][j]} is the id of the glb of qualifiers {@code i} and {@code j}, or -1. */
+        final int[][] glb;
+
+        /** {@code top[i]} is the id of the top qualifier in the hierarchy of {@code i}. */
+        final int[] top;
+
+        /** {@code bottom[i]} is the id of the bottom qualifier in the hierarchy of {@code i}. */
+        final int[] bottom;
+
+        /**
+         * Creates the tables of a hierarchy.
+         *
+         * @param ids maps the annotation type of each qualifier to its id
+         * @param qualifiersById the qualifiers, indexed by their id
+         * @param subtype the subtype table
+         * @param lub the lub table
+         * @param glb the glb table
+         * @param top the top table
+         * @param bottom the bottom table
+         */
+        QualifierTables(
+                @Nullable Map<Element, Integer> ids,
+                AnnotationMirror[] qualifiersById,
+                boolean[][] subtype,
+                int[][] lub,
+                int[][] glb,
+                int[] top,
+                int[] bottom) {
+            this.ids = ids;
+            this.qualifiersById = qualifiersById;
+            this.subtype = subtype;
+            this.lub = lub;
+            this.glb = glb;
+            this.top = top;
+            this.bottom = bottom;
+        }
+
+        /**
+         * Returns the id of a qualifier.
+         *
+         * @param qualifier a qualifier
+         * @return the id of {@code qualifier}, or -1 if it has none
+         */
+        int getId(@Nullable AnnotationMirror qualifier) {
+            if (ids == null || qualifier == null) {
+                return -1;
+            }
+            Object cached = AnnotationMirrorInterner.getCachedValue(qualifier, this);
+            if (cached != null) {
+                return (Integer) cached;
+            }
+            Integer id = ids.get(qualifier.getAnnotationType().asElement());
+            int result = id == null ? -1 : id;
+            AnnotationMirrorInterner.cacheValue(qualifier, this, result);
+            return result;
+        }
+
+        /**
+         * Returns the qualifier with the given id.
+         *
+         * @param id the id of a qualifier, or -1
+         * @return the qualifier with the given id, or null if {@code id} is -1
+         */
+        @Nullable AnnotationMirror getQualifier(int id) {
+            return id < 0 ? null : qualifiersById[id];
+        }
+    }
+
     /** Two annotations; used for caching the result of calls to lub and glb. */
     private static class AnnotationPair {
         /** The first annotation. */
@@ -11,6 +11,9 @@ import com.sun.source.tree.TypeParameterTree;
 import com.sun.source.tree.VariableTree;
 import com.sun.source.util.TreePath;
 import com.sun.tools.javac.code.Type.WildcardType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
@@ -45,6 +48,8 @@ import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.BugInCF;
 import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ElementUtils;
+import org.checkerframework.javacutil.Instrumentation;
+import org.checkerframework.javacutil.Instrumentation.Phase;
 import org.checkerframework.javacutil.PluginUtil;
 import org.checkerframework.javacutil.TreeUtils;
 import org.checkerframework.javacutil.TypesUtils;
@@ -87,9 +92,12 @@ public class QualifierDefaults {
     /** Mapping from an Element to the source Tree of the declaration. */
     private static final int CACHE_SIZE = 300;
 
+    // Synchronized because compilations may run concurrently in one JVM.
     @SuppressWarnings("checkstyle:constantname") // only a shallow constant, so don't use all-caps
     protected static final Map<Element, BoundType> elementToBoundType =
-            CollectionUtils.createLRUCache(CACHE_SIZE);
+            Collections.synchronizedMap(
+                    CollectionUtils.createLRUCache(
+                            CACHE_SIZE, "QualifierDefaults.elementToBoundType"));
 
     /**
      * Defaults that apply for a certain Element. On the one hand this is used for caching (an
@@ -98,6 +106,18 @@ public class QualifierDefaults {
      */
     private final Map<Element, DefaultSet> elementDefaults = new IdentityHashMap<>();
 
+    /**
+     * The default plans of checked code, keyed by the element that is the scope of the defaults.
+     * See {@link #defaultPlanAt(Element)}.
+     */
+    private final Map<Element, List<Default>> checkedCodeDefaultPlans = new IdentityHashMap<>();
+
+    /**
+     * The default plans of unchecked code, keyed by the element that is the scope of the defaults.
+     * See {@link #defaultPlanAt(Element)}.
+     */
+    private final Map<Element, List<Default>> uncheckedCodeDefaultPlans = new IdentityHashMap<>();
+
     /** A mapping of Element &rarr; Whether or not that element is AnnotatedFor this type system. */
     private final Map<Element, Boolean> elementAnnotatedFors = new IdentityHashMap<>();
 
@@ -261,6 +281,7 @@ public class QualifierDefaults {
             AnnotationMirror absoluteDefaultAnno, TypeUseLocation location) {
         checkDuplicates(checkedCodeDefaults, absoluteDefaultAnno, location);
         checkedCodeDefaults.add(new Default(absoluteDefaultAnno, location));
+        clearDefaultPlans();
     }
 
     /** Sets the default annotation for unchecked elements. */
@@ -270,6 +291,7 @@ public class QualifierDefaults {
         checkIsValidUncheckedCodeLocation(uncheckedDefaultAnno, location);
 
         uncheckedCodeDefaults.add(new Default(uncheckedDefaultAnno, location));
+        clearDefaultPlans();
     }
 
     /** Sets the default annotation for unchecked elements, with specific locations. */
@@ -298,6 +320,13 @@ public class QualifierDefaults {
         }
         prevset.add(new Default(elementDefaultAnno, location));
         elementDefaults.put(elem, prevset);
+        clearDefaultPlans();
+    }
+
+    /** Discards the default plans, because the defaults that they were computed from changed. */
+    private void clearDefaultPlans() {
+        checkedCodeDefaultPlans.clear();
+        uncheckedCodeDefaultPlans.clear();
     }
 
     private void checkIsValidUncheckedCodeLocation(
@@ -352,7 +381,12 @@ public class QualifierDefaults {
      * @param type the type to annotate
      */
     public void annotate(Element elt, AnnotatedTypeMirror type) {
-        applyDefaultsElement(elt, type);
+        Instrumentation.start(Phase.DEFAULTING);
+        try {
+            applyDefaultsElement(elt, type);
+        } finally {
+            Instrumentation.stop(Phase.DEFAULTING);
+        }
     }
 
     /**
@@ -362,7 +396,12 @@ public class QualifierDefaults {
      * @param type the type to annotate
      */
     public void annotate(Tree tree, AnnotatedTypeMirror type) {
-        applyDefaults(tree, type);
+        Instrumentation.start(Phase.DEFAULTING);
+        try {
+            applyDefaults(tree, type);
+        } finally {
+            Instrumentation.stop(Phase.DEFAULTING);
+        }
     }
 
     /**
@@ -686,23 +725,56 @@ public class QualifierDefaults {
      */
     private void applyDefaultsElement(
             final Element annotationScope, final AnnotatedTypeMirror type) {
-        DefaultSet defaults = defaultsAt(annotationScope);
         DefaultApplierElement applier =
                 createDefaultApplierElement(atypeFactory, annotationScope, type, applyToTypeVar);
+        applier.applyDefaults(defaultPlanAt(annotationScope));
+    }
 
-        for (Default def : defaults) {
-            applier.applyDefault(def);
+    /**
+     * Returns the default plan of a scope: the defaults that apply in the scope, in the order in
+     * which they take precedence. These are the defaults of the scope, then the unchecked code
+     * defaults if {@link #applyUncheckedCodeDefaults(Element)} returns true for the scope, then the
+     * checked code defaults.
+     *
+     * <p>A position in a type gets the qualifier of the first default in the plan whose location
+     * matches the position, for each hierarchy in which the position is not annotated. So the plan
+     * contains only the first default for each location and hierarchy; the others can never apply.
+     * The plans are cached, so the defaults of a scope are collected only once.
+     *
+     * @param annotationScope the element representing the nearest enclosing default annotation
+     *     scope for a type
+     * @return the default plan of {@code annotationScope}
+     */
+    private List<Default> defaultPlanAt(final Element annotationScope) {
+        boolean applyUncheckedCodeDefaults = applyUncheckedCodeDefaults(annotationScope);
+        Map<Element, List<Default>> plans =
+                applyUncheckedCodeDefaults ? uncheckedCodeDefaultPlans : checkedCodeDefaultPlans;
+        List<Default> plan = plans.get(annotationScope);
+        if (plan != null) {
+            return plan;
         }
 
-        if (applyUncheckedCodeDefaults(annotationScope)) {
-            for (Default def : uncheckedCodeDefaults) {
-                applier.applyDefault(def);
-            }
+        List<Default> defaults = new ArrayList<>(defaultsAt(annotationScope));
+        if (applyUncheckedCodeDefaults) {
+            defaults.addAll(uncheckedCodeDefaults);
         }
+        defaults.addAll(checkedCodeDefaults);
 
-        for (Default def : checkedCodeDefaults) {
-            applier.applyDefault(def);
+        QualifierHierarchy qualHierarchy = atypeFactory.getQualifierHierarchy();
+        Map<TypeUseLocation, Set<AnnotationMirror>> locationToTops =
+                new EnumMap<>(TypeUseLocation.class);
+        plan = new ArrayList<>(defaults.size());
+        for (Default def : defaults) {
+            Set<AnnotationMirror> tops =
+                    locationToTops.computeIfAbsent(
+                            def.location, location -> AnnotationUtils.createAnnotationSet());
+            if (tops.add(qualHierarchy.getTopAnnotation(def.anno))) {
+                plan.add(def);
+            }
         }
+        plan = Collections.unmodifiableList(plan);
+        plans.put(annotationScope, plan);
+        return plan;
     }
 
     protected DefaultApplierElement createDefaultApplierElement(
@@ -724,6 +796,12 @@ public class QualifierDefaults {
          */
         protected TypeUseLocation location;
 
+        /**
+         * The defaults to apply, in the order in which they take precedence. (Should only be set
+         * by the applyDefaults method.)
+         */
+        private List<Default> defaults = Collections.emptyList();
+
         /** The default element applier implementation. */
         protected final DefaultApplierElementImpl impl;
 
@@ -758,8 +836,22 @@ public class QualifierDefaults {
          * @param def default to apply
          */
         public void applyDefault(Default def) {
-            this.location = def.location;
-            impl.visit(type, def.anno);
+            applyDefaults(Collections.singletonList(def));
+        }
+
+        /**
+         * Apply defaults to the type, in a single traversal of the type. Each position in the type
+         * gets the qualifier of the first default whose location matches the position, for each
+         * hierarchy in which the position is not yet annotated.
+         *
+         * @param defaults the defaults to apply, in the order in which they take precedence
+         */
+        public void applyDefaults(List<Default> defaults) {
+            if (defaults.isEmpty()) {
+                return;
+            }
+            this.defaults = defaults;
+            impl.visit(type, null);
         }
 
         /**
@@ -821,154 +913,100 @@ public class QualifierDefaults {
                     return super.scan(t, qual);
                 }
 
-                // Some defaults only apply to the top level type.
+                for (Default def : defaults) {
+                    location = def.location;
+                    if (isApplicable(t)) {
+                        addAnnotation(t, def.anno);
+                    }
+                }
+
+                return super.scan(t, qual);
+            }
+
+            /**
+             * Returns true if the default for {@link #location} applies to {@code t}.
+             *
+             * <p>Some defaults only apply to the top level type. The defaults for the parameters,
+             * receiver, and return type of a method apply to the components of the top level
+             * executable type, and the default for exception parameters also applies to the
+             * alternatives of the top level union type.
+             *
+             * @param t a component of the type to which defaults are applied
+             * @return true if the default for {@link #location} applies to {@code t}
+             */
+            private boolean isApplicable(AnnotatedTypeMirror t) {
                 boolean isTopLevelType = t == type;
+                ElementKind scopeKind = scope == null ? null : scope.getKind();
                 switch (location) {
                     case FIELD:
-                        if (scope != null
-                                && scope.getKind() == ElementKind.FIELD
-                                && isTopLevelType) {
-                            addAnnotation(t, qual);
-                        }
-                        break;
+                        return scopeKind == ElementKind.FIELD && isTopLevelType;
                     case LOCAL_VARIABLE:
-                        if (scope != null
-                                && scope.getKind() == ElementKind.LOCAL_VARIABLE
-                                && isTopLevelType) {
-                            // TODO: how do we determine that we are in a cast or instanceof
-                            // type?
-                            addAnnotation(t, qual);
-                        }
-                        break;
+                        // TODO: how do we determine that we are in a cast or instanceof type?
+                        return scopeKind == ElementKind.LOCAL_VARIABLE && isTopLevelType;
                     case RESOURCE_VARIABLE:
-                        if (scope != null
-                                && scope.getKind() == ElementKind.RESOURCE_VARIABLE
-                                && isTopLevelType) {
-                            addAnnotation(t, qual);
-                        }
-                        break;
+                        return scopeKind == ElementKind.RESOURCE_VARIABLE && isTopLevelType;
                     case EXCEPTION_PARAMETER:
-                        if (scope != null
-                                && scope.getKind() == ElementKind.EXCEPTION_PARAMETER
-                                && isTopLevelType) {
-                            addAnnotation(t, qual);
-                            if (t.getKind() == TypeKind.UNION) {
-                                AnnotatedUnionType aut = (AnnotatedUnionType) t;
-                                // Also apply the default to the alternative types
-                                for (AnnotatedDeclaredType anno : aut.getAlternatives()) {
-                                    addAnnotation(anno, qual);
-                                }
-                            }
+                        if (scopeKind != ElementKind.EXCEPTION_PARAMETER) {
+                            return false;
                         }
-                        break;
+                        if (isTopLevelType) {
+                            return true;
+                        }
+                        // Also apply the default to the alternative types.
+                        return type.getKind() == TypeKind.UNION
+                                && containsSame(((AnnotatedUnionType) type).getAlternatives(), t);
                     case PARAMETER:
-                        if (scope != null
-                                && scope.getKind() == ElementKind.PARAMETER
-                                && isTopLevelType) {
-                            addAnnotation(t, qual);
-                        } else if (scope != null
-                                && (scope.getKind() == ElementKind.METHOD
-                                        || scope.getKind() == ElementKind.CONSTRUCTOR)
-                                && t.getKind() == TypeKind.EXECUTABLE
-                                && isTopLevelType) {
-
-                            for (AnnotatedTypeMirror atm :
-                                    ((AnnotatedExecutableType) t).getParameterTypes()) {
-                                if (shouldBeAnnotated(atm, false)) {
-                                    addAnnotation(atm, qual);
-                                }
-                            }
+                        if (scopeKind == ElementKind.PARAMETER && isTopLevelType) {
+                            return true;
                         }
-                        break;
+                        return (scopeKind == ElementKind.METHOD
+                                        || scopeKind == ElementKind.CONSTRUCTOR)
+                                && type.getKind() == TypeKind.EXECUTABLE
+                                && containsSame(
+                                        ((AnnotatedExecutableType) type).getParameterTypes(), t);
                     case RECEIVER:
-                        if (scope != null
-                                && scope.getKind() == ElementKind.PARAMETER
+                        if (scopeKind == ElementKind.PARAMETER
                                 && isTopLevelType
                                 && scope.getSimpleName().contentEquals("this")) {
                             // TODO: comparison against "this" is ugly, won't work
                             // for all possible names for receiver parameter.
                             // Comparison to Names._this might be a bit faster.
-                            addAnnotation(t, qual);
-                        } else if (scope != null
-                                && (scope.getKind() == ElementKind.METHOD)
-                                && t.getKind() == TypeKind.EXECUTABLE
-                                && isTopLevelType) {
-
-                            final AnnotatedDeclaredType receiver =
-                                    ((AnnotatedExecutableType) t).getReceiverType();
-                            if (shouldBeAnnotated(receiver, false)) {
-                                addAnnotation(receiver, qual);
-                            }
+                            return true;
                         }
-                        break;
+                        return scopeKind == ElementKind.METHOD
+                                && type.getKind() == TypeKind.EXECUTABLE
+                                && ((AnnotatedExecutableType) type).getReceiverType() == t;
                     case RETURN:
-                        if (scope != null
-                                && scope.getKind() == ElementKind.METHOD
-                                && t.getKind() == TypeKind.EXECUTABLE
-                                && isTopLevelType) {
-                            final AnnotatedTypeMirror returnType =
-                                    ((AnnotatedExecutableType) t).getReturnType();
-                            if (shouldBeAnnotated(returnType, false)) {
-                                addAnnotation(returnType, qual);
-                            }
-                        }
-                        break;
+                        return scopeKind == ElementKind.METHOD
+                                && type.getKind() == TypeKind.EXECUTABLE
+                                && ((AnnotatedExecutableType) type).getReturnType() == t;
                     case CONSTRUCTOR_RESULT:
-                        if (scope != null
-                                && scope.getKind() == ElementKind.CONSTRUCTOR
-                                && t.getKind() == TypeKind.EXECUTABLE
-                                && isTopLevelType) {
-                            final AnnotatedTypeMirror returnType =
-                                    ((AnnotatedExecutableType) t).getReturnType();
-                            if (shouldBeAnnotated(returnType, false)) {
-                                addAnnotation(returnType, qual);
-                            }
-                        }
-                        break;
+                        return scopeKind == ElementKind.CONSTRUCTOR
+                                && type.getKind() == TypeKind.EXECUTABLE
+                                && ((AnnotatedExecutableType) type).getReturnType() == t;
                     case IMPLICIT_LOWER_BOUND:
-                        if (isLowerBound
-                                && boundType.isOneOf(BoundType.UNBOUNDED, BoundType.UPPER)) {
-                            addAnnotation(t, qual);
-                        }
-                        break;
+                        return isLowerBound
+                                && boundType.isOneOf(BoundType.UNBOUNDED, BoundType.UPPER);
                     case EXPLICIT_LOWER_BOUND:
-                        if (isLowerBound && boundType.isOneOf(BoundType.LOWER)) {
-                            addAnnotation(t, qual);
-                        }
-                        break;
+                        return isLowerBound && boundType.isOneOf(BoundType.LOWER);
                     case LOWER_BOUND:
-                        if (isLowerBound) {
-                            addAnnotation(t, qual);
-                        }
-                        break;
+                        return isLowerBound;
                     case IMPLICIT_UPPER_BOUND:
-                        if (isUpperBound
-                                && boundType.isOneOf(BoundType.UNBOUNDED, BoundType.LOWER)) {
-                            addAnnotation(t, qual);
-                        }
-                        break;
+                        return isUpperBound
+                                && boundType.isOneOf(BoundType.UNBOUNDED, BoundType.LOWER);
                     case EXPLICIT_UPPER_BOUND:
-                        if (isUpperBound && boundType.isOneOf(BoundType.UPPER)) {
-                            addAnnotation(t, qual);
-                        }
-                        break;
+                        return isUpperBound && boundType.isOneOf(BoundType.UPPER);
                     case UPPER_BOUND:
-                        if (this.isUpperBound) {
-                            addAnnotation(t, qual);
-                        }
-                        break;
+                        return isUpperBound;
                     case OTHERWISE:
                     case ALL:
                         // TODO: forbid ALL if anything else was given.
-                        addAnnotation(t, qual);
-                        break;
+                        return true;
                     default:
                         throw new BugInCF(
                                 "QualifierDefaults.DefaultApplierElement: unhandled location: "
                                         + location);
                 }
-
-                return super.scan(t, qual);
             }
 
             @Override
@@ -1047,6 +1085,23 @@ public class QualifierDefaults {
         }
     }
 
+    /**
+     * Returns true if {@code types} contains {@code type}, compared by reference.
+     *
+     * @param types a list of types
+     * @param type a type
+     * @return true if {@code types} contains {@code type}, compared by reference
+     */
+    private static boolean containsSame(
+            List<? extends AnnotatedTypeMirror> types, AnnotatedTypeMirror type) {
+        for (AnnotatedTypeMirror t : types) {
+            if (t == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Specifies whether the type variable or wildcard has an explicit upper bound (UPPER), an
      * explicit lower bound (LOWER), or no explicit bounds (UNBOUNDED).
@@ -18,6 +18,7 @@ import com.sun.source.util.TreePath;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -449,10 +450,6 @@ public class TypeArgInferenceUtil {
      */
     private static final TypeVariableSubstitutor substitutor = new TypeVariableSubstitutor();
 
-    // Substituter requires an input map that the substitute methods build.  We just reuse the same
-    // map rather than recreate it each time.
-    private static final Map<TypeVariable, AnnotatedTypeMirror> substituteMap = new HashMap<>(5);
-
     /**
      * Replace all uses of typeVariable with substitution in a copy of toModify using the normal
      * substitution rules. Return the copy
@@ -463,8 +460,9 @@ public class TypeArgInferenceUtil {
             final TypeVariable typeVariable,
             final AnnotatedTypeMirror substitution,
             final AnnotatedTypeMirror toModify) {
-        substituteMap.clear();
-        substituteMap.put(typeVariable, substitution.deepCopy());
+        // Not a shared map, because compilations may run concurrently in one JVM.
+        final Map<TypeVariable, AnnotatedTypeMirror> substituteMap =
+                Collections.singletonMap(typeVariable, substitution.deepCopy());
 
         final AnnotatedTypeMirror toModifyCopy = toModify.deepCopy();
         substitutor.substitute(substituteMap, toModifyCopy);
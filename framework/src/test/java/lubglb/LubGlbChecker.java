@@ -70,5 +70,11 @@ public class LubGlbChecker extends BaseTypeChecker {
                 : "LUB of POLY and F is not POLY!";
         assert AnnotationUtils.areSame(qh.leastUpperBound(POLY, A), A)
                 : "LUB of POLY and A is not A!";
+
+        // The hierarchy is the default one and its qualifiers have no elements, so it answers
+        // these queries from its tables.
+        assert AnnotationUtils.areSame(qh.getTopAnnotation(F), A) : "Top of F is not A!";
+        assert AnnotationUtils.areSame(qh.getBottomAnnotation(POLY), F)
+                : "Bottom of POLY is not F!";
     }
 }
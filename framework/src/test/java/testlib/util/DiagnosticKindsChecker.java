@@ -0,0 +1,41 @@
+package testlib.util;
+
+import com.sun.source.tree.MethodTree;
+import javax.tools.Diagnostic;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.common.basetype.BaseTypeVisitor;
+import org.checkerframework.framework.source.Result;
+import org.checkerframework.javacutil.TreeUtils;
+
+/**
+ * A checker that issues a diagnostic of each kind, through each of the ways that a checker can
+ * issue a diagnostic, at every method whose name starts with "report". Otherwise, it is the same
+ * as {@link TestChecker}.
+ *
+ * <p>This checker should only be used for testing the framework.
+ */
+public final class DiagnosticKindsChecker extends BaseTypeChecker {
+    @Override
+    protected BaseTypeVisitor<?> createSourceVisitor() {
+        return new TestVisitor(this) {
+            @Override
+            public Void visitMethod(MethodTree node, Void p) {
+                if (node.getName().toString().startsWith("report")) {
+                    checker.report(Result.failure("report.error"), node);
+                    checker.report(Result.warning("report.warning"), node);
+                    checker.report(
+                            Result.warning("report.element.warning"),
+                            TreeUtils.elementFromDeclaration(node));
+                    checker.getProcessingEnvironment()
+                            .getMessager()
+                            .printMessage(
+                                    Diagnostic.Kind.NOTE,
+                                    "note at " + node.getName(),
+                                    TreeUtils.elementFromDeclaration(node));
+                    checker.message(Diagnostic.Kind.NOTE, "note without a position");
+                }
+                return super.visitMethod(node, p);
+            }
+        };
+    }
+}
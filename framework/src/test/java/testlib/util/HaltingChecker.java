@@ -0,0 +1,61 @@
+package testlib.util;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.common.basetype.BaseTypeVisitor;
+import org.checkerframework.dataflow.qual.TerminatesExecution;
+import org.checkerframework.javacutil.AnnotationBuilder;
+import org.checkerframework.javacutil.AnnotationUtils;
+
+/**
+ * A compound checker whose only subchecker treats every method named "halt" as
+ * {@code @TerminatesExecution}, but which itself does not. Otherwise, both are the same as {@link
+ * TestChecker}.
+ *
+ * <p>This checker should only be used for testing the framework.
+ */
+public final class HaltingChecker extends BaseTypeChecker {
+    @Override
+    protected BaseTypeVisitor<?> createSourceVisitor() {
+        return new TestVisitor(this);
+    }
+
+    @Override
+    protected LinkedHashSet<Class<? extends BaseTypeChecker>> getImmediateSubcheckerClasses() {
+        LinkedHashSet<Class<? extends BaseTypeChecker>> subcheckers = new LinkedHashSet<>();
+        subcheckers.addAll(super.getImmediateSubcheckerClasses());
+        subcheckers.add(HaltingSubchecker.class);
+        return subcheckers;
+    }
+
+    /** The subchecker of {@link HaltingChecker}. */
+    public static final class HaltingSubchecker extends BaseTypeChecker {
+        @Override
+        protected BaseTypeVisitor<?> createSourceVisitor() {
+            return new TestVisitor(this) {
+                @Override
+                protected TestAnnotatedTypeFactory createTypeFactory() {
+                    return new TestAnnotatedTypeFactory(checker) {
+                        @Override
+                        public Set<AnnotationMirror> getDeclAnnotations(Element elt) {
+                            Set<AnnotationMirror> result = super.getDeclAnnotations(elt);
+                            if (elt.getKind() == ElementKind.METHOD
+                                    && elt.getSimpleName().contentEquals("halt")) {
+                                result = AnnotationUtils.createAnnotationSet();
+                                result.addAll(super.getDeclAnnotations(elt));
+                                result.add(
+                                        AnnotationBuilder.fromClass(
+                                                elements, TerminatesExecution.class));
+                            }
+                            return result;
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
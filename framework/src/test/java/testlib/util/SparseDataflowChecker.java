@@ -0,0 +1,93 @@
+package testlib.util;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.element.VariableElement;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.common.basetype.BaseTypeVisitor;
+import org.checkerframework.dataflow.analysis.TransferInput;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.block.Block;
+import org.checkerframework.dataflow.cfg.node.Node;
+import org.checkerframework.framework.flow.CFAnalysis;
+import org.checkerframework.framework.flow.CFStore;
+import org.checkerframework.framework.flow.CFValue;
+import org.checkerframework.framework.source.Result;
+import org.checkerframework.javacutil.Pair;
+
+/**
+ * A checker that analyzes each control flow graph twice, densely and sparsely, and issues the
+ * error "sparse.dense.differ" at the code of a graph whose fixpoints differ. Otherwise, it is the
+ * same as {@link TestChecker}.
+ *
+ * <p>By default, each graph is analyzed sparsely first. With the {@code -AdenseFirst} option, it
+ * is analyzed densely first.
+ *
+ * <p>This checker should only be used for testing the framework.
+ */
+@SupportedOptions({"denseFirst"})
+public final class SparseDataflowChecker extends BaseTypeChecker {
+    @Override
+    protected BaseTypeVisitor<?> createSourceVisitor() {
+        return new TestVisitor(this) {
+            @Override
+            protected TestAnnotatedTypeFactory createTypeFactory() {
+                return new TestAnnotatedTypeFactory(checker) {
+                    @Override
+                    protected CFAnalysis createFlowAnalysis(
+                            List<Pair<VariableElement, CFValue>> fieldValues) {
+                        return new ComparingAnalysis(
+                                checker, this, fieldValues, checker.hasOption("denseFirst"));
+                    }
+                };
+            }
+        };
+    }
+
+    /** An analysis that computes the fixpoint of each graph both densely and sparsely. */
+    private static class ComparingAnalysis extends CFAnalysis {
+
+        /** Whether each graph is analyzed densely first. */
+        private final boolean denseFirst;
+
+        /**
+         * Creates the analysis.
+         *
+         * @param checker the checker
+         * @param factory the type factory
+         * @param fieldValues the abstract values of the fields
+         * @param denseFirst whether each graph is analyzed densely first
+         */
+        ComparingAnalysis(
+                BaseTypeChecker checker,
+                TestAnnotatedTypeFactory factory,
+                List<Pair<VariableElement, CFValue>> fieldValues,
+                boolean denseFirst) {
+            super(checker, factory, fieldValues);
+            this.denseFirst = denseFirst;
+        }
+
+        @Override
+        public void performAnalysis(
+                ControlFlowGraph cfg, List<Pair<VariableElement, CFValue>> fieldValues) {
+            setSparse(!denseFirst);
+            super.performAnalysis(cfg, fieldValues);
+            IdentityHashMap<Node, CFValue> otherValues = new IdentityHashMap<>(nodeValues);
+            IdentityHashMap<Block, TransferInput<CFValue, CFStore>> otherInputs =
+                    new IdentityHashMap<>(inputs);
+            CFStore otherExitStore = getRegularExitStore();
+
+            setSparse(denseFirst);
+            super.performAnalysis(cfg, fieldValues);
+            if (!otherValues.equals(nodeValues)
+                    || !otherInputs.equals(inputs)
+                    || (otherExitStore == null
+                            ? getRegularExitStore() != null
+                            : !otherExitStore.equals(getRegularExitStore()))) {
+                checker.report(
+                        Result.failure("sparse.dense.differ"), cfg.getUnderlyingAST().getCode());
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package testlib.util;
+
+import com.sun.source.tree.VariableTree;
+import java.util.Properties;
+import javax.lang.model.element.AnnotationMirror;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.common.basetype.BaseTypeVisitor;
+import org.checkerframework.framework.source.Result;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedDeclaredType;
+import org.checkerframework.framework.type.TypeHierarchy;
+import org.checkerframework.javacutil.AnnotationBuilder;
+
+/**
+ * A checker that tests the cache of subtype results across queries. At each variable named {@code
+ * mutated}, whose type must have a type argument, it asks whether the type is a subtype of a copy
+ * whose first type argument is {@code @Odd}, twice; then it makes the first type argument of the
+ * type {@code @Odd} too, and asks again. It reports the three results in the warning
+ * "subtype.results". Otherwise, it is the same as {@link TestChecker}.
+ *
+ * <p>This checker should only be used for testing the framework.
+ */
+public final class SubtypeCacheChecker extends BaseTypeChecker {
+    @Override
+    protected BaseTypeVisitor<?> createSourceVisitor() {
+        return new TestVisitor(this) {
+            @Override
+            public Void visitVariable(VariableTree node, Void p) {
+                if (node.getName().contentEquals("mutated")) {
+                    AnnotationMirror odd = AnnotationBuilder.fromClass(elements, Odd.class);
+                    AnnotatedDeclaredType subtype =
+                            (AnnotatedDeclaredType) atypeFactory.getAnnotatedType(node);
+                    AnnotatedDeclaredType supertype = subtype.deepCopy();
+                    supertype.getTypeArguments().get(0).replaceAnnotation(odd);
+
+                    TypeHierarchy hierarchy = atypeFactory.getTypeHierarchy();
+                    boolean before = hierarchy.isSubtype(subtype, supertype);
+                    boolean again = hierarchy.isSubtype(subtype, supertype);
+                    subtype.getTypeArguments().get(0).replaceAnnotation(odd);
+                    boolean after = hierarchy.isSubtype(subtype, supertype);
+
+                    // The key is added by getMessages, which the CompilerMessageChecker does not
+                    // support.
+                    @SuppressWarnings("compilermessages")
+                    Result results = Result.warning("subtype.results", before, again, after);
+                    checker.report(results, node);
+                }
+                return super.visitVariable(node, p);
+            }
+        };
+    }
+
+    @Override
+    public Properties getMessages() {
+        Properties messages = super.getMessages();
+        messages.setProperty("subtype.results", "before: %s, again: %s, after mutation: %s");
+        return messages;
+    }
+}
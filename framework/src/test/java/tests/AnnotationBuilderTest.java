@@ -1,6 +1,9 @@
 package tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import com.sun.tools.javac.main.JavaCompiler;
@@ -13,6 +16,7 @@ import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.type.TypeMirror;
 import org.checkerframework.javacutil.AnnotationBuilder;
+import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.BugInCF;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -306,6 +310,29 @@ public class AnnotationBuilderTest {
                 builder.build().toString());
     }
 
+    @Test
+    public void internedAnnotations() {
+        AnnotationMirror myAnno1 = AnnotationBuilder.fromClass(env.getElementUtils(), MyAnno.class);
+        AnnotationMirror myAnno2 = AnnotationBuilder.fromClass(env.getElementUtils(), MyAnno.class);
+        assertSame(myAnno1, myAnno2);
+
+        AnnotationBuilder builder1 = new AnnotationBuilder(env, Mult.class);
+        builder1.setValue("a", 1);
+        builder1.setValue("b", "mark");
+        AnnotationMirror mult1 = builder1.build();
+        AnnotationBuilder builder2 = new AnnotationBuilder(env, Mult.class);
+        builder2.setValue("b", "mark");
+        builder2.setValue("a", 1);
+        assertSame(mult1, builder2.build());
+
+        AnnotationBuilder builder3 = new AnnotationBuilder(env, Mult.class);
+        builder3.setValue("a", 2);
+        builder3.setValue("b", "mark");
+        AnnotationMirror mult2 = builder3.build();
+        assertNotSame(mult1, mult2);
+        assertFalse(AnnotationUtils.areSame(mult1, mult2));
+    }
+
     @Test(expected = BugInCF.class)
     public void testAnnoAsArgNegative() {
         AnnotationMirror anno = AnnotationBuilder.fromClass(env.getElementUtils(), Anno.class);
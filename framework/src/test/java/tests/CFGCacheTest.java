@@ -0,0 +1,146 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import org.checkerframework.framework.test.CompilationResult;
+import org.checkerframework.framework.test.TestConfiguration;
+import org.checkerframework.framework.test.TestConfigurationBuilder;
+import org.checkerframework.framework.test.TypecheckExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that the checkers of a compound checker share a control flow graph only if it does not
+ * depend on the checker that built it (see {@link org.checkerframework.framework.flow.CFGCache}).
+ */
+public class CFGCacheTest {
+
+    /**
+     * A class whose method {@code m} has an error unless {@code halt} terminates execution, which
+     * only the subchecker of testlib.util.HaltingChecker assumes.
+     */
+    private static final String HALTING =
+            "import testlib.util.Odd;\n"
+                    + "class Halting {\n"
+                    + "  static void halt() {}\n"
+                    + "  void m(@Odd Object odd, Object o, boolean b) {\n"
+                    + "    Object x = o;\n"
+                    + "    if (b) {\n"
+                    + "      x = odd;\n"
+                    + "    } else {\n"
+                    + "      halt();\n"
+                    + "    }\n"
+                    + "    @Odd Object y = x;\n"
+                    + "  }\n"
+                    + "}\n";
+
+    /** A class that does not call {@code halt}. */
+    private static final String PLAIN =
+            "import testlib.util.Odd;\n"
+                    + "class Plain {\n"
+                    + "  void m(@Odd Object odd, boolean b) {\n"
+                    + "    Object x = odd;\n"
+                    + "    @Odd Object y = x;\n"
+                    + "  }\n"
+                    + "}\n";
+
+    /** The directory of the source files and of the instrumentation file. */
+    private Path dir;
+
+    @Before
+    public void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("cfg-cache");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void graphDependsOnTerminatesExecution() throws IOException {
+        File source = write("Halting", HALTING);
+        List<String> errors = errors(compile(source));
+        // Only the root checker, for which halt() returns, issues the error.
+        assertEquals(errors.toString(), 1, errors.size());
+        assertTrue(errors.get(0), errors.get(0).startsWith("11:"));
+    }
+
+    @Test
+    public void graphIsShared() throws IOException {
+        File source = write("Plain", PLAIN);
+        Path instrumentation = dir.resolve("instrumentation.json");
+        assertEquals(
+                new ArrayList<String>(),
+                errors(compile(source, "-AinstrumentationFile=" + instrumentation)));
+        String json = new String(Files.readAllBytes(instrumentation), StandardCharsets.UTF_8);
+        assertTrue(json, json.contains("\"cfgCacheHits\""));
+    }
+
+    /**
+     * Writes a source file.
+     *
+     * @param name the name of the class in the file
+     * @param source the contents of the file
+     * @return the file
+     */
+    private File write(String name, String source) throws IOException {
+        Path file = dir.resolve(name + ".java");
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        return file.toFile();
+    }
+
+    /**
+     * Compiles a source file with testlib.util.HaltingChecker.
+     *
+     * @param source the source file to compile
+     * @param options options in addition to -Anomsgtext
+     * @return the result of the compilation
+     */
+    private CompilationResult compile(File source, String... options) {
+        List<String> allOptions = new ArrayList<>();
+        allOptions.add("-Anomsgtext");
+        allOptions.addAll(Arrays.asList(options));
+        TestConfiguration config =
+                TestConfigurationBuilder.buildDefaultConfiguration(
+                        dir.toString(), source, "testlib.util.HaltingChecker", allOptions, false);
+        return new TypecheckExecutor().compile(config);
+    }
+
+    /**
+     * Returns the line, column, and text of the errors of a compilation.
+     *
+     * @param result the result of a compilation
+     * @return a description of each error of {@code result}
+     */
+    private static List<String> errors(CompilationResult result) {
+        List<String> errors = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : result.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(
+                        diagnostic.getLineNumber()
+                                + ":"
+                                + diagnostic.getColumnNumber()
+                                + " "
+                                + diagnostic.getMessage(null));
+            }
+        }
+        return errors;
+    }
+}
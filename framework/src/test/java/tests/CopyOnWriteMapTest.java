@@ -0,0 +1,96 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.Map;
+import org.checkerframework.framework.util.CopyOnWriteMap;
+import org.junit.Test;
+
+/** Tests that copies of a {@link CopyOnWriteMap} are independent of each other. */
+public class CopyOnWriteMapTest {
+
+    private static CopyOnWriteMap<String, Integer> abc() {
+        CopyOnWriteMap<String, Integer> map = new CopyOnWriteMap<>();
+        map.put("a", 1);
+        map.put("b", 2);
+        map.put("c", 3);
+        return map;
+    }
+
+    @Test
+    public void copySharesUntilModified() {
+        CopyOnWriteMap<String, Integer> original = abc();
+        CopyOnWriteMap<String, Integer> copy = original.copy();
+        assertTrue(copy.sharesContentsWith(original));
+        assertEquals(original, copy);
+
+        copy.put("d", 4);
+        assertFalse(copy.sharesContentsWith(original));
+        assertEquals(3, original.size());
+        assertEquals(4, copy.size());
+        assertNull(original.get("d"));
+
+        original.remove("a");
+        assertEquals(Integer.valueOf(1), copy.get("a"));
+        assertFalse(original.containsKey("a"));
+    }
+
+    @Test
+    public void removeOfAbsentKeyDoesNotCopy() {
+        CopyOnWriteMap<String, Integer> original = abc();
+        CopyOnWriteMap<String, Integer> copy = original.copy();
+        assertNull(copy.remove("z"));
+        assertTrue(copy.sharesContentsWith(original));
+    }
+
+    @Test
+    public void iteratorRemoveOnSharedMap() {
+        CopyOnWriteMap<String, Integer> original = abc();
+        CopyOnWriteMap<String, Integer> copy = original.copy();
+        copy.entrySet().removeIf(e -> e.getValue() % 2 == 1);
+        assertEquals(1, copy.size());
+        assertEquals(Integer.valueOf(2), copy.get("b"));
+        assertEquals(3, original.size());
+    }
+
+    @Test
+    public void setValueOnSharedMap() {
+        CopyOnWriteMap<String, Integer> original = abc();
+        CopyOnWriteMap<String, Integer> copy = original.copy();
+        for (Iterator<Map.Entry<String, Integer>> it = copy.entrySet().iterator();
+                it.hasNext(); ) {
+            Map.Entry<String, Integer> e = it.next();
+            e.setValue(e.getValue() * 10);
+        }
+        assertEquals(Integer.valueOf(20), copy.get("b"));
+        assertEquals(Integer.valueOf(2), original.get("b"));
+    }
+
+    @Test
+    public void setValueOfEntryHeldAcrossCopy() {
+        CopyOnWriteMap<String, Integer> original = abc();
+        Map.Entry<String, Integer> entry = original.entrySet().iterator().next();
+        String key = entry.getKey();
+        int value = entry.getValue();
+        CopyOnWriteMap<String, Integer> copy = original.copy();
+        entry.setValue(value * 10);
+        assertEquals(Integer.valueOf(value * 10), original.get(key));
+        assertEquals(Integer.valueOf(value), copy.get(key));
+        assertFalse(copy.sharesContentsWith(original));
+    }
+
+    @Test
+    public void shareContentsOf() {
+        CopyOnWriteMap<String, Integer> original = abc();
+        CopyOnWriteMap<String, Integer> other = new CopyOnWriteMap<>();
+        other.shareContentsOf(original);
+        assertEquals(original, other);
+        other.clear();
+        assertTrue(other.isEmpty());
+        assertEquals(3, original.size());
+    }
+}
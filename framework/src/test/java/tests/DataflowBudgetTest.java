@@ -0,0 +1,26 @@
+package tests;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.framework.test.FrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized.Parameters;
+import testlib.util.FlowTestChecker;
+
+/** Tests that a method whose dataflow analysis exceeds its budget gets a warning. */
+public class DataflowBudgetTest extends FrameworkPerDirectoryTest {
+
+    /** @param testFiles the files containing test code, which will be type-checked */
+    public DataflowBudgetTest(List<File> testFiles) {
+        super(
+                testFiles,
+                FlowTestChecker.class,
+                "dataflow-budget",
+                "-Anomsgtext",
+                "-AdataflowMaxIterations=20");
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[] {"dataflow-budget"};
+    }
+}
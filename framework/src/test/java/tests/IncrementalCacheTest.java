@@ -0,0 +1,138 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import org.checkerframework.framework.test.CompilationResult;
+import org.checkerframework.framework.test.TestConfiguration;
+import org.checkerframework.framework.test.TestConfigurationBuilder;
+import org.checkerframework.framework.test.TypecheckExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that a compilation that replays the diagnostics of a class from the incremental cache (see
+ * the incrementalCacheDir option) issues the same diagnostics as the compilation that cached them.
+ */
+public class IncrementalCacheTest {
+
+    /** A class with a method at which testlib.util.DiagnosticKindsChecker issues diagnostics. */
+    private static final String SOURCE =
+            "class Reported {\n"
+                    + "  void reportAll() {}\n"
+                    + "  void unreported() {}\n"
+                    + "}\n";
+
+    /** A class in package {@code p}. */
+    private static final String PACKAGE_SOURCE =
+            "package p;\n" + SOURCE.replace("class", "public class");
+
+    /** The directory of the source file and of the cache. */
+    private Path dir;
+
+    @Before
+    public void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("incremental-cache");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void replayedDiagnosticsAreTheSame() throws IOException {
+        File source = dir.resolve("Reported.java").toFile();
+        Files.write(source.toPath(), SOURCE.getBytes(StandardCharsets.UTF_8));
+
+        List<String> checked = diagnostics(compile(source));
+        assertEquals(checked.toString(), 5, checked.size());
+        List<String> replayed = diagnostics(compile(source));
+        assertEquals(checked, replayed);
+
+        List<String> report =
+                Files.readAllLines(
+                        dir.resolve("cache").resolve("testlib.util.DiagnosticKindsChecker.report"));
+        assertEquals(Arrays.asList("replayed Reported"), report);
+    }
+
+    @Test
+    public void packageAnnotationsInvalidate() throws IOException {
+        Files.createDirectories(dir.resolve("p"));
+        File source = dir.resolve("p").resolve("Reported.java").toFile();
+        Files.write(source.toPath(), PACKAGE_SOURCE.getBytes(StandardCharsets.UTF_8));
+        File packageInfo = dir.resolve("p").resolve("package-info.java").toFile();
+        Files.write(packageInfo.toPath(), "package p;\n".getBytes(StandardCharsets.UTF_8));
+
+        compile(source, packageInfo);
+        Files.write(
+                packageInfo.toPath(),
+                "@org.checkerframework.framework.qual.AnnotatedFor(\"x\")\npackage p;\n"
+                        .getBytes(StandardCharsets.UTF_8));
+        compile(source, packageInfo);
+
+        List<String> report =
+                Files.readAllLines(
+                        dir.resolve("cache").resolve("testlib.util.DiagnosticKindsChecker.report"));
+        assertEquals(
+                Arrays.asList("checked p.Reported: the annotations of package p changed"), report);
+    }
+
+    /**
+     * Compiles source files with testlib.util.DiagnosticKindsChecker and the incremental cache.
+     *
+     * @param sources the source files to compile
+     * @return the result of the compilation
+     */
+    private CompilationResult compile(File... sources) {
+        TestConfiguration config =
+                TestConfigurationBuilder.buildDefaultConfiguration(
+                        dir.toString(),
+                        Arrays.asList(sources),
+                        Arrays.asList("testlib.util.DiagnosticKindsChecker"),
+                        Arrays.asList(
+                                "-Anomsgtext", "-AincrementalCacheDir=" + dir.resolve("cache")),
+                        false);
+        return new TypecheckExecutor().compile(config);
+    }
+
+    /**
+     * Returns the kind, position, and text of the diagnostics of a compilation, except the summary
+     * of the incremental cache, which differs between compilations.
+     *
+     * @param result the result of a compilation
+     * @return a description of each diagnostic of {@code result}
+     */
+    private static List<String> diagnostics(CompilationResult result) {
+        List<String> diagnostics = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : result.getDiagnostics()) {
+            String message = diagnostic.getMessage(null);
+            if (!message.contains("incremental cache:")) {
+                diagnostics.add(
+                        diagnostic.getKind()
+                                + " "
+                                + diagnostic.getLineNumber()
+                                + ":"
+                                + diagnostic.getColumnNumber()
+                                + " "
+                                + message);
+            }
+        }
+        return diagnostics;
+    }
+}
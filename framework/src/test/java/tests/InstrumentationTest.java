@@ -0,0 +1,99 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.checkerframework.javacutil.CollectionUtils;
+import org.checkerframework.javacutil.Instrumentation;
+import org.checkerframework.javacutil.Instrumentation.Phase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests the records that {@link Instrumentation} collects. */
+public class InstrumentationTest {
+
+    @Before
+    public void enable() {
+        Instrumentation.setEnabled(true);
+    }
+
+    @After
+    public void disable() {
+        Instrumentation.setEnabled(false);
+    }
+
+    @Test
+    public void nestedPhasesAndMethods() {
+        String previous = Instrumentation.enterMethod("C.m()");
+        Instrumentation.start(Phase.DATAFLOW);
+        Instrumentation.start(Phase.SUBTYPING);
+        Instrumentation.stop(Phase.SUBTYPING);
+        Instrumentation.start(Phase.SUBTYPING);
+        Instrumentation.stop(Phase.SUBTYPING);
+        Instrumentation.count("dataflowIterations", 5);
+        Instrumentation.stop(Phase.DATAFLOW);
+        Instrumentation.exitMethod(previous);
+        Instrumentation.start(Phase.CFG_CONSTRUCTION);
+        Instrumentation.stop(Phase.CFG_CONSTRUCTION);
+
+        String json = Instrumentation.dump("C.java", "C");
+        assertTrue(json, json.startsWith("{\"compilationUnit\":\"C.java\",\"class\":\"C\","));
+        assertEquals(json, 1, invocations(json, "cfgConstruction"));
+        assertEquals(json, 1, invocations(json, "dataflow"));
+        assertEquals(json, 2, invocations(json, "subtyping"));
+        assertTrue(json, json.contains("\"counters\":{\"dataflowIterations\":5}"));
+        int methods = json.indexOf("\"methods\":{\"C.m()\":{\"phases\":{\"dataflow\"");
+        assertTrue(json, methods > 0);
+        assertTrue(json, json.indexOf("cfgConstruction", methods) < 0);
+
+        String empty = Instrumentation.dump("C.java", "C");
+        assertTrue(
+                empty,
+                empty.endsWith("\"phases\":{},\"counters\":{},\"caches\":{},\"methods\":{}}"));
+    }
+
+    @Test
+    public void cacheStatistics() {
+        Map<String, Integer> cache = CollectionUtils.createLRUCache(2, "test cache");
+        cache.put("a", 1);
+        cache.get("a");
+        cache.get("b");
+        cache.put("b", 2);
+        cache.put("c", 3);
+        // Only the get of a containsKey followed by a get counts as a lookup.
+        assertTrue(cache.containsKey("c"));
+        cache.get("c");
+
+        String json = Instrumentation.dump("C.java", "C");
+        assertTrue(
+                json,
+                json.contains("\"test cache\":{\"lookups\":3,\"hits\":2,\"evictions\":1}"));
+    }
+
+    @Test
+    public void disabled() {
+        Instrumentation.setEnabled(false);
+        Instrumentation.start(Phase.DATAFLOW);
+        Instrumentation.stop(Phase.DATAFLOW);
+        Instrumentation.setEnabled(true);
+        String json = Instrumentation.dump("C.java", "C");
+        assertTrue(json, json.contains("\"phases\":{}"));
+    }
+
+    /**
+     * Returns the number of invocations of a phase in the class part of a JSON record.
+     *
+     * @param json a JSON record
+     * @param phase the JSON name of a phase
+     * @return the number of invocations of {@code phase}
+     */
+    private static int invocations(String json, String phase) {
+        Matcher m = Pattern.compile("\"" + phase + "\":\\{\"invocations\":(\\d+)").matcher(json);
+        assertTrue(json, m.find());
+        return Integer.parseInt(m.group(1));
+    }
+}
@@ -0,0 +1,164 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import org.checkerframework.framework.test.CompilationResult;
+import org.checkerframework.framework.test.TestConfiguration;
+import org.checkerframework.framework.test.TestConfigurationBuilder;
+import org.checkerframework.framework.test.TestUtilities;
+import org.checkerframework.framework.test.TypecheckExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that a sparse dataflow analysis (see {@code Analysis#setSparse}) computes the same fixpoint
+ * as a dense one: the same node values, the same stores before each block, and the same exit
+ * store. testlib.util.SparseDataflowChecker computes both and reports any difference.
+ *
+ * <p>Sparse analysis is experimental and no checker enables it; this test shows whether the
+ * fixpoints of the framework's transfer functions are the same.
+ */
+public class SparseDataflowTest {
+
+    /** Code whose fixpoints need several iterations: loops, branches, and exceptions. */
+    private static final String SOURCE =
+            "import testlib.util.Odd;\n"
+                    + "class Loops {\n"
+                    + "  @Odd Object field;\n"
+                    + "  Object plain;\n"
+                    + "  Object loop(@Odd Object odd, Object o, int n) {\n"
+                    + "    Object x = odd;\n"
+                    + "    Object y = o;\n"
+                    + "    for (int i = 0; i < n; i++) {\n"
+                    + "      Object t = x;\n"
+                    + "      x = y;\n"
+                    + "      y = t;\n"
+                    + "      if (i % 3 == 0) {\n"
+                    + "        continue;\n"
+                    + "      }\n"
+                    + "      while (n > i) {\n"
+                    + "        n--;\n"
+                    + "        if (n == 7) {\n"
+                    + "          break;\n"
+                    + "        }\n"
+                    + "        plain = x;\n"
+                    + "      }\n"
+                    + "    }\n"
+                    + "    return x;\n"
+                    + "  }\n"
+                    + "  void exceptions(@Odd Object odd, Object o) {\n"
+                    + "    Object x = o;\n"
+                    + "    try {\n"
+                    + "      x = odd;\n"
+                    + "      plain = x.toString();\n"
+                    + "      x = o;\n"
+                    + "    } catch (RuntimeException e) {\n"
+                    + "      plain = x;\n"
+                    + "    } finally {\n"
+                    + "      field = odd;\n"
+                    + "    }\n"
+                    + "    Runnable r = () -> { plain = field; };\n"
+                    + "  }\n"
+                    + "}\n";
+
+    /** The directory of the source file. */
+    private Path dir;
+
+    @Before
+    public void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("sparse-dataflow");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void sparseFirst() throws IOException {
+        assertEquals(new ArrayList<String>(), differences(compileSource()));
+    }
+
+    @Test
+    public void denseFirst() throws IOException {
+        assertEquals(new ArrayList<String>(), differences(compileSource("-AdenseFirst")));
+    }
+
+    @Test
+    public void testSuites() {
+        List<File> files = TestUtilities.findNestedJavaTestFiles("flow", "all-systems");
+        assertEquals(new ArrayList<String>(), differences(compile("tests", files)));
+    }
+
+    /**
+     * Compiles {@link #SOURCE} with testlib.util.SparseDataflowChecker.
+     *
+     * @param options options in addition to -Anomsgtext
+     * @return the result of the compilation
+     */
+    private CompilationResult compileSource(String... options) throws IOException {
+        Path source = dir.resolve("Loops.java");
+        Files.write(source, SOURCE.getBytes(StandardCharsets.UTF_8));
+        return compile(dir.toString(), Arrays.asList(source.toFile()), options);
+    }
+
+    /**
+     * Compiles source files with testlib.util.SparseDataflowChecker.
+     *
+     * @param sourcePath the source path of the compilation
+     * @param files the files to compile
+     * @param options options in addition to -Anomsgtext
+     * @return the result of the compilation
+     */
+    private static CompilationResult compile(
+            String sourcePath, List<File> files, String... options) {
+        List<String> allOptions = new ArrayList<>();
+        allOptions.add("-Anomsgtext");
+        allOptions.addAll(Arrays.asList(options));
+        TestConfiguration config =
+                TestConfigurationBuilder.buildDefaultConfiguration(
+                        sourcePath,
+                        files,
+                        Arrays.asList("testlib.util.SparseDataflowChecker"),
+                        allOptions,
+                        false);
+        return new TypecheckExecutor().compile(config);
+    }
+
+    /**
+     * Returns the line of each report that the dense and sparse fixpoints differ.
+     *
+     * @param result the result of a compilation
+     * @return the file, line, and text of each "sparse.dense.differ" error of {@code result}
+     */
+    private static List<String> differences(CompilationResult result) {
+        List<String> differences = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : result.getDiagnostics()) {
+            String message = diagnostic.getMessage(null);
+            if (message.contains("sparse.dense.differ")) {
+                differences.add(
+                        diagnostic.getSource().getName()
+                                + ":"
+                                + diagnostic.getLineNumber()
+                                + ": "
+                                + message);
+            }
+        }
+        return differences;
+    }
+}
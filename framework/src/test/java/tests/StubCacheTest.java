@@ -0,0 +1,100 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.github.javaparser.ast.StubUnit;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.checkerframework.framework.stub.StubCache;
+import org.junit.Test;
+
+/**
+ * Tests that {@link StubCache} stores the skeletons of stub files, reuses them, and keeps the
+ * positions of declarations.
+ */
+public class StubCacheTest {
+
+    /** A stub file with comments, a method body, a constructor body, and an initializer. */
+    private static final String STUB =
+            "package p;\n"
+                    + "import org.checkerframework.checker.nullness.qual.Nullable;\n"
+                    + "/** Javadoc that is not needed. */\n"
+                    + "class C {\n"
+                    + "  static { System.out.println(); }\n"
+                    + "  C() { super(); }\n"
+                    + "  // A comment.\n"
+                    + "  @Nullable Object m(@Nullable Object o) { return o.toString(); }\n"
+                    + "}\n";
+
+    @Test
+    public void skeletonIsCached() throws IOException {
+        Path dir = Files.createTempDirectory("stub-cache");
+        try {
+            StubCache cache = new StubCache(dir);
+            StubUnit parsed = cache.parse(stream(STUB));
+            assertTrue(cache.getStatistics(), cache.getStatistics().endsWith("0 hits, 1 misses"));
+
+            String skeleton = readEntry(dir);
+            assertFalse(skeleton, skeleton.contains("Javadoc"));
+            assertFalse(skeleton, skeleton.contains("comment"));
+            assertFalse(skeleton, skeleton.contains("toString"));
+            assertFalse(skeleton, skeleton.contains("println"));
+            assertTrue(skeleton, skeleton.contains("Object m(@Nullable Object o) ;"));
+            assertTrue(skeleton, skeleton.contains("C() {"));
+
+            StubCache other = new StubCache(dir);
+            StubUnit fromSkeleton = other.parse(stream(STUB));
+            assertTrue(other.getStatistics(), other.getStatistics().endsWith("1 hits, 0 misses"));
+
+            other.parse(stream(STUB.replace("class C", "class D")));
+            assertTrue(other.getStatistics(), other.getStatistics().endsWith("1 hits, 1 misses"));
+
+            // Declarations are at the same positions in the skeleton as in the stub file.
+            assertEquals(
+                    method(parsed, "m").getBegin(), method(fromSkeleton, "m").getBegin());
+            assertEquals(method(parsed, "m").getEnd(), method(fromSkeleton, "m").getEnd());
+            assertEquals(STUB.length(), skeleton.length());
+            String[] stubLines = STUB.split("\n", -1);
+            String[] skeletonLines = skeleton.split("\n", -1);
+            assertEquals(stubLines.length, skeletonLines.length);
+            for (int i = 0; i < stubLines.length; i++) {
+                assertEquals(stubLines[i].length(), skeletonLines[i].length());
+            }
+        } finally {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path p : entries) {
+                    Files.delete(p);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    private static MethodDeclaration method(StubUnit stubUnit, String name) {
+        return stubUnit.getCompilationUnits().get(0).findAll(MethodDeclaration.class).stream()
+                .filter(m -> m.getNameAsString().equals(name))
+                .findFirst()
+                .get();
+    }
+
+    private static String readEntry(Path dir) throws IOException {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir, "*.astub")) {
+            for (Path entry : entries) {
+                return new String(Files.readAllBytes(entry), StandardCharsets.UTF_8);
+            }
+        }
+        throw new AssertionError("no cache entry in " + dir);
+    }
+
+    private static InputStream stream(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,127 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import org.checkerframework.framework.test.CompilationResult;
+import org.checkerframework.framework.test.TestConfiguration;
+import org.checkerframework.framework.test.TestConfigurationBuilder;
+import org.checkerframework.framework.test.TypecheckExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that the cache of subtype results across queries in {@link
+ * org.checkerframework.framework.type.DefaultTypeHierarchy} reflects the annotations of the types
+ * when they are queried, and that the atfDoNotCache option bypasses it.
+ * testlib.util.SubtypeCacheChecker makes the queries.
+ */
+public class SubtypeCacheTest {
+
+    /** A class with a variable at which testlib.util.SubtypeCacheChecker makes its queries. */
+    private static final String SOURCE =
+            "import java.util.List;\n"
+                    + "class Mutated {\n"
+                    + "  List<Object> mutated;\n"
+                    + "}\n";
+
+    /**
+     * The results of the queries: the type is not a subtype, also when asked again, and it is one
+     * after its annotations have been mutated.
+     */
+    private static final List<String> RESULTS =
+            Arrays.asList("3: before: false, again: false, after mutation: true");
+
+    /** The directory of the source file and of the instrumentation file. */
+    private Path dir;
+
+    @Before
+    public void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("subtype-cache");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void resultChangesWithMutatedAnnotations() throws IOException {
+        Path instrumentation = dir.resolve("instrumentation.json");
+        assertEquals(RESULTS, results(compile("-AinstrumentationFile=" + instrumentation)));
+        // The second query was answered from the cache; the third was not, or it would be false.
+        String json = new String(Files.readAllBytes(instrumentation), StandardCharsets.UTF_8);
+        Matcher stats =
+                Pattern.compile("\\.subtypeCache\":\\{\"lookups\":\\d+,\"hits\":(\\d+)")
+                        .matcher(json);
+        assertTrue(json, stats.find());
+        assertTrue(json, Integer.parseInt(stats.group(1)) > 0);
+    }
+
+    @Test
+    public void atfDoNotCacheBypassesTheCache() throws IOException {
+        Path instrumentation = dir.resolve("instrumentation.json");
+        assertEquals(
+                RESULTS,
+                results(
+                        compile(
+                                "-AatfDoNotCache", "-AinstrumentationFile=" + instrumentation)));
+        String json = new String(Files.readAllBytes(instrumentation), StandardCharsets.UTF_8);
+        assertFalse(json, json.contains(".subtypeCache\""));
+    }
+
+    /**
+     * Compiles the source with testlib.util.SubtypeCacheChecker.
+     *
+     * @param options options to the checker
+     * @return the result of the compilation
+     */
+    private CompilationResult compile(String... options) throws IOException {
+        Path source = dir.resolve("Mutated.java");
+        Files.write(source, SOURCE.getBytes(StandardCharsets.UTF_8));
+        TestConfiguration config =
+                TestConfigurationBuilder.buildDefaultConfiguration(
+                        dir.toString(),
+                        source.toFile(),
+                        "testlib.util.SubtypeCacheChecker",
+                        Arrays.asList(options),
+                        false);
+        return new TypecheckExecutor().compile(config);
+    }
+
+    /**
+     * Returns the line and the text of each "subtype.results" warning of a compilation.
+     *
+     * @param result the result of a compilation
+     * @return the line and the results of the queries at each variable named {@code mutated}
+     */
+    private static List<String> results(CompilationResult result) {
+        List<String> results = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : result.getDiagnostics()) {
+            String message = diagnostic.getMessage(null);
+            int start = message.indexOf("before: ");
+            if (diagnostic.getKind() == Diagnostic.Kind.WARNING && start >= 0) {
+                results.add(diagnostic.getLineNumber() + ": " + message.substring(start).trim());
+            }
+        }
+        return results;
+    }
+}
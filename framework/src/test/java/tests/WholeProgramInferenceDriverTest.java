@@ -0,0 +1,303 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import org.checkerframework.common.wholeprograminference.WholeProgramInferenceDriver;
+import org.checkerframework.common.wholeprograminference.WholeProgramInferenceScenesHelper;
+import org.checkerframework.framework.test.TestConfiguration;
+import org.checkerframework.framework.test.TestConfigurationBuilder;
+import org.checkerframework.framework.test.TypecheckExecutor;
+import org.checkerframework.javacutil.UserError;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that {@link WholeProgramInferenceDriver} infers the same annotations as {@code
+ * checker/bin/infer-and-annotate.sh}, and that after the first round it type-checks only the
+ * classes affected by the annotations inferred in the previous round.
+ *
+ * <p>The .jaif files of the script describe only its last iteration, because each iteration starts
+ * from the annotations inserted into the source code. So the test compares the source code that the
+ * script annotates with the source code into which the .jaif files of the driver are inserted. It
+ * runs the iterations of the script in this JVM.
+ */
+public class WholeProgramInferenceDriverTest {
+
+    /** The checker whose annotations are inferred. */
+    private static final String CHECKER =
+            "testlib.wholeprograminference.WholeProgramInferenceTestChecker";
+
+    /**
+     * A program in which inferred types flow from A to B and from B to C, one class per round. D
+     * does not depend on the other classes.
+     */
+    private static final Map<String, String> PROGRAM = new LinkedHashMap<>();
+
+    static {
+        PROGRAM.put(
+                "A",
+                "import testlib.wholeprograminference.qual.*;\n"
+                        + "public class A {\n"
+                        + "  int field;\n"
+                        + "  void set() {\n"
+                        + "    field = (@Sibling1 int) 0;\n"
+                        + "  }\n"
+                        + "}\n");
+        PROGRAM.put(
+                "B",
+                "public class B {\n"
+                        + "  int fromA(A a) {\n"
+                        + "    return a.field;\n"
+                        + "  }\n"
+                        + "}\n");
+        PROGRAM.put(
+                "C",
+                "public class C {\n"
+                        + "  void take(int i) {}\n"
+                        + "  void use(B b, A a) {\n"
+                        + "    take(b.fromA(a));\n"
+                        + "  }\n"
+                        + "}\n");
+        PROGRAM.put(
+                "D",
+                "import testlib.wholeprograminference.qual.*;\n"
+                        + "public class D {\n"
+                        + "  int other;\n"
+                        + "  void set() {\n"
+                        + "    other = (@Sibling2 int) 0;\n"
+                        + "  }\n"
+                        + "}\n");
+    }
+
+    /** The directory into which whole-program inference writes .jaif files. */
+    private static final Path JAIF_DIR =
+            Paths.get(WholeProgramInferenceScenesHelper.JAIF_FILES_PATH);
+
+    /** Where the .jaif files of other tests are kept while this test runs. */
+    private static final Path SAVED_JAIF_DIR =
+            JAIF_DIR.resolveSibling(JAIF_DIR.getFileName() + "-saved");
+
+    /** The directory of the copies of the program. */
+    private Path dir;
+
+    @Before
+    public void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("whole-program-inference-driver");
+        if (Files.exists(JAIF_DIR)) {
+            Files.move(JAIF_DIR, SAVED_JAIF_DIR);
+        }
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        delete(dir);
+        if (Files.exists(JAIF_DIR)) {
+            delete(JAIF_DIR);
+        }
+        if (Files.exists(SAVED_JAIF_DIR)) {
+            Files.move(SAVED_JAIF_DIR, JAIF_DIR);
+        }
+    }
+
+    @Test
+    public void sameAnnotationsAsScript() throws IOException {
+        List<File> scriptSources = writeProgram("script");
+        inferAndAnnotate(scriptSources);
+
+        List<File> driverSources = writeProgram("driver");
+        new WholeProgramInferenceDriver(
+                        Collections.singletonList(CHECKER),
+                        System.getProperty("java.class.path"),
+                        Collections.emptyList(),
+                        Collections.emptyList(),
+                        driverSources)
+                .run();
+        insertAnnotations(readJaifFiles().keySet(), driverSources);
+
+        Map<String, String> annotatedByScript = read(scriptSources);
+        // The script inferred something, in every class.
+        for (Map.Entry<String, String> entry : annotatedByScript.entrySet()) {
+            assertNotEquals(entry.getKey(), PROGRAM.get(entry.getKey()), entry.getValue());
+        }
+        assertEquals(annotatedByScript, read(driverSources));
+    }
+
+    @Test
+    public void changedClassesTriggerRecheckOfDependents() throws IOException {
+        WholeProgramInferenceDriver driver =
+                new WholeProgramInferenceDriver(
+                        Collections.singletonList(CHECKER),
+                        System.getProperty("java.class.path"),
+                        Collections.emptyList(),
+                        Collections.emptyList(),
+                        writeProgram("driver"));
+        assertEquals(4, driver.run());
+        assertEquals(
+                Arrays.asList(
+                        // The first round type-checks every class, and infers A and D.
+                        classes("A", "B", "C", "D"),
+                        // The dependents of A and D infer B.
+                        classes("A", "B", "C", "D"),
+                        // The dependents of B infer C. D is not affected.
+                        classes("A", "B", "C"),
+                        // The dependents of C infer nothing new.
+                        classes("A", "B", "C")),
+                driver.getCheckedClasses());
+    }
+
+    @Test(expected = UserError.class)
+    public void unknownArgumentIsRejected() throws IOException {
+        WholeProgramInferenceDriver.main(
+                new String[] {
+                    CHECKER, System.getProperty("java.class.path"), "-Anomsgtext", "A.txt"
+                });
+    }
+
+    /**
+     * Runs the iterations of {@code infer-and-annotate.sh} on a program: type-checks it with
+     * -Ainfer and inserts the inferred annotations into its source code, until the .jaif files stop
+     * changing.
+     *
+     * @param sources the source files of the program, which are annotated in place
+     */
+    private void inferAndAnnotate(List<File> sources) throws IOException {
+        Map<String, String> previous = null;
+        while (true) {
+            if (Files.exists(JAIF_DIR)) {
+                delete(JAIF_DIR);
+            }
+            Files.createDirectories(JAIF_DIR);
+            TestConfiguration config =
+                    TestConfigurationBuilder.buildDefaultConfiguration(
+                            dir.toString(),
+                            sources,
+                            Collections.singletonList(CHECKER),
+                            Arrays.asList("-Ainfer", "-Awarns", "-Xmaxwarns", "10000"),
+                            false);
+            new TypecheckExecutor().compile(config);
+            Map<String, String> current = readJaifFiles();
+            if (current.equals(previous)) {
+                return;
+            }
+            if (!current.isEmpty()) {
+                insertAnnotations(current.keySet(), sources);
+            }
+            previous = current;
+        }
+    }
+
+    /**
+     * Inserts annotations from .jaif files into source files in place, as {@code
+     * insert-annotations-to-source -i} does.
+     *
+     * @param jaifFiles the names of the .jaif files in {@link #JAIF_DIR}
+     * @param sources the source files to annotate
+     */
+    private static void insertAnnotations(Set<String> jaifFiles, List<File> sources)
+            throws IOException {
+        for (File source : sources) {
+            // Otherwise, the annotations are inserted into the backup.
+            Files.deleteIfExists(Paths.get(source.getPath() + ".unannotated"));
+        }
+        List<String> args = new ArrayList<>();
+        args.add("-i");
+        for (String jaifFile : jaifFiles) {
+            args.add(JAIF_DIR.resolve(jaifFile).toString());
+        }
+        for (File source : sources) {
+            args.add(source.getPath());
+        }
+        annotator.Main.main(args.toArray(new String[0]));
+    }
+
+    /**
+     * Writes a copy of {@link #PROGRAM} into a subdirectory.
+     *
+     * @param name the name of the subdirectory
+     * @return the source files of the copy
+     */
+    private List<File> writeProgram(String name) throws IOException {
+        Path copy = Files.createDirectories(dir.resolve(name));
+        List<File> sources = new ArrayList<>();
+        for (Map.Entry<String, String> entry : PROGRAM.entrySet()) {
+            Path file = copy.resolve(entry.getKey() + ".java");
+            Files.write(file, entry.getValue().getBytes(StandardCharsets.UTF_8));
+            sources.add(file.toFile());
+        }
+        return sources;
+    }
+
+    /**
+     * Returns the contents of source files.
+     *
+     * @param sources source files
+     * @return a map from the name of the class in each file to the contents of the file
+     */
+    private static Map<String, String> read(List<File> sources) throws IOException {
+        Map<String, String> result = new TreeMap<>();
+        for (File source : sources) {
+            result.put(
+                    source.getName().replace(".java", ""),
+                    new String(Files.readAllBytes(source.toPath()), StandardCharsets.UTF_8));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the contents of the .jaif files in {@link #JAIF_DIR}.
+     *
+     * @return a map from the name of each .jaif file to its contents
+     */
+    private static Map<String, String> readJaifFiles() throws IOException {
+        Map<String, String> result = new TreeMap<>();
+        try (DirectoryStream<Path> jaifFiles = Files.newDirectoryStream(JAIF_DIR, "*.jaif")) {
+            for (Path jaifFile : jaifFiles) {
+                result.put(
+                        jaifFile.getFileName().toString(),
+                        new String(Files.readAllBytes(jaifFile), StandardCharsets.UTF_8));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a set of class names.
+     *
+     * @param names class names
+     * @return a sorted set of {@code names}
+     */
+    private static Set<String> classes(String... names) {
+        return new TreeSet<>(Arrays.asList(names));
+    }
+
+    /**
+     * Deletes a directory and its contents.
+     *
+     * @param directory the directory to delete
+     */
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
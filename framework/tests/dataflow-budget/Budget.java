@@ -0,0 +1,48 @@
+// The dataflow analysis of each method may analyze at most 20 basic blocks.
+class Budget {
+
+    int small(int a) {
+        int b = a + 1;
+        return b * 2;
+    }
+
+    // :: warning: (dataflow.budget.exceeded)
+    int nestedLoops(int n) {
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < i; j++) {
+                if (i % 2 == 0) {
+                    sum += j;
+                } else if (j % 3 == 0) {
+                    sum -= i;
+                } else {
+                    sum++;
+                }
+                while (sum > 100) {
+                    sum /= 2;
+                }
+            }
+        }
+        return sum;
+    }
+
+    @SuppressWarnings("dataflow.budget.exceeded")
+    int suppressed(int n) {
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < i; j++) {
+                if (i % 2 == 0) {
+                    sum += j;
+                } else if (j % 3 == 0) {
+                    sum -= i;
+                } else {
+                    sum++;
+                }
+                while (sum > 100) {
+                    sum /= 2;
+                }
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,24 @@
+import org.checkerframework.common.value.qual.*;
+
+class ManyResults {
+
+    void chars(
+            @StringVal({"abc", "def", "ghi", "jkl"}) String s,
+            @IntVal({0, 1, 2}) int i,
+            @IntVal({0, 1}) int j) {
+        @IntVal({'a', 'b', 'd', 'e', 'g', 'h', 'j', 'k'}) char few = s.charAt(j);
+        // The same calls again.
+        @IntVal({'a', 'b', 'd', 'e', 'g', 'h', 'j', 'k'}) char again = s.charAt(j);
+        // 12 distinct results are too many for @IntVal.
+        // :: error: (assignment.type.incompatible)
+        @IntVal({'a', 'b', 'c'}) char many = s.charAt(i);
+        @UnknownVal char unknown = s.charAt(i);
+    }
+
+    void ints(
+            @StringVal({"10", "11", "12", "13", "14", "15"}) String s,
+            @IntVal({8, 16}) int radix) {
+        // All results are used for the range.
+        @IntRange(from = 8, to = 21) int i = Integer.parseInt(s, radix);
+    }
+}
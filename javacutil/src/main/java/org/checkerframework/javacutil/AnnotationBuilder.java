@@ -174,7 +174,7 @@ public class AnnotationBuilder {
         }
         AnnotationMirror result =
                 new CheckerFrameworkAnnotationMirror(annoType, Collections.emptyMap());
-        return result;
+        return AnnotationMirrorInterner.instance(elements).intern(result);
     }
 
     /** Whether or not {@link #build()} has been called. */
@@ -189,7 +189,8 @@ public class AnnotationBuilder {
     public AnnotationMirror build() {
         assertNotBuilt();
         wasBuilt = true;
-        return new CheckerFrameworkAnnotationMirror(annotationType, elementValues);
+        return AnnotationMirrorInterner.instance(elements)
+                .intern(new CheckerFrameworkAnnotationMirror(annotationType, elementValues));
     }
 
     /**
@@ -576,6 +577,20 @@ public class AnnotationBuilder {
         /** The annotation name. */
         // default visibility to allow access from within package.
         final @Interned String annotationName;
+        /**
+         * The interner whose canonical instance this is, or null if this has not been interned.
+         * Set by {@link AnnotationMirrorInterner}; volatile because annotations are shared between
+         * threads.
+         */
+        volatile @Nullable AnnotationMirrorInterner interner;
+        /** The hash code; see {@link AnnotationMirrorInterner#hashCode(AnnotationMirror)}. */
+        final int hashCode;
+        /**
+         * The value that a client cached on this annotation, or null; see {@link
+         * AnnotationMirrorInterner#cacheValue}. Volatile because annotations are shared between
+         * threads.
+         */
+        volatile AnnotationMirrorInterner.@Nullable CachedValue cachedValue;
 
         CheckerFrameworkAnnotationMirror(
                 DeclaredType at, Map<ExecutableElement, AnnotationValue> ev) {
@@ -583,6 +598,7 @@ public class AnnotationBuilder {
             final TypeElement elm = (TypeElement) at.asElement();
             this.annotationName = elm.getQualifiedName().toString().intern();
             this.elementValues = ev;
+            this.hashCode = AnnotationMirrorInterner.computeHashCode(this);
         }
 
         @Override
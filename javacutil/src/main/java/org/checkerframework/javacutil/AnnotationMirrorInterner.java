@@ -0,0 +1,291 @@
+package org.checkerframework.javacutil;
+
+import com.sun.tools.javac.code.Type;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.javacutil.AnnotationBuilder.CheckerFrameworkAnnotationMirror;
+
+/**
+ * Maps annotations to canonical instances: all annotations that are the same according to {@link
+ * AnnotationUtils#areSame(AnnotationMirror, AnnotationMirror)} are interned to one instance.
+ *
+ * <p>{@link AnnotationBuilder} interns every annotation that it creates, so {@link
+ * AnnotationUtils#areSame(AnnotationMirror, AnnotationMirror)} can compare two interned
+ * annotations by reference instead of comparing their names and element values.
+ *
+ * <p>There is one interner per compilation, because annotations refer to the elements and types
+ * of a compilation. Only annotations created by the Checker Framework are interned; annotations
+ * that are created by javac, such as those that appear in source code, are never replaced.
+ *
+ * <p>The interner refers to its canonical instances weakly, so it holds only the annotations that
+ * are still in use. An annotation that is interned again after its canonical instance has been
+ * garbage-collected becomes the new canonical instance.
+ */
+public final class AnnotationMirrorInterner {
+
+    /** The interner of each compilation, keyed by the element utilities of the compilation. */
+    private static final Map<Elements, AnnotationMirrorInterner> interners =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * The canonical instances of the annotations interned so far, which might have been
+     * garbage-collected. Each key is mapped to itself.
+     */
+    private final Map<Key, Key> canonical = new HashMap<>();
+
+    /** The keys of {@link #canonical} whose annotations have been garbage-collected. */
+    private final ReferenceQueue<CheckerFrameworkAnnotationMirror> collected =
+            new ReferenceQueue<>();
+
+    /** Creates an interner; use {@link #instance(Elements)} to obtain one. */
+    private AnnotationMirrorInterner() {}
+
+    /**
+     * Returns the interner of the compilation that {@code elements} belongs to.
+     *
+     * @param elements the element utilities of a compilation
+     * @return the interner of the compilation
+     */
+    public static AnnotationMirrorInterner instance(Elements elements) {
+        return interners.computeIfAbsent(elements, e -> new AnnotationMirrorInterner());
+    }
+
+    /**
+     * Returns the canonical instance of {@code anno}. If {@code anno} was not created by the
+     * Checker Framework, it is returned unchanged.
+     *
+     * @param anno an annotation
+     * @return an annotation that is the same as {@code anno}, and identical to every other
+     *     annotation interned by this interner that is the same as {@code anno}
+     */
+    public AnnotationMirror intern(AnnotationMirror anno) {
+        if (!(anno instanceof CheckerFrameworkAnnotationMirror)) {
+            return anno;
+        }
+        CheckerFrameworkAnnotationMirror cfAnno = (CheckerFrameworkAnnotationMirror) anno;
+        if (cfAnno.interner == this) {
+            return cfAnno;
+        }
+        synchronized (this) {
+            for (Reference<?> ref; (ref = collected.poll()) != null; ) {
+                canonical.remove(ref);
+            }
+            Key canonicalKey = canonical.get(new Key(cfAnno, null));
+            CheckerFrameworkAnnotationMirror result =
+                    canonicalKey == null ? null : canonicalKey.get();
+            if (result == null) {
+                if (cfAnno.interner == null) {
+                    result = cfAnno;
+                } else {
+                    // The annotation is canonical in another compilation.
+                    result =
+                            new CheckerFrameworkAnnotationMirror(
+                                    cfAnno.getAnnotationType(),
+                                    new LinkedHashMap<>(cfAnno.getElementValues()));
+                }
+                result.interner = this;
+                Key key = new Key(result, collected);
+                canonical.put(key, key);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Returns true if {@code a1} and {@code a2} were interned by the same interner. Two distinct
+     * annotations that were interned by the same interner are not the same.
+     *
+     * @param a1 an annotation
+     * @param a2 an annotation
+     * @return true if both annotations are canonical instances of the same interner
+     */
+    static boolean internedTogether(AnnotationMirror a1, AnnotationMirror a2) {
+        if (a1 instanceof CheckerFrameworkAnnotationMirror
+                && a2 instanceof CheckerFrameworkAnnotationMirror) {
+            AnnotationMirrorInterner interner = ((CheckerFrameworkAnnotationMirror) a1).interner;
+            return interner != null
+                    && interner == ((CheckerFrameworkAnnotationMirror) a2).interner;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the value that {@code owner} cached on {@code anno} with {@link #cacheValue}, or null
+     * if there is none.
+     *
+     * @param anno an annotation
+     * @param owner the client that cached the value
+     * @return the value that {@code owner} cached on {@code anno}, or null
+     */
+    public static @Nullable Object getCachedValue(AnnotationMirror anno, Object owner) {
+        if (anno instanceof CheckerFrameworkAnnotationMirror) {
+            CachedValue cached = ((CheckerFrameworkAnnotationMirror) anno).cachedValue;
+            if (cached != null && cached.owner == owner) {
+                return cached.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Caches a value on {@code anno}, so that {@code owner} can look it up with {@link
+     * #getCachedValue} without hashing {@code anno}. For example, a qualifier hierarchy caches the
+     * id of a qualifier. An annotation holds the value of one owner only; caching a value replaces
+     * the value of any other owner. Annotations that were not created by the Checker Framework do
+     * not hold a value, and this method does nothing for them.
+     *
+     * @param anno an annotation
+     * @param owner the client that caches the value
+     * @param value the value to cache
+     */
+    public static void cacheValue(AnnotationMirror anno, Object owner, Object value) {
+        if (anno instanceof CheckerFrameworkAnnotationMirror) {
+            ((CheckerFrameworkAnnotationMirror) anno).cachedValue = new CachedValue(owner, value);
+        }
+    }
+
+    /** A value that a client cached on an annotation; immutable. */
+    static final class CachedValue {
+        /** The client that cached the value. */
+        final Object owner;
+
+        /** The value. */
+        final Object value;
+
+        /**
+         * Creates a cached value.
+         *
+         * @param owner the client that cached the value
+         * @param value the value
+         */
+        CachedValue(Object owner, Object value) {
+            this.owner = owner;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Returns a hash code of {@code anno} that is consistent with {@link
+     * AnnotationUtils#areSame(AnnotationMirror, AnnotationMirror)}. The hash code of an annotation
+     * created by the Checker Framework is computed by its constructor.
+     *
+     * @param anno an annotation
+     * @return a hash code of the name and element values of {@code anno}
+     */
+    static int hashCode(AnnotationMirror anno) {
+        if (anno instanceof CheckerFrameworkAnnotationMirror) {
+            return ((CheckerFrameworkAnnotationMirror) anno).hashCode;
+        }
+        return computeHashCode(anno);
+    }
+
+    /**
+     * Computes the hash code of {@code anno}; see {@link #hashCode(AnnotationMirror)}.
+     *
+     * @param anno an annotation
+     * @return a hash code of the name and element values of {@code anno}
+     */
+    static int computeHashCode(AnnotationMirror anno) {
+        int result = AnnotationUtils.annotationName(anno).hashCode();
+        Map<? extends ExecutableElement, ? extends AnnotationValue> vals =
+                anno.getElementValues();
+        // As in AnnotationUtils#sameElementValues, missing values are their defaults.
+        for (ExecutableElement meth :
+                ElementFilter.methodsIn(
+                        anno.getAnnotationType().asElement().getEnclosedElements())) {
+            AnnotationValue aval = vals.get(meth);
+            if (aval == null) {
+                aval = meth.getDefaultValue();
+            }
+            result = 31 * result + valueHashCode(aval);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a hash code of an annotation value that is consistent with {@link
+     * AnnotationUtils#sameAnnotationValue}.
+     *
+     * @param value an {@link AnnotationValue} or the result of {@link AnnotationValue#getValue()}
+     * @return a hash code of {@code value}
+     */
+    private static int valueHashCode(@Nullable Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof List<?>) {
+            int result = 1;
+            for (Object element : (List<?>) value) {
+                result = 31 * result + valueHashCode(element);
+            }
+            return result;
+        } else if (value instanceof AnnotationMirror) {
+            return hashCode((AnnotationMirror) value);
+        } else if (value instanceof AnnotationValue) {
+            return valueHashCode(((AnnotationValue) value).getValue());
+        } else if (value instanceof Type.ClassType) {
+            // See TypesUtils#areSameDeclaredTypes.
+            return ((Type.ClassType) value).tsym.name.hashCode();
+        }
+        return value.hashCode();
+    }
+
+    /**
+     * A key of {@link #canonical}: a weak reference to an annotation, compared with {@link
+     * AnnotationUtils#areSame}. A key whose annotation has been garbage-collected is only equal to
+     * itself.
+     */
+    private static final class Key extends WeakReference<CheckerFrameworkAnnotationMirror> {
+
+        /** The hash code of the annotation. */
+        private final int hashCode;
+
+        /**
+         * Creates a key.
+         *
+         * @param anno the annotation
+         * @param queue the queue to which the key is added when the annotation is
+         *     garbage-collected, or null for a key that is only used for a lookup
+         */
+        Key(
+                CheckerFrameworkAnnotationMirror anno,
+                @Nullable ReferenceQueue<CheckerFrameworkAnnotationMirror> queue) {
+            super(anno, queue);
+            this.hashCode = anno.hashCode;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            if (hashCode != other.hashCode) {
+                return false;
+            }
+            CheckerFrameworkAnnotationMirror anno = get();
+            CheckerFrameworkAnnotationMirror otherAnno = other.get();
+            return anno != null && otherAnno != null && AnnotationUtils.areSame(anno, otherAnno);
+        }
+    }
+}
@@ -58,7 +58,9 @@ public class AnnotationUtils {
 
     /** Maps classes representing AnnotationMirrors to their names. */
     private static final Map<Class<? extends Annotation>, String> annotationClassNames =
-            Collections.synchronizedMap(CollectionUtils.createLRUCache(ANNOTATION_CACHE_SIZE));
+            Collections.synchronizedMap(
+                    CollectionUtils.createLRUCache(
+                            ANNOTATION_CACHE_SIZE, "AnnotationUtils.annotationClassNames"));
 
     // **********************************************************************
     // Helper methods to handle annotations.  mainly workaround
@@ -95,6 +97,10 @@ public class AnnotationUtils {
         if (a1 == a2) {
             return true;
         }
+        if (AnnotationMirrorInterner.internedTogether(a1, a2)) {
+            // Distinct canonical instances are never the same.
+            return false;
+        }
 
         if (!areSameByName(a1, a2)) {
             return false;
@@ -339,6 +345,9 @@ public class AnnotationUtils {
      * @return an ordering over AnnotationMirrors based on their name and values
      */
     public static int compareAnnotationMirrors(AnnotationMirror a1, AnnotationMirror a2) {
+        if (a1 == a2) {
+            return 0;
+        }
         if (!AnnotationUtils.areSameByName(a1, a2)) {
             return annotationName(a1).compareTo(annotationName(a2));
         }
@@ -604,6 +613,10 @@ public class AnnotationUtils {
         if (am1 == am2) {
             return true;
         }
+        if (AnnotationMirrorInterner.internedTogether(am1, am2) && areSameByName(am1, am2)) {
+            // Distinct canonical instances with the same name have different values.
+            return false;
+        }
 
         Map<? extends ExecutableElement, ? extends AnnotationValue> vals1 = am1.getElementValues();
         Map<? extends ExecutableElement, ? extends AnnotationValue> vals2 = am2.getElementValues();
@@ -13,13 +13,40 @@ public class CollectionUtils {
      * @return a new cache with the provided size
      */
     public static <K, V> Map<K, V> createLRUCache(final int size) {
+        return createLRUCache(size, "unnamed LRU cache");
+    }
+
+    /**
+     * A Utility method for creating LRU cache. If {@link Instrumentation} is enabled, the lookups
+     * ({@code get} calls), hits, and evictions of the cache are recorded under {@code name}. Calls
+     * to {@code containsKey} are not counted, so that a {@code containsKey} followed by a {@code
+     * get} counts as one lookup.
+     *
+     * @param size size of the cache
+     * @param name the name of the cache in the output of {@link Instrumentation}
+     * @return a new cache with the provided size
+     */
+    public static <K, V> Map<K, V> createLRUCache(final int size, final String name) {
         return new LinkedHashMap<K, V>(size, .75F, true) {
 
             private static final long serialVersionUID = 5261489276168775084L;
 
+            @Override
+            public V get(Object key) {
+                V value = super.get(key);
+                if (Instrumentation.isEnabled()) {
+                    Instrumentation.cacheLookup(name, value != null);
+                }
+                return value;
+            }
+
             @Override
             protected boolean removeEldestEntry(Map.Entry<K, V> entry) {
-                return size() > size;
+                if (size() > size) {
+                    Instrumentation.cacheEviction(name);
+                    return true;
+                }
+                return false;
             }
         };
     }
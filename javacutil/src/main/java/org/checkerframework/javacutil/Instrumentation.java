@@ -0,0 +1,419 @@
+package org.checkerframework.javacutil;
+
+import java.util.Map;
+import java.util.TreeMap;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Collects timings and counters that show where a checker spends its time. It is enabled by the
+ * {@code -AinstrumentationFile} command-line option; when it is disabled, every method returns
+ * after reading one field.
+ *
+ * <p>The time of a {@link Phase} is measured between {@link #start(Phase)} and {@link
+ * #stop(Phase)}. Times are exclusive: while a phase runs within another phase, for example a
+ * subtype check during dataflow analysis, the time is attributed to the inner phase only. So the
+ * times of all phases add up to the time spent in instrumented code.
+ *
+ * <p>Times and counters are attributed to the current record and, within {@link
+ * #enterMethod(ExecutableElement)} and {@link #exitMethod(String)}, to the current method as well.
+ * The hit rates of the caches created by {@link CollectionUtils#createLRUCache(int, String)} are
+ * recorded as well. {@link #dump(String, String)} returns the current record as a line of JSON and
+ * starts a new record; the Checker Framework writes one record per top-level class.
+ */
+public final class Instrumentation {
+
+    /** A part of type-checking whose time is measured. */
+    public enum Phase {
+        /** Construction of control flow graphs. */
+        CFG_CONSTRUCTION("cfgConstruction"),
+        /** Dataflow analysis, excluding the computation of annotated types. */
+        DATAFLOW("dataflow"),
+        /** Computation of the annotated type of a tree. */
+        TREE_ANNOTATION("treeAnnotation"),
+        /** Application of default qualifiers. */
+        DEFAULTING("defaulting"),
+        /** Subtype checks between annotated types. */
+        SUBTYPING("subtyping"),
+        /** Parsing of stub files. */
+        STUB_PARSING("stubParsing");
+
+        /** The name of the phase in the JSON output. */
+        private final String jsonName;
+
+        /**
+         * Creates a phase.
+         *
+         * @param jsonName the name of the phase in the JSON output
+         */
+        Phase(String jsonName) {
+            this.jsonName = jsonName;
+        }
+    }
+
+    /** The number of phases. */
+    private static final int NUM_PHASES = Phase.values().length;
+
+    /** Whether instrumentation is enabled. */
+    private static volatile boolean enabled = false;
+
+    /** The per-thread state: the stack of running phases and the current method. */
+    private static final ThreadLocal<ThreadState> threadState =
+            ThreadLocal.withInitial(ThreadState::new);
+
+    /** The times and counters collected since the last call to {@link #dump}. */
+    private static Record current = new Record();
+
+    /** The times and counters of each method since the last call to {@link #dump}. */
+    private static Map<String, Record> methods = new TreeMap<>();
+
+    /** The lookups, hits, and evictions of each cache since the last call to {@link #dump}. */
+    private static Map<String, long[]> caches = new TreeMap<>();
+
+    /** This class is not instantiable. */
+    private Instrumentation() {
+        throw new AssertionError("Class Instrumentation cannot be instantiated.");
+    }
+
+    /**
+     * Returns true if instrumentation is enabled.
+     *
+     * @return true if instrumentation is enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables instrumentation, and discards everything collected so far.
+     *
+     * @param enable whether to enable instrumentation
+     */
+    public static synchronized void setEnabled(boolean enable) {
+        current = new Record();
+        methods = new TreeMap<>();
+        caches = new TreeMap<>();
+        threadState.remove();
+        enabled = enable;
+    }
+
+    /**
+     * Starts measuring the time of a phase. Must be followed by a call to {@link #stop(Phase)}, in
+     * a {@code finally} block.
+     *
+     * @param phase the phase that starts
+     */
+    public static void start(Phase phase) {
+        if (!enabled) {
+            return;
+        }
+        ThreadState state = threadState.get();
+        long now = System.nanoTime();
+        if (state.depth > 0) {
+            add(state, state.phases[state.depth - 1], now - state.lastTime, 0);
+        }
+        if (state.depth == state.phases.length) {
+            Phase[] phases = new Phase[2 * state.depth];
+            System.arraycopy(state.phases, 0, phases, 0, state.depth);
+            state.phases = phases;
+        }
+        state.phases[state.depth++] = phase;
+        add(state, phase, 0, 1);
+        state.lastTime = System.nanoTime();
+    }
+
+    /**
+     * Stops measuring the time of a phase that was started by {@link #start(Phase)}.
+     *
+     * @param phase the phase that stops
+     */
+    public static void stop(Phase phase) {
+        if (!enabled) {
+            return;
+        }
+        ThreadState state = threadState.get();
+        if (state.depth == 0 || state.phases[state.depth - 1] != phase) {
+            // Instrumentation was enabled while the phase was running.
+            return;
+        }
+        long now = System.nanoTime();
+        add(state, phase, now - state.lastTime, 0);
+        state.depth--;
+        state.lastTime = System.nanoTime();
+    }
+
+    /**
+     * Adds {@code amount} to a counter of the current record and method.
+     *
+     * @param counter the name of the counter
+     * @param amount the amount to add
+     */
+    public static void count(String counter, long amount) {
+        if (!enabled) {
+            return;
+        }
+        String method = threadState.get().method;
+        synchronized (Instrumentation.class) {
+            current.counters.merge(counter, amount, Long::sum);
+            if (method != null) {
+                methods.computeIfAbsent(method, m -> new Record())
+                        .counters
+                        .merge(counter, amount, Long::sum);
+            }
+        }
+    }
+
+    /**
+     * Records a lookup in a cache.
+     *
+     * @param cache the name of the cache
+     * @param hit whether the cache contained the key
+     */
+    public static void cacheLookup(String cache, boolean hit) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (Instrumentation.class) {
+            long[] stats = caches.computeIfAbsent(cache, c -> new long[3]);
+            stats[0]++;
+            if (hit) {
+                stats[1]++;
+            }
+        }
+    }
+
+    /**
+     * Records that an entry was evicted from a cache because the cache was full.
+     *
+     * @param cache the name of the cache
+     */
+    public static void cacheEviction(String cache) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (Instrumentation.class) {
+            caches.computeIfAbsent(cache, c -> new long[3])[2]++;
+        }
+    }
+
+    /**
+     * Attributes times and counters to {@code method}, in addition to the current record, until
+     * {@link #exitMethod(String)} is called.
+     *
+     * @param method the method that is analyzed or type-checked
+     * @return the method to pass to {@link #exitMethod(String)}
+     */
+    public static @Nullable String enterMethod(ExecutableElement method) {
+        if (!enabled) {
+            return null;
+        }
+        return enterMethod(methodName(method));
+    }
+
+    /**
+     * Attributes times and counters to {@code method}, in addition to the current record, until
+     * {@link #exitMethod(String)} is called.
+     *
+     * @param method the name of the method that is analyzed or type-checked
+     * @return the method to pass to {@link #exitMethod(String)}
+     */
+    public static @Nullable String enterMethod(String method) {
+        if (!enabled) {
+            return null;
+        }
+        ThreadState state = threadState.get();
+        String previous = state.method;
+        state.method = method;
+        return previous;
+    }
+
+    /**
+     * Stops attributing times and counters to the method passed to the matching call of {@link
+     * #enterMethod}.
+     *
+     * @param previous the result of the matching call to {@link #enterMethod}
+     */
+    public static void exitMethod(@Nullable String previous) {
+        if (!enabled) {
+            return;
+        }
+        threadState.get().method = previous;
+    }
+
+    /**
+     * Returns the name by which {@code method} is reported, such as {@code p.C.m(int)}.
+     *
+     * @param method a method or constructor
+     * @return the name of {@code method}
+     */
+    public static String methodName(ExecutableElement method) {
+        Element enclosing = method.getEnclosingElement();
+        if (enclosing instanceof TypeElement) {
+            return ((TypeElement) enclosing).getQualifiedName() + "." + method;
+        }
+        return method.toString();
+    }
+
+    /**
+     * Returns the times and counters collected since the last call to this method as one line of
+     * JSON, and starts a new record.
+     *
+     * @param compilationUnit the file name of the compilation unit that was type-checked
+     * @param className the name of the top-level class that was type-checked
+     * @return a JSON object that describes the times and counters of the class, of each of its
+     *     methods, and of the caches
+     */
+    public static synchronized String dump(String compilationUnit, String className) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"compilationUnit\":");
+        appendString(sb, compilationUnit);
+        sb.append(",\"class\":");
+        appendString(sb, className);
+        sb.append(',');
+        current.appendTo(sb);
+        sb.append(",\"caches\":{");
+        boolean first = true;
+        for (Map.Entry<String, long[]> entry : caches.entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            long[] stats = entry.getValue();
+            appendString(sb, entry.getKey());
+            sb.append(":{\"lookups\":").append(stats[0]);
+            sb.append(",\"hits\":").append(stats[1]);
+            sb.append(",\"evictions\":").append(stats[2]).append('}');
+        }
+        sb.append("},\"methods\":{");
+        first = true;
+        for (Map.Entry<String, Record> entry : methods.entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            appendString(sb, entry.getKey());
+            sb.append(":{");
+            entry.getValue().appendTo(sb);
+            sb.append('}');
+        }
+        sb.append("}}");
+
+        current = new Record();
+        methods = new TreeMap<>();
+        caches = new TreeMap<>();
+        return sb.toString();
+    }
+
+    /**
+     * Adds a time and a number of invocations of a phase to the current record and method.
+     *
+     * @param state the state of the current thread
+     * @param phase the phase
+     * @param nanos the time to add, in nanoseconds
+     * @param invocations the number of invocations to add
+     */
+    private static synchronized void add(
+            ThreadState state, Phase phase, long nanos, int invocations) {
+        current.add(phase, nanos, invocations);
+        if (state.method != null) {
+            methods.computeIfAbsent(state.method, m -> new Record())
+                    .add(phase, nanos, invocations);
+        }
+    }
+
+    /**
+     * Appends {@code s} to {@code sb} as a JSON string.
+     *
+     * @param sb the string builder
+     * @param s the string to append
+     */
+    private static void appendString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    /** The times and counters of a class or method. */
+    private static class Record {
+        /** The time of each phase, in nanoseconds, indexed by ordinal. */
+        final long[] nanos = new long[NUM_PHASES];
+
+        /** The number of invocations of each phase, indexed by ordinal. */
+        final long[] invocations = new long[NUM_PHASES];
+
+        /** The counters, by name. */
+        final Map<String, Long> counters = new TreeMap<>();
+
+        /**
+         * Adds a time and a number of invocations of a phase to this record.
+         *
+         * @param phase the phase
+         * @param nanos the time to add, in nanoseconds
+         * @param invocations the number of invocations to add
+         */
+        void add(Phase phase, long nanos, int invocations) {
+            this.nanos[phase.ordinal()] += nanos;
+            this.invocations[phase.ordinal()] += invocations;
+        }
+
+        /**
+         * Appends the members {@code "phases"} and {@code "counters"} of a JSON object that
+         * describes this record to {@code sb}.
+         *
+         * @param sb the string builder
+         */
+        void appendTo(StringBuilder sb) {
+            sb.append("\"phases\":{");
+            boolean first = true;
+            for (Phase phase : Phase.values()) {
+                if (invocations[phase.ordinal()] == 0) {
+                    continue;
+                }
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                appendString(sb, phase.jsonName);
+                sb.append(":{\"invocations\":").append(invocations[phase.ordinal()]);
+                sb.append(",\"nanos\":").append(nanos[phase.ordinal()]).append('}');
+            }
+            sb.append("},\"counters\":{");
+            first = true;
+            for (Map.Entry<String, Long> entry : counters.entrySet()) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                appendString(sb, entry.getKey());
+                sb.append(':').append(entry.getValue());
+            }
+            sb.append('}');
+        }
+    }
+
+    /** The instrumentation state of a thread. */
+    private static class ThreadState {
+        /** The stack of running phases; the first {@link #depth} elements are used. */
+        Phase[] phases = new Phase[8];
+
+        /** The number of running phases. */
+        int depth = 0;
+
+        /** The time at which the innermost running phase started or resumed. */
+        long lastTime = 0;
+
+        /** The method to which times and counters are attributed, or null. */
+        @Nullable String method = null;
+    }
+}